@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.n52.janmayen.Producer;
 import org.n52.janmayen.Producers;
@@ -63,6 +64,8 @@ public abstract class AbstractCodingRepository<K extends Similar<K>, C extends C
 
     private final SetMultimap<K, Producer<C>> componentsByKey = HashMultimap.create();
 
+    private final AtomicInteger generation = new AtomicInteger();
+
     public Set<Producer<C>> getComponentProviders() {
         return Collections.unmodifiableSet(this.components);
     }
@@ -71,11 +74,20 @@ public abstract class AbstractCodingRepository<K extends Similar<K>, C extends C
         return Multimaps.unmodifiableSetMultimap(componentsByKey);
     }
 
+    /**
+     * @return a number that changes every time the components of this
+     *         repository were replaced, e.g. to invalidate derived indexes
+     */
+    public int getGeneration() {
+        return generation.get();
+    }
+
     protected void setProducers(SetMultimap<K, Producer<C>> implementations) {
         this.componentsByKey.clear();
         this.componentsByKey.putAll(implementations);
         this.components.clear();
         this.components.addAll(implementations.values());
+        this.generation.incrementAndGet();
     }
 
     protected C choose(Set<C> matches, K key) {
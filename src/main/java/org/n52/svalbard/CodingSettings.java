@@ -31,4 +31,28 @@ public interface CodingSettings {
     String SRS_NAME_PREFIX_URL = "coding.srsNamePrefixURL";
 
     String VALIDATE_RESPONSE = "service.response.validate";
+
+    String VALIDATE_RESPONSE_MODE = "service.response.validate.mode";
+
+    String VALIDATE_RESPONSE_SAMPLE_RATE = "service.response.validate.sampleRate";
+
+    String VALIDATE_REQUEST_WHILE_PARSING = "service.request.validateWhileParsing";
+
+    String INSERT_OBSERVATION_DECODING_THREADS = "coding.insertObservation.decodingThreads";
+
+    String INSERT_OBSERVATION_STREAMING = "coding.insertObservation.streaming";
+
+    String FRAGMENT_CACHE_SIZE = "coding.fragmentCache.size";
+
+    String OBSERVATION_CACHE_HEAP_SIZE = "coding.observationCache.heapSize";
+
+    String OBSERVATION_CACHE_OFF_HEAP_SIZE = "coding.observationCache.offHeapSize";
+
+    String OBSERVATION_CACHE_MIN_AGE = "coding.observationCache.minAge";
+
+    String CAPABILITIES_CACHE_SIZE = "coding.capabilitiesCache.size";
+
+    String CAPABILITIES_ENCODING_THREADS = "coding.capabilities.encodingThreads";
+
+    String OM_100_STREAMING_OMIT_ENVELOPE = "coding.om100.streaming.omitEnvelope";
 }
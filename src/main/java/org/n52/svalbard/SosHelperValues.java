@@ -37,5 +37,33 @@ public enum SosHelperValues implements HelperValues {
      * Encode the given <tt>OwsExceptionReport</tt> not into an
      * <tt>ows:ExceptionReport</tt> but one <tt>ows:Exception</tt>.
      */
-    ENCODE_OWS_EXCEPTION_ONLY;
+    ENCODE_OWS_EXCEPTION_ONLY,
+    /**
+     * Encode features of interest, procedures and phenomenon times that occur
+     * more than once in a response only once and reference them by
+     * <tt>xlink:href</tt>, see {@link org.n52.svalbard.encode.ResponseReferenceRegistry}.
+     */
+    XLINK_DEDUPLICATION,
+    /**
+     * The {@link org.n52.svalbard.encode.GmlIdAllocator} that hands out the
+     * <tt>gml:id</tt>s of the current response.
+     */
+    GML_ID_ALLOCATOR,
+    /**
+     * A precomputed {@link org.n52.shetland.util.ReferencedEnvelope} of the
+     * encoded collection, e.g. taken from the cache, that is used instead of
+     * computing it from the members.
+     */
+    ENVELOPE,
+    /**
+     * The {@link org.n52.svalbard.encode.ResultValuesSource} a GetResult
+     * response streams its result values from.
+     */
+    RESULT_VALUES,
+    /**
+     * The {@link org.n52.svalbard.encode.CapabilitiesCache.Key} of a
+     * GetCapabilities response, set by the service if the encoded response may
+     * be taken from and stored in the capabilities cache.
+     */
+    CAPABILITIES_CACHE_KEY;
 }
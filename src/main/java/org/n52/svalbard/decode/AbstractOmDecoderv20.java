@@ -20,7 +20,6 @@ import java.util.Set;
 
 import org.apache.xmlbeans.XmlBoolean;
 import org.apache.xmlbeans.XmlDouble;
-import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlInt;
 import org.apache.xmlbeans.XmlInteger;
 import org.apache.xmlbeans.XmlObject;
@@ -46,8 +45,7 @@ import org.n52.shetland.ogc.swe.simpleType.SweText;
 import org.n52.shetland.w3c.xlink.W3CHrefAttribute;
 import org.n52.svalbard.decode.exception.DecodingException;
 import org.n52.svalbard.decode.exception.UnsupportedDecoderInputException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.n52.svalbard.util.XmlHelper;
 
 import com.google.common.collect.Sets;
 import com.vividsolutions.jts.geom.Geometry;
@@ -57,8 +55,6 @@ import net.opengis.om.x20.NamedValueType;
 
 public abstract class AbstractOmDecoderv20 extends AbstractGmlDecoderv321<Object, Object> {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractOmDecoderv20.class);
-
     @Override
     public Object decode(Object object) throws DecodingException {
         if (object instanceof NamedValuePropertyType) {
@@ -100,11 +96,7 @@ public abstract class AbstractOmDecoderv20 extends AbstractGmlDecoderv321<Object
 
     protected NamedValue<?> parseNamedValueValue(XmlObject xmlObject) throws DecodingException {
         if (xmlObject.schemaType() == XmlAnyTypeImpl.type) {
-            try {
-                xmlObject = XmlObject.Factory.parse(xmlObject.xmlText().trim());
-            } catch (XmlException e) {
-                LOGGER.error("Error while parsing NamedValueValue", e);
-            }
+            xmlObject = XmlHelper.typeAnyTypeContent(xmlObject);
         }
         Object value;
 
@@ -16,22 +16,24 @@
  */
 package org.n52.svalbard.decode;
 
-import java.io.IOException;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.xml.namespace.QName;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPConstants;
 import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPFactory;
 import javax.xml.soap.SOAPHeader;
 import javax.xml.soap.SOAPHeaderElement;
-import javax.xml.soap.SOAPMessage;
 
-import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
 import org.n52.janmayen.function.Functions;
 import org.n52.shetland.ogc.ows.service.OwsServiceRequest;
@@ -41,10 +43,10 @@ import org.n52.shetland.w3c.soap.SoapRequest;
 import org.n52.shetland.w3c.wsa.WsaActionHeader;
 import org.n52.shetland.w3c.wsa.WsaConstants;
 import org.n52.svalbard.decode.exception.DecodingException;
-import org.n52.svalbard.util.W3cHelper;
+import org.n52.svalbard.util.XmlHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import com.google.common.collect.Lists;
 
@@ -55,9 +57,16 @@ import com.google.common.collect.Lists;
 public abstract class AbstractSoapDecoder extends AbstractXmlDecoder<XmlObject, SoapRequest> {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractSoapDecoder.class);
 
+    private static final String EN_HEADER = "Header";
+
+    private static final String EN_BODY = "Body";
+
     private final Set<DecoderKey> decoderKeys;
 
+    private final String namespace;
+
     public AbstractSoapDecoder(String namespace) {
+        this.namespace = namespace;
         this.decoderKeys = Collections.<DecoderKey> singleton(new XmlNamespaceDecoderKey(namespace, XmlObject.class));
     }
 
@@ -80,43 +89,83 @@ public abstract class AbstractSoapDecoder extends AbstractXmlDecoder<XmlObject,
     protected abstract SoapRequest createFault(DecodingException xml);
 
     /**
-     * Parses the SOAPBody content to a text representation
-     *
-     * @param message
-     *            SOAP message
+     * Decodes the content of the SOAP body of the already parsed envelope. The
+     * first child element is copied into a document of its own and passed to
+     * the body decoder, it is not serialized or parsed again.
      *
-     * @return SOAPBody content as text
+     * @param envelope
+     *            the envelope document
      *
+     * @return the decoded body content
      *
      * @throws DecodingException
-     *             * if an error occurs.
+     *             if the envelope has no body or the content can not be decoded
      */
-    protected OwsServiceRequest getSOAPBodyContent(SOAPMessage message) throws DecodingException {
+    protected OwsServiceRequest getBodyContent(XmlObject envelope) throws DecodingException {
+        XmlCursor cursor = envelope.newCursor();
         try {
-            Document bodyRequestDoc = message.getSOAPBody().extractContentAsDocument();
-            String xmlString = W3cHelper.nodeToXmlString(bodyRequestDoc.getDocumentElement());
-            return decodeXmlElement(XmlObject.Factory.parse(xmlString, getXmlOptions()));
-        } catch (SOAPException | XmlException | IOException e) {
-            throw new DecodingException("Error while parsing SOAPMessage body content!", e);
+            if (!toEnvelopeChild(cursor, EN_BODY)) {
+                throw new DecodingException("The SOAP envelope does not contain a body!");
+            }
+            if (!cursor.toFirstChild()) {
+                return decodeXmlElement(cursor.getObject());
+            }
+            XmlObject content = XmlHelper.copyToDocument(cursor.getObject());
+            prepareBodyContent(content);
+            return decodeXmlElement(content);
+        } finally {
+            cursor.dispose();
         }
     }
 
-    protected List<SoapHeader> getSoapHeader(SOAPHeader soapHeader) {
-        Map<String, List<SOAPHeaderElement>> headersByNamespace = new HashMap<>();
-        Iterator<?> headerElements = soapHeader.extractAllHeaderElements();
-        while (headerElements.hasNext()) {
-            SOAPHeaderElement element = (SOAPHeaderElement) headerElements.next();
-            headersByNamespace.computeIfAbsent(element.getNamespaceURI(), Functions.forSupplier(LinkedList::new))
-                    .add(element);
+    /**
+     * Hook to fix the body content before it is decoded.
+     *
+     * @param content
+     *            the body content document
+     */
+    protected void prepareBodyContent(XmlObject content) {
+    }
+
+    /**
+     * Decodes the header blocks of the already parsed envelope. The blocks are
+     * grouped by namespace and passed as a {@code List<XmlObject>} to the
+     * decoder registered for
+     * {@code new XmlNamespaceDecoderKey(namespace, SoapHeader.class)}. Header
+     * decoders that are still registered for the former key
+     * {@code new XmlNamespaceDecoderKey(namespace, SOAPHeaderElement.class)}
+     * are used as a fallback and get the blocks as
+     * {@code List<SOAPHeaderElement>}.
+     *
+     * @param envelope
+     *            the envelope document
+     *
+     * @return the decoded headers, empty if the envelope has no header
+     */
+    protected List<SoapHeader> getSoapHeader(XmlObject envelope) {
+        Map<String, List<XmlObject>> headersByNamespace = new LinkedHashMap<>();
+        XmlCursor cursor = envelope.newCursor();
+        try {
+            if (toEnvelopeChild(cursor, EN_HEADER) && cursor.toFirstChild()) {
+                do {
+                    headersByNamespace.computeIfAbsent(cursor.getName().getNamespaceURI(),
+                            Functions.forSupplier(LinkedList::new)).add(cursor.getObject());
+                } while (cursor.toNextSibling());
+            }
+        } finally {
+            cursor.dispose();
         }
         List<SoapHeader> soapHeaders = Lists.newArrayList();
-        for (Entry<String, List<SOAPHeaderElement>> key : headersByNamespace.entrySet()) {
+        for (Entry<String, List<XmlObject>> key : headersByNamespace.entrySet()) {
             String namespace = key.getKey();
             try {
-                Decoder<?, List<SOAPHeaderElement>> decoder =
-                        getDecoder(new XmlNamespaceDecoderKey(namespace, SOAPHeaderElement.class));
-                if (decoder != null) {
-                    Object object = decoder.decode(headersByNamespace.get(namespace));
+                Decoder<?, List<XmlObject>> decoder =
+                        getDecoder(new XmlNamespaceDecoderKey(namespace, SoapHeader.class));
+                Decoder<?, List<SOAPHeaderElement>> legacyDecoder = decoder != null ? null
+                        : getDecoder(new XmlNamespaceDecoderKey(namespace, SOAPHeaderElement.class));
+                if (decoder != null || legacyDecoder != null) {
+                    Object object = decoder != null ? decoder.decode(key.getValue())
+                            : legacyDecoder.decode(toSoapHeaderElements(key.getValue()));
                     if (object instanceof SoapHeader) {
                         soapHeaders.add((SoapHeader) object);
                     } else if (object instanceof List<?>) {
@@ -137,6 +186,37 @@ public abstract class AbstractSoapDecoder extends AbstractXmlDecoder<XmlObject,
         return soapHeaders;
     }
 
+    /**
+     * Converts the header blocks for decoders that are registered for
+     * {@link SOAPHeaderElement}.
+     */
+    private List<SOAPHeaderElement> toSoapHeaderElements(List<XmlObject> blocks) throws DecodingException {
+        String protocol = SOAPConstants.URI_NS_SOAP_1_2_ENVELOPE.equals(namespace)
+                ? SOAPConstants.SOAP_1_2_PROTOCOL : SOAPConstants.SOAP_1_1_PROTOCOL;
+        try {
+            SOAPFactory factory = SOAPFactory.newInstance(protocol);
+            SOAPHeader header = MessageFactory.newInstance(protocol).createMessage().getSOAPHeader();
+            List<SOAPHeaderElement> elements = Lists.newArrayListWithCapacity(blocks.size());
+            for (XmlObject block : blocks) {
+                header.addChildElement(factory.createElement((Element) block.getDomNode()));
+            }
+            Iterator<?> iter = header.examineAllHeaderElements();
+            while (iter.hasNext()) {
+                elements.add((SOAPHeaderElement) iter.next());
+            }
+            return elements;
+        } catch (SOAPException ex) {
+            throw new DecodingException("Error while converting the SOAP header elements", ex);
+        }
+    }
+
+    private boolean toEnvelopeChild(XmlCursor cursor, String localName) {
+        if (cursor.isStartdoc() && !cursor.toFirstChild()) {
+            return false;
+        }
+        return cursor.toChild(new QName(namespace, localName));
+    }
+
     protected String checkSoapAction(String soapAction, List<SoapHeader> soapHeaders) {
         if (soapAction != null && !soapAction.isEmpty()) {
             return soapAction;
@@ -16,12 +16,18 @@
  */
 package org.n52.svalbard.decode;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Set;
 
+import javax.inject.Inject;
+
 import org.n52.shetland.w3c.soap.SoapConstants;
 import org.n52.shetland.w3c.soap.SoapRequest;
 import org.n52.svalbard.decode.exception.DecodingException;
+import org.n52.svalbard.util.CodingHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,18 +40,26 @@ import com.google.common.base.Joiner;
  * @since 1.0.0
  *
  */
-public abstract class AbstractSoapStringDecoder extends AbstractXmlDecoder<String, SoapRequest> {
+public abstract class AbstractSoapStringDecoder extends AbstractXmlDecoder<String, SoapRequest>
+        implements StreamingDecoder<SoapRequest, String> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractSoapStringDecoder.class);
 
     private final Set<DecoderKey> decoderKeys;
 
+    private ValidatingXmlParser parser;
+
     public AbstractSoapStringDecoder(String namespace) {
         this.decoderKeys = Collections.<DecoderKey> singleton(
                 new XmlNamespaceOperationDecoderKey(namespace, SoapConstants.EN_SOAP_ENVELOPE));
         LOGGER.debug("Decoder for the following keys initialized successfully: {}!", Joiner.on(", ").join(getKeys()));
     }
 
+    @Inject
+    public void setValidatingXmlParser(ValidatingXmlParser parser) {
+        this.parser = parser;
+    }
+
     @Override
     public Set<DecoderKey> getKeys() {
         return Collections.unmodifiableSet(decoderKeys);
@@ -53,6 +67,24 @@ public abstract class AbstractSoapStringDecoder extends AbstractXmlDecoder<Strin
 
     @Override
     public SoapRequest decode(String xmlString) throws DecodingException {
+        if (parser != null) {
+            return decodeXmlObject(parser.parse(xmlString));
+        }
         return (SoapRequest) decodeXmlObject(xmlString);
     }
+
+    @Override
+    public SoapRequest decode(InputStream in) throws DecodingException {
+        return decodeXmlObject(parser != null ? parser.parse(in) : CodingHelper.readXML(in));
+    }
+
+    @Override
+    public SoapRequest decode(Reader reader) throws DecodingException {
+        return decodeXmlObject(parser != null ? parser.parse(reader) : CodingHelper.readXML(reader));
+    }
+
+    @Override
+    public SoapRequest decode(ByteBuffer buffer) throws DecodingException {
+        return decodeXmlObject(parser != null ? parser.parse(buffer) : CodingHelper.readXML(buffer));
+    }
 }
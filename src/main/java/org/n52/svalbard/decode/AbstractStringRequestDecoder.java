@@ -16,7 +16,12 @@
  */
 package org.n52.svalbard.decode;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
 import javax.inject.Inject;
+import javax.xml.namespace.QName;
 
 import org.apache.xmlbeans.XmlObject;
 import org.n52.shetland.ogc.ows.service.OwsServiceCommunicationObject;
@@ -24,24 +29,70 @@ import org.n52.svalbard.decode.exception.DecodingException;
 import org.n52.svalbard.decode.exception.NoDecoderForKeyException;
 import org.n52.svalbard.util.CodingHelper;
 
-public abstract class AbstractStringRequestDecoder implements Decoder<OwsServiceCommunicationObject, String> {
+public abstract class AbstractStringRequestDecoder
+        implements StreamingDecoder<OwsServiceCommunicationObject, String> {
 
     private DecoderRepository decoderRepository;
 
+    private ValidatingXmlParser parser;
+
     @Inject
     public void setDecoderRepository(DecoderRepository decoderRepository) {
         this.decoderRepository = decoderRepository;
     }
 
+    @Inject
+    public void setValidatingXmlParser(ValidatingXmlParser parser) {
+        this.parser = parser;
+    }
+
     @Override
     public OwsServiceCommunicationObject decode(String string) throws DecodingException {
-        XmlObject xml = CodingHelper.readXML(string);
-        DecoderKey key = CodingHelper.getDecoderKey(xml);
+        if (parser != null) {
+            return parser.decode(string, this::selectDecoder);
+        }
+        return decodeDocument(CodingHelper.readXML(string));
+    }
+
+    @Override
+    public OwsServiceCommunicationObject decode(InputStream in) throws DecodingException {
+        if (parser != null) {
+            return parser.decode(in, this::selectDecoder);
+        }
+        return decodeDocument(CodingHelper.readXML(in));
+    }
+
+    @Override
+    public OwsServiceCommunicationObject decode(Reader reader) throws DecodingException {
+        if (parser != null) {
+            return parser.decode(reader, this::selectDecoder);
+        }
+        return decodeDocument(CodingHelper.readXML(reader));
+    }
+
+    @Override
+    public OwsServiceCommunicationObject decode(ByteBuffer buffer) throws DecodingException {
+        if (parser != null) {
+            return parser.decode(buffer, this::selectDecoder);
+        }
+        return decodeDocument(CodingHelper.readXML(buffer));
+    }
+
+    private OwsServiceCommunicationObject decodeDocument(XmlObject xml) throws DecodingException {
+        return getDecoder(CodingHelper.getDecoderKey(xml)).decode(xml);
+    }
+
+    private Decoder<OwsServiceCommunicationObject, XmlObject> selectDecoder(QName root) throws DecodingException {
+        return getDecoder(CodingHelper.getDecoderKey(root));
+    }
+
+    private Decoder<OwsServiceCommunicationObject, XmlObject> getDecoder(DecoderKey key)
+            throws NoDecoderForKeyException {
         Decoder<OwsServiceCommunicationObject, XmlObject> decoder = decoderRepository.getDecoder(key);
         if (decoder == null) {
             throw new NoDecoderForKeyException(key);
         }
-        return decoder.decode(xml);
+        return decoder;
     }
 
 }
@@ -36,22 +36,32 @@ public abstract class AbstractSwesDecoderv20<S> extends AbstractXmlDecoder<XmlOb
         if (CollectionHelper.isNotNullOrEmpty(extensionArray)) {
             final SwesExtensions extensions = new SwesExtensions();
             for (final XmlObject xbSwesExtension : extensionArray) {
-
-                final Object obj = decodeXmlElement(xbSwesExtension);
-                if (obj instanceof SwesExtension<?>) {
-                    extensions.addExtension((SwesExtension<?>) obj);
-                } else {
-                    SwesExtension<Object> swesExtension = new SwesExtension<>();
-                    if (obj instanceof SweAbstractDataComponent) {
-                        swesExtension.setIdentifier(((SweAbstractDataComponent) obj).getIdentifier());
-                        swesExtension.setDefinition(((SweAbstractDataComponent) obj).getDefinition());
-                    }
-                    swesExtension.setValue(obj);
-                    extensions.addExtension(swesExtension);
-                }
+                extensions.addExtension(toSwesExtension(decodeXmlElement(xbSwesExtension)));
             }
             return extensions;
         }
         return null;
     }
+
+    /**
+     * Wrap a decoded <code>swes:extension</code> content into a
+     * {@link SwesExtension} if it is not already one.
+     *
+     * @param obj
+     *            the decoded extension content
+     *
+     * @return the extension
+     */
+    protected static SwesExtension<?> toSwesExtension(Object obj) {
+        if (obj instanceof SwesExtension<?>) {
+            return (SwesExtension<?>) obj;
+        }
+        SwesExtension<Object> swesExtension = new SwesExtension<>();
+        if (obj instanceof SweAbstractDataComponent) {
+            swesExtension.setIdentifier(((SweAbstractDataComponent) obj).getIdentifier());
+            swesExtension.setDefinition(((SweAbstractDataComponent) obj).getDefinition());
+        }
+        swesExtension.setValue(obj);
+        return swesExtension;
+    }
 }
@@ -25,7 +25,7 @@ import org.n52.janmayen.Producer;
 import org.n52.svalbard.decode.exception.DecodingException;
 import org.n52.svalbard.decode.exception.NoDecoderForKeyException;
 import org.n52.svalbard.decode.exception.XmlDecodingException;
-import org.n52.svalbard.util.XmlHelper;
+import org.n52.svalbard.util.CodingHelper;
 
 /**
  * TODO JavaDoc
@@ -53,7 +53,7 @@ public abstract class AbstractXmlDecoder<T, S> extends AbstractDelegatingDecoder
     }
 
     public DecoderKey getDecoderKey(XmlObject doc) {
-        return new XmlNamespaceDecoderKey(XmlHelper.getNamespace(doc), doc.getClass());
+        return CodingHelper.getDecoderKey(doc);
     }
 
     public <T> T decodeXmlObject(XmlObject xbObject) throws DecodingException {
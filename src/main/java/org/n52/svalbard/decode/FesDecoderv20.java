@@ -20,10 +20,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 
+import javax.xml.namespace.QName;
+
 import org.apache.xmlbeans.XmlCursor;
-import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
-import org.apache.xmlbeans.XmlObject.Factory;
 import org.n52.shetland.ogc.filter.BinaryLogicFilter;
 import org.n52.shetland.ogc.filter.ComparisonFilter;
 import org.n52.shetland.ogc.filter.Filter;
@@ -47,7 +47,6 @@ import org.n52.svalbard.util.JTSHelper;
 import org.n52.svalbard.util.XmlHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.NodeList;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Sets;
@@ -74,7 +73,6 @@ import net.opengis.fes.x20.SpatialOpsType;
 import net.opengis.fes.x20.TemporalOpsDocument;
 import net.opengis.fes.x20.TemporalOpsType;
 import net.opengis.fes.x20.UnaryLogicOpType;
-import net.opengis.fes.x20.ValueReferenceDocument;
 
 /**
  * @since 4.0.0
@@ -161,44 +159,40 @@ public class FesDecoderv20 extends AbstractXmlDecoder<XmlObject, Object> {
      */
     private SpatialFilter parseSpatialFilterType(SpatialOpsType xbSpatialOpsType) throws DecodingException {
         SpatialFilter spatialFilter = new SpatialFilter();
-        try {
-            if (xbSpatialOpsType instanceof BBOXType) {
-                spatialFilter.setOperator(FilterConstants.SpatialOperator.BBOX);
-                BBOXType xbBBOX = (BBOXType) xbSpatialOpsType;
-                if (isValueReferenceExpression(xbBBOX.getExpression())) {
-                    spatialFilter.setValueReference(parseValueReference(xbBBOX.getExpression()));
-                }
-                XmlCursor geometryCursor = xbSpatialOpsType.newCursor();
-                if (geometryCursor.toChild(GmlConstants.QN_ENVELOPE_32)) {
-                    Object sosGeometry = decodeXmlObject(Factory.parse(geometryCursor.getDomNode()));
-                    if (sosGeometry instanceof Geometry) {
-                        spatialFilter.setGeometry((Geometry) sosGeometry);
-                    } else if (sosGeometry instanceof ReferencedEnvelope) {
-                        ReferencedEnvelope referencedEnvelope = (ReferencedEnvelope)sosGeometry;
-                        if (referencedEnvelope.isSetEnvelope()) {
-                            GeometryFactory geomFactory = null;
-                            if (referencedEnvelope.isSetSrid()) {
-                                geomFactory = JTSHelper.getGeometryFactoryForSRID(referencedEnvelope.getSrid());
-                            } else {
-                                geomFactory = new GeometryFactory();
-                            }
-                            spatialFilter.setGeometry(geomFactory.toGeometry(referencedEnvelope.getEnvelope()));
+        if (xbSpatialOpsType instanceof BBOXType) {
+            spatialFilter.setOperator(FilterConstants.SpatialOperator.BBOX);
+            BBOXType xbBBOX = (BBOXType) xbSpatialOpsType;
+            if (isValueReferenceExpression(xbBBOX.getExpression())) {
+                spatialFilter.setValueReference(parseValueReference(xbBBOX.getExpression()));
+            }
+            XmlCursor geometryCursor = xbSpatialOpsType.newCursor();
+            if (geometryCursor.toChild(GmlConstants.QN_ENVELOPE_32)) {
+                Object sosGeometry = decodeXmlObject(XmlHelper.copyToDocument(geometryCursor.getObject()));
+                if (sosGeometry instanceof Geometry) {
+                    spatialFilter.setGeometry((Geometry) sosGeometry);
+                } else if (sosGeometry instanceof ReferencedEnvelope) {
+                    ReferencedEnvelope referencedEnvelope = (ReferencedEnvelope)sosGeometry;
+                    if (referencedEnvelope.isSetEnvelope()) {
+                        GeometryFactory geomFactory = null;
+                        if (referencedEnvelope.isSetSrid()) {
+                            geomFactory = JTSHelper.getGeometryFactoryForSRID(referencedEnvelope.getSrid());
+                        } else {
+                            geomFactory = new GeometryFactory();
                         }
-                    } else {
-                        throw new UnsupportedDecoderXmlInputException(this, xbSpatialOpsType);
+                        spatialFilter.setGeometry(geomFactory.toGeometry(referencedEnvelope.getEnvelope()));
                     }
-
                 } else {
-                    throw new DecodingException(Sos2Constants.GetObservationParams.spatialFilter,
-                            "The requested spatial filter operand is not supported by this SOS!");
+                    throw new UnsupportedDecoderXmlInputException(this, xbSpatialOpsType);
                 }
-                geometryCursor.dispose();
+
             } else {
                 throw new DecodingException(Sos2Constants.GetObservationParams.spatialFilter,
-                        "The requested spatial filter is not supported by this SOS!");
+                        "The requested spatial filter operand is not supported by this SOS!");
             }
-        } catch (XmlException xmle) {
-            throw new DecodingException("Error while parsing spatial filter!", xmle);
+            geometryCursor.dispose();
+        } else {
+            throw new DecodingException(Sos2Constants.GetObservationParams.spatialFilter,
+                    "The requested spatial filter is not supported by this SOS!");
         }
         return spatialFilter;
     }
@@ -217,66 +211,62 @@ public class FesDecoderv20 extends AbstractXmlDecoder<XmlObject, Object> {
      */
     private TemporalFilter parseTemporalFilterType(TemporalOpsType xbTemporalOpsType) throws DecodingException {
         TemporalFilter temporalFilter = new TemporalFilter();
-        try {
-            if (xbTemporalOpsType instanceof BinaryTemporalOpType) {
-                BinaryTemporalOpType btot = (BinaryTemporalOpType) xbTemporalOpsType;
-                if (btot.getValueReference() != null && !btot.getValueReference().isEmpty()) {
-                    temporalFilter.setValueReference(btot.getValueReference().trim());
-                }
-                NodeList nodes = btot.getDomNode().getChildNodes();
-                for (int i = 0; i < nodes.getLength(); i++) {
-                    if (nodes.item(i).getNamespaceURI() != null
-                            && !nodes.item(i).getLocalName().equals(FilterConstants.EN_VALUE_REFERENCE)) {
-                        Object timeObject = decodeXmlObject(Factory.parse(nodes.item(i)));
-                        if (timeObject instanceof Time) {
-                            TimeOperator operator;
-                            Time time = (Time) timeObject;
-                            String localName = XmlHelper.getLocalName(xbTemporalOpsType);
-                            if (localName.equals(TimeOperator2.After.name())) {
-                                operator = TimeOperator.TM_After;
-                            } else if (localName.equals(TimeOperator2.Before.name())) {
-                                operator = TimeOperator.TM_Before;
-                            } else if (localName.equals(TimeOperator2.Begins.name())) {
-                                operator = TimeOperator.TM_Begins;
-                            } else if (localName.equals(TimeOperator2.BegunBy.name())) {
-                                operator = TimeOperator.TM_BegunBy;
-                            } else if (localName.equals(TimeOperator2.TContains.name())) {
-                                operator = TimeOperator.TM_Contains;
-                            } else if (localName.equals(TimeOperator2.During.name())) {
-                                operator = TimeOperator.TM_During;
-                            } else if (localName.equals(TimeOperator2.EndedBy.name())) {
-                                operator = TimeOperator.TM_EndedBy;
-                            } else if (localName.equals(TimeOperator2.Ends.name())) {
-                                operator = TimeOperator.TM_Ends;
-                            } else if (localName.equals(TimeOperator2.TEquals.name())) {
-                                operator = TimeOperator.TM_Equals;
-                            } else if (localName.equals(TimeOperator2.Meets.name())) {
-                                operator = TimeOperator.TM_Meets;
-                            } else if (localName.equals(TimeOperator2.MetBy.name())) {
-                                operator = TimeOperator.TM_MetBy;
-                            } else if (localName.equals(TimeOperator2.TOverlaps.name())) {
-                                operator = TimeOperator.TM_Overlaps;
-                            } else if (localName.equals(TimeOperator2.OverlappedBy.name())) {
-                                operator = TimeOperator.TM_OverlappedBy;
-                            } else {
-                                throw new DecodingException(Sos2Constants.GetObservationParams.temporalFilter,
-                                        "The requested temporal filter operand is not supported by this SOS!");
-                            }
-                            temporalFilter.setOperator(operator);
-                            temporalFilter.setTime(time);
-                            break;
+        if (xbTemporalOpsType instanceof BinaryTemporalOpType) {
+            BinaryTemporalOpType btot = (BinaryTemporalOpType) xbTemporalOpsType;
+            if (btot.getValueReference() != null && !btot.getValueReference().isEmpty()) {
+                temporalFilter.setValueReference(btot.getValueReference().trim());
+            }
+            for (XmlObject operand : XmlHelper.getChildElements(btot)) {
+                QName name = XmlHelper.getElementName(operand);
+                if (!name.getNamespaceURI().isEmpty()
+                        && !name.getLocalPart().equals(FilterConstants.EN_VALUE_REFERENCE)) {
+                    Object timeObject = decodeXmlObject(XmlHelper.copyToDocument(operand));
+                    if (timeObject instanceof Time) {
+                        TimeOperator operator;
+                        Time time = (Time) timeObject;
+                        String localName = XmlHelper.getLocalName(xbTemporalOpsType);
+                        if (localName.equals(TimeOperator2.After.name())) {
+                            operator = TimeOperator.TM_After;
+                        } else if (localName.equals(TimeOperator2.Before.name())) {
+                            operator = TimeOperator.TM_Before;
+                        } else if (localName.equals(TimeOperator2.Begins.name())) {
+                            operator = TimeOperator.TM_Begins;
+                        } else if (localName.equals(TimeOperator2.BegunBy.name())) {
+                            operator = TimeOperator.TM_BegunBy;
+                        } else if (localName.equals(TimeOperator2.TContains.name())) {
+                            operator = TimeOperator.TM_Contains;
+                        } else if (localName.equals(TimeOperator2.During.name())) {
+                            operator = TimeOperator.TM_During;
+                        } else if (localName.equals(TimeOperator2.EndedBy.name())) {
+                            operator = TimeOperator.TM_EndedBy;
+                        } else if (localName.equals(TimeOperator2.Ends.name())) {
+                            operator = TimeOperator.TM_Ends;
+                        } else if (localName.equals(TimeOperator2.TEquals.name())) {
+                            operator = TimeOperator.TM_Equals;
+                        } else if (localName.equals(TimeOperator2.Meets.name())) {
+                            operator = TimeOperator.TM_Meets;
+                        } else if (localName.equals(TimeOperator2.MetBy.name())) {
+                            operator = TimeOperator.TM_MetBy;
+                        } else if (localName.equals(TimeOperator2.TOverlaps.name())) {
+                            operator = TimeOperator.TM_Overlaps;
+                        } else if (localName.equals(TimeOperator2.OverlappedBy.name())) {
+                            operator = TimeOperator.TM_OverlappedBy;
                         } else {
                             throw new DecodingException(Sos2Constants.GetObservationParams.temporalFilter,
-                                    "The requested temporal filter value is not supported by this SOS!");
+                                    "The requested temporal filter operand is not supported by this SOS!");
                         }
+                        temporalFilter.setOperator(operator);
+                        temporalFilter.setTime(time);
+                        break;
+                    } else {
+                        throw new DecodingException(Sos2Constants.GetObservationParams.temporalFilter,
+                                "The requested temporal filter value is not supported by this SOS!");
                     }
                 }
-            } else {
-                throw new DecodingException(Sos2Constants.GetObservationParams.temporalFilter,
-                        "The requested temporal filter operand is not supported by this SOS!");
             }
-        } catch (XmlException xmle) {
-            throw new DecodingException("Error while parsing temporal filter!", xmle);
+        } else {
+            throw new DecodingException(Sos2Constants.GetObservationParams.temporalFilter,
+                    "The requested temporal filter operand is not supported by this SOS!");
         }
         return temporalFilter;
     }
@@ -344,11 +334,7 @@ public class FesDecoderv20 extends AbstractXmlDecoder<XmlObject, Object> {
             throws DecodingException {
         for (XmlObject xmlObject : expressionArray) {
             if (isValueReferenceExpression(xmlObject)) {
-                try {
-                    comparisonFilter.setValueReference(parseValueReference(xmlObject));
-                } catch (XmlException xmle) {
-                    throw new DecodingException("Error while parsing valueReference element!", xmle);
-                }
+                comparisonFilter.setValueReference(parseValueReference(xmlObject));
             } else if (xmlObject instanceof LiteralType) {
                 // TODO is this the best way?
                 LiteralType literalType = (LiteralType) xmlObject;
@@ -374,12 +360,14 @@ public class FesDecoderv20 extends AbstractXmlDecoder<XmlObject, Object> {
      * @param xmlObject
      *            XML valueReference
      * @return ValueReference string
-     * @throws XmlException
-     *             If an error occurs
      */
-    private String parseValueReference(XmlObject xmlObject) throws XmlException {
-        ValueReferenceDocument valueRefernece = ValueReferenceDocument.Factory.parse(xmlObject.getDomNode());
-        return valueRefernece.getValueReference().trim();
+    private String parseValueReference(XmlObject xmlObject) {
+        XmlCursor cursor = xmlObject.newCursor();
+        try {
+            return cursor.getTextValue().trim();
+        } finally {
+            cursor.dispose();
+        }
     }
 
     /**
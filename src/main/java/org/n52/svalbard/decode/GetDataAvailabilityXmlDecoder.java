@@ -20,7 +20,6 @@ import java.util.Collections;
 import java.util.Set;
 
 import org.apache.xmlbeans.XmlAnyURI;
-import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlString;
 import org.apache.xmlbeans.impl.values.XmlAnyTypeImpl;
@@ -37,7 +36,6 @@ import org.n52.shetland.ogc.swes.SwesExtensions;
 import org.n52.shetland.util.CollectionHelper;
 import org.n52.svalbard.XPathConstants;
 import org.n52.svalbard.decode.exception.DecodingException;
-import org.n52.svalbard.decode.exception.XmlDecodingException;
 import org.n52.svalbard.util.CodingHelper;
 import org.n52.svalbard.util.XmlHelper;
 
@@ -183,22 +181,19 @@ public class GetDataAvailabilityXmlDecoder extends AbstractXmlDecoder<XmlObject,
     private SwesExtensions parseExtensions(XmlObject xml) throws DecodingException {
         SwesExtensions extensions = new SwesExtensions();
         for (XmlObject x : xml.selectPath(getPath(XPathConstants.XPATH_PREFIXES_SWES, SwesConstants.NS_SWES_PREFIX, "extension"))) {
-            try {
-                if (x.getDomNode().hasChildNodes()) {
-                    Object obj = decodeXmlElement(XmlObject.Factory.parse(XmlHelper.getNodeFromNodeList(x.getDomNode().getChildNodes())));
-                    SwesExtension<?> extension = null;
-                    if (!(obj instanceof SwesExtension<?>)) {
-                        extension = new SwesExtension<>().setValue(obj);
-                        if (isSweAbstractDataComponent(obj)) {
-                            extension.setDefinition(((SweAbstractDataComponent) obj).getDefinition());
-                        }
-                    } else {
-                        extension = (SwesExtension<?>) obj;
+            XmlObject content = XmlHelper.getFirstChildElement(x);
+            if (content != null) {
+                Object obj = decodeXmlElement(XmlHelper.copyToDocument(content));
+                SwesExtension<?> extension = null;
+                if (!(obj instanceof SwesExtension<?>)) {
+                    extension = new SwesExtension<>().setValue(obj);
+                    if (isSweAbstractDataComponent(obj)) {
+                        extension.setDefinition(((SweAbstractDataComponent) obj).getDefinition());
                     }
-                    extensions.addExtension(extension);
+                } else {
+                    extension = (SwesExtension<?>) obj;
                 }
-            } catch (XmlException xmle) {
-                throw new XmlDecodingException("extension", xmle);
+                extensions.addExtension(extension);
             }
         }
         return extensions;
@@ -21,7 +21,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
-import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.n52.shetland.ogc.gml.AbstractGeometry;
 import org.n52.shetland.ogc.gml.CodeWithAuthority;
@@ -172,12 +171,10 @@ public class GmlDecoderv321 extends AbstractGmlDecoderv321<XmlObject, Object> {
             XmlObject abstractFeature = null;
             if (featurePropertyType.getAbstractFeature() != null) {
                 abstractFeature = featurePropertyType.getAbstractFeature();
-            } else if (featurePropertyType.getDomNode().hasChildNodes()) {
-                try {
-                    abstractFeature = XmlObject.Factory
-                            .parse(XmlHelper.getNodeFromNodeList(featurePropertyType.getDomNode().getChildNodes()));
-                } catch (XmlException xmle) {
-                    throw new DecodingException("Error while parsing feature request!", xmle);
+            } else {
+                XmlObject content = XmlHelper.getFirstChildElement(featurePropertyType);
+                if (content != null) {
+                    abstractFeature = XmlHelper.copyToDocument(content);
                 }
             }
             if (abstractFeature != null) {
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.time.Time;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.svalbard.decode.exception.DecodingException;
+
+/**
+ * Resolves the document internal references (phenomenon time, result time
+ * and feature of interest) between the observations of an InsertObservation
+ * request.
+ *
+ * Observations are registered one after another, so the resolver can be used
+ * both after the whole request was decoded and incrementally while the
+ * observations are read from a stream. A resolver created with a capacity
+ * keeps only the most recently registered or referenced elements of each
+ * kind, so its size does not grow with the number of observations.
+ *
+ * @since 1.0.0
+ */
+public class ObservationReferenceResolver {
+
+    private final Map<String, Time> phenomenonTimes;
+
+    private final Map<String, TimeInstant> resultTimes;
+
+    private final Map<String, AbstractFeature> features;
+
+    /**
+     * Create a resolver that keeps every registered element.
+     */
+    public ObservationReferenceResolver() {
+        this.phenomenonTimes = new HashMap<>();
+        this.resultTimes = new HashMap<>();
+        this.features = new HashMap<>();
+    }
+
+    /**
+     * Create a resolver that keeps at most {@code capacity} elements of each
+     * kind. If the capacity is exceeded, the least recently registered or
+     * referenced element is evicted and can not be resolved afterwards.
+     *
+     * @param capacity
+     *            the maximum number of phenomenon times, result times and
+     *            features
+     */
+    public ObservationReferenceResolver(int capacity) {
+        this.phenomenonTimes = new BoundedMap<>(capacity);
+        this.resultTimes = new BoundedMap<>(capacity);
+        this.features = new BoundedMap<>(capacity);
+    }
+
+    /**
+     * Register the referenceable (not referenced) elements of the observation.
+     *
+     * @param observation
+     *            the observation
+     */
+    public void add(OmObservation observation) {
+        Time phenomenonTime = observation.getPhenomenonTime();
+        if (!phenomenonTime.isReferenced()) {
+            phenomenonTimes.put(phenomenonTime.getGmlId(), phenomenonTime);
+        }
+        TimeInstant resultTime = observation.getResultTime();
+        if (!resultTime.isReferenced()) {
+            resultTimes.put(resultTime.getGmlId(), resultTime);
+        }
+        AbstractFeature featureOfInterest = observation.getObservationConstellation().getFeatureOfInterest();
+        if (!featureOfInterest.isReferenced()) {
+            features.put(featureOfInterest.getGmlId(), featureOfInterest);
+        }
+    }
+
+    /**
+     * Checks if every element referenced by the observation has already been
+     * registered.
+     *
+     * @param observation
+     *            the observation
+     *
+     * @return <code>true</code>, if {@link #resolve(OmObservation)} would not
+     *         leave an unresolved reference
+     */
+    public boolean isResolvable(OmObservation observation) {
+        Time phenomenonTime = observation.getPhenomenonTime();
+        if (phenomenonTime.isReferenced() && !phenomenonTimes.containsKey(phenomenonTime.getGmlId())) {
+            return false;
+        }
+        TimeInstant resultTime = observation.getResultTime();
+        if (resultTime.isReferenced() && !resultTimes.containsKey(resultTime.getGmlId())
+                && !phenomenonTimes.containsKey(resultTime.getGmlId())) {
+            return false;
+        }
+        AbstractFeature featureOfInterest = observation.getObservationConstellation().getFeatureOfInterest();
+        return !featureOfInterest.isReferenced() || features.containsKey(featureOfInterest.getGmlId());
+    }
+
+    /**
+     * Replace the references of the observation with the registered elements.
+     *
+     * @param observation
+     *            the observation
+     *
+     * @throws DecodingException
+     *             if a referenced result time has an unsupported type or a
+     *             reference can not be resolved
+     */
+    public void resolve(OmObservation observation) throws DecodingException {
+        // phenomenonTime
+        Time phenomenonTime = observation.getPhenomenonTime();
+        if (phenomenonTime.isReferenced()) {
+            Time referenced = phenomenonTimes.get(phenomenonTime.getGmlId());
+            if (referenced == null) {
+                throw unresolvable("observation.phenomenonTime", phenomenonTime.getGmlId());
+            }
+            observation.getValue().setPhenomenonTime(referenced);
+        }
+        // resultTime
+        TimeInstant resultTime = observation.getResultTime();
+        if (resultTime.isReferenced()) {
+            if (resultTimes.containsKey(resultTime.getGmlId())) {
+                observation.setResultTime(resultTimes.get(resultTime.getGmlId()));
+            } else if (phenomenonTimes.containsKey(resultTime.getGmlId())) {
+                Time iTime = phenomenonTimes.get(resultTime.getGmlId());
+                if (iTime instanceof TimeInstant) {
+                    observation.setResultTime((TimeInstant) iTime);
+                } else if (iTime instanceof TimePeriod) {
+                    TimePeriod timePeriod = (TimePeriod) iTime;
+                    observation.setResultTime(new TimeInstant(timePeriod.getEnd()));
+                } else {
+                    throw new DecodingException("observation.resultTime", "The time value type is not supported");
+                }
+            } else {
+                throw unresolvable("observation.resultTime", resultTime.getGmlId());
+            }
+        }
+        // featureOfInterest
+        AbstractFeature featureOfInterest = observation.getObservationConstellation().getFeatureOfInterest();
+        if (featureOfInterest.isReferenced()) {
+            AbstractFeature referenced = features.get(featureOfInterest.getGmlId());
+            if (referenced == null) {
+                throw unresolvable("observation.featureOfInterest", featureOfInterest.getGmlId());
+            }
+            observation.getObservationConstellation().setFeatureOfInterest(referenced);
+        }
+    }
+
+    private static DecodingException unresolvable(String location, String gmlId) {
+        return new DecodingException(location, "The referenced element '%s' is not contained in the request", gmlId);
+    }
+
+    /**
+     * Access ordered map that evicts its eldest entry if the capacity is
+     * exceeded.
+     */
+    private static class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 2850428516389498451L;
+
+        private final int capacity;
+
+        BoundedMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+
+}
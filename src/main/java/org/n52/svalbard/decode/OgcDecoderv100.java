@@ -19,6 +19,8 @@ package org.n52.svalbard.decode;
 import java.util.Collections;
 import java.util.Set;
 
+import javax.xml.namespace.QName;
+
 import net.opengis.ogc.BBOXType;
 import net.opengis.ogc.BinarySpatialOpType;
 import net.opengis.ogc.BinaryTemporalOpType;
@@ -29,11 +31,9 @@ import net.opengis.ogc.TemporalOperatorType;
 import net.opengis.ogc.impl.BBOXTypeImpl;
 
 import org.apache.xmlbeans.XmlCursor;
-import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.NodeList;
 
 import org.n52.shetland.ogc.OGCConstants;
 import org.n52.shetland.ogc.filter.FilterConstants;
@@ -129,54 +129,49 @@ public class OgcDecoderv100 extends AbstractXmlDecoder<XmlObject, Object> {
         TemporalFilter temporalFilter = new TemporalFilter();
         // FIXME local workaround against SOSHelper check value reference
         String valueRef = "phenomenonTime";
-        try {
-
-            NodeList nodes = xbBinaryTemporalOp.getDomNode().getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
 
-                if (nodes.item(i).getNamespaceURI() != null
-                        && !nodes.item(i).getLocalName().equals(FilterConstants.EN_VALUE_REFERENCE)) {
-                    // GML decoder will return TimeInstant or TimePriod
-                    Object timeObject = decodeXmlElement(XmlObject.Factory.parse(nodes.item(i)));
+        for (XmlObject operand : XmlHelper.getChildElements(xbBinaryTemporalOp)) {
+            QName name = XmlHelper.getElementName(operand);
+            if (!name.getNamespaceURI().isEmpty()
+                    && !name.getLocalPart().equals(FilterConstants.EN_VALUE_REFERENCE)) {
+                // GML decoder will return TimeInstant or TimePriod
+                Object timeObject = decodeXmlElement(XmlHelper.copyToDocument(operand));
 
-                    if (timeObject instanceof PropertyNameType) {
-                        PropertyNameType propType = (PropertyNameType) timeObject;
+                if (timeObject instanceof PropertyNameType) {
+                    PropertyNameType propType = (PropertyNameType) timeObject;
 
-                        // TODO here apply logic for ogc property
-                        // om:samplingTime etc
-                        // valueRef = propType.getDomNode().getNodeValue();
+                    // TODO here apply logic for ogc property
+                    // om:samplingTime etc
+                    // valueRef = propType.getDomNode().getNodeValue();
 
-                    }
+                }
 
-                    if (timeObject instanceof Time) {
-                        TimeOperator operator;
-                        Time time = (Time) timeObject;
-                        String localName = XmlHelper.getLocalName(xbBinaryTemporalOp);
-                        // change to SOS 1.0. TMDuring kind of
-                        if (localName.equals(TimeOperator.TM_During.name()) && time instanceof TimePeriod) {
-                            operator = TimeOperator.TM_During;
-                        } else if (localName.equals(TimeOperator.TM_Equals.name()) && time instanceof TimeInstant) {
-                            operator = TimeOperator.TM_Equals;
-                        } else if (localName.equals(TimeOperator.TM_After.name()) && time instanceof TimeInstant) {
-                            operator = TimeOperator.TM_After;
-                        } else if (localName.equals(TimeOperator.TM_Before.name()) && time instanceof TimeInstant) {
-                            operator = TimeOperator.TM_Before;
-                        } else {
-                            throw new DecodingException(Sos1Constants.GetObservationParams.eventTime,
-                                    "The requested temporal filter operand is not supported by this SOS!");
-                        }
-                        temporalFilter.setOperator(operator);
-                        temporalFilter.setTime(time);
-                        // actually it should be eg om:samplingTime
-                        temporalFilter.setValueReference(valueRef);
-                        break;
+                if (timeObject instanceof Time) {
+                    TimeOperator operator;
+                    Time time = (Time) timeObject;
+                    String localName = XmlHelper.getLocalName(xbBinaryTemporalOp);
+                    // change to SOS 1.0. TMDuring kind of
+                    if (localName.equals(TimeOperator.TM_During.name()) && time instanceof TimePeriod) {
+                        operator = TimeOperator.TM_During;
+                    } else if (localName.equals(TimeOperator.TM_Equals.name()) && time instanceof TimeInstant) {
+                        operator = TimeOperator.TM_Equals;
+                    } else if (localName.equals(TimeOperator.TM_After.name()) && time instanceof TimeInstant) {
+                        operator = TimeOperator.TM_After;
+                    } else if (localName.equals(TimeOperator.TM_Before.name()) && time instanceof TimeInstant) {
+                        operator = TimeOperator.TM_Before;
+                    } else {
+                        throw new DecodingException(Sos1Constants.GetObservationParams.eventTime,
+                                "The requested temporal filter operand is not supported by this SOS!");
                     }
+                    temporalFilter.setOperator(operator);
+                    temporalFilter.setTime(time);
+                    // actually it should be eg om:samplingTime
+                    temporalFilter.setValueReference(valueRef);
+                    break;
                 }
             }
-
-        } catch (XmlException xmle) {
-            throw new DecodingException("Error while parsing temporal filter!", xmle);
         }
+
         return temporalFilter;
 
     }
@@ -199,64 +194,56 @@ public class OgcDecoderv100 extends AbstractXmlDecoder<XmlObject, Object> {
         SpatialFilter spatialFilter = new SpatialFilter();
         // FIXME local workaround for SOSHelper check value reference
         String valueRef = "om:featureOfInterest/sams:SF_SpatialSamplingFeature/sams:shape";
-        try {
 
-            spatialFilter.setOperator(FilterConstants.SpatialOperator.BBOX);
-            XmlCursor geometryCursor = xbBBOX.newCursor();
-            if (geometryCursor.toChild(GmlConstants.QN_ENVELOPE)) {
-                Object sosGeometry = decodeXmlElement(XmlObject.Factory.parse(geometryCursor.getDomNode()));
+        spatialFilter.setOperator(FilterConstants.SpatialOperator.BBOX);
+        XmlCursor geometryCursor = xbBBOX.newCursor();
+        if (geometryCursor.toChild(GmlConstants.QN_ENVELOPE)) {
+            Object sosGeometry = decodeXmlElement(XmlHelper.copyToDocument(geometryCursor.getObject()));
 
 //                if (sosGeometry instanceof PropertyNameType) {
 //                    PropertyNameType propType = (PropertyNameType) sosGeometry;
 
-                    // TODO here apply logic for ogc property
-                    // urn:ogc:data:location etc
-                    // valueRef = propType.getDomNode().getNodeValue();
+                // TODO here apply logic for ogc property
+                // urn:ogc:data:location etc
+                // valueRef = propType.getDomNode().getNodeValue();
 
 //                }
 
-                if (sosGeometry instanceof Geometry) {
-                    spatialFilter.setGeometry((Geometry) sosGeometry);
-                    spatialFilter.setValueReference(valueRef);
-                }
-
-            } else {
-                throw new DecodingException("FeatureOfInterest Filter",
-                        "The requested spatial filter operand is not supported by this SOS!");
+            if (sosGeometry instanceof Geometry) {
+                spatialFilter.setGeometry((Geometry) sosGeometry);
+                spatialFilter.setValueReference(valueRef);
             }
-            geometryCursor.dispose();
 
-        } catch (XmlException xmle) {
-            throw new DecodingException("Error while parsing spatial filter!", xmle);
+        } else {
+            throw new DecodingException("FeatureOfInterest Filter",
+                    "The requested spatial filter operand is not supported by this SOS!");
         }
+        geometryCursor.dispose();
+
         return spatialFilter;
     }
 
     private Object parseSpatialOperatorType(BinarySpatialOpType xbSpatialOpsType) throws DecodingException {
         SpatialFilter spatialFilter = new SpatialFilter();
-        try {
-            if (xbSpatialOpsType instanceof BBOXTypeImpl) {
-                spatialFilter.setOperator(FilterConstants.SpatialOperator.BBOX);
-                BBOXTypeImpl xbBBOX = (BBOXTypeImpl) xbSpatialOpsType;
-                spatialFilter.setOperator(FilterConstants.SpatialOperator.BBOX);
-                XmlCursor geometryCursor = xbBBOX.newCursor();
-                if (geometryCursor.toChild(GmlConstants.QN_ENVELOPE)) {
-                    Object sosGeometry = decodeXmlElement(XmlObject.Factory.parse(geometryCursor.getDomNode()));
-                    if (sosGeometry instanceof Geometry) {
-                        spatialFilter.setGeometry((Geometry) sosGeometry);
-                    }
-
-                } else {
-                    throw new DecodingException(Sos2Constants.GetObservationParams.spatialFilter,
-                            "The requested spatial filter operand is not supported by this SOS!");
+        if (xbSpatialOpsType instanceof BBOXTypeImpl) {
+            spatialFilter.setOperator(FilterConstants.SpatialOperator.BBOX);
+            BBOXTypeImpl xbBBOX = (BBOXTypeImpl) xbSpatialOpsType;
+            spatialFilter.setOperator(FilterConstants.SpatialOperator.BBOX);
+            XmlCursor geometryCursor = xbBBOX.newCursor();
+            if (geometryCursor.toChild(GmlConstants.QN_ENVELOPE)) {
+                Object sosGeometry = decodeXmlElement(XmlHelper.copyToDocument(geometryCursor.getObject()));
+                if (sosGeometry instanceof Geometry) {
+                    spatialFilter.setGeometry((Geometry) sosGeometry);
                 }
-                geometryCursor.dispose();
+
             } else {
-                throw new DecodingException("GetFeatureOfInterest Filter",
-                        "The requested spatial filter is not supported by this SOS!");
+                throw new DecodingException(Sos2Constants.GetObservationParams.spatialFilter,
+                        "The requested spatial filter operand is not supported by this SOS!");
             }
-        } catch (XmlException xmle) {
-            throw new DecodingException("Error while parsing spatial filter!", xmle);
+            geometryCursor.dispose();
+        } else {
+            throw new DecodingException("GetFeatureOfInterest Filter",
+                    "The requested spatial filter is not supported by this SOS!");
         }
         return spatialFilter;
     }
@@ -21,7 +21,6 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.xmlbeans.XmlBoolean;
-import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlInteger;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlString;
@@ -61,6 +60,7 @@ import org.n52.shetland.ogc.swe.SweDataRecord;
 import org.n52.svalbard.ConformanceClasses;
 import org.n52.svalbard.decode.exception.DecodingException;
 import org.n52.svalbard.util.CodingHelper;
+import org.n52.svalbard.util.XmlHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -273,11 +273,7 @@ public class OmDecoderv20 extends AbstractOmDecoderv20 {
             if (!xbResult.getDomNode().hasChildNodes()) {
                 return new SingleObservationValue<>(new NilTemplateValue());
             } else {
-                try {
-                    xbResult = XmlObject.Factory.parse(xbResult.xmlText().trim());
-                } catch (XmlException e) {
-                    LOGGER.error("Error while parsing NamedValueValue", e);
-                }
+                xbResult = XmlHelper.typeAnyTypeContent(xbResult);
             }
         }
         // // Template observation for InsertResultTemplate operation
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+
+import org.n52.svalbard.decode.exception.DecodingException;
+
+/**
+ * Keeps the bytes read from the stream, so they can be read again. Used to
+ * look at the root element of a request before it is handed to the actual
+ * parser.
+ *
+ * @since 1.0.0
+ */
+class RecordingInputStream extends FilterInputStream {
+    private final ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+
+    RecordingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            recorded.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            recorded.write(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return Math.max(0, read(new byte[(int) Math.min(n, 8192)]));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return a stream that returns the recorded bytes followed by the
+     *         remaining bytes of the underlying stream
+     *
+     * @throws DecodingException
+     *             if the recorded bytes can not be pushed back
+     */
+    InputStream replay() throws DecodingException {
+        if (recorded.size() == 0) {
+            return in;
+        }
+        try {
+            PushbackInputStream replay = new PushbackInputStream(in, recorded.size());
+            replay.unread(recorded.toByteArray());
+            return replay;
+        } catch (IOException ex) {
+            throw new DecodingException("Error while reading the request", ex);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import java.io.CharArrayWriter;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+
+import org.n52.svalbard.decode.exception.DecodingException;
+
+/**
+ * Keeps the characters read from the reader, so they can be read again. Used
+ * to look at the root element of a request before it is handed to the actual
+ * parser.
+ *
+ * @since 1.0.0
+ */
+class RecordingReader extends FilterReader {
+    private final CharArrayWriter recorded = new CharArrayWriter();
+
+    RecordingReader(Reader in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+        if (c >= 0) {
+            recorded.write(c);
+        }
+        return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = super.read(cbuf, off, len);
+        if (n > 0) {
+            recorded.write(cbuf, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return Math.max(0, read(new char[(int) Math.min(n, 8192)]));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return a reader that returns the recorded characters followed by the
+     *         remaining characters of the underlying reader
+     *
+     * @throws DecodingException
+     *             if the recorded characters can not be pushed back
+     */
+    Reader replay() throws DecodingException {
+        if (recorded.size() == 0) {
+            return in;
+        }
+        try {
+            PushbackReader replay = new PushbackReader(in, recorded.size());
+            replay.unread(recorded.toCharArray());
+            return replay;
+        } catch (IOException ex) {
+            throw new DecodingException("Error while reading the request", ex);
+        }
+    }
+}
@@ -21,7 +21,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
-import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.n52.shetland.ogc.OGCConstants;
 import org.n52.shetland.ogc.SupportedType;
@@ -194,12 +193,10 @@ public class SamplingDecoderv20 extends AbstractGmlDecoderv321<XmlObject, Abstra
                 XmlObject abstractFeature = null;
                 if (sampledFeature.getAbstractFeature() != null) {
                     abstractFeature = sampledFeature.getAbstractFeature();
-                } else if (sampledFeature.getDomNode().hasChildNodes()) {
-                    try {
-                        abstractFeature = XmlObject.Factory
-                                .parse(XmlHelper.getNodeFromNodeList(sampledFeature.getDomNode().getChildNodes()));
-                    } catch (XmlException xmle) {
-                        throw new DecodingException("Error while parsing feature request!", xmle);
+                } else {
+                    XmlObject content = XmlHelper.getFirstChildElement(sampledFeature);
+                    if (content != null) {
+                        abstractFeature = XmlHelper.copyToDocument(content);
                     }
                 }
                 if (abstractFeature != null) {
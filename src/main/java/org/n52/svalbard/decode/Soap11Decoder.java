@@ -16,19 +16,15 @@
  */
 package org.n52.svalbard.decode;
 
-import java.io.IOException;
 import java.util.Locale;
 
 import javax.xml.namespace.QName;
 import javax.xml.soap.SOAPConstants;
-import javax.xml.soap.SOAPException;
-import javax.xml.soap.SOAPMessage;
 
 import org.apache.xmlbeans.XmlObject;
 import org.n52.shetland.ogc.ows.exception.NoApplicableCodeException;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.w3c.soap.SoapFault;
-import org.n52.shetland.w3c.soap.SoapHelper;
 import org.n52.shetland.w3c.soap.SoapRequest;
 import org.n52.svalbard.decode.exception.DecodingException;
 import org.slf4j.Logger;
@@ -66,17 +62,6 @@ public class Soap11Decoder extends AbstractSoapDecoder {
         String soapAction = "";
 
         try {
-            SOAPMessage soapMessageRequest;
-            try {
-                soapMessageRequest =
-                        SoapHelper.getSoapMessageForProtocol(SOAPConstants.SOAP_1_1_PROTOCOL, doc.newInputStream());
-            } catch (IOException ioe) {
-                throw new NoApplicableCodeException().causedBy(ioe)
-                        .withMessage("Error while parsing SOAPMessage from request string!");
-            } catch (SOAPException soape) {
-                throw new NoApplicableCodeException().causedBy(soape)
-                        .withMessage("Error while parsing SOAPMessage from request string!");
-            }
             // if SOAPAction is not spec conform, create SOAPFault
             if (soapAction.isEmpty() || !soapAction.startsWith("SOAPAction:")) {
                 SoapFault fault = new SoapFault();
@@ -93,13 +78,9 @@ public class Soap11Decoder extends AbstractSoapDecoder {
                 soapAction = soapAction.trim();
             }
             try {
-                if (soapMessageRequest.getSOAPHeader() != null) {
-                    soapRequest.setSoapHeader(getSoapHeader(soapMessageRequest.getSOAPHeader()));
-                }
+                soapRequest.setSoapHeader(getSoapHeader(doc));
                 soapRequest.setAction(checkSoapAction(soapAction, soapRequest.getSoapHeader()));
-                soapRequest.setSoapBodyContent(getSOAPBodyContent(soapMessageRequest));
-            } catch (SOAPException soape) {
-                throw new NoApplicableCodeException().causedBy(soape).withMessage("Error while parsing SOAPMessage!");
+                soapRequest.setSoapBodyContent(getBodyContent(doc));
             } catch (DecodingException ex) {
                 throw new NoApplicableCodeException().causedBy(ex).withMessage("Error while parsing SOAPMessage!");
             }
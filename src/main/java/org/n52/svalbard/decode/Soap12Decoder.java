@@ -16,35 +16,24 @@
  */
 package org.n52.svalbard.decode;
 
-import java.io.IOException;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
 import javax.inject.Inject;
 import javax.xml.soap.SOAPConstants;
-import javax.xml.soap.SOAPException;
-import javax.xml.soap.SOAPMessage;
 
 import org.apache.xmlbeans.XmlCursor;
-import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
-import org.n52.shetland.ogc.ows.exception.NoApplicableCodeException;
-import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
-import org.n52.shetland.ogc.ows.service.OwsServiceRequest;
 import org.n52.shetland.ogc.swe.SweConstants;
 import org.n52.shetland.w3c.W3CConstants;
 import org.n52.shetland.w3c.soap.SoapFault;
-import org.n52.shetland.w3c.soap.SoapHelper;
 import org.n52.shetland.w3c.soap.SoapRequest;
 import org.n52.svalbard.decode.exception.DecodingException;
 import org.n52.svalbard.encode.SchemaRepository;
 import org.n52.svalbard.util.XmlHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3.x2003.x05.soapEnvelope.Body;
-import org.w3.x2003.x05.soapEnvelope.EnvelopeDocument;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
@@ -84,28 +73,10 @@ public class Soap12Decoder extends AbstractSoapDecoder {
     protected SoapRequest createEnvelope(XmlObject doc) throws DecodingException {
         SoapRequest soapRequest =
                 new SoapRequest(SOAPConstants.URI_NS_SOAP_1_2_ENVELOPE, SOAPConstants.SOAP_1_2_PROTOCOL);
-
         String soapAction = "";
-        try {
-            SOAPMessage message;
-            try {
-                message = SoapHelper.getSoapMessageForProtocol(SOAPConstants.SOAP_1_2_PROTOCOL, doc.newInputStream());
-            } catch (IOException | SOAPException ioe) {
-                throw new NoApplicableCodeException().causedBy(ioe)
-                        .withMessage("Error while parsing SOAPMessage from request string!");
-            }
-            try {
-                if (message.getSOAPHeader() != null) {
-                    soapRequest.setSoapHeader(getSoapHeader(message.getSOAPHeader()));
-                }
-                soapRequest.setAction(checkSoapAction(soapAction, soapRequest.getSoapHeader()));
-                soapRequest.setSoapBodyContent(getBodyContent((EnvelopeDocument) doc));
-            } catch (SOAPException soape) {
-                throw new NoApplicableCodeException().causedBy(soape).withMessage("Error while parsing SOAPMessage!");
-            }
-        } catch (OwsExceptionReport owse) {
-            throw new DecodingException(owse);
-        }
+        soapRequest.setSoapHeader(getSoapHeader(doc));
+        soapRequest.setAction(checkSoapAction(soapAction, soapRequest.getSoapHeader()));
+        soapRequest.setSoapBodyContent(getBodyContent(doc));
         return soapRequest;
     }
 
@@ -120,58 +91,47 @@ public class Soap12Decoder extends AbstractSoapDecoder {
         return r;
     }
 
-    private OwsServiceRequest getBodyContent(EnvelopeDocument doc) throws DecodingException {
-        Body body = doc.getEnvelope().getBody();
+    /**
+     * Fixes the <code>xsi:type</code> values of the body content in a single
+     * pass: prefixes that are not declared in the request are resolved using
+     * the {@link SchemaRepository} and declared on the root element, and
+     * <code>swe:DataArrayPropertyType</code> values get the prefix of the SWE
+     * 2.0 namespace (e.g. for OM_SWEArrayObservation results).
+     */
+    @Override
+    protected void prepareBodyContent(XmlObject content) {
+        Map<String, String> undeclared = new HashMap<>();
+        XmlCursor cursor = content.newCursor();
         try {
-            Node domNode = body.getDomNode();
-            if (domNode.hasChildNodes()) {
-                NodeList childNodes = domNode.getChildNodes();
-                for (int i = 0; i < childNodes.getLength(); i++) {
-                    Node node = childNodes.item(i);
-                    if (node.getNodeType() == Node.ELEMENT_NODE) {
-                        XmlObject content = XmlObject.Factory.parse(node);
-                        // fix problem with invalid prefix in xsi:type value for
-                        // om:result, e.g. OM_SWEArrayObservation or
-                        // gml:ReferenceType
-                        Map<?, ?> namespaces = XmlHelper.getNamespaces(doc.getEnvelope());
-                        fixNamespaceForXsiType(content, namespaces);
-                        XmlHelper.fixNamespaceForXsiType(content, SweConstants.QN_DATA_ARRAY_PROPERTY_TYPE_SWE_200);
-                        return decodeXmlElement(content);
-                    }
-                }
-            }
-            return decodeXmlElement(body);
-        } catch (XmlException xmle) {
-            throw new DecodingException("Error while parsing SOAP body element!", xmle);
-        }
-    }
-
-    private void fixNamespaceForXsiType(XmlObject content, Map<?, ?> namespaces) {
-        final XmlCursor cursor = content.newCursor();
-        while (cursor.hasNextToken()) {
-            if (cursor.toNextToken().isStart()) {
-                final String xsiType = cursor.getAttributeText(W3CConstants.QN_XSI_TYPE);
-                if (xsiType != null) {
-                    final String[] toks = xsiType.split(":");
-                    if (toks.length > 1) {
-                        String prefix = toks[0];
-                        String localName = toks[1];
-                        String namespace = (String) namespaces.get(prefix);
-                        if (Strings.isNullOrEmpty(namespace)) {
-                            namespace = schemaRepository.getNamespaceFor(prefix);
-                        }
-                        if (!Strings.isNullOrEmpty(namespace)) {
-                            cursor.setAttributeText(W3CConstants.QN_XSI_TYPE,
-                                    Joiner.on(":").join(
-                                            XmlHelper.getPrefixForNamespace(content, (String) namespaces.get(prefix)),
-                                            localName));
+            while (cursor.hasNextToken()) {
+                if (cursor.toNextToken().isStart()) {
+                    String xsiType = cursor.getAttributeText(W3CConstants.QN_XSI_TYPE);
+                    if (xsiType != null) {
+                        String[] toks = xsiType.split(":");
+                        String localName = toks[toks.length - 1];
+                        if (localName.equals(SweConstants.QN_DATA_ARRAY_PROPERTY_TYPE_SWE_200.getLocalPart())) {
+                            cursor.setAttributeText(W3CConstants.QN_XSI_TYPE, Joiner.on(":").join(
+                                    XmlHelper.getPrefixForNamespace(content,
+                                            SweConstants.QN_DATA_ARRAY_PROPERTY_TYPE_SWE_200.getNamespaceURI()),
+                                    localName));
+                        } else if (toks.length > 1 && cursor.namespaceForPrefix(toks[0]) == null
+                                && !undeclared.containsKey(toks[0])) {
+                            String namespace = schemaRepository.getNamespaceFor(toks[0]);
+                            if (!Strings.isNullOrEmpty(namespace)) {
+                                undeclared.put(toks[0], namespace);
+                            }
                         }
                     }
-
                 }
             }
+            if (!undeclared.isEmpty()) {
+                cursor.toStartDoc();
+                cursor.toFirstChild();
+                cursor.toNextToken();
+                undeclared.forEach(cursor::insertNamespace);
+            }
+        } finally {
+            cursor.dispose();
         }
-        cursor.dispose();
-
     }
 }
@@ -24,20 +24,27 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlCursor.TokenType;
 import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
 import org.apache.xmlbeans.XmlString;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
 import org.n52.janmayen.exception.CompositeException;
+import org.n52.janmayen.lifecycle.Destroyable;
 import org.n52.shetland.ogc.filter.SpatialFilter;
 import org.n52.shetland.ogc.filter.TemporalFilter;
-import org.n52.shetland.ogc.gml.AbstractFeature;
-import org.n52.shetland.ogc.gml.time.Time;
-import org.n52.shetland.ogc.gml.time.TimeInstant;
-import org.n52.shetland.ogc.gml.time.TimePeriod;
 import org.n52.shetland.ogc.om.OmObservation;
 import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.ows.exception.MissingParameterValueException;
 import org.n52.shetland.ogc.ows.service.GetCapabilitiesRequest;
 import org.n52.shetland.ogc.ows.service.OwsServiceCommunicationObject;
 import org.n52.shetland.ogc.ows.service.OwsServiceRequest;
@@ -60,6 +67,8 @@ import org.n52.shetland.ogc.swe.SweAbstractDataComponent;
 import org.n52.shetland.ogc.swe.encoding.SweAbstractEncoding;
 import org.n52.shetland.util.CollectionHelper;
 import org.n52.shetland.w3c.W3CConstants;
+import org.n52.svalbard.CodingSettings;
+import org.n52.svalbard.Validation;
 import org.n52.svalbard.decode.exception.DecodingException;
 import org.n52.svalbard.decode.exception.UnsupportedDecoderXmlInputException;
 import org.n52.svalbard.util.CodingHelper;
@@ -101,8 +110,9 @@ import net.opengis.sos.x20.ResultTemplateType.ObservationTemplate;
  * @since 4.0.0
  *
  */
+@Configurable
 public class SosDecoderv20 extends AbstractSwesDecoderv20<OwsServiceCommunicationObject>
-        implements Decoder<OwsServiceCommunicationObject, XmlObject> {
+        implements Decoder<OwsServiceCommunicationObject, XmlObject>, Destroyable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SosDecoderv20.class);
 
@@ -119,11 +129,39 @@ public class SosDecoderv20 extends AbstractSwesDecoderv20<OwsServiceCommunicatio
                     Sos2Constants.Operations.InsertResult, Sos2Constants.Operations.GetResultTemplate,
                     SosConstants.Operations.GetResult));
 
+    private ForkJoinPool decodingPool;
+
     public SosDecoderv20() {
         LOGGER.debug("Decoder for the following keys initialized successfully: {}!",
                 Joiner.on(", ").join(DECODER_KEYS));
     }
 
+    /**
+     * Set the number of threads used to decode the observations of an
+     * InsertObservation request. A value of <code>1</code> decodes the
+     * observations sequentially.
+     *
+     * @param threads
+     *            the number of threads
+     */
+    @Setting(CodingSettings.INSERT_OBSERVATION_DECODING_THREADS)
+    public void setInsertObservationDecodingThreads(int threads) {
+        Validation.greaterZero("Decoding threads", threads);
+        final ForkJoinPool old = this.decodingPool;
+        this.decodingPool = threads > 1 ? new ForkJoinPool(threads) : null;
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (this.decodingPool != null) {
+            this.decodingPool.shutdown();
+            this.decodingPool = null;
+        }
+    }
+
     @Override
     public Set<DecoderKey> getKeys() {
         return Collections.unmodifiableSet(DECODER_KEYS);
@@ -309,19 +347,16 @@ public class SosDecoderv20 extends AbstractSwesDecoderv20<OwsServiceCommunicatio
         insertObservationRequest.setExtensions(parseExtensibleRequest(insertObservationType));
 
         if (insertObservationType.getObservationArray() != null) {
-            final int length = insertObservationType.getObservationArray().length;
-            final Map<String, Time> phenomenonTimes = new HashMap<>(length);
-            final Map<String, TimeInstant> resultTimes = new HashMap<>(length);
-            final Map<String, AbstractFeature> features = new HashMap<>(length);
-
+            final ObservationReferenceResolver references = new ObservationReferenceResolver();
             CompositeException exceptions = new CompositeException();
-            for (final Observation observation : insertObservationType.getObservationArray()) {
-                final Object decodedObject = decodeXmlElement(observation.getOMObservation());
+            final Observation[] observations = insertObservationType.getObservationArray();
+            final List<Object> decodedObjects = decodeObservations(observations);
+            for (int i = 0; i < observations.length; i++) {
+                final Observation observation = observations[i];
+                final Object decodedObject = decodedObjects.get(i);
                 if (decodedObject instanceof OmObservation) {
                     final OmObservation sosObservation = (OmObservation) decodedObject;
-                    checkAndAddPhenomenonTime(sosObservation.getPhenomenonTime(), phenomenonTimes);
-                    checkAndAddResultTime(sosObservation.getResultTime(), resultTimes);
-                    checkAndAddFeatures(sosObservation.getObservationConstellation().getFeatureOfInterest(), features);
+                    references.add(sosObservation);
                     insertObservationRequest.addObservation(sosObservation);
                 } else {
                     exceptions.add(new DecodingException(Sos2Constants.InsertObservationParams.observation,
@@ -329,22 +364,103 @@ public class SosDecoderv20 extends AbstractSwesDecoderv20<OwsServiceCommunicatio
                             observation.getOMObservation().getDomNode().getNodeName()));
                 }
             }
-            checkReferencedElements(insertObservationRequest.getObservations(), phenomenonTimes, resultTimes,
-                    features);
+            for (final OmObservation sosObservation : insertObservationRequest.getObservations()) {
+                references.resolve(sosObservation);
+            }
             try {
                 exceptions.throwIfNotEmpty();
             } catch (CompositeException ex) {
                 throw new DecodingException(ex, Sos2Constants.InsertObservationParams.observation);
             }
         } else {
-            // TODO MissingMandatoryParameterException?
-            throw new DecodingException(Sos2Constants.InsertObservationParams.observation,
-                    "The request does not contain an observation");
+            throw new DecodingException(
+                    new MissingParameterValueException(Sos2Constants.InsertObservationParams.observation),
+                    Sos2Constants.InsertObservationParams.observation);
         }
         return insertObservationRequest;
 
     }
 
+    /**
+     * Decode the observation members. If a decoding pool is configured, the
+     * members are copied into their own synchronization domain on the calling
+     * thread and only the copies are decoded in parallel. The results are always returned in document order, so the
+     * subsequent reference resolution is the same as for sequential decoding.
+     *
+     * @param observations
+     *            the observation members
+     *
+     * @return the decoded members in document order
+     *
+     * @throws DecodingException
+     *             if a member could not be decoded; for parallel decoding
+     *             this is the first failing member in document order
+     */
+    List<Object> decodeObservations(final Observation[] observations) throws DecodingException {
+        final List<Object> decodedObjects = new ArrayList<>(observations.length);
+        final ForkJoinPool pool = this.decodingPool;
+        if (pool == null || observations.length < 2) {
+            for (final Observation observation : observations) {
+                decodedObjects.add(decodeXmlElement(observation.getOMObservation()));
+            }
+            return decodedObjects;
+        }
+        final List<ForkJoinTask<Object>> tasks = new ArrayList<>(observations.length);
+        // the copies are made here, as copying locks the shared source document
+        final List<XmlObject> members = new ArrayList<>(observations.length);
+        for (final Observation observation : observations) {
+            members.add(copyForDecoding(observation.getOMObservation()));
+        }
+        for (final XmlObject member : members) {
+            final Callable<Object> task = () -> decodeXmlElement(member);
+            tasks.add(pool.submit(task));
+        }
+        try {
+            for (final ForkJoinTask<Object> task : tasks) {
+                decodedObjects.add(task.get());
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DecodingException(ex, Sos2Constants.InsertObservationParams.observation);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof DecodingException) {
+                throw (DecodingException) ex.getCause();
+            }
+            throw new DecodingException(ex.getCause(), Sos2Constants.InsertObservationParams.observation);
+        } finally {
+            tasks.forEach(task -> task.cancel(false));
+        }
+        return decodedObjects;
+    }
+
+    /**
+     * XmlBeans serializes every access to a document, so each member that
+     * should be decoded concurrently needs a copy in its own synchronization
+     * domain. The namespaces in scope of the member are declared on the copy.
+     *
+     * @param member
+     *            the member to copy
+     *
+     * @return the copy
+     */
+    private XmlObject copyForDecoding(final XmlObject member) {
+        final Map<String, String> namespaces = new HashMap<>();
+        final XmlCursor cursor = member.newCursor();
+        cursor.getAllNamespaces(namespaces);
+        cursor.dispose();
+        final XmlObject copy = member.copy(new XmlOptions().setCopyUseNewSynchronizationDomain(true));
+        final XmlCursor copyCursor = copy.newCursor();
+        if (copyCursor.toNextToken() != TokenType.ENDDOC) {
+            for (final Entry<String, String> namespace : namespaces.entrySet()) {
+                if (copyCursor.namespaceForPrefix(namespace.getKey()) == null) {
+                    copyCursor.insertNamespace(namespace.getKey(), namespace.getValue());
+                }
+            }
+        }
+        copyCursor.dispose();
+        return copy;
+    }
+
     private OwsServiceRequest parseInsertResultTemplate(final InsertResultTemplateDocument insertResultTemplateDoc)
             throws DecodingException {
         InsertResultTemplateRequest sosInsertResultTemplate = new InsertResultTemplateRequest();
@@ -581,60 +697,4 @@ public class SosDecoderv20 extends AbstractSwesDecoderv20<OwsServiceCommunicatio
             throw new DecodingException("The requested resultValue type is not supported");
         }
     }
-
-    private void checkAndAddPhenomenonTime(final Time phenomenonTime, final Map<String, Time> phenomenonTimes) {
-        if (!phenomenonTime.isReferenced()) {
-            phenomenonTimes.put(phenomenonTime.getGmlId(), phenomenonTime);
-        }
-    }
-
-    private void checkAndAddResultTime(final TimeInstant resultTime, final Map<String, TimeInstant> resultTimes) {
-        if (!resultTime.isReferenced()) {
-            resultTimes.put(resultTime.getGmlId(), resultTime);
-        }
-    }
-
-    private void checkAndAddFeatures(final AbstractFeature featureOfInterest,
-            final Map<String, AbstractFeature> features) {
-        if (!featureOfInterest.isReferenced()) {
-            features.put(featureOfInterest.getGmlId(), featureOfInterest);
-        }
-    }
-
-    private void checkReferencedElements(final List<OmObservation> observations,
-            final Map<String, Time> phenomenonTimes, final Map<String, TimeInstant> resultTimes,
-            final Map<String, AbstractFeature> features) throws DecodingException {
-        for (final OmObservation observation : observations) {
-            // phenomenonTime
-            final Time phenomenonTime = observation.getPhenomenonTime();
-            if (phenomenonTime.isReferenced()) {
-                observation.getValue().setPhenomenonTime(phenomenonTimes.get(phenomenonTime.getGmlId()));
-            }
-            // resultTime
-            final TimeInstant resultTime = observation.getResultTime();
-            if (resultTime.isReferenced()) {
-                if (resultTimes.containsKey(resultTime.getGmlId())) {
-                    observation.setResultTime(resultTimes.get(resultTime.getGmlId()));
-                } else if (phenomenonTimes.containsKey(resultTime.getGmlId())) {
-                    final Time iTime = phenomenonTimes.get(resultTime.getGmlId());
-                    if (iTime instanceof TimeInstant) {
-                        observation.setResultTime((TimeInstant) iTime);
-                    } else if (iTime instanceof TimePeriod) {
-                        final TimePeriod timePeriod = (TimePeriod) iTime;
-                        observation.setResultTime(new TimeInstant(timePeriod.getEnd()));
-                    } else {
-                        throw new DecodingException("observation.resultTime", "The time value type is not supported");
-                    }
-
-                }
-            }
-            // featureOfInterest
-            final AbstractFeature featureOfInterest = observation.getObservationConstellation().getFeatureOfInterest();
-            if (featureOfInterest.isReferenced()) {
-                observation.getObservationConstellation()
-                        .setFeatureOfInterest(features.get(featureOfInterest.getGmlId()));
-            }
-
-        }
-    }
 }
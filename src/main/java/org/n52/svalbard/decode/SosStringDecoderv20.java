@@ -16,12 +16,23 @@
  */
 package org.n52.svalbard.decode;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Set;
 
+import javax.inject.Inject;
+
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.shetland.ogc.ows.service.OwsServiceCommunicationObject;
 import org.n52.shetland.ogc.sos.Sos2Constants;
 import org.n52.shetland.ogc.sos.SosConstants;
 import org.n52.shetland.util.CollectionHelper;
+import org.n52.svalbard.CodingSettings;
+import org.n52.svalbard.decode.exception.DecodingException;
+import org.n52.svalbard.util.ByteBufferInputStream;
 import org.n52.svalbard.util.CodingHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,12 +40,16 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Joiner;
 
 /**
- * String request {@link Decoder} for SOS 2.0 requests
+ * String request {@link Decoder} for SOS 2.0 requests. If
+ * {@link CodingSettings#INSERT_OBSERVATION_STREAMING} is enabled,
+ * InsertObservation requests read from a stream, a reader or a buffer are
+ * decoded with the {@link StreamingInsertObservationDecoder}.
  *
  * @author <a href="mailto:c.hollmann@52north.org">Carsten Hollmann</a>
  * @since 5.0.0
  *
  */
+@Configurable
 public class SosStringDecoderv20 extends AbstractStringRequestDecoder {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SosStringDecoderv20.class);
@@ -49,6 +64,10 @@ public class SosStringDecoderv20 extends AbstractStringRequestDecoder {
             CodingHelper.xmlStringDecoderKeysForOperationAndMediaType(SosConstants.SOS, null,
                     SosConstants.Operations.GetCapabilities));
 
+    private StreamingInsertObservationDecoder insertObservationDecoder;
+
+    private boolean streamInsertObservation;
+
     public SosStringDecoderv20() {
         LOGGER.debug("Decoder for the following keys initialized successfully: {}!",
                 Joiner.on(", ").join(DECODER_KEYS));
@@ -59,4 +78,52 @@ public class SosStringDecoderv20 extends AbstractStringRequestDecoder {
         return Collections.unmodifiableSet(DECODER_KEYS);
     }
 
+    @Inject
+    public void setStreamingInsertObservationDecoder(StreamingInsertObservationDecoder decoder) {
+        this.insertObservationDecoder = decoder;
+    }
+
+    @Setting(CodingSettings.INSERT_OBSERVATION_STREAMING)
+    public void setStreamInsertObservation(boolean streamInsertObservation) {
+        this.streamInsertObservation = streamInsertObservation;
+    }
+
+    @Override
+    public OwsServiceCommunicationObject decode(InputStream in) throws DecodingException {
+        if (!streamInsertObservation || insertObservationDecoder == null) {
+            return super.decode(in);
+        }
+        // only the bytes read ahead to find the root element are buffered
+        RecordingInputStream recording = new RecordingInputStream(in);
+        boolean insertObservation = insertObservationDecoder.isInsertObservation(recording);
+        InputStream replay = recording.replay();
+        if (insertObservation) {
+            return insertObservationDecoder.decodeRequest(replay);
+        }
+        return super.decode(replay);
+    }
+
+    @Override
+    public OwsServiceCommunicationObject decode(Reader reader) throws DecodingException {
+        if (!streamInsertObservation || insertObservationDecoder == null) {
+            return super.decode(reader);
+        }
+        // only the characters read ahead to find the root element are buffered
+        RecordingReader recording = new RecordingReader(reader);
+        boolean insertObservation = insertObservationDecoder.isInsertObservation(recording);
+        Reader replay = recording.replay();
+        if (insertObservation) {
+            return insertObservationDecoder.decodeRequest(replay);
+        }
+        return super.decode(replay);
+    }
+
+    @Override
+    public OwsServiceCommunicationObject decode(ByteBuffer buffer) throws DecodingException {
+        if (!streamInsertObservation || insertObservationDecoder == null) {
+            return super.decode(buffer);
+        }
+        return decode(new ByteBufferInputStream(buffer));
+    }
+
 }
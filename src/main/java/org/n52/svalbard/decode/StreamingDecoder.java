@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+import org.n52.svalbard.decode.exception.DecodingException;
+
+/**
+ * Generic interface for decoders of XML requests that can read the request
+ * directly from the transport instead of a {@link String}, so no character
+ * copy of the request has to be created before parsing. Decoders found for a
+ * {@link XmlStringOperationDecoderKey} may implement this interface.
+ *
+ * @since 1.0.0
+ *
+ * @param <T>
+ *            the resulting type, the "Target"
+ * @param <S>
+ *            the input type, the "Source"
+ */
+public interface StreamingDecoder<T, S> extends Decoder<T, S> {
+
+    /**
+     * Decode the request from the stream. The encoding is detected from the
+     * byte order mark or the XML declaration. The stream is not closed.
+     *
+     * @param in
+     *            the request
+     *
+     * @return the decoded request
+     *
+     * @throws DecodingException
+     *             if an error occurs
+     */
+    T decode(InputStream in) throws DecodingException;
+
+    /**
+     * Decode the request from the reader. The reader is not closed.
+     *
+     * @param reader
+     *            the request
+     *
+     * @return the decoded request
+     *
+     * @throws DecodingException
+     *             if an error occurs
+     */
+    T decode(Reader reader) throws DecodingException;
+
+    /**
+     * Decode the request from the remaining bytes of the buffer. The encoding
+     * is detected from the byte order mark or the XML declaration.
+     *
+     * @param buffer
+     *            the request
+     *
+     * @return the decoded request
+     *
+     * @throws DecodingException
+     *             if an error occurs
+     */
+    T decode(ByteBuffer buffer) throws DecodingException;
+
+}
@@ -0,0 +1,478 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.inject.Inject;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.n52.shetland.ogc.om.OmConstants;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.ows.exception.MissingParameterValueException;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.shetland.ogc.sos.SosConstants;
+import org.n52.shetland.ogc.sos.request.InsertObservationRequest;
+import org.n52.shetland.ogc.swes.SwesConstants;
+import org.n52.shetland.ogc.swes.SwesExtensions;
+import org.n52.shetland.w3c.W3CConstants;
+import org.n52.svalbard.decode.exception.DecodingException;
+import org.n52.svalbard.decode.exception.NoDecoderForKeyException;
+import org.n52.svalbard.decode.exception.XmlDecodingException;
+import org.n52.svalbard.util.CodingHelper;
+import org.n52.svalbard.util.XmlHelper;
+
+import net.opengis.om.x20.OMObservationDocument;
+
+/**
+ * Decoder for SOS 2.0 InsertObservation requests that reads the
+ * <code>sos:observation</code> members one after another from a StAX reader
+ * instead of parsing the whole request into a single XmlBeans document.
+ *
+ * Each member subtree is parsed and decoded on its own and is released as
+ * soon as it was returned by the {@link ObservationStream}. Document internal
+ * references are resolved with an {@link ObservationReferenceResolver}: an
+ * observation referencing an element that was not yet read (a forward
+ * reference) is held back until the element shows up or the request ends, so
+ * the observations are always returned in document order. At most
+ * {@value #MAX_PENDING_OBSERVATIONS} observations are held back and at most
+ * {@value #MAX_REFERENCEABLE_ELEMENTS} referenceable elements of each kind are
+ * kept for later references, so the memory used does not grow with the size
+ * of the request.
+ *
+ * @since 1.0.0
+ */
+public class StreamingInsertObservationDecoder {
+
+    /**
+     * The maximum number of observations that are held back because of a
+     * forward reference.
+     */
+    public static final int MAX_PENDING_OBSERVATIONS = 1000;
+
+    /**
+     * The maximum number of phenomenon times, result times and features that
+     * are kept to resolve references of subsequent observations.
+     */
+    public static final int MAX_REFERENCEABLE_ELEMENTS = 10000;
+
+    private static final QName QN_INSERT_OBSERVATION =
+            new QName(Sos2Constants.NS_SOS_20, SosConstants.Operations.InsertObservation.name());
+
+    private static final QName QN_OFFERING = new QName(Sos2Constants.NS_SOS_20, "offering");
+
+    private static final QName QN_OBSERVATION =
+            new QName(Sos2Constants.NS_SOS_20, Sos2Constants.InsertObservationParams.observation.name());
+
+    private static final QName QN_EXTENSION = new QName(SwesConstants.NS_SWES_20, SwesConstants.EN_EXTENSION);
+
+    private static final String SERVICE = "service";
+
+    private static final String VERSION = "version";
+
+    private final XMLInputFactory inputFactory = createInputFactory();
+
+    private DecoderRepository decoderRepository;
+
+    @Inject
+    public void setDecoderRepository(DecoderRepository decoderRepository) {
+        this.decoderRepository = decoderRepository;
+    }
+
+    /**
+     * Checks if the root element of the stream is a SOS 2.0 InsertObservation
+     * element. The stream is consumed up to and including the root element.
+     *
+     * @param in
+     *            the request
+     *
+     * @return if the request is an InsertObservation request
+     *
+     * @throws DecodingException
+     *             if the request can not be read
+     */
+    public boolean isInsertObservation(InputStream in) throws DecodingException {
+        try {
+            return isInsertObservation(inputFactory.createXMLStreamReader(in));
+        } catch (XMLStreamException ex) {
+            throw new DecodingException("An xml error occured when parsing the request!", ex);
+        }
+    }
+
+    /**
+     * Checks if the root element read from the reader is a SOS 2.0
+     * InsertObservation element. The reader is consumed up to and including
+     * the root element.
+     *
+     * @param in
+     *            the request
+     *
+     * @return if the request is an InsertObservation request
+     *
+     * @throws DecodingException
+     *             if the request can not be read
+     */
+    public boolean isInsertObservation(Reader in) throws DecodingException {
+        try {
+            return isInsertObservation(inputFactory.createXMLStreamReader(in));
+        } catch (XMLStreamException ex) {
+            throw new DecodingException("An xml error occured when parsing the request!", ex);
+        }
+    }
+
+    private static boolean isInsertObservation(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            return reader.nextTag() == XMLStreamReader.START_ELEMENT && QN_INSERT_OBSERVATION.equals(reader.getName());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read the complete InsertObservation request from the stream. In contrast
+     * to the XmlBeans based decoding only a single observation member is held
+     * as a XML document at a time. The {@link InputStream} is not closed.
+     *
+     * @param in
+     *            the request
+     *
+     * @return the request containing the decoded observations
+     *
+     * @throws DecodingException
+     *             if the request can not be read or decoded
+     */
+    public InsertObservationRequest decodeRequest(InputStream in) throws DecodingException {
+        try (ObservationStream observations = decode(in)) {
+            return decodeRequest(observations);
+        }
+    }
+
+    /**
+     * Read the complete InsertObservation request from the reader. In
+     * contrast to the XmlBeans based decoding only a single observation member
+     * is held as a XML document at a time. The {@link Reader} is not closed.
+     *
+     * @param in
+     *            the request
+     *
+     * @return the request containing the decoded observations
+     *
+     * @throws DecodingException
+     *             if the request can not be read or decoded
+     */
+    public InsertObservationRequest decodeRequest(Reader in) throws DecodingException {
+        try (ObservationStream observations = decode(in)) {
+            return decodeRequest(observations);
+        }
+    }
+
+    private InsertObservationRequest decodeRequest(ObservationStream observations) throws DecodingException {
+        InsertObservationRequest request = observations.getRequest();
+        while (observations.hasNext()) {
+            request.addObservation(observations.next());
+        }
+        return request;
+    }
+
+    /**
+     * Read the InsertObservation request header from the stream. The
+     * observations are read on demand from the returned
+     * {@link ObservationStream}. The {@link InputStream} is not closed.
+     *
+     * @param in
+     *            the request
+     *
+     * @return the observation stream
+     *
+     * @throws DecodingException
+     *             if the request header can not be read
+     */
+    public ObservationStream decode(InputStream in) throws DecodingException {
+        try {
+            return decode(inputFactory.createXMLStreamReader(in));
+        } catch (XMLStreamException ex) {
+            throw new DecodingException("An xml error occured when parsing the request!", ex);
+        }
+    }
+
+    /**
+     * Read the InsertObservation request header from the reader. The
+     * observations are read on demand from the returned
+     * {@link ObservationStream}. The {@link Reader} is not closed.
+     *
+     * @param in
+     *            the request
+     *
+     * @return the observation stream
+     *
+     * @throws DecodingException
+     *             if the request header can not be read
+     */
+    public ObservationStream decode(Reader in) throws DecodingException {
+        try {
+            return decode(inputFactory.createXMLStreamReader(in));
+        } catch (XMLStreamException ex) {
+            throw new DecodingException("An xml error occured when parsing the request!", ex);
+        }
+    }
+
+    /**
+     * Read the InsertObservation request header from the reader. The reader
+     * has to be positioned before or at the <code>sos:InsertObservation</code>
+     * element.
+     *
+     * @param reader
+     *            the reader
+     *
+     * @return the observation stream
+     *
+     * @throws DecodingException
+     *             if the request header can not be read
+     */
+    public ObservationStream decode(XMLStreamReader reader) throws DecodingException {
+        try {
+            return new ObservationStream(reader);
+        } catch (XMLStreamException ex) {
+            throw new DecodingException("An xml error occured when parsing the request!", ex);
+        }
+    }
+
+    private Object decodeXmlElement(XmlObject xml) throws DecodingException {
+        DecoderKey key = CodingHelper.getDecoderKey(xml);
+        Decoder<Object, XmlObject> decoder = decoderRepository.getDecoder(key);
+        if (decoder == null) {
+            throw new NoDecoderForKeyException(key);
+        }
+        return decoder.decode(xml);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    /**
+     * The observations of a streamed InsertObservation request.
+     */
+    public class ObservationStream implements AutoCloseable {
+
+        private final XMLStreamReader reader;
+
+        private final XmlOptions options;
+
+        private final InsertObservationRequest request = new InsertObservationRequest();
+
+        private final ObservationReferenceResolver references =
+                new ObservationReferenceResolver(MAX_REFERENCEABLE_ELEMENTS);
+
+        private final Deque<OmObservation> pending = new ArrayDeque<>();
+
+        private boolean exhausted;
+
+        ObservationStream(XMLStreamReader reader) throws XMLStreamException, DecodingException {
+            this.reader = reader;
+            if (!reader.isStartElement()) {
+                reader.nextTag();
+            }
+            if (!QN_INSERT_OBSERVATION.equals(reader.getName())) {
+                throw new DecodingException("The request is not an InsertObservation request: %s",
+                        reader.getName());
+            }
+            this.options = new XmlOptions().setLoadAdditionalNamespaces(getNamespaces(reader));
+            request.setService(reader.getAttributeValue(null, SERVICE));
+            request.setVersion(reader.getAttributeValue(null, VERSION));
+            readHeader();
+        }
+
+        /**
+         * @return the request without observations
+         */
+        public InsertObservationRequest getRequest() {
+            return request;
+        }
+
+        /**
+         * Checks if there is another observation. Observations following an
+         * observation with a forward reference are read until the reference
+         * can be resolved.
+         *
+         * @return if there is another observation
+         *
+         * @throws DecodingException
+         *             if the next observation can not be decoded or more than
+         *             {@value StreamingInsertObservationDecoder#MAX_PENDING_OBSERVATIONS}
+         *             observations would have to be held back
+         */
+        public boolean hasNext() throws DecodingException {
+            while (!exhausted && (pending.isEmpty() || !references.isResolvable(pending.peek()))) {
+                OmObservation observation = readObservation();
+                if (observation == null) {
+                    exhausted = true;
+                } else if (pending.size() >= MAX_PENDING_OBSERVATIONS) {
+                    throw new DecodingException(Sos2Constants.InsertObservationParams.observation,
+                            "The observation references an element that is not contained in the next %d "
+                            + "observations", MAX_PENDING_OBSERVATIONS);
+                } else {
+                    references.add(observation);
+                    pending.add(observation);
+                }
+            }
+            return !pending.isEmpty();
+        }
+
+        /**
+         * @return the next observation with resolved references
+         *
+         * @throws DecodingException
+         *             if the observation can not be decoded or references an
+         *             element that is not contained in the request
+         */
+        public OmObservation next() throws DecodingException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            OmObservation observation = pending.poll();
+            references.resolve(observation);
+            return observation;
+        }
+
+        @Override
+        public void close() throws DecodingException {
+            try {
+                reader.close();
+            } catch (XMLStreamException ex) {
+                throw new DecodingException("Error while closing the request reader", ex);
+            }
+        }
+
+        private Map<String, String> getNamespaces(XMLStreamReader reader) {
+            Map<String, String> namespaces = new HashMap<>(reader.getNamespaceCount() + 1);
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String prefix = reader.getNamespacePrefix(i);
+                namespaces.put(prefix == null ? "" : prefix, reader.getNamespaceURI(i));
+            }
+            // set namespace for default XML type (e.g. xs:string, xs:integer,
+            // xs:boolean, ...), see SosDecoderv20
+            namespaces.putIfAbsent(W3CConstants.NS_XS_PREFIX, W3CConstants.NS_XS);
+            return namespaces;
+        }
+
+        private void readHeader() throws XMLStreamException, DecodingException {
+            List<String> offerings = new ArrayList<>();
+            SwesExtensions extensions = null;
+            while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+                QName name = reader.getName();
+                if (QN_OBSERVATION.equals(name)) {
+                    break;
+                } else if (QN_OFFERING.equals(name)) {
+                    offerings.add(reader.getElementText());
+                } else if (QN_EXTENSION.equals(name)) {
+                    if (extensions == null) {
+                        extensions = new SwesExtensions();
+                    }
+                    extensions.addExtension(
+                            AbstractSwesDecoderv20.toSwesExtension(decodeXmlElement(parseExtension())));
+                } else {
+                    throw new DecodingException(Sos2Constants.InsertObservationParams.observation,
+                            "Unexpected element %s in InsertObservation request", name);
+                }
+            }
+            if (!reader.isStartElement()) {
+                throw new DecodingException(
+                        new MissingParameterValueException(Sos2Constants.InsertObservationParams.observation),
+                        Sos2Constants.InsertObservationParams.observation);
+            }
+            request.setOfferings(offerings);
+            request.setExtensions(extensions);
+        }
+
+        private XmlObject parseExtension() throws DecodingException {
+            XmlObject document = parse();
+            XmlCursor cursor = document.newCursor();
+            try {
+                cursor.toFirstChild();
+                return cursor.getObject();
+            } finally {
+                cursor.dispose();
+            }
+        }
+
+        private OmObservation readObservation() throws DecodingException {
+            try {
+                if (!reader.isStartElement() || !QN_OBSERVATION.equals(reader.getName())) {
+                    return null;
+                }
+                if (reader.nextTag() != XMLStreamReader.START_ELEMENT) {
+                    throw new DecodingException(Sos2Constants.InsertObservationParams.observation,
+                            "The observation element is empty!");
+                }
+                XmlObject document = parse();
+                // leave the sos:observation element and move to the next member
+                while (!(reader.isEndElement() && QN_OBSERVATION.equals(reader.getName()))) {
+                    reader.next();
+                }
+                reader.nextTag();
+                XmlHelper.validateDocument(document);
+                Object decodedObject;
+                if (document instanceof OMObservationDocument) {
+                    decodedObject = decodeXmlElement(((OMObservationDocument) document).getOMObservation());
+                } else {
+                    decodedObject = decodeXmlElement(document);
+                }
+                if (decodedObject instanceof OmObservation) {
+                    return (OmObservation) decodedObject;
+                }
+                throw new DecodingException(Sos2Constants.InsertObservationParams.observation,
+                        "The requested observation type (%s) is not supported by this server!",
+                        document instanceof OMObservationDocument ? OmConstants.QN_OM_20_OBSERVATION
+                                : document.getDomNode().getFirstChild().getNodeName());
+            } catch (XMLStreamException ex) {
+                throw new DecodingException(ex, Sos2Constants.InsertObservationParams.observation);
+            }
+        }
+
+        /**
+         * Parse the element the reader is positioned at. Afterwards the reader
+         * is positioned at the corresponding end element.
+         */
+        private XmlObject parse() throws DecodingException {
+            try {
+                return XmlObject.Factory.parse(reader, options);
+            } catch (XmlException ex) {
+                throw new XmlDecodingException("InsertObservation request", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,578 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.XmlSaxHandler;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.svalbard.CodingSettings;
+import org.n52.svalbard.decode.exception.DecodingException;
+import org.n52.svalbard.decode.exception.XmlDecodingException;
+import org.n52.svalbard.util.ByteBufferInputStream;
+import org.n52.svalbard.util.CodingHelper;
+import org.n52.svalbard.util.XmlHelper;
+import org.n52.svalbard.util.XmlHelper.ValidationErrorCollector;
+import org.n52.svalbard.util.XmlSchemaCache;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+/**
+ * Parses XML requests into {@link XmlObject}s. The root element of the request
+ * is read with StAX first if it is needed to select the decoder (see
+ * {@link #decode(String, DecoderSelector)}) or the schema of the request, and
+ * the document is directly created with the document type of the root
+ * element. If {@link CodingSettings#VALIDATE_REQUEST_WHILE_PARSING} is enabled
+ * and a compiled schema is available for the namespaces of the request, the
+ * request is validated in the same SAX pass that builds the
+ * {@link XmlObject}. Requests that are not well-formed are rejected with a
+ * {@link XmlDecodingException}.
+ *
+ * Only the namespaces declared on the root element are known before parsing,
+ * the namespaces declared deeper in the document are learned for the
+ * namespaces of the root element and are part of the schema of the following
+ * requests. The result of the validation is stored in the returned document
+ * (see {@link XmlHelper#isValidated(XmlObject)}):
+ * <ul>
+ * <li>a document that is valid against a schema covering all of its
+ * namespaces is marked as validated, so
+ * {@link XmlHelper#validateDocument(XmlObject)} does not traverse it
+ * again,</li>
+ * <li>a document with validation errors is validated again with XmlBeans,
+ * which applies the {@link XmlHelper.LaxValidationCase}s, and is rejected or
+ * marked as validated,</li>
+ * <li>all other documents are not marked and are validated by the
+ * decoders.</li>
+ * </ul>
+ *
+ * @since 1.0.0
+ */
+@Configurable
+public class ValidatingXmlParser {
+
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    private static final String DISALLOW_DOCTYPE = "http://apache.org/xml/features/disallow-doctype-decl";
+
+    private static final String XML_STRING = "XML string";
+
+    private static final String XML_STREAM = "XML stream";
+
+    private final XMLInputFactory inputFactory = createInputFactory();
+
+    private final SAXParserFactory parserFactory = createParserFactory();
+
+    private final ConcurrentMap<Set<String>, Set<String>> learnedNamespaces = new ConcurrentHashMap<>();
+
+    private XmlSchemaCache schemaCache;
+
+    private boolean enabled;
+
+    @Inject
+    public void setSchemaCache(XmlSchemaCache schemaCache) {
+        this.schemaCache = schemaCache;
+    }
+
+    @Setting(CodingSettings.VALIDATE_REQUEST_WHILE_PARSING)
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled && schemaCache != null;
+    }
+
+    /**
+     * Parse the request.
+     *
+     * @param xml
+     *            the request
+     *
+     * @return the parsed request
+     *
+     * @throws DecodingException
+     *             if the request is not well-formed or not valid
+     */
+    public XmlObject parse(String xml) throws DecodingException {
+        if (!isEnabled()) {
+            return CodingHelper.readXML(xml);
+        }
+        return parse(xml, getRootElement(xml));
+    }
+
+    /**
+     * Parse the request from the stream. The encoding is detected from the
+     * byte order mark or the XML declaration. The stream is not closed.
+     *
+     * @param in
+     *            the request
+     *
+     * @return the parsed request
+     *
+     * @throws DecodingException
+     *             if the request can not be read, is not well-formed or not
+     *             valid
+     */
+    public XmlObject parse(InputStream in) throws DecodingException {
+        if (!isEnabled()) {
+            return CodingHelper.readXML(in);
+        }
+        // only the bytes read ahead to find the root element are buffered
+        RecordingInputStream recording = new RecordingInputStream(in);
+        RootElement root = getRootElement(recording);
+        return parse(recording.replay(), root);
+    }
+
+    /**
+     * Parse the request from the reader. The reader is not closed.
+     *
+     * @param reader
+     *            the request
+     *
+     * @return the parsed request
+     *
+     * @throws DecodingException
+     *             if the request can not be read, is not well-formed or not
+     *             valid
+     */
+    public XmlObject parse(Reader reader) throws DecodingException {
+        if (!isEnabled()) {
+            return CodingHelper.readXML(reader);
+        }
+        RecordingReader recording = new RecordingReader(reader);
+        RootElement root = getRootElement(recording);
+        return parse(recording.replay(), root);
+    }
+
+    /**
+     * Parse the request from the remaining bytes of the buffer without copying
+     * them. The encoding is detected from the byte order mark or the XML
+     * declaration.
+     *
+     * @param buffer
+     *            the request
+     *
+     * @return the parsed request
+     *
+     * @throws DecodingException
+     *             if the request is not well-formed or not valid
+     */
+    public XmlObject parse(ByteBuffer buffer) throws DecodingException {
+        return parse(new ByteBufferInputStream(buffer));
+    }
+
+    /**
+     * Decode the request with the decoder selected by the name of its root
+     * element. The decoder is selected before the request is parsed, which is
+     * done with the document type of the root element.
+     *
+     * @param <T>
+     *            the type of the decoded request
+     * @param xml
+     *            the request
+     * @param selector
+     *            the selector of the decoder
+     *
+     * @return the decoded request
+     *
+     * @throws DecodingException
+     *             if no decoder is available, the request is not well-formed
+     *             or not valid or can not be decoded
+     */
+    public <T> T decode(String xml, DecoderSelector<T> selector) throws DecodingException {
+        RootElement root = getRootElement(xml);
+        Decoder<T, XmlObject> decoder = selector.select(root.name);
+        return decoder.decode(parse(xml, root));
+    }
+
+    /**
+     * Decode the request read from the stream with the decoder selected by the
+     * name of its root element. The stream is not closed.
+     *
+     * @param <T>
+     *            the type of the decoded request
+     * @param in
+     *            the request
+     * @param selector
+     *            the selector of the decoder
+     *
+     * @return the decoded request
+     *
+     * @throws DecodingException
+     *             if no decoder is available, the request can not be read, is
+     *             not well-formed or not valid or can not be decoded
+     */
+    public <T> T decode(InputStream in, DecoderSelector<T> selector) throws DecodingException {
+        RecordingInputStream recording = new RecordingInputStream(in);
+        RootElement root = getRootElement(recording);
+        Decoder<T, XmlObject> decoder = selector.select(root.name);
+        return decoder.decode(parse(recording.replay(), root));
+    }
+
+    /**
+     * Decode the request read from the reader with the decoder selected by the
+     * name of its root element. The reader is not closed.
+     *
+     * @param <T>
+     *            the type of the decoded request
+     * @param reader
+     *            the request
+     * @param selector
+     *            the selector of the decoder
+     *
+     * @return the decoded request
+     *
+     * @throws DecodingException
+     *             if no decoder is available, the request can not be read, is
+     *             not well-formed or not valid or can not be decoded
+     */
+    public <T> T decode(Reader reader, DecoderSelector<T> selector) throws DecodingException {
+        RecordingReader recording = new RecordingReader(reader);
+        RootElement root = getRootElement(recording);
+        Decoder<T, XmlObject> decoder = selector.select(root.name);
+        return decoder.decode(parse(recording.replay(), root));
+    }
+
+    /**
+     * Decode the remaining bytes of the buffer with the decoder selected by
+     * the name of the root element.
+     *
+     * @param <T>
+     *            the type of the decoded request
+     * @param buffer
+     *            the request
+     * @param selector
+     *            the selector of the decoder
+     *
+     * @return the decoded request
+     *
+     * @throws DecodingException
+     *             if no decoder is available, the request is not well-formed
+     *             or not valid or can not be decoded
+     */
+    public <T> T decode(ByteBuffer buffer, DecoderSelector<T> selector) throws DecodingException {
+        return decode(new ByteBufferInputStream(buffer), selector);
+    }
+
+    private XmlObject parse(String xml, RootElement root) throws DecodingException {
+        Schema schema = getSchema(root);
+        if (schema == null) {
+            try {
+                return XmlObject.Factory.parse(xml, createOptions(root.name));
+            } catch (XmlException e) {
+                throw new XmlDecodingException(XML_STRING, xml, e);
+            }
+        }
+        return parse(new InputSource(new StringReader(xml)), schema, root, xml);
+    }
+
+    private XmlObject parse(InputStream in, RootElement root) throws DecodingException {
+        Schema schema = getSchema(root);
+        if (schema == null) {
+            try {
+                return XmlObject.Factory.parse(in, createOptions(root.name));
+            } catch (XmlException e) {
+                throw new XmlDecodingException(XML_STREAM, e);
+            } catch (IOException e) {
+                throw new DecodingException("Error while reading the XML stream", e);
+            }
+        }
+        return parse(new InputSource(in), schema, root, null);
+    }
+
+    private XmlObject parse(Reader reader, RootElement root) throws DecodingException {
+        Schema schema = getSchema(root);
+        if (schema == null) {
+            try {
+                return XmlObject.Factory.parse(reader, createOptions(root.name));
+            } catch (XmlException e) {
+                throw new XmlDecodingException(XML_STREAM, e);
+            } catch (IOException e) {
+                throw new DecodingException("Error while reading the XML stream", e);
+            }
+        }
+        return parse(new InputSource(reader), schema, root, null);
+    }
+
+    /**
+     * Parse and validate the request in a single pass.
+     *
+     * @param source
+     *            the request
+     * @param schema
+     *            the schema to validate against
+     *
+     * @return the parsed and validated request
+     *
+     * @throws DecodingException
+     *             if the request is not well-formed or not valid
+     */
+    public XmlObject parse(InputSource source, Schema schema) throws DecodingException {
+        return parse(source, schema, null, null);
+    }
+
+    /**
+     * Parse and validate the request in a single pass. If the root element is
+     * known, the document is directly created with the document type of the
+     * corresponding global element and the namespaces of the document are
+     * learned for the namespaces of the root element. The request text is
+     * only known if it was passed as a string.
+     */
+    private XmlObject parse(InputSource source, Schema schema, RootElement root, String xml)
+            throws DecodingException {
+        XmlSaxHandler saxHandler = XmlObject.Factory.newXmlSaxHandler(createOptions(root == null ? null : root.name));
+        ValidationErrorCollector errors = new ValidationErrorCollector();
+        ValidatorHandler validatorHandler = schema.newValidatorHandler();
+        validatorHandler.setErrorHandler(errors);
+        validatorHandler.setContentHandler(saxHandler.getContentHandler());
+        NamespaceCollector namespaces = new NamespaceCollector(validatorHandler);
+        try {
+            XMLReader reader = parserFactory.newSAXParser().getXMLReader();
+            reader.setContentHandler(namespaces);
+            reader.setProperty(LEXICAL_HANDLER, saxHandler.getLexicalHandler());
+            reader.parse(source);
+            XmlObject document = saxHandler.getObject();
+            if (root != null) {
+                learnNamespaces(root, namespaces.getNamespaces());
+            }
+            if (!errors.getErrors().isEmpty()) {
+                // the lax validation cases only apply to the XmlBeans validation of typed documents
+                if (document.schemaType() == XmlObject.type || document.schemaType().isNoType()) {
+                    throw new DecodingException(errors.toException());
+                }
+                return XmlHelper.markValidated(XmlHelper.validateDocument(document, DecodingException::new));
+            }
+            if (root == null || isCovered(root, namespaces.getNamespaces())) {
+                return XmlHelper.markValidated(document);
+            }
+            return document;
+        } catch (SAXParseException ex) {
+            // schema errors are collected, so this is a fatal error of a document that is not well-formed
+            throw malformed(xml, new XmlException(String.format("line %d, column %d: %s", ex.getLineNumber(),
+                    ex.getColumnNumber(), ex.getMessage()), ex));
+        } catch (XmlException ex) {
+            throw malformed(xml, ex);
+        } catch (SAXException | IOException | ParserConfigurationException ex) {
+            throw new DecodingException("An xml error occured when parsing the request!", ex);
+        }
+    }
+
+    /**
+     * @return the schema to validate the request against while parsing or
+     *         <code>null</code>, if the request should not be validated
+     */
+    private Schema getSchema(RootElement root) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Set<String> known = schemaCache.getKnownNamespaces(root.namespaces);
+        root.schemaNamespaces = learnedNamespaces.getOrDefault(known, known);
+        return schemaCache.getSchema(root.schemaNamespaces);
+    }
+
+    private void learnNamespaces(RootElement root, Set<String> namespaces) {
+        Set<String> known = schemaCache.getKnownNamespaces(Sets.union(root.namespaces, namespaces));
+        learnedNamespaces.merge(schemaCache.getKnownNamespaces(root.namespaces), known,
+                (a, b) -> b.containsAll(a) ? b : ImmutableSet.copyOf(Sets.union(a, b)));
+    }
+
+    /**
+     * @return if the schema was compiled for all namespaces of the document,
+     *         elements of other namespaces may have been skipped by wildcards
+     */
+    private boolean isCovered(RootElement root, Set<String> namespaces) {
+        return root.schemaNamespaces.containsAll(schemaCache.getKnownNamespaces(namespaces));
+    }
+
+    /**
+     * Create the parse options. If the name of the root element is known, the
+     * document is directly created with the document type of the
+     * corresponding global element.
+     */
+    private static XmlOptions createOptions(QName root) {
+        XmlOptions options = new XmlOptions();
+        SchemaType documentType = root == null ? null : XmlBeans.getContextTypeLoader().findDocumentType(root);
+        if (documentType != null) {
+            options.setDocumentType(documentType);
+        }
+        return options;
+    }
+
+    private RootElement getRootElement(String xml) throws DecodingException {
+        try {
+            return getRootElement(inputFactory.createXMLStreamReader(new StringReader(xml)));
+        } catch (XMLStreamException ex) {
+            throw malformed(xml, new XmlException(ex.getMessage(), ex));
+        }
+    }
+
+    private RootElement getRootElement(InputStream in) throws DecodingException {
+        try {
+            return getRootElement(inputFactory.createXMLStreamReader(in));
+        } catch (XMLStreamException ex) {
+            throw malformed(null, new XmlException(ex.getMessage(), ex));
+        }
+    }
+
+    private RootElement getRootElement(Reader in) throws DecodingException {
+        try {
+            return getRootElement(inputFactory.createXMLStreamReader(in));
+        } catch (XMLStreamException ex) {
+            throw malformed(null, new XmlException(ex.getMessage(), ex));
+        }
+    }
+
+    /**
+     * @return the exception for a request that is not well-formed, containing
+     *         the request text if it is known
+     */
+    private static XmlDecodingException malformed(String xml, XmlException cause) {
+        return xml == null ? new XmlDecodingException(XML_STREAM, cause)
+                : new XmlDecodingException(XML_STRING, xml, cause);
+    }
+
+    private RootElement getRootElement(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            reader.nextTag();
+            Set<String> namespaces = new HashSet<>(reader.getNamespaceCount() + 1);
+            namespaces.add(reader.getNamespaceURI());
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                namespaces.add(reader.getNamespaceURI(i));
+            }
+            return new RootElement(reader.getName(), namespaces);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    private static SAXParserFactory createParserFactory() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            factory.setFeature(DISALLOW_DOCTYPE, true);
+        } catch (ParserConfigurationException | SAXException ex) {
+            throw new IllegalStateException("Could not disable DOCTYPE declarations", ex);
+        }
+        return factory;
+    }
+
+    /**
+     * Selects the decoder of a request by the name of its root element.
+     *
+     * @param <T>
+     *            the type of the decoded request
+     */
+    @FunctionalInterface
+    public interface DecoderSelector<T> {
+        /**
+         * @param root
+         *            the name of the root element
+         *
+         * @return the decoder of the request
+         *
+         * @throws DecodingException
+         *             if no decoder is available
+         */
+        Decoder<T, XmlObject> select(QName root) throws DecodingException;
+    }
+
+    /**
+     * The name and the declared namespaces of the root element of a request.
+     */
+    private static class RootElement {
+        private final QName name;
+
+        private final Set<String> namespaces;
+
+        /**
+         * The namespaces the schema of the request was compiled for.
+         */
+        private Set<String> schemaNamespaces;
+
+        RootElement(QName name, Set<String> namespaces) {
+            this.name = name;
+            this.namespaces = namespaces;
+        }
+    }
+
+    /**
+     * Collects the namespaces declared and used in the document.
+     */
+    private static class NamespaceCollector extends XMLFilterImpl {
+        private final Set<String> namespaces = new HashSet<>();
+
+        NamespaceCollector(ContentHandler contentHandler) {
+            setContentHandler(contentHandler);
+        }
+
+        Set<String> getNamespaces() {
+            return namespaces;
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            namespaces.add(uri);
+            super.startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            namespaces.add(uri);
+            super.startElement(uri, localName, qName, atts);
+        }
+    }
+}
@@ -17,13 +17,12 @@
 package org.n52.svalbard.decode;
 
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
-import javax.xml.soap.Node;
-import javax.xml.soap.SOAPHeaderElement;
-
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.n52.shetland.w3c.soap.SoapHeader;
 import org.n52.shetland.w3c.wsa.WsaActionHeader;
 import org.n52.shetland.w3c.wsa.WsaConstants;
 import org.n52.shetland.w3c.wsa.WsaHeader;
@@ -40,12 +39,12 @@ import com.google.common.collect.Lists;
  * @since 4.0.0
  *
  */
-public class WsaDecoder implements Decoder<List<WsaHeader>, List<SOAPHeaderElement>> {
+public class WsaDecoder implements Decoder<List<WsaHeader>, List<XmlObject>> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WsaDecoder.class);
 
     private static final Set<DecoderKey> DECODER_KEYS = Collections
-            .<DecoderKey> singleton(new XmlNamespaceDecoderKey(WsaConstants.NS_WSA, SOAPHeaderElement.class));
+            .<DecoderKey> singleton(new XmlNamespaceDecoderKey(WsaConstants.NS_WSA, SoapHeader.class));
 
     public WsaDecoder() {
         LOGGER.debug("Decoder for the following keys initialized successfully: {}!",
@@ -58,31 +57,37 @@ public class WsaDecoder implements Decoder<List<WsaHeader>, List<SOAPHeaderEleme
     }
 
     @Override
-    public List<WsaHeader> decode(List<SOAPHeaderElement> list) {
+    public List<WsaHeader> decode(List<XmlObject> list) {
         List<WsaHeader> wsaHeaders = Lists.newArrayListWithCapacity(list.size());
         boolean to = false;
         boolean replyTo = false;
         boolean messageId = false;
         boolean action = false;
-        for (SOAPHeaderElement soapHeaderElement : list) {
-            if (soapHeaderElement.getLocalName().equals(WsaConstants.EN_TO)) {
-                wsaHeaders.add(new WsaToHeader(soapHeaderElement.getValue()));
-                to = true;
-            } else if (soapHeaderElement.getLocalName().equals(WsaConstants.EN_ACTION)) {
-                wsaHeaders.add(new WsaActionHeader(soapHeaderElement.getValue()));
-                action = true;
-            } else if (soapHeaderElement.getLocalName().equals(WsaConstants.EN_REPLY_TO)) {
-                Iterator<?> iter = soapHeaderElement.getChildElements();
-                while (iter.hasNext()) {
-                    Node node = (Node) iter.next();
-                    if (node.getLocalName() != null && node.getLocalName().equals(WsaConstants.EN_ADDRESS)) {
-                        wsaHeaders.add(new WsaReplyToHeader(node.getValue()));
-                        replyTo = true;
+        for (XmlObject headerElement : list) {
+            XmlCursor cursor = headerElement.newCursor();
+            try {
+                String localName = cursor.getName().getLocalPart();
+                if (localName.equals(WsaConstants.EN_TO)) {
+                    wsaHeaders.add(new WsaToHeader(cursor.getTextValue()));
+                    to = true;
+                } else if (localName.equals(WsaConstants.EN_ACTION)) {
+                    wsaHeaders.add(new WsaActionHeader(cursor.getTextValue()));
+                    action = true;
+                } else if (localName.equals(WsaConstants.EN_REPLY_TO)) {
+                    if (cursor.toFirstChild()) {
+                        do {
+                            if (cursor.getName().getLocalPart().equals(WsaConstants.EN_ADDRESS)) {
+                                wsaHeaders.add(new WsaReplyToHeader(cursor.getTextValue()));
+                                replyTo = true;
+                            }
+                        } while (cursor.toNextSibling());
                     }
+                } else if (localName.equals(WsaConstants.EN_MESSAGE_ID)) {
+                    wsaHeaders.add(new WsaMessageIDHeader(cursor.getTextValue()));
+                    messageId = true;
                 }
-            } else if (soapHeaderElement.getLocalName().equals(WsaConstants.EN_MESSAGE_ID)) {
-                wsaHeaders.add(new WsaMessageIDHeader(soapHeaderElement.getValue()));
-                messageId = true;
+            } finally {
+                cursor.dispose();
             }
         }
         if ((to || replyTo || messageId) && !action) {
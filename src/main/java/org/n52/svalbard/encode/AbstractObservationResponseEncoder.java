@@ -77,12 +77,17 @@ public abstract class AbstractObservationResponseEncoder<T extends AbstractObser
 
     @Override
     protected XmlObject create(T response) throws EncodingException {
+        return create(response, EncodingContext.empty());
+    }
+
+    @Override
+    protected XmlObject create(T response, EncodingContext context) throws EncodingException {
         final String responseFormat = response.getResponseFormat();
         // search for an O&M2 encoder for this response format
         ObservationEncoder<XmlObject, OmObservation> encoder = findObservationEncoder(responseFormat);
         if (encoder != null) {
             // encode the response as a GetObservationResponseDocument
-            return createResponse(encoder, response);
+            return createResponse(encoder, response, context);
         }
         // there is no O&M2 compatible observation encoder:
         // search for a encoder for the response and delegate
@@ -117,6 +122,28 @@ public abstract class AbstractObservationResponseEncoder<T extends AbstractObser
     protected abstract XmlObject createResponse(ObservationEncoder<XmlObject, OmObservation> encoder, T response)
             throws EncodingException;
 
+    /**
+     * Create a response using the provided O&M2 compatible observation encoder.
+     * Override this method in concrete response encoder if the encoding
+     * depends on the {@link EncodingContext}.
+     *
+     * @param encoder
+     *            the encoder
+     * @param response
+     *            the response
+     * @param context
+     *            the encoding context of the response
+     *
+     * @return the encoded response
+     *
+     * @throws EncodingException
+     *             if an error occurs
+     */
+    protected XmlObject createResponse(ObservationEncoder<XmlObject, OmObservation> encoder, T response,
+            EncodingContext context) throws EncodingException {
+        return createResponse(encoder, response);
+    }
+
     /**
      * Override this method in concrete response encoder if streaming is
      * supported for this operations.
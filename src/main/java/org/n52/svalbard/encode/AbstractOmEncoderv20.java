@@ -22,6 +22,9 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
+import javax.inject.Inject;
+
+import net.opengis.gml.x32.FeaturePropertyType;
 import net.opengis.om.x20.NamedValueType;
 import net.opengis.om.x20.OMObservationDocument;
 import net.opengis.om.x20.OMObservationPropertyType;
@@ -30,6 +33,7 @@ import net.opengis.om.x20.OMProcessPropertyType;
 import net.opengis.om.x20.TimeObjectPropertyType;
 
 import org.apache.xmlbeans.XmlBoolean;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlInteger;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlOptions;
@@ -83,18 +87,39 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractOmEncoderv20.class);
 
+    private EncodedFragmentCache fragmentCache;
+
+    @Inject
+    public void setFragmentCache(EncodedFragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * Get the cache for encoded features used by the stream writers
+     *
+     * @return the cache
+     */
+    public EncodedFragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
     /**
      * Method to create the om:result element content
      *
      * @param sosObservation
      *            SosObservation to be encoded
+     * @param context
+     *            the context that carries the {@link GmlIdAllocator} of the
+     *            response
      * @return XML encoded result object, e.g a gml:MeasureType
      * @throws EncodingException
      *             if an error occurs
      */
-    protected abstract XmlObject createResult(OmObservation sosObservation) throws EncodingException;
+    protected abstract XmlObject createResult(OmObservation sosObservation, EncodingContext context)
+            throws EncodingException;
 
-    protected abstract XmlObject encodeResult(ObservationValue<?> observationValue) throws EncodingException;
+    protected abstract XmlObject encodeResult(ObservationValue<?> observationValue, EncodingContext context)
+            throws EncodingException;
 
     /**
      * Method to add the observation type to the om:Observation. Subclasses
@@ -133,7 +158,7 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
         if (element instanceof OmObservation) {
             encodedObject = encodeOmObservation((OmObservation) element, additionalValues);
         } else if (element instanceof NamedValue) {
-            encodedObject = createNamedValue((NamedValue<?>) element);
+            encodedObject = createNamedValue((NamedValue<?>) element, additionalValues);
         } else if (element instanceof AbstractFeature) {
             encodedObject = encodeFeatureOfInterest((AbstractFeature) element);
         } else if (element instanceof SosProcedureDescription) {
@@ -191,32 +216,28 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
             throws EncodingException {
         OMObservationType xbObservation = createOmObservationType();
 
-        if (!sosObservation.isSetObservationID()) {
-            sosObservation.setObservationID(
-                    JavaHelper.generateID(Double.toString(System.currentTimeMillis() * Math.random())));
-        }
-        String observationID = sosObservation.getObservationID();
-        if (!sosObservation.isSetGmlID()) {
-            sosObservation.setGmlId("o_" + observationID);
-        }
+        GmlIdAllocator ids = GmlIdAllocator.get(context);
+        // the allocator is passed on, so every gml:id of the observation is unique within the response
+        EncodingContext idContext = GmlIdAllocator.with(EncodingContext.empty(), ids);
         // set a unique gml:id
-        xbObservation.setId(generateObservationGMLId());
-        if (!sosObservation.isSetObservationID()) {
-            sosObservation.setObservationID(xbObservation.getId().replace("o_", ""));
+        xbObservation.setId(ids.allocate(sosObservation));
+        if (!sosObservation.isSetGmlID()) {
+            sosObservation.setGmlId(xbObservation.getId());
         }
 
+        ResponseReferenceRegistry references = ResponseReferenceRegistry.of(context);
         setObservationIdentifier(sosObservation, xbObservation);
         setDescription(sosObservation, xbObservation);
         setObservationType(sosObservation, xbObservation);
-        setPhenomenonTime(sosObservation, xbObservation);
-        setResultTime(sosObservation, xbObservation);
-        setValidTime(sosObservation, xbObservation);
-        setProcedure(sosObservation, xbObservation);
-        setParameter(sosObservation, xbObservation);
+        String phenomenonTimeHref = setPhenomenonTime(sosObservation, xbObservation, references, ids);
+        setResultTime(sosObservation, xbObservation, phenomenonTimeHref, idContext);
+        setValidTime(sosObservation, xbObservation, ids);
+        setProcedure(sosObservation, xbObservation, references, ids);
+        setParameter(sosObservation, xbObservation, idContext);
         setObservableProperty(sosObservation, xbObservation);
-        setFeatureOfInterest(sosObservation, xbObservation);
+        setFeatureOfInterest(sosObservation, xbObservation, references, ids);
         setResultQualities(xbObservation, sosObservation);
-        setResult(sosObservation, xbObservation);
+        setResult(sosObservation, xbObservation, idContext);
 
         if (context.has(XmlBeansEncodingFlags.PROPERTY_TYPE)) {
             return createObservationPropertyType(xbObservation);
@@ -246,8 +267,9 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
         }
     }
 
-    private void setResult(OmObservation observation, OMObservationType xb) throws EncodingException {
-        XmlObject result = createResult(observation);
+    private void setResult(OmObservation observation, OMObservationType xb, EncodingContext context)
+            throws EncodingException {
+        XmlObject result = createResult(observation, context);
         if (result != null) {
             xb.addNewResult().set(result);
         } else {
@@ -255,10 +277,23 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
         }
     }
 
-    private void setFeatureOfInterest(OmObservation observation, OMObservationType xb) throws EncodingException {
+    private void setFeatureOfInterest(OmObservation observation, OMObservationType xb,
+            ResponseReferenceRegistry references, GmlIdAllocator ids) throws EncodingException {
         AbstractFeature foi = observation.getObservationConstellation().getFeatureOfInterest();
-        XmlObject xbFoi = encodeFeatureOfInterest(foi);
+        String href = references == null ? null : references.getFeatureReference(foi);
+        if (href != null) {
+            FeaturePropertyType xbFoi = xb.addNewFeatureOfInterest();
+            xbFoi.setHref(href);
+            if (foi.isSetName() && foi.getFirstName().isSetValue()) {
+                xbFoi.setTitle(foi.getFirstName().getValue());
+            }
+            return;
+        }
+        XmlObject xbFoi = encodeFeatureOfInterest(foi, ids);
         xb.addNewFeatureOfInterest().set(xbFoi);
+        if (references != null) {
+            references.addFeature(foi, xbFoi);
+        }
     }
 
     private void setObservationIdentifier(OmObservation observation, OMObservationType xb) throws EncodingException {
@@ -274,29 +309,102 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
         addObservationType(xb, observation.getObservationConstellation().getObservationType());
     }
 
-    private void setPhenomenonTime(OmObservation observation, OMObservationType xb) throws EncodingException {
+    private String setPhenomenonTime(OmObservation observation, OMObservationType xb,
+            ResponseReferenceRegistry references, GmlIdAllocator ids) throws EncodingException {
         // set validTime
         Time phenomenonTime = observation.getPhenomenonTime();
+        String href = references == null ? null : references.getTimeReference(phenomenonTime);
+        if (href != null) {
+            xb.addNewPhenomenonTime().setHref(href);
+            return href;
+        }
         if (phenomenonTime.getGmlId() == null) {
             phenomenonTime.setGmlId(OmConstants.PHENOMENON_TIME_NAME + "_" + observation.getObservationID());
         }
-        addPhenomenonTime(xb.addNewPhenomenonTime(), phenomenonTime);
+        String gmlId = ids.allocate(phenomenonTime.getGmlId());
+        addPhenomenonTime(xb.addNewPhenomenonTime(), phenomenonTime, gmlId);
+        if (references != null) {
+            references.addTime(phenomenonTime, gmlId);
+        }
+        return "#" + gmlId;
     }
 
-    private void setResultTime(OmObservation observation, OMObservationType xb) throws EncodingException {
+    private void setResultTime(OmObservation observation, OMObservationType xb, String phenomenonTimeHref,
+            EncodingContext context) throws EncodingException {
         // set resultTime
-        addResultTime(xb, observation);
+        addResultTime(xb, observation, phenomenonTimeHref, context);
     }
 
-    private void setProcedure(OmObservation observation, OMObservationType xb) throws EncodingException {
+    private void setProcedure(OmObservation observation, OMObservationType xb, ResponseReferenceRegistry references,
+            GmlIdAllocator ids) throws EncodingException {
         // set procedure
-        addProcedure(xb.addNewProcedure(), observation.getObservationConstellation().getProcedure());
+        AbstractFeature procedure = observation.getObservationConstellation().getProcedure();
+        OMProcessPropertyType xbProcedure = createProcedure(procedure, references, ids);
+        xb.addNewProcedure().set(xbProcedure);
+        addProcedureReference(procedure, xbProcedure, references);
+    }
+
+    /**
+     * Create the <code>om:procedure</code> property: a reference to an
+     * already encoded procedure of the response, the encoded procedure or a
+     * reference to the procedure identifier.
+     *
+     * @param procedure
+     *            the procedure
+     * @param references
+     *            the references of the response or <code>null</code>
+     * @param ids
+     *            the allocator of the response
+     *
+     * @return the property
+     *
+     * @throws EncodingException
+     *             if the procedure can not be encoded
+     */
+    public OMProcessPropertyType createProcedure(AbstractFeature procedure, ResponseReferenceRegistry references,
+            GmlIdAllocator ids) throws EncodingException {
+        OMProcessPropertyType xbProcedure = OMProcessPropertyType.Factory.newInstance(getXmlOptions());
+        String href = references == null ? null : references.getProcedureReference(procedure);
+        if (href != null) {
+            xbProcedure.setHref(href);
+            if (procedure.isSetName() && procedure.getFirstName().isSetValue()) {
+                xbProcedure.setTitle(procedure.getFirstName().getValue());
+            }
+        } else {
+            addProcedure(xbProcedure, procedure, GmlIdAllocator.with(EncodingContext.empty(), ids));
+        }
+        return xbProcedure;
     }
 
-    private void setParameter(OmObservation observation, OMObservationType xb) throws EncodingException {
+    /**
+     * Register the procedure if it was encoded inline.
+     *
+     * @param procedure
+     *            the procedure
+     * @param xbProcedure
+     *            the <code>om:procedure</code> property
+     * @param references
+     *            the references of the response or <code>null</code>
+     */
+    public static void addProcedureReference(AbstractFeature procedure, OMProcessPropertyType xbProcedure,
+            ResponseReferenceRegistry references) {
+        if (references != null && !xbProcedure.isSetHref()) {
+            XmlCursor cursor = xbProcedure.newCursor();
+            try {
+                if (cursor.toFirstChild()) {
+                    references.addProcedure(procedure, cursor.getObject());
+                }
+            } finally {
+                cursor.dispose();
+            }
+        }
+    }
+
+    private void setParameter(OmObservation observation, OMObservationType xb, EncodingContext context)
+            throws EncodingException {
         // set parameter
         if (observation.isSetParameter()) {
-            addParameter(xb, observation.getParameter());
+            addParameter(xb, observation.getParameter(), context);
         }
     }
 
@@ -310,7 +418,7 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
     private XmlObject encodeProcedureDescription(SosProcedureDescription<?> procedureDescription)
             throws EncodingException {
         OMProcessPropertyType procedure = OMProcessPropertyType.Factory.newInstance();
-        addProcedure(procedure, procedureDescription);
+        addProcedure(procedure, procedureDescription, null);
         return procedure;
     }
 
@@ -322,15 +430,17 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
      *            XML process type
      * @param procedureDescription
      *            SosProcedureDescription to be encoded
+     * @param context
+     *            the context that may carry the allocator of the response
      * @throws EncodingException
      *             If an error occurs
      */
-    private void addProcedure(OMProcessPropertyType procedure, AbstractFeature procedureDescription)
-            throws EncodingException {
+    private void addProcedure(OMProcessPropertyType procedure, AbstractFeature procedureDescription,
+            EncodingContext context) throws EncodingException {
         if (!(procedureDescription instanceof SosProcedureDescriptionUnknownType)) {
             // encode procedure or add reference
-            XmlObject encodedProcedure =
-                    encodeObjectToXml(procedureDescription.getDefaultElementEncoding(), procedureDescription);
+            XmlObject encodedProcedure = encodeObjectToXml(procedureDescription.getDefaultElementEncoding(),
+                    procedureDescription, context);
             if (encodedProcedure != null) {
                 procedure.set(encodedProcedure);
             } else {
@@ -356,8 +466,11 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
      * @throws EncodingException
      *             If an error occurs
      */
-    private void addPhenomenonTime(TimeObjectPropertyType timeObjectPropertyType, Time time) throws EncodingException {
+    private void addPhenomenonTime(TimeObjectPropertyType timeObjectPropertyType, Time time, String gmlId)
+            throws EncodingException {
         XmlObject xmlObject = encodeGML(time);
+        // the time may be shared with other observations, so the id is only changed in the encoding
+        XmlHelper.setGmlId(xmlObject, gmlId);
         XmlObject substitution = timeObjectPropertyType.addNewAbstractTimeObject()
                 .substitute(GmlHelper.getGml321QnameForITime(time), xmlObject.schemaType());
         substitution.set(xmlObject);
@@ -370,33 +483,39 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
      *            XML observation object
      * @param sosObservation
      *            SOS observation object
+     * @param phenomenonTimeHref
+     *            Reference to the encoded phenomenon time
+     * @param context
+     *            the context that carries the allocator of the response
      * @throws EncodingException
      *             If an error occurs.
      */
-    private void addResultTime(OMObservationType xbObs, OmObservation sosObservation) throws EncodingException {
+    private void addResultTime(OMObservationType xbObs, OmObservation sosObservation, String phenomenonTimeHref,
+            EncodingContext context) throws EncodingException {
         TimeInstant resultTime = sosObservation.getResultTime();
         Time phenomenonTime = sosObservation.getPhenomenonTime();
         // get result time from SOS result time representation
         if (sosObservation.getResultTime() != null) {
             if (resultTime.equals(phenomenonTime)) {
-                xbObs.addNewResultTime().setHref("#" + phenomenonTime.getGmlId());
+                xbObs.addNewResultTime().setHref(phenomenonTimeHref);
             } else {
-                addResultTime(xbObs, resultTime);
+                addResultTime(xbObs, resultTime, context);
             }
         }
         // if result time is not set, get result time from phenomenon time
         // representation
         else {
             if (phenomenonTime instanceof TimeInstant) {
-                xbObs.addNewResultTime().setHref("#" + phenomenonTime.getGmlId());
+                xbObs.addNewResultTime().setHref(phenomenonTimeHref);
             } else if (phenomenonTime instanceof TimePeriod) {
                 TimeInstant rsTime = new TimeInstant(((TimePeriod) sosObservation.getPhenomenonTime()).getEnd());
-                addResultTime(xbObs, rsTime);
+                addResultTime(xbObs, rsTime, context);
             }
         }
     }
 
-    private void setValidTime(OmObservation observation, OMObservationType xb) throws EncodingException {
+    private void setValidTime(OmObservation observation, OMObservationType xb, GmlIdAllocator ids)
+            throws EncodingException {
         Time validTime = observation.getValidTime();
         if (validTime == null) {
             return;
@@ -404,7 +523,9 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
         if (validTime.getGmlId() == null) {
             validTime.setGmlId(OmConstants.VALID_TIME_NAME + "_" + observation.getObservationID());
         }
-        xb.addNewValidTime().addNewTimePeriod().set(encodeGML(validTime));
+        XmlObject xbValidTime = encodeGML(validTime);
+        XmlHelper.setGmlId(xbValidTime, ids.allocate(validTime.getGmlId()));
+        xb.addNewValidTime().addNewTimePeriod().set(xbValidTime);
     }
 
     /**
@@ -414,21 +535,24 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
      *            XML observation object
      * @param time
      *            SOS result time representation
+     * @param context
+     *            the context that carries the allocator of the response
      * @throws EncodingException
      *             If an error occurs.
      */
-    private void addResultTime(OMObservationType xbObs, TimeInstant time) throws EncodingException {
-        XmlObject xmlObject = encodeGML(time);
+    private void addResultTime(OMObservationType xbObs, TimeInstant time, EncodingContext context)
+            throws EncodingException {
+        XmlObject xmlObject = encodeGML(time, context);
         xbObs.addNewResultTime().addNewTimeInstant().set(xmlObject);
         XmlObject substitution = xbObs.getResultTime().getTimeInstant()
                 .substitute(GmlHelper.getGml321QnameForITime(time), xmlObject.schemaType());
         substitution.set(xmlObject);
     }
 
-    private void addParameter(OMObservationType xbObservation, Collection<NamedValue<?>> parameter)
-            throws EncodingException {
+    private void addParameter(OMObservationType xbObservation, Collection<NamedValue<?>> parameter,
+            EncodingContext context) throws EncodingException {
         for (NamedValue<?> namedValue : parameter) {
-            xbObservation.addNewParameter().setNamedValue(createNamedValue(namedValue));
+            xbObservation.addNewParameter().setNamedValue(createNamedValue(namedValue, context));
         }
     }
 
@@ -447,6 +571,13 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
         return encodeGML(feature, additionalValues);
     }
 
+    private XmlObject encodeFeatureOfInterest(AbstractFeature feature, GmlIdAllocator ids) throws EncodingException {
+        EncodingContext additionalValues =
+                EncodingContext.empty().with(SosHelperValues.ENCODE_NAMESPACE, feature.getDefaultElementEncoding())
+                        .with(SosHelperValues.GML_ID_ALLOCATOR, ids);
+        return encodeGML(feature, additionalValues);
+    }
+
     /**
      * Method to encode a SOS NamedValue to an XmlBeans representation
      *
@@ -457,8 +588,24 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
      *             If an error occurs.
      */
     protected NamedValueType createNamedValue(NamedValue<?> sosNamedValue) throws EncodingException {
+        return createNamedValue(sosNamedValue, null);
+    }
+
+    /**
+     * Method to encode a SOS NamedValue to an XmlBeans representation
+     *
+     * @param sosNamedValue
+     *            SOS NamedValue
+     * @param context
+     *            the context that may carry the allocator of the response
+     * @return XmlBeans object
+     * @throws EncodingException
+     *             If an error occurs.
+     */
+    protected NamedValueType createNamedValue(NamedValue<?> sosNamedValue, EncodingContext context)
+            throws EncodingException {
         // encode value (any)
-        XmlObject namedValuePropertyValue = getNamedValueValue(sosNamedValue.getValue());
+        XmlObject namedValuePropertyValue = getNamedValueValue(sosNamedValue.getValue(), GmlIdAllocator.of(context));
         if (namedValuePropertyValue != null) {
             NamedValueType xbNamedValue = NamedValueType.Factory.newInstance(getXmlOptions());
             // encode gml:ReferenceType
@@ -476,13 +623,15 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
      *
      * @param value
      *            SOS value object
+     * @param ids
+     *            the allocator of the response or <code>null</code>
      * @return XmlBeans object
      * @throws EncodingException
      *             If an error occurs.
      */
-    private XmlObject getNamedValueValue(Value<?> value) throws EncodingException {
+    private XmlObject getNamedValueValue(Value<?> value, GmlIdAllocator ids) throws EncodingException {
         if (value.isSetValue()) {
-            return value.accept(new NamedValueValueEncoder());
+            return value.accept(new NamedValueValueEncoder(ids));
         }
         return null;
     }
@@ -545,12 +694,14 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
         return OMObservationType.Factory.newInstance();
     }
 
-    private static String generateObservationGMLId() {
-        return "o_" + JavaHelper.generateID(Double.toString(System.currentTimeMillis() * Math.random()));
-    }
-
     private class NamedValueValueEncoder implements ValueVisitor<XmlObject, EncodingException> {
 
+        private final GmlIdAllocator ids;
+
+        NamedValueValueEncoder(GmlIdAllocator ids) {
+            this.ids = ids;
+        }
+
         @Override
         public XmlObject visit(BooleanValue value) {
             XmlBoolean xbBoolean = XmlBoolean.Factory.newInstance();
@@ -623,8 +774,8 @@ public abstract class AbstractOmEncoderv20 extends AbstractXmlEncoder<XmlObject,
         }
 
         private EncodingContext createHelperValues(Value<?> value) {
-            return EncodingContext.of(XmlBeansEncodingFlags.PROPERTY_TYPE).with(SosHelperValues.GMLID,
-                    JavaHelper.generateID(value.toString()));
+            return GmlIdAllocator.with(EncodingContext.of(XmlBeansEncodingFlags.PROPERTY_TYPE)
+                    .with(SosHelperValues.GMLID, JavaHelper.generateID(value.toString())), ids);
         }
 
         private XmlObject defaultValue(Value<?> value) {
@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
 import org.n52.janmayen.NcName;
+import org.n52.svalbard.util.XmlHelper;
 
 /**
  * Abstract {@link AbstractXmlEncoder} class to encode OGC SensorML
@@ -476,4 +477,22 @@ public abstract class AbstractSensorMLEncoder extends AbstractXmlEncoder<XmlObje
         return NcName.makeValid(outputName);
     }
 
+    /**
+     * Make the gml:ids of the encoded description unique. If the description
+     * is encoded as part of a response, its ids are allocated in the response.
+     *
+     * @param encodedObject
+     *            the encoded description
+     * @param additionalValues
+     *            the context that may carry the allocator of the response
+     */
+    protected static void makeGmlIdsUnique(XmlObject encodedObject, EncodingContext additionalValues) {
+        GmlIdAllocator ids = GmlIdAllocator.of(additionalValues);
+        if (ids == null) {
+            XmlHelper.makeGmlIdsUnique(encodedObject.getDomNode());
+        } else {
+            XmlHelper.replaceGmlIds(encodedObject.getDomNode(), ids::allocate);
+        }
+    }
+
 }
@@ -16,10 +16,14 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.inject.Inject;
 import javax.xml.namespace.QName;
 import javax.xml.soap.Detail;
 import javax.xml.soap.SOAPConstants;
@@ -43,12 +47,17 @@ import org.n52.shetland.ogc.sos.exception.SosExceptionCode;
 import org.n52.shetland.ogc.swes.exception.SwesExceptionCode;
 import org.n52.shetland.w3c.W3CConstants;
 import org.n52.shetland.w3c.soap.SoapFault;
+import org.n52.shetland.w3c.soap.SoapHeader;
 import org.n52.shetland.w3c.soap.SoapHelper;
 import org.n52.shetland.w3c.soap.SoapResponse;
+import org.n52.shetland.w3c.wsa.WsaActionHeader;
+import org.n52.shetland.w3c.wsa.WsaConstants;
+import org.n52.shetland.w3c.wsa.WsaHeader;
 import org.n52.svalbard.OperationKey;
 import org.n52.svalbard.encode.exception.EncodingException;
 import org.n52.svalbard.encode.exception.NoEncoderForKeyException;
 import org.n52.svalbard.util.N52XmlHelper;
+import org.n52.svalbard.write.AbstractSoapXmlStreamWriter;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -69,6 +78,8 @@ public abstract class AbstractSoapEncoder<T, S> extends AbstractXmlEncoder<T, S>
 
     private final Set<EncoderKey> encoderKey;
 
+    private final ConcurrentMap<EncoderKey, Encoder<?, ?>> encoderCache = new ConcurrentHashMap<>();
+
     public AbstractSoapEncoder(String namespace) {
         this.encoderKey = ImmutableSet.<EncoderKey> of(new XmlEncoderKey(namespace, SoapResponse.class));
     }
@@ -78,6 +89,76 @@ public abstract class AbstractSoapEncoder<T, S> extends AbstractXmlEncoder<T, S>
         return Collections.unmodifiableSet(encoderKey);
     }
 
+    @Inject
+    @Override
+    public void setEncoderRepository(EncoderRepository encoderRepository) {
+        super.setEncoderRepository(encoderRepository);
+        this.encoderCache.clear();
+    }
+
+    /**
+     * Write the SOAP response with the stream writer. The writer gets the
+     * encoder repository, the XML options and the encoder cache of this
+     * encoder.
+     *
+     * @param writer
+     *            the stream writer for the SOAP version
+     * @param response
+     *            the SOAP response
+     * @param outputStream
+     *            the stream to write to
+     * @param encodingValues
+     *            the encoding values
+     *
+     * @throws EncodingException
+     *             if an error occurs
+     */
+    protected void write(AbstractSoapXmlStreamWriter writer, SoapResponse response, OutputStream outputStream,
+            EncodingValues encodingValues) throws EncodingException {
+        setActionHeaders(response);
+        writer.setEncoderRepository(getEncoderRepository());
+        writer.setXmlOptions(this::getXmlOptions);
+        writer.setEncoderCache(encoderCache);
+        writer.write(response, outputStream, encodingValues);
+    }
+
+    /**
+     * Set the value of the WS-Addressing action headers of the response.
+     *
+     * @param response
+     *            the SOAP response
+     */
+    protected void setActionHeaders(SoapResponse response) {
+        if (response.getHeader() != null) {
+            String action = getSoapAction(response);
+            for (SoapHeader header : response.getHeader()) {
+                if (WsaConstants.NS_WSA.equals(header.getNamespace()) && header instanceof WsaActionHeader) {
+                    ((WsaHeader) header).setValue(action);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the SOAP action URI of the response.
+     *
+     * @param response
+     *            the SOAP response
+     *
+     * @return the action URI or <code>null</code> for SOAP faults
+     */
+    protected String getSoapAction(SoapResponse response) {
+        if (response.getSoapFault() != null) {
+            return null;
+        } else if (response.getException() != null) {
+            if (response.getException().getExceptions().isEmpty()) {
+                return SosSoapConstants.RESP_ACTION_SOS;
+            }
+            return getExceptionActionURI(response.getException().getExceptions().get(0).getCode());
+        }
+        return response.getSoapAction();
+    }
+
     @Override
     public MediaType getContentType() {
         return MediaTypes.APPLICATION_SOAP_XML;
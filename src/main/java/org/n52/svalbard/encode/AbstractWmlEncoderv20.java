@@ -132,7 +132,7 @@ public abstract class AbstractWmlEncoderv20 extends AbstractOmEncoderv20
         if (abstractFeature instanceof OmObservation) {
             return super.encode(abstractFeature, additionalValues);
         } else {
-            return createMonitoringPoint(abstractFeature);
+            return createMonitoringPoint(abstractFeature, additionalValues);
         }
     }
 
@@ -223,17 +223,20 @@ public abstract class AbstractWmlEncoderv20 extends AbstractOmEncoderv20
      *
      * @param absFeature
      *            SOS feature
+     * @param additionalValues
+     *            the context that may carry the allocator of the response
      * @return WaterML 2.0 MonitoringPoint XML object
      * @throws EncodingException
      *             If an error occurs
      */
-    protected XmlObject createMonitoringPoint(AbstractFeature absFeature) throws EncodingException {
+    protected XmlObject createMonitoringPoint(AbstractFeature absFeature, EncodingContext additionalValues)
+            throws EncodingException {
         if (absFeature instanceof SamplingFeature) {
             SamplingFeature sampFeat = (SamplingFeature) absFeature;
             StringBuilder builder = new StringBuilder();
             builder.append("mp_");
             builder.append(JavaHelper.generateID(absFeature.getIdentifierCodeWithAuthority().getValue()));
-            absFeature.setGmlId(builder.toString());
+            absFeature.setGmlId(GmlIdAllocator.allocate(additionalValues, builder.toString()));
 
             MonitoringPointDocument monitoringPointDoc = MonitoringPointDocument.Factory.newInstance(getXmlOptions());
             if (sampFeat.isSetXml()) {
@@ -304,7 +307,8 @@ public abstract class AbstractWmlEncoderv20 extends AbstractOmEncoderv20
                     getEncoder(CodingHelper.getEncoderKey(GmlConstants.NS_GML_32, sampFeat.getGeometry()));
             if (encoder != null) {
                 XmlObject xmlObject = encoder.encode(sampFeat.getGeometry(),
-                        EncodingContext.of(SosHelperValues.GMLID, absFeature.getGmlId()));
+                        GmlIdAllocator.with(EncodingContext.of(SosHelperValues.GMLID, absFeature.getGmlId()),
+                                GmlIdAllocator.of(additionalValues)));
                 xbShape.addNewAbstractGeometry().set(xmlObject);
                 XmlHelper.substituteElement(xbShape.getAbstractGeometry(), xmlObject);
             } else {
@@ -342,9 +346,11 @@ public abstract class AbstractWmlEncoderv20 extends AbstractOmEncoderv20
             ObservationProcessType observationProcess =
                     ((ObservationProcessDocument) encodedObject).addNewObservationProcess();
             if (additionalValues.has(SosHelperValues.GMLID)) {
-                observationProcess.setId("process." + additionalValues.get(SosHelperValues.GMLID));
+                observationProcess.setId(GmlIdAllocator.allocate(additionalValues,
+                        "process." + additionalValues.get(SosHelperValues.GMLID)));
             } else {
-                observationProcess.setId("process." + JavaHelper.generateID(procedure.toString()));
+                observationProcess.setId(GmlIdAllocator.allocate(additionalValues,
+                        "process." + JavaHelper.generateID(procedure.toString())));
             }
 
             if (procedure.isSetName()) {
@@ -69,6 +69,8 @@ public abstract class AbstractXmlResponseEncoder<T> extends AbstractXmlEncoder<X
 
     private SchemaRepository schemaRepository;
 
+    private ResponseValidator responseValidator;
+
     /**
      * constructor
      *
@@ -126,6 +128,11 @@ public abstract class AbstractXmlResponseEncoder<T> extends AbstractXmlEncoder<X
         return schemaRepository;
     }
 
+    @Inject
+    public void setResponseValidator(ResponseValidator responseValidator) {
+        this.responseValidator = responseValidator;
+    }
+
     @Setting(CodingSettings.VALIDATE_RESPONSE)
     public void setValidate(boolean validate) {
         this.validate = validate;
@@ -153,10 +160,14 @@ public abstract class AbstractXmlResponseEncoder<T> extends AbstractXmlEncoder<X
         if (response == null) {
             throw new UnsupportedEncoderInputException(this, response);
         }
-        XmlObject xml = create(response);
+        XmlObject xml = create(response, additionalValues);
         setSchemaLocations(xml);
         if (validate) {
-            XmlHelper.validateDocument(xml, EncodingException::new);
+            if (responseValidator != null) {
+                responseValidator.validate(xml);
+            } else {
+                XmlHelper.validateDocument(xml, EncodingException::new);
+            }
         }
         return xml;
     }
@@ -194,6 +205,23 @@ public abstract class AbstractXmlResponseEncoder<T> extends AbstractXmlEncoder<X
      */
     protected abstract XmlObject create(T response) throws EncodingException;
 
+    /**
+     * Create an {@link XmlObject} from the {@link OwsServiceResponse} object.
+     * Override this method in concrete response encoder if the encoding
+     * depends on the {@link EncodingContext}.
+     *
+     * @param response
+     *            {@link OwsServiceResponse} to encode
+     * @param context
+     *            the encoding context
+     * @return XML encoded {@link OwsServiceResponse}
+     * @throws EncodingException
+     *             If an error occurs during the encoding
+     */
+    protected XmlObject create(T response, EncodingContext context) throws EncodingException {
+        return create(response);
+    }
+
     /**
      * Override this method in concrete response encoder if streaming is
      * supported for this operations.
@@ -16,8 +16,9 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
@@ -186,8 +187,10 @@ public class AqdEncoder extends AbstractXmlEncoder<XmlObject, Object>
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             new EReportingHeaderEncoder(element).write(baos);
-            return XmlObject.Factory.parse(baos.toString("UTF8"));
-        } catch (XMLStreamException | XmlException | UnsupportedEncodingException xmlse) {
+            // the streaming response writes the header directly, only the
+            // document encoding needs it as XmlObject
+            return XmlObject.Factory.parse(new ByteArrayInputStream(baos.toByteArray()));
+        } catch (XMLStreamException | XmlException | IOException xmlse) {
             throw new EncodingException("Error encoding response", xmlse);
         }
 
@@ -28,6 +28,7 @@ import org.joda.time.DateTimeZone;
 
 import org.n52.shetland.aqd.EReportingHeader;
 import org.n52.shetland.aqd.ReportObligationType;
+import org.n52.shetland.ogc.gml.AbstractFeature;
 import org.n52.shetland.ogc.gml.time.Time;
 import org.n52.shetland.ogc.gml.time.TimeInstant;
 import org.n52.shetland.ogc.gml.time.TimePeriod;
@@ -48,6 +49,8 @@ import org.n52.svalbard.encode.exception.EncodingException;
 import org.n52.svalbard.util.ReportObligations;
 import org.n52.svalbard.write.AqdGetObservationResponseXmlStreamWriter;
 
+import com.google.common.collect.Iterables;
+
 public class AqdGetObservationResponseEncoder extends AbstractAqdResponseEncoder<GetObservationResponse>
         implements StreamingDataEncoder {
 
@@ -116,17 +119,22 @@ public class AqdGetObservationResponseEncoder extends AbstractAqdResponseEncoder
         } catch (OwsExceptionReport ex) {
             throw new EncodingException(ex);
         }
-        featureCollection.addMember(eReportingHeader);
-        TimePeriod timePeriod = addToFeatureCollectionAndGetTimePeriod(featureCollection, response, eReportingHeader);
+        TimePeriod timePeriod = processObservationsAndGetTimePeriod(response, eReportingHeader);
         if (!timePeriod.isEmpty()) {
             eReportingHeader.setReportingPeriod(Referenceable.of((Time) timePeriod));
         }
+        // the members are taken from the observation collection while writing
+        Iterable<AbstractFeature> members = Iterables.concat(Collections.singleton(eReportingHeader),
+                Iterables.filter(response.getObservationCollection(), OmObservation::isSetPhenomenonTime));
         encodingValues.setEncodingNamespace(OmConstants.NS_OM_2);
         encodingValues.setAdditionalValues(encodingValues.getAdditionalValues()
                 .with(SosHelperValues.ENCODE_NAMESPACE, OmConstants.NS_OM_2)
                 .with(XmlBeansEncodingFlags.DOCUMENT));
         try {
-            new AqdGetObservationResponseXmlStreamWriter().write(featureCollection, outputStream, encodingValues);
+            AqdGetObservationResponseXmlStreamWriter writer =
+                    new AqdGetObservationResponseXmlStreamWriter(featureCollection, members);
+            writer.setEncoderRepository(getEncoderRepository());
+            writer.write(outputStream, encodingValues);
         } catch (XMLStreamException xmlse) {
             throw new EncodingException("Error while writing element to stream!", xmlse);
         }
@@ -136,15 +144,13 @@ public class AqdGetObservationResponseEncoder extends AbstractAqdResponseEncoder
         return ReportObligations.getFlow(response.getExtensions());
     }
 
-    private TimePeriod addToFeatureCollectionAndGetTimePeriod(FeatureCollection featureCollection,
-            GetObservationResponse response, EReportingHeader eReportingHeader) {
+    private TimePeriod processObservationsAndGetTimePeriod(GetObservationResponse response,
+            EReportingHeader eReportingHeader) {
         TimeInstant resultTime = new TimeInstant(new DateTime(DateTimeZone.UTC));
         TimePeriod timePeriod = new TimePeriod();
         int counter = 1;
         for (OmObservation observation : response.getObservationCollection()) {
-            getAqdHelper().processObservation(observation, timePeriod, resultTime, featureCollection, eReportingHeader,
-                    counter++);
-
+            getAqdHelper().processObservation(observation, timePeriod, resultTime, eReportingHeader, counter++);
         }
         return timePeriod;
     }
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.svalbard.CodingSettings;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+/**
+ * Cache for serialized capabilities documents. The documents only change with
+ * the content of the service, so the service passes a {@link Key} containing
+ * its content version and the parts of the request the document depends on
+ * as {@link org.n52.svalbard.SosHelperValues#CAPABILITIES_CACHE_KEY} and the
+ * encoder writes the cached bytes directly to the output.
+ *
+ * Every {@link Entry} has a strong ETag and a last modified date, which can be
+ * used to answer conditional requests without encoding anything. The number of
+ * cached documents is limited by {@link CodingSettings#CAPABILITIES_CACHE_SIZE},
+ * a value less than or equal to zero disables the cache. Documents of old
+ * content versions are never requested again and are evicted eventually.
+ *
+ * @since 1.0.0
+ */
+@Configurable
+public class CapabilitiesCache {
+
+    private volatile Cache<Key, Entry> cache;
+
+    @Setting(CodingSettings.CAPABILITIES_CACHE_SIZE)
+    public void setMaximumSize(int documents) {
+        this.cache = documents > 0 ? CacheBuilder.newBuilder().maximumSize(documents).build() : null;
+    }
+
+    /**
+     * @return if capabilities are cached
+     */
+    public boolean isEnabled() {
+        return this.cache != null;
+    }
+
+    /**
+     * Get the cached document.
+     *
+     * @param key
+     *            the key
+     *
+     * @return the document or <code>null</code>
+     */
+    public Entry get(Key key) {
+        Cache<Key, Entry> c = this.cache;
+        return c == null || key == null ? null : c.getIfPresent(key);
+    }
+
+    /**
+     * Cache the serialized document.
+     *
+     * @param key
+     *            the key
+     * @param bytes
+     *            the serialized document, must not be modified afterwards
+     *
+     * @return the cached entry
+     */
+    public Entry put(Key key, byte[] bytes) {
+        Entry entry = new Entry(bytes);
+        Cache<Key, Entry> c = this.cache;
+        if (c != null && key != null) {
+            c.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Remove all documents.
+     */
+    public void invalidateAll() {
+        Cache<Key, Entry> c = this.cache;
+        if (c != null) {
+            c.invalidateAll();
+        }
+    }
+
+    /**
+     * A serialized capabilities document.
+     */
+    public static final class Entry {
+        private final byte[] bytes;
+
+        private final String eTag;
+
+        private final DateTime lastModified;
+
+        private Entry(byte[] bytes) {
+            this.bytes = Objects.requireNonNull(bytes);
+            this.eTag = '"' + Hashing.sha256().hashBytes(bytes).toString() + '"';
+            this.lastModified = new DateTime(DateTimeZone.UTC);
+        }
+
+        /**
+         * @return the strong ETag of the document, including the quotes
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return the time the document was encoded
+         */
+        public DateTime getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the size of the document in bytes
+         */
+        public int getLength() {
+            return bytes.length;
+        }
+
+        /**
+         * Checks the value of an <code>If-None-Match</code> header.
+         *
+         * @param ifNoneMatch
+         *            the header value
+         *
+         * @return <code>true</code>, if the client has the current document
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String t = tag.trim();
+                if (t.equals("*") || t.equals(eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks the value of an <code>If-Modified-Since</code> header.
+         *
+         * @param ifModifiedSince
+         *            the header value
+         *
+         * @return <code>true</code>, if the document was not modified since
+         */
+        public boolean notModifiedSince(DateTime ifModifiedSince) {
+            // HTTP dates have a resolution of seconds
+            return ifModifiedSince != null
+                    && !lastModified.withMillisOfSecond(0).isAfter(ifModifiedSince);
+        }
+
+        /**
+         * Write the document to the stream.
+         *
+         * @param out
+         *            the stream
+         *
+         * @throws IOException
+         *             if the document can not be written
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Key of a capabilities document.
+     */
+    public static final class Key {
+
+        private final String contentVersion;
+
+        private final Set<String> sections;
+
+        private final String language;
+
+        private final String format;
+
+        private final boolean embedded;
+
+        private final int hashCode;
+
+        private Key(String contentVersion, Set<String> sections, String language, String format,
+                boolean embedded) {
+            this.contentVersion = Objects.requireNonNull(contentVersion);
+            this.sections = sections;
+            this.language = language;
+            this.format = format;
+            this.embedded = embedded;
+            this.hashCode = Objects.hash(contentVersion, sections, language, format, embedded);
+        }
+
+        public String getContentVersion() {
+            return contentVersion;
+        }
+
+        /**
+         * @param embedded
+         *            if the document is embedded in another document and is
+         *            written without XML declaration
+         *
+         * @return the key for the embedded or standalone document
+         */
+        Key embedded(boolean embedded) {
+            return embedded == this.embedded ? this
+                    : new Key(contentVersion, sections, language, format, embedded);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode && this.embedded == other.embedded
+                    && this.contentVersion.equals(other.contentVersion)
+                    && Objects.equals(this.sections, other.sections)
+                    && Objects.equals(this.language, other.language)
+                    && Objects.equals(this.format, other.format);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[contentVersion=%s, sections=%s, language=%s, format=%s, embedded=%s]",
+                    getClass().getSimpleName(), contentVersion, sections, language, format, embedded);
+        }
+
+        /**
+         * Create a new key.
+         *
+         * @param contentVersion
+         *            the version of the service content, has to change with
+         *            every change of the capabilities
+         * @param sections
+         *            the requested sections, <code>null</code> or empty for
+         *            all
+         * @param language
+         *            the requested language, may be <code>null</code>
+         * @param format
+         *            the response format, may be <code>null</code>
+         *
+         * @return the key
+         */
+        public static Key of(String contentVersion, Iterable<String> sections, String language, String format) {
+            Set<String> s = null;
+            if (sections != null && sections.iterator().hasNext()) {
+                s = new TreeSet<>();
+                sections.forEach(s::add);
+                s = Collections.unmodifiableSet(s);
+            }
+            return new Key(contentVersion, s, language, format, false);
+        }
+    }
+}
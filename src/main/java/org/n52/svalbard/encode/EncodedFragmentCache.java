@@ -0,0 +1,411 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.CodeType;
+import org.n52.shetland.ogc.gml.time.Time;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.shetland.ogc.ows.extension.Extension;
+import org.n52.shetland.ogc.sos.SosObservationOffering;
+import org.n52.shetland.ogc.sos.extension.SosObservationOfferingExtension;
+import org.n52.shetland.util.CRSHelper;
+import org.n52.svalbard.CodingSettings;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Cache for the serialized features and capabilities offerings of stream
+ * writers that is shared between requests. The fragments are immutable byte
+ * arrays, so a hit costs a single copy to the output.
+ *
+ * The size of the cache is limited by {@link CodingSettings#FRAGMENT_CACHE_SIZE}
+ * (in KiB), a value less than or equal to zero disables the cache. A fragment
+ * is cached by the identifier of the feature and the encoding flags. The key
+ * carries an immutable snapshot of the parts of the feature that are encoded
+ * as version, a fragment of another version is dropped on access. Changes of
+ * other parts (e.g. the feature was updated in the database) have to be
+ * announced by {@link #invalidate(String)}. Changed srsName prefixes drop all
+ * fragments.
+ *
+ * @since 1.0.0
+ */
+@Configurable
+public class EncodedFragmentCache {
+
+    private static final int KILOBYTE = 1024;
+
+    private volatile Cache<Key, Fragment> cache;
+
+    private volatile String srsNamePrefixUrn;
+
+    private volatile String srsNamePrefixUrl;
+
+    @Setting(CodingSettings.FRAGMENT_CACHE_SIZE)
+    public void setMaximumSize(int kilobytes) {
+        if (kilobytes > 0) {
+            this.cache = CacheBuilder.newBuilder().maximumWeight((long) kilobytes * KILOBYTE)
+                    .weigher((Key key, Fragment fragment) -> fragment.getSize()).build();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    @Setting(CodingSettings.SRS_NAME_PREFIX_URN)
+    public void setSrsNamePrefixUrn(String prefix) {
+        this.srsNamePrefixUrn = CRSHelper.asUrnPrefix(prefix);
+        invalidateAll();
+    }
+
+    @Setting(CodingSettings.SRS_NAME_PREFIX_URL)
+    public void setSrsNamePrefixUrl(String prefix) {
+        this.srsNamePrefixUrl = CRSHelper.asUrnPrefix(prefix);
+        invalidateAll();
+    }
+
+    /**
+     * @return if fragments are cached
+     */
+    public boolean isEnabled() {
+        return this.cache != null;
+    }
+
+    /**
+     * Get the cached fragment. If the cached fragment is of another version
+     * than the key, the feature changed and all its fragments are removed.
+     *
+     * @param key
+     *            the key
+     *
+     * @return the fragment or <code>null</code>
+     */
+    public Fragment get(Key key) {
+        Cache<Key, Fragment> c = this.cache;
+        if (c == null || key == null) {
+            return null;
+        }
+        Fragment fragment = c.getIfPresent(key);
+        if (fragment != null && !fragment.getVersion().equals(key.getVersion())) {
+            invalidate(key.getIdentifier());
+            return null;
+        }
+        return fragment;
+    }
+
+    /**
+     * Cache the already serialized fragment.
+     *
+     * @param key
+     *            the key
+     * @param bytes
+     *            the serialized fragment
+     * @param gmlId
+     *            the <code>gml:id</code> of the fragment, may be
+     *            <code>null</code>
+     */
+    public void put(Key key, byte[] bytes, String gmlId) {
+        put(key, bytes, gmlId, gmlId == null ? Collections.emptySet() : Collections.singleton(gmlId));
+    }
+
+    /**
+     * Cache the already serialized fragment.
+     *
+     * @param key
+     *            the key
+     * @param bytes
+     *            the serialized fragment, must not be modified afterwards
+     * @param gmlId
+     *            the <code>gml:id</code> of the fragment, may be
+     *            <code>null</code>
+     * @param gmlIds
+     *            all <code>gml:id</code>s contained in the fragment
+     */
+    public void put(Key key, byte[] bytes, String gmlId, Set<String> gmlIds) {
+        Cache<Key, Fragment> c = this.cache;
+        if (c != null && key != null && bytes != null) {
+            c.put(key, new Fragment(bytes, key.getVersion(), gmlId, gmlIds));
+        }
+    }
+
+    /**
+     * Remove all fragments of the feature.
+     *
+     * @param identifier
+     *            the identifier of the feature
+     */
+    public void invalidate(String identifier) {
+        Cache<Key, Fragment> c = this.cache;
+        if (c != null) {
+            c.asMap().keySet().removeIf(key -> Objects.equals(key.getIdentifier(), identifier));
+        }
+    }
+
+    /**
+     * Remove all fragments.
+     */
+    public void invalidateAll() {
+        Cache<Key, Fragment> c = this.cache;
+        if (c != null) {
+            c.invalidateAll();
+        }
+    }
+
+    /**
+     * Create the key for an encoded feature.
+     *
+     * @param feature
+     *            the feature
+     * @param flags
+     *            the target namespace, the encoding flags and everything else
+     *            the encoding depends on
+     *
+     * @return the key or <code>null</code> if the feature can not be cached
+     */
+    public Key featureKey(AbstractFeature feature, Object... flags) {
+        if (feature == null || !feature.isSetIdentifier()) {
+            return null;
+        }
+        List<Object> parts = new ArrayList<>();
+        parts.add(names(feature.getName()));
+        parts.add(feature.getDescription());
+        if (feature instanceof SamplingFeature) {
+            SamplingFeature samplingFeature = (SamplingFeature) feature;
+            // the parameters are not comparable by value
+            if (samplingFeature.isSetParameter()) {
+                return null;
+            }
+            parts.add(samplingFeature.getFeatureType());
+            parts.add(samplingFeature.getXml());
+            parts.add(snapshot(samplingFeature.getGeometry()));
+            parts.add(samplingFeature.isSetGeometry() ? samplingFeature.getGeometry().getSRID() : null);
+            List<String> sampledFeatures = new ArrayList<>();
+            if (samplingFeature.isSetSampledFeatures()) {
+                for (AbstractFeature sampledFeature : samplingFeature.getSampledFeatures()) {
+                    sampledFeatures.add(sampledFeature.getIdentifier());
+                }
+            }
+            parts.add(sampledFeatures);
+        }
+        return new Key(feature.getIdentifier(), parts, getFlags(flags));
+    }
+
+    /**
+     * Create the key for an encoded observation offering of the capabilities.
+     * Only offerings whose content changed have to be encoded again, the
+     * others are copied from the cache.
+     *
+     * @param offering
+     *            the offering
+     * @param flags
+     *            the element name and everything else the encoding depends
+     *            on
+     *
+     * @return the key or <code>null</code> if the offering can not be cached
+     */
+    public Key offeringKey(SosObservationOffering offering, Object... flags) {
+        if (offering == null || offering.getOffering() == null) {
+            return null;
+        }
+        List<Object> parts = new ArrayList<>();
+        parts.add(names(offering.getOffering().getName()));
+        parts.add(offering.getOffering().getDescription());
+        for (Extension<?> extension : offering.getExtensions().getExtensions()) {
+            // other extensions are encoded by their own encoders and are not comparable
+            if (!(extension.getValue() instanceof SosObservationOfferingExtension)) {
+                return null;
+            }
+            parts.add(((SosObservationOfferingExtension) extension.getValue()).getExtension());
+        }
+        parts.add(copy(offering.getProcedures()));
+        parts.add(copy(offering.getObservableProperties()));
+        parts.add(offering.isSetRelatedFeature() ? new HashMap<>(offering.getRelatedFeatures()) : null);
+        if (offering.isSetObservedArea() && offering.getObservedArea().isSetEnvelope()) {
+            // envelopes are mutable, the key must not change after it was cached
+            parts.add(new Envelope(offering.getObservedArea().getEnvelope()));
+            parts.add(offering.getObservedArea().getSrid());
+        }
+        addTime(parts, offering.getPhenomenonTime());
+        addTime(parts, offering.getResultTime());
+        parts.add(copy(offering.getResponseFormats()));
+        parts.add(copy(offering.getObservationTypes()));
+        parts.add(copy(offering.getFeatureOfInterestTypes()));
+        parts.add(copy(offering.getProcedureDescriptionFormats()));
+        return new Key(offering.getOffering().getIdentifier(), parts, getFlags(flags));
+    }
+
+    private List<Object> getFlags(Object... flags) {
+        List<Object> parts = new ArrayList<>(Arrays.asList(flags));
+        // the srsNames of the geometries and envelopes depend on the settings
+        parts.add(srsNamePrefixUrn);
+        parts.add(srsNamePrefixUrl);
+        return parts;
+    }
+
+    private static void addTime(List<Object> parts, Time time) {
+        // only time periods are part of the offering encoding
+        if (time instanceof TimePeriod) {
+            TimePeriod tp = (TimePeriod) time;
+            parts.add(tp.getStart());
+            parts.add(tp.getStartIndet());
+            parts.add(tp.getEnd());
+            parts.add(tp.getEndIndet());
+            parts.add(tp.getTimeFormat());
+        } else {
+            parts.add(null);
+        }
+    }
+
+    private static List<Object> copy(Collection<?> collection) {
+        return collection == null ? null : new ArrayList<>(collection);
+    }
+
+    private static List<String> names(Collection<CodeType> names) {
+        if (names == null) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(names.size());
+        for (CodeType name : names) {
+            values.add(name == null ? null : String.valueOf(name.getCodeSpace()) + '|' + name.getValue());
+        }
+        return values;
+    }
+
+    private static Geometry snapshot(Geometry geometry) {
+        // geometries are mutable, the key must not change after it was cached
+        return geometry == null ? null : (Geometry) geometry.clone();
+    }
+
+    /**
+     * Key of a cached fragment. Keys are equal if the identifier and the
+     * encoding flags are equal, the version is compared with the one of the
+     * cached fragment.
+     */
+    public static final class Key {
+
+        private final String identifier;
+
+        private final List<Object> version;
+
+        private final List<Object> flags;
+
+        private final int hashCode;
+
+        private Key(String identifier, List<Object> version, List<Object> flags) {
+            this.identifier = identifier;
+            this.version = Collections.unmodifiableList(version);
+            this.flags = Collections.unmodifiableList(flags);
+            this.hashCode = Objects.hash(identifier, flags);
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        List<Object> getVersion() {
+            return version;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode && Objects.equals(this.identifier, other.identifier)
+                    && Objects.equals(this.flags, other.flags);
+        }
+    }
+
+    /**
+     * A cached serialized fragment.
+     */
+    public static final class Fragment {
+
+        private final byte[] bytes;
+
+        private final List<Object> version;
+
+        private final String gmlId;
+
+        private final Set<String> gmlIds;
+
+        private Fragment(byte[] bytes, List<Object> version, String gmlId, Set<String> gmlIds) {
+            this.bytes = bytes;
+            this.version = version;
+            this.gmlId = gmlId;
+            this.gmlIds = ImmutableSet.copyOf(gmlIds);
+        }
+
+        /**
+         * @return a read only view of the serialized fragment
+         */
+        public ByteBuffer getBytes() {
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        List<Object> getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the serialized size of the fragment in bytes
+         */
+        int getSize() {
+            return bytes.length;
+        }
+
+        /**
+         * @return the <code>gml:id</code> of the fragment or <code>null</code>
+         */
+        public String getGmlId() {
+            return gmlId;
+        }
+
+        /**
+         * @return all <code>gml:id</code>s contained in the fragment, that
+         *         have to be reserved if the fragment is copied to a response
+         */
+        public Set<String> getGmlIds() {
+            return gmlIds;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.n52.shetland.ogc.om.OmObservation;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Cache for encoded observations that do not change anymore. The stream
+ * writers copy the cached bytes to the output and only encode an observation
+ * if it is not contained in the cache.
+ *
+ * @since 1.0.0
+ * @see TieredEncodedObservationCache
+ */
+public interface EncodedObservationCache {
+
+    /**
+     * @return if observations are cached
+     */
+    boolean isEnabled();
+
+    /**
+     * Checks if the observation can be cached, i.e. if it is not expected to
+     * change anymore.
+     *
+     * @param observation
+     *            the observation
+     *
+     * @return if the observation can be cached
+     */
+    boolean isCacheable(OmObservation observation);
+
+    /**
+     * Get the encoded observation.
+     *
+     * @param key
+     *            the key
+     *
+     * @return the encoded observation or <code>null</code>
+     */
+    Entry get(Key key);
+
+    /**
+     * Cache the encoded observation.
+     *
+     * @param key
+     *            the key
+     * @param encoded
+     *            the encoded observation, must not be modified afterwards
+     * @param gmlIds
+     *            the <code>gml:id</code>s contained in the encoded
+     *            observation
+     */
+    void put(Key key, byte[] encoded, Set<String> gmlIds);
+
+    /**
+     * Remove all encodings of the observation.
+     *
+     * @param observationId
+     *            the observation id
+     */
+    void invalidate(String observationId);
+
+    /**
+     * Remove all encoded observations.
+     */
+    void invalidateAll();
+
+    /**
+     * An encoded observation and the <code>gml:id</code>s it contains, which
+     * have to be reserved in the response the observation is copied to.
+     */
+    final class Entry {
+
+        private final ByteBuffer encoded;
+
+        private final Set<String> gmlIds;
+
+        public Entry(ByteBuffer encoded, Set<String> gmlIds) {
+            this.encoded = Objects.requireNonNull(encoded);
+            this.gmlIds = ImmutableSet.copyOf(gmlIds);
+        }
+
+        /**
+         * @return a new buffer with the encoded observation; the buffer shares
+         *         the content of the cache entry and must not be modified
+         */
+        public ByteBuffer getEncoded() {
+            // a read only buffer would hide the backing array and force the
+            // writers to copy the content
+            return encoded.duplicate();
+        }
+
+        /**
+         * @return the <code>gml:id</code>s contained in the encoded
+         *         observation
+         */
+        public Set<String> getGmlIds() {
+            return gmlIds;
+        }
+
+        /**
+         * @return the size of the encoded observation in bytes
+         */
+        public int size() {
+            return encoded.capacity();
+        }
+    }
+
+    /**
+     * Key of an encoded observation.
+     */
+    final class Key {
+
+        private final String observationId;
+
+        private final List<Object> parts;
+
+        private final int hashCode;
+
+        private Key(String observationId, List<Object> parts) {
+            this.observationId = Objects.requireNonNull(observationId);
+            this.parts = Collections.unmodifiableList(parts);
+            this.hashCode = Objects.hash(observationId, parts);
+        }
+
+        public String getObservationId() {
+            return observationId;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode && this.observationId.equals(other.observationId)
+                    && this.parts.equals(other.parts);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[observationId=%s, parts=%s]", getClass().getSimpleName(), observationId, parts);
+        }
+
+        /**
+         * Create a new key.
+         *
+         * @param observationId
+         *            the observation id
+         * @param parts
+         *            the response format, namespaces and encoding options
+         *            the encoding depends on
+         *
+         * @return the key
+         */
+        public static Key of(String observationId, Object... parts) {
+            return new Key(observationId, Arrays.asList(parts));
+        }
+    }
+}
@@ -47,6 +47,25 @@ public class EncodingValues {
         setAdditionalValues(additionalValues);
     }
 
+    /**
+     * Create a copy of the values.
+     *
+     * @param other the values to copy
+     */
+    public EncodingValues(EncodingValues other) {
+        this.additionalValues = other.additionalValues;
+        this.gmlId = other.gmlId;
+        this.existFoiInDoc = other.existFoiInDoc;
+        this.version = other.version;
+        this.encode = other.encode;
+        this.encodingNamespace = other.encodingNamespace;
+        this.encodeOwsExceptionOnly = other.encodeOwsExceptionOnly;
+        this.addSchemaLocation = other.addSchemaLocation;
+        this.indent = other.indent;
+        this.embedded = other.embedded;
+        this.encoder = other.encoder;
+    }
+
     /**
      * @return the additionalValues
      */
@@ -16,17 +16,30 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.janmayen.lifecycle.Destroyable;
+import org.n52.shetland.inspire.InspireObject;
 import org.n52.shetland.ogc.gml.CodeType;
 import org.n52.shetland.ogc.gml.GmlConstants;
 import org.n52.shetland.ogc.gml.time.TimePeriod;
 import org.n52.shetland.ogc.ows.OwsCapabilities;
 import org.n52.shetland.ogc.ows.OwsCapabilitiesExtension;
+import org.n52.shetland.ogc.ows.OwsOperationMetadataExtension;
 import org.n52.shetland.ogc.ows.OwsOperationsMetadata;
 import org.n52.shetland.ogc.ows.extension.Extension;
 import org.n52.shetland.ogc.ows.extension.StringBasedExtension;
@@ -40,11 +53,17 @@ import org.n52.shetland.ogc.sos.SosOffering;
 import org.n52.shetland.ogc.sos.extension.SosObservationOfferingExtension;
 import org.n52.shetland.w3c.SchemaLocation;
 import org.n52.shetland.w3c.W3CConstants;
+import org.n52.svalbard.CodingSettings;
+import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.Validation;
 import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.util.XmlHelper;
+import org.n52.svalbard.write.GetCapabilitiesResponseXmlStreamWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import net.opengis.sos.x20.CapabilitiesDocument;
 import net.opengis.sos.x20.CapabilitiesType;
@@ -63,14 +82,114 @@ import net.opengis.swes.x20.FeatureRelationshipType;
  *
  * @since 4.0.0
  */
-public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<GetCapabilitiesResponse> {
+@Configurable
+public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<GetCapabilitiesResponse>
+        implements Destroyable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GetCapabilitiesResponseEncoder.class);
 
+    private CapabilitiesCache capabilitiesCache;
+
+    private EncodedFragmentCache fragmentCache;
+
+    private int offeringEncodingThreads = 1;
+
+    private ExecutorService offeringEncodingPool;
+
     public GetCapabilitiesResponseEncoder() {
         super(SosConstants.Operations.GetCapabilities.name(), GetCapabilitiesResponse.class);
     }
 
+    @Inject
+    public void setCapabilitiesCache(CapabilitiesCache capabilitiesCache) {
+        this.capabilitiesCache = capabilitiesCache;
+    }
+
+    @Inject
+    public void setFragmentCache(EncodedFragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * @return the cache for the encoded offerings of a streamed capabilities
+     *         document
+     */
+    public EncodedFragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
+    /**
+     * Set the number of threads used to encode the offerings of a streamed
+     * capabilities document. A value of <code>1</code> encodes the offerings
+     * sequentially.
+     *
+     * @param threads
+     *            the number of threads
+     */
+    @Setting(CodingSettings.CAPABILITIES_ENCODING_THREADS)
+    public void setOfferingEncodingThreads(int threads) {
+        Validation.greaterZero("Capabilities encoding threads", threads);
+        ExecutorService old = this.offeringEncodingPool;
+        this.offeringEncodingPool = threads > 1 ? Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("capabilities-encoding-%d").setDaemon(true).build())
+                : null;
+        this.offeringEncodingThreads = threads;
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    /**
+     * @return the pool to encode offerings in parallel or <code>null</code>
+     */
+    public ExecutorService getOfferingEncodingPool() {
+        return offeringEncodingPool;
+    }
+
+    /**
+     * @return the number of threads used to encode offerings
+     */
+    public int getOfferingEncodingThreads() {
+        return offeringEncodingThreads;
+    }
+
+    @Override
+    public void destroy() {
+        if (this.offeringEncodingPool != null) {
+            this.offeringEncodingPool.shutdown();
+            this.offeringEncodingPool = null;
+        }
+    }
+
+    /**
+     * Writes the cached document if the service passed a
+     * {@link CapabilitiesCache.Key}, otherwise the document is encoded and
+     * cached.
+     */
+    @Override
+    protected void create(GetCapabilitiesResponse response, OutputStream outputStream,
+            EncodingValues encodingValues) throws EncodingException {
+        CapabilitiesCache.Key key = encodingValues.getAdditionalValues().get(SosHelperValues.CAPABILITIES_CACHE_KEY);
+        if (key == null || capabilitiesCache == null || !capabilitiesCache.isEnabled()) {
+            write(response, outputStream, encodingValues);
+            return;
+        }
+        key = key.embedded(encodingValues.isEmbedded());
+        try {
+            CapabilitiesCache.Entry entry = capabilitiesCache.get(key);
+            if (entry == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                write(response, out, new EncodingValues(encodingValues.getAdditionalValues())
+                        .setEmbedded(encodingValues.isEmbedded()));
+                entry = capabilitiesCache.put(key, out.toByteArray());
+            }
+            writeIndent(encodingValues.getIndent(), outputStream);
+            entry.writeTo(outputStream);
+        } catch (IOException ioe) {
+            throw new EncodingException("Error while writing element to stream!", ioe);
+        }
+    }
+
     @Override
     protected XmlObject create(GetCapabilitiesResponse response) throws EncodingException {
         CapabilitiesDocument doc = CapabilitiesDocument.Factory.newInstance(getXmlOptions());
@@ -87,6 +206,85 @@ public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<G
             }
         }
 
+        encodeHeader(response, xbCaps, true);
+        if (response.getCapabilities() instanceof SosCapabilities) {
+            SosCapabilities caps = (SosCapabilities) response.getCapabilities();
+            encodeContents(caps, xbCaps, response.getVersion());
+            encodeExtensions(caps, xbCaps);
+        }
+        return doc;
+    }
+
+    /**
+     * Encode everything but the contents and the extensions of the
+     * capabilities.
+     *
+     * @param response
+     *            the response
+     *
+     * @return the capabilities with version, service identification, service
+     *         provider, operations metadata and filter capabilities
+     *
+     * @throws EncodingException
+     *             if an error occurs
+     */
+    public CapabilitiesType createHeader(GetCapabilitiesResponse response) throws EncodingException {
+        return createHeader(response, true);
+    }
+
+    /**
+     * Encode everything but the contents and the extensions of the
+     * capabilities.
+     *
+     * @param response
+     *            the response
+     * @param extendedCapabilities
+     *            if the extended capabilities of the operations metadata
+     *            should be encoded
+     *
+     * @return the capabilities with version, service identification, service
+     *         provider, operations metadata and filter capabilities
+     *
+     * @throws EncodingException
+     *             if an error occurs
+     */
+    public CapabilitiesType createHeader(GetCapabilitiesResponse response, boolean extendedCapabilities)
+            throws EncodingException {
+        CapabilitiesType xbCaps = CapabilitiesDocument.Factory.newInstance(getXmlOptions()).addNewCapabilities();
+        encodeHeader(response, xbCaps, extendedCapabilities);
+        return xbCaps;
+    }
+
+    /**
+     * Get the serialized INSPIRE extended capabilities of the operations
+     * metadata, so they can be copied to a stream without encoding them again.
+     *
+     * @param response
+     *            the response
+     *
+     * @return the fragment or <code>null</code>, if the operations metadata
+     *         do not contain INSPIRE extended capabilities
+     *
+     * @throws EncodingException
+     *             if the extended capabilities can not be encoded
+     */
+    public InspireXmlEncoder.Fragment getExtendedCapabilitiesFragment(GetCapabilitiesResponse response)
+            throws EncodingException {
+        OwsOperationMetadataExtension extension = response.getCapabilities().getOperationsMetadata()
+                .flatMap(OwsOperationsMetadata::getExtension).orElse(null);
+        if (!(extension instanceof InspireObject)) {
+            return null;
+        }
+        Encoder<XmlObject, OwsOperationMetadataExtension> encoder =
+                getEncoder(getEncoderKey(extension.getNamespace(), extension));
+        if (encoder instanceof InspireXmlEncoder) {
+            return ((InspireXmlEncoder) encoder).getFragment((InspireObject) extension);
+        }
+        return null;
+    }
+
+    private void encodeHeader(GetCapabilitiesResponse response, CapabilitiesType xbCaps,
+            boolean extendedCapabilities) throws EncodingException {
         // set version.
         if (response.getCapabilities().getVersion() != null) {
             xbCaps.setVersion(response.getCapabilities().getVersion());
@@ -95,14 +293,61 @@ public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<G
         }
         encodeServiceIdentification(response.getCapabilities(), xbCaps);
         encodeServiceProvider(response.getCapabilities(), xbCaps);
-        encodeOperationsMetadata(response.getCapabilities(), xbCaps);
+        encodeOperationsMetadata(response.getCapabilities(), xbCaps, extendedCapabilities);
         if (response.getCapabilities() instanceof SosCapabilities) {
-            SosCapabilities caps = (SosCapabilities) response.getCapabilities();
-            encodeFilterCapabilities(caps, xbCaps);
-            encodeContents(caps, xbCaps, response.getVersion());
-            encodeExtensions(caps, xbCaps);
+            encodeFilterCapabilities((SosCapabilities) response.getCapabilities(), xbCaps);
+        }
+    }
+
+    /**
+     * Encode a single offering of the contents section.
+     *
+     * @param offering
+     *            the offering, has to be a valid observation offering
+     *
+     * @return the <code>swes:offering</code> element
+     *
+     * @throws EncodingException
+     *             if an error occurs
+     */
+    public Offering createOffering(SosObservationOffering offering) throws EncodingException {
+        Contents xbContents = CapabilitiesDocument.Factory.newInstance(getXmlOptions()).addNewCapabilities()
+                .addNewContents();
+        encodeObservationOffering(offering, xbContents.addNewContents());
+        renameContentsElementNames(xbContents);
+        return xbContents.getContents().getOfferingArray(0);
+    }
+
+    /**
+     * Encode a single extension of the capabilities.
+     *
+     * @param extension
+     *            the extension
+     *
+     * @return the <code>sos:extension</code> element
+     *
+     * @throws EncodingException
+     *             if the extension is not supported
+     */
+    public XmlObject createExtension(OwsCapabilitiesExtension extension) throws EncodingException {
+        XmlObject xml = CapabilitiesDocument.Factory.newInstance(getXmlOptions()).addNewCapabilities()
+                .addNewExtension();
+        setExtensions(xml, extension);
+        return xml;
+    }
+
+    private void write(GetCapabilitiesResponse response, OutputStream outputStream, EncodingValues encodingValues)
+            throws EncodingException {
+        if (response.isStatic()) {
+            super.create(response, outputStream, encodingValues);
+            return;
+        }
+        encodingValues.setEncoder(this);
+        try {
+            new GetCapabilitiesResponseXmlStreamWriter(response).write(outputStream, encodingValues);
+        } catch (XMLStreamException xmlse) {
+            throw new EncodingException("Error while writing element to stream!", xmlse);
         }
-        return doc;
     }
 
     private void setExtensions(XmlObject xml, OwsCapabilitiesExtension extension) throws EncodingException {
@@ -151,11 +396,9 @@ public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<G
             throws EncodingException {
         final ContentsType xbContType = xbContents.addNewContents();
 
-        int offeringCounter = 0; // for gml:id generation
         for (final SosObservationOffering offering : offerings) {
             if (offering.isValidObservationOffering()) {
-                ++offeringCounter;
-                encodeObservationOffering(offering, offeringCounter, xbContType);
+                encodeObservationOffering(offering, xbContType);
 
             }
         }
@@ -242,10 +485,16 @@ public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<G
         }
     }
 
-    private void encodeOperationsMetadata(OwsCapabilities caps, CapabilitiesType xbCaps) throws EncodingException {
+    private void encodeOperationsMetadata(OwsCapabilities caps, CapabilitiesType xbCaps,
+            boolean extendedCapabilities) throws EncodingException {
         if (caps.getOperationsMetadata().map(OwsOperationsMetadata::getOperations).filter(x -> !x.isEmpty())
                 .isPresent()) {
-            xbCaps.addNewOperationsMetadata().set(encodeOws(caps.getOperationsMetadata().get()));
+            OwsOperationsMetadata operationsMetadata = caps.getOperationsMetadata().get();
+            if (!extendedCapabilities && operationsMetadata.getExtension().isPresent()) {
+                operationsMetadata = new OwsOperationsMetadata(operationsMetadata.getOperations(),
+                        operationsMetadata.getParameters(), operationsMetadata.getConstraints(), null);
+            }
+            xbCaps.addNewOperationsMetadata().set(encodeOws(operationsMetadata));
         }
     }
 
@@ -269,8 +518,8 @@ public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<G
         }
     }
 
-    private void encodeObservationOffering(SosObservationOffering offering, int offeringCounter,
-            ContentsType xbContType) throws EncodingException {
+    private void encodeObservationOffering(SosObservationOffering offering, ContentsType xbContType)
+            throws EncodingException {
         final ObservationOfferingType xbObsOff = ObservationOfferingType.Factory.newInstance(getXmlOptions());
 
         SosOffering sosOffering = offering.getOffering();
@@ -290,8 +539,8 @@ public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<G
         encodeObservableProperties(offering, xbObsOff);
         encodeRelatedFeatures(offering, xbObsOff);
         encodeObservedArea(offering, xbObsOff);
-        encodePhenomenonTime(offering, offeringCounter, xbObsOff);
-        encodeResultTime(offering, offeringCounter, xbObsOff);
+        encodePhenomenonTime(offering, xbObsOff);
+        encodeResultTime(offering, xbObsOff);
         encodeResponseFormat(offering, xbObsOff);
         encodeObservationType(offering, xbObsOff);
         encodeFeatureOfInterestTypes(offering, xbObsOff);
@@ -345,14 +594,14 @@ public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<G
         }
     }
 
-    private void encodePhenomenonTime(SosObservationOffering offering, int offeringCounter,
-            ObservationOfferingType xbObsOff) throws EncodingException {
+    private void encodePhenomenonTime(SosObservationOffering offering, ObservationOfferingType xbObsOff)
+            throws EncodingException {
         // set up phenomenon time [0..1]
         if (offering.getPhenomenonTime() instanceof TimePeriod) {
             TimePeriod tp = (TimePeriod) offering.getPhenomenonTime();
             if (!tp.isEmpty()) {
-                tp.setGmlId(String.format("%s_%d", Sos2Constants.EN_PHENOMENON_TIME, offeringCounter));
                 XmlObject xmlObject = encodeGml(tp);
+                XmlHelper.setGmlId(xmlObject, getTimeGmlId(Sos2Constants.EN_PHENOMENON_TIME, offering));
                 xbObsOff.addNewPhenomenonTime().addNewTimePeriod().set(xmlObject);
                 xbObsOff.getPhenomenonTime().substitute(Sos2Constants.QN_SOS_PHENOMENON_TIME,
                         xbObsOff.getPhenomenonTime().schemaType());
@@ -360,14 +609,14 @@ public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<G
         }
     }
 
-    private void encodeResultTime(SosObservationOffering offering, int offeringCounter,
-            ObservationOfferingType xbObsOff) throws EncodingException {
+    private void encodeResultTime(SosObservationOffering offering, ObservationOfferingType xbObsOff)
+            throws EncodingException {
         // set resultTime [0..1]
         if (offering.getResultTime() instanceof TimePeriod) {
             TimePeriod tp = (TimePeriod) offering.getResultTime();
-            tp.setGmlId(String.format("%s_%d", Sos2Constants.EN_RESULT_TIME, offeringCounter));
             if (!tp.isEmpty()) {
                 XmlObject xmlObject = encodeGml(tp);
+                XmlHelper.setGmlId(xmlObject, getTimeGmlId(Sos2Constants.EN_RESULT_TIME, offering));
                 xbObsOff.addNewResultTime().addNewTimePeriod().set(xmlObject);
                 xbObsOff.getResultTime().substitute(Sos2Constants.QN_SOS_RESULT_TIME,
                         xbObsOff.getResultTime().schemaType());
@@ -375,6 +624,26 @@ public class GetCapabilitiesResponseEncoder extends AbstractSosResponseEncoder<G
         }
     }
 
+    /**
+     * The gml:ids of the offering times are derived from the offering
+     * identifier, so the encoding of an offering does not depend on its
+     * position in the contents. Characters that are not allowed in a NCName
+     * and the escape character <code>_</code> itself are escaped by their code
+     * point, so different identifiers never result in the same id.
+     */
+    static String getTimeGmlId(String time, SosObservationOffering offering) {
+        String identifier = offering.getOffering().getIdentifier();
+        StringBuilder id = new StringBuilder(time.length() + identifier.length() + 1).append(time).append('_');
+        identifier.codePoints().forEachOrdered(c -> {
+            if (c != '_' && (Character.isLetterOrDigit(c) || c == '-' || c == '.')) {
+                id.appendCodePoint(c);
+            } else {
+                id.append('_').append(Integer.toHexString(c)).append('_');
+            }
+        });
+        return id.toString();
+    }
+
     private void encodeResponseFormat(SosObservationOffering offering, ObservationOfferingType xbObsOff) {
         // set responseFormat [0..*]
         if (offering.isSetResponseFormats()) {
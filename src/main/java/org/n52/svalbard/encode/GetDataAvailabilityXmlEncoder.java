@@ -16,8 +16,10 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Set;
 
 import javax.xml.stream.XMLStreamException;
@@ -33,7 +35,6 @@ import org.n52.shetland.ogc.sos.gda.GetDataAvailabilityConstants;
 import org.n52.shetland.ogc.sos.gda.GetDataAvailabilityResponse;
 import org.n52.shetland.w3c.SchemaLocation;
 import org.n52.svalbard.encode.exception.EncodingException;
-import org.n52.svalbard.util.XmlHelper;
 import org.n52.svalbard.write.GetDataAvailabilityStreamWriter;
 
 import com.google.common.collect.Sets;
@@ -62,11 +63,23 @@ public class GetDataAvailabilityXmlEncoder extends AbstractResponseEncoder<GetDa
         try {
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             new GetDataAvailabilityStreamWriter(response.getVersion(), response.getDataAvailabilities()).write(out);
-            XmlObject encodedObject = XmlObject.Factory.parse(out.toString("UTF8"));
-            XmlHelper.validateDocument(encodedObject, EncodingException::new);
-            return encodedObject;
-        } catch (XMLStreamException | XmlException | UnsupportedEncodingException ex) {
+            // validated in encode(...) if requested
+            return XmlObject.Factory.parse(new ByteArrayInputStream(out.toByteArray()));
+        } catch (XMLStreamException | XmlException | IOException ex) {
             throw new EncodingException("Error encoding response", ex);
         }
     }
+
+    @Override
+    protected void create(GetDataAvailabilityResponse response, OutputStream outputStream,
+            EncodingValues encodingValues) throws EncodingException {
+        EncodingValues values = new EncodingValues(encodingValues);
+        values.setAddSchemaLocation(true);
+        try {
+            new GetDataAvailabilityStreamWriter(response.getVersion(), response.getDataAvailabilities())
+                    .write(outputStream, values);
+        } catch (XMLStreamException ex) {
+            throw new EncodingException("Error while writing element to stream!", ex);
+        }
+    }
 }
@@ -16,8 +16,12 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.OutputStream;
 import java.util.Set;
 
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.xmlbeans.XmlObject;
 import org.n52.shetland.ogc.gml.AbstractFeature;
 import org.n52.shetland.ogc.om.features.FeatureCollection;
@@ -26,8 +30,9 @@ import org.n52.shetland.ogc.sos.Sos2Constants;
 import org.n52.shetland.ogc.sos.SosConstants;
 import org.n52.shetland.ogc.sos.response.GetFeatureOfInterestResponse;
 import org.n52.shetland.w3c.SchemaLocation;
+import org.n52.svalbard.XmlBeansEncodingFlags;
 import org.n52.svalbard.encode.exception.EncodingException;
-import org.n52.svalbard.util.XmlHelper;
+import org.n52.svalbard.write.FeatureCollectionXmlStreamWriter;
 
 import com.google.common.collect.Sets;
 
@@ -42,6 +47,13 @@ import net.opengis.sos.x20.GetFeatureOfInterestResponseType;
  * @since 4.0.0
  */
 public class GetFeatureOfInterestResponseEncoder extends AbstractSosResponseEncoder<GetFeatureOfInterestResponse> {
+
+    private static final QName QN_GET_FEATURE_OF_INTEREST_RESPONSE = new QName(Sos2Constants.NS_SOS_20,
+            "GetFeatureOfInterestResponse", SosConstants.NS_SOS_PREFIX);
+
+    private static final QName QN_FEATURE_MEMBER =
+            new QName(Sos2Constants.NS_SOS_20, "featureMember", SosConstants.NS_SOS_PREFIX);
+
     public GetFeatureOfInterestResponseEncoder() {
         super(SosConstants.Operations.GetFeatureOfInterest.name(), GetFeatureOfInterestResponse.class);
     }
@@ -51,23 +63,46 @@ public class GetFeatureOfInterestResponseEncoder extends AbstractSosResponseEnco
         GetFeatureOfInterestResponseDocument document =
                 GetFeatureOfInterestResponseDocument.Factory.newInstance(getXmlOptions());
         GetFeatureOfInterestResponseType xbGetFoiResponse = document.addNewGetFeatureOfInterestResponse();
+        // the gml:ids of the members are unique within the response
+        EncodingContext ctx = GmlIdAllocator.enable(EncodingContext.empty());
         AbstractFeature feature = response.getAbstractFeature();
         if (feature instanceof FeatureCollection) {
             for (AbstractFeature f : (FeatureCollection) feature) {
-                addFeatureOfInterest(f, xbGetFoiResponse);
+                addFeatureOfInterest(f, xbGetFoiResponse, ctx);
             }
         } else if (feature instanceof SamplingFeature) {
-            addFeatureOfInterest(feature, xbGetFoiResponse);
+            addFeatureOfInterest(feature, xbGetFoiResponse, ctx);
         }
-        XmlHelper.makeGmlIdsUnique(document.getDomNode());
         return document;
     }
 
-    private void addFeatureOfInterest(AbstractFeature feature, GetFeatureOfInterestResponseType response)
-            throws EncodingException {
-        EncodingContext codingContext = EncodingContext.empty();
-        XmlObject encodeObjectToXml = encodeGml(codingContext, feature);
-        response.addNewFeatureMember().set(encodeObjectToXml);
+    @Override
+    protected void create(GetFeatureOfInterestResponse response, OutputStream outputStream,
+            EncodingValues encodingValues) throws EncodingException {
+        FeatureCollection featureCollection = new FeatureCollection();
+        AbstractFeature feature = response.getAbstractFeature();
+        if (feature instanceof FeatureCollection) {
+            featureCollection = (FeatureCollection) feature;
+        } else if (feature instanceof SamplingFeature) {
+            featureCollection.addMember(feature);
+        }
+        encodingValues.setEncoder(this);
+        // the members are not encoded as documents, the other values of the
+        // caller are passed on and the writer adds the gml:id allocator
+        EncodingContext context = encodingValues.getAdditionalValues();
+        encodingValues.setAdditionalValues(
+                context == null ? EncodingContext.empty() : context.without(XmlBeansEncodingFlags.DOCUMENT));
+        try {
+            new FeatureCollectionXmlStreamWriter(QN_GET_FEATURE_OF_INTEREST_RESPONSE, QN_FEATURE_MEMBER)
+                    .write(featureCollection, outputStream, encodingValues);
+        } catch (XMLStreamException xmlse) {
+            throw new EncodingException("Error while writing element to stream!", xmlse);
+        }
+    }
+
+    private void addFeatureOfInterest(AbstractFeature feature, GetFeatureOfInterestResponseType response,
+            EncodingContext ctx) throws EncodingException {
+        response.addNewFeatureMember().set(encodeGml(ctx, feature));
     }
 
     @Override
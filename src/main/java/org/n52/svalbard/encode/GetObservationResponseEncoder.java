@@ -19,6 +19,7 @@ package org.n52.svalbard.encode;
 import java.io.OutputStream;
 import java.util.Set;
 
+import javax.inject.Inject;
 import javax.xml.stream.XMLStreamException;
 
 import org.apache.xmlbeans.XmlObject;
@@ -30,9 +31,9 @@ import org.n52.shetland.ogc.sos.SosConstants;
 import org.n52.shetland.ogc.sos.response.AbstractStreaming;
 import org.n52.shetland.ogc.sos.response.GetObservationResponse;
 import org.n52.shetland.w3c.SchemaLocation;
+import org.n52.svalbard.XmlBeansEncodingFlags;
 import org.n52.svalbard.encode.exception.EncodingException;
 import org.n52.svalbard.encode.exception.UnsupportedEncoderInputException;
-import org.n52.svalbard.util.XmlHelper;
 import org.n52.svalbard.write.GetObservationResponseXmlStreamWriter;
 
 import com.google.common.collect.Sets;
@@ -49,10 +50,17 @@ import net.opengis.sos.x20.GetObservationResponseType;
  */
 public class GetObservationResponseEncoder extends AbstractObservationResponseEncoder<GetObservationResponse>
         implements StreamingDataEncoder {
+    private EncodedObservationCache observationCache;
+
     public GetObservationResponseEncoder() {
         super(SosConstants.Operations.GetObservation.name(), GetObservationResponse.class);
     }
 
+    @Inject
+    public void setObservationCache(EncodedObservationCache observationCache) {
+        this.observationCache = observationCache;
+    }
+
     @Override
     public Set<SchemaLocation> getConcreteSchemaLocations() {
         return Sets.newHashSet(Sos2Constants.SOS_GET_OBSERVATION_SCHEMA_LOCATION);
@@ -61,6 +69,17 @@ public class GetObservationResponseEncoder extends AbstractObservationResponseEn
     @Override
     protected XmlObject createResponse(ObservationEncoder<XmlObject, OmObservation> encoder,
             GetObservationResponse response) throws EncodingException {
+        return createResponse(encoder, response, EncodingContext.empty());
+    }
+
+    @Override
+    protected XmlObject createResponse(ObservationEncoder<XmlObject, OmObservation> encoder,
+            GetObservationResponse response, EncodingContext context) throws EncodingException {
+        // the observations are encoded as members of this document, the other
+        // values of the caller are passed on
+        EncodingContext members = context == null ? EncodingContext.empty()
+                : context.without(XmlBeansEncodingFlags.DOCUMENT);
+        EncodingContext ctx = GmlIdAllocator.enable(ResponseReferenceRegistry.enable(members));
         GetObservationResponseDocument doc = GetObservationResponseDocument.Factory.newInstance(getXmlOptions());
         GetObservationResponseType xbResponse = doc.addNewGetObservationResponse();
         if (!response.isSetMergeObservation()) {
@@ -70,49 +89,47 @@ public class GetObservationResponseEncoder extends AbstractObservationResponseEn
         // observation
         for (OmObservation o : response.getObservationCollection()) {
             if (encoder instanceof StreamingDataEncoder) {
-                xbResponse.addNewObservationData().addNewOMObservation().set(encoder.encode(o));
+                xbResponse.addNewObservationData().addNewOMObservation().set(encoder.encode(o, ctx));
             } else {
                 if (o.getValue() instanceof AbstractStreaming) {
                     processAbstractStreaming(xbResponse, (AbstractStreaming) o.getValue(), encoder,
-                            response.isSetMergeObservation());
+                            response.isSetMergeObservation(), ctx);
                 } else {
-                    xbResponse.addNewObservationData().addNewOMObservation().set(encoder.encode(o));
+                    xbResponse.addNewObservationData().addNewOMObservation().set(encoder.encode(o, ctx));
                 }
             }
         }
-        // in a single observation the gml:ids must be unique
-        if (response.getObservationCollection().size() > 1) {
-            XmlHelper.makeGmlIdsUnique(doc.getDomNode());
-        }
         return doc;
     }
 
     private void processAbstractStreaming(GetObservationResponseType xbResponse, AbstractStreaming value,
-            ObservationEncoder<XmlObject, OmObservation> encoder, boolean merge) throws EncodingException {
+            ObservationEncoder<XmlObject, OmObservation> encoder, boolean merge, EncodingContext ctx)
+            throws EncodingException {
         if (value instanceof StreamingValue) {
-            processStreamingValue(xbResponse, (StreamingValue<?>) value, encoder, merge);
+            processStreamingValue(xbResponse, (StreamingValue<?>) value, encoder, merge, ctx);
         } else {
             throw new UnsupportedEncoderInputException(this, value);
         }
     }
 
     private void processStreamingValue(GetObservationResponseType xbResponse, StreamingValue<?> streamingValue,
-            ObservationEncoder<XmlObject, OmObservation> encoder, boolean merge) throws EncodingException {
+            ObservationEncoder<XmlObject, OmObservation> encoder, boolean merge, EncodingContext ctx)
+            throws EncodingException {
         try {
             if (streamingValue.hasNextValue()) {
                 if (merge) {
                     for (OmObservation obs : streamingValue.mergeObservation()) {
-                        xbResponse.addNewObservationData().addNewOMObservation().set(encoder.encode(obs));
+                        xbResponse.addNewObservationData().addNewOMObservation().set(encoder.encode(obs, ctx));
                     }
                 } else {
                     do {
                         xbResponse.addNewObservationData().addNewOMObservation()
-                                .set(encoder.encode(streamingValue.nextSingleObservation()));
+                                .set(encoder.encode(streamingValue.nextSingleObservation(), ctx));
                     } while (streamingValue.hasNextValue());
                 }
             } else if (streamingValue.getValue() != null) {
                 xbResponse.addNewObservationData().addNewOMObservation()
-                        .set(encoder.encode(streamingValue.getValue().getValue()));
+                        .set(encoder.encode(streamingValue.getValue().getValue(), ctx));
             }
         } catch (OwsExceptionReport owse) {
             throw new EncodingException(owse);
@@ -125,7 +142,9 @@ public class GetObservationResponseEncoder extends AbstractObservationResponseEn
             throws EncodingException {
         try {
             encodingValues.setEncoder(this);
-            new GetObservationResponseXmlStreamWriter().write(response, outputStream, encodingValues);
+            GetObservationResponseXmlStreamWriter writer = new GetObservationResponseXmlStreamWriter();
+            writer.setObservationCache(observationCache);
+            writer.write(response, outputStream, encodingValues);
         } catch (XMLStreamException xmlse) {
             throw new EncodingException(xmlse);
         }
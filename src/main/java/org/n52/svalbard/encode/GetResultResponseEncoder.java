@@ -16,15 +16,20 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.OutputStream;
 import java.util.Set;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlString;
 import org.n52.shetland.ogc.sos.Sos2Constants;
 import org.n52.shetland.ogc.sos.SosConstants;
 import org.n52.shetland.ogc.sos.response.GetResultResponse;
 import org.n52.shetland.w3c.SchemaLocation;
+import org.n52.svalbard.SosHelperValues;
 import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.write.GetResultResponseXmlStreamWriter;
 
 import com.google.common.collect.Sets;
 
@@ -56,6 +61,20 @@ public class GetResultResponseEncoder extends AbstractSosResponseEncoder<GetResu
         return doc;
     }
 
+    @Override
+    protected void create(GetResultResponse response, OutputStream outputStream, EncodingValues encodingValues)
+            throws EncodingException {
+        Object resultValues = encodingValues.getAdditionalValues().get(SosHelperValues.RESULT_VALUES);
+        encodingValues.setEncoder(this);
+        try {
+            new GetResultResponseXmlStreamWriter(
+                    resultValues instanceof ResultValuesSource ? (ResultValuesSource) resultValues : null)
+                            .write(response, outputStream, encodingValues);
+        } catch (XMLStreamException xmlse) {
+            throw new EncodingException("Error while writing element to stream!", xmlse);
+        }
+    }
+
     @Override
     public Set<SchemaLocation> getConcreteSchemaLocations() {
         return Sets.newHashSet(Sos2Constants.SOS_GET_RESULT_SCHEMA_LOCATION);
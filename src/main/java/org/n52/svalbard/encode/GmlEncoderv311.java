@@ -142,7 +142,7 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
         if (element instanceof Time) {
             encodedObject = createTime((Time) element, additionalValues);
         } else if (element instanceof Geometry) {
-            encodedObject = createPosition((Geometry) element, additionalValues.get(SosHelperValues.GMLID));
+            encodedObject = createPosition((Geometry) element, additionalValues);
         } else if (element instanceof CategoryValue) {
             encodedObject = createReferenceTypeForCategroyValue((CategoryValue) element);
         } else if (element instanceof org.n52.shetland.ogc.gml.ReferenceType) {
@@ -154,7 +154,7 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
         } else if (element instanceof org.n52.shetland.ogc.gml.CodeType) {
             encodedObject = createCodeType((org.n52.shetland.ogc.gml.CodeType) element);
         } else if (element instanceof AbstractFeature) {
-            encodedObject = createFeature((AbstractFeature) element);
+            encodedObject = createFeature((AbstractFeature) element, GmlIdAllocator.of(additionalValues));
         } else if (element instanceof ReferencedEnvelope) {
             encodedObject = createEnvelope((ReferencedEnvelope) element);
         } else {
@@ -166,17 +166,18 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
 
     private XmlObject createTime(Time time, EncodingContext additionalValues) throws EncodingException {
         if (time != null) {
+            GmlIdAllocator ids = GmlIdAllocator.of(additionalValues);
             if (time instanceof TimeInstant) {
                 if (additionalValues.has(XmlBeansEncodingFlags.DOCUMENT)) {
-                    return createTimeInstantDocument((TimeInstant) time);
+                    return createTimeInstantDocument((TimeInstant) time, ids);
                 } else {
-                    return createTimeInstantType((TimeInstant) time, null);
+                    return createTimeInstantType((TimeInstant) time, null, ids);
                 }
             } else if (time instanceof TimePeriod) {
                 if (additionalValues.has(XmlBeansEncodingFlags.DOCUMENT)) {
-                    return createTimePeriodDocument((TimePeriod) time);
+                    return createTimePeriodDocument((TimePeriod) time, ids);
                 } else {
-                    return createTimePeriodType((TimePeriod) time, null);
+                    return createTimePeriodType((TimePeriod) time, null, ids);
                 }
             } else {
                 throw new UnsupportedEncoderInputException(this, time);
@@ -185,9 +186,9 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
         return null;
     }
 
-    private XmlObject createTimePeriodDocument(TimePeriod time) throws EncodingException {
+    private XmlObject createTimePeriodDocument(TimePeriod time, GmlIdAllocator ids) throws EncodingException {
         TimePeriodDocument timePeriodDoc = TimePeriodDocument.Factory.newInstance(getXmlOptions());
-        createTimePeriodType(time, timePeriodDoc.addNewTimePeriod());
+        createTimePeriodType(time, timePeriodDoc.addNewTimePeriod(), ids);
         return timePeriodDoc;
     }
 
@@ -197,20 +198,22 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
      * @param timePeriod
      *            SOS time object
      * @param timePeriodType
+     * @param ids
+     *            the allocator of the response or <code>null</code>
      * @return XML TimePeriod
      *
      *
      * @throws EncodingException
      *             * if an error occurs.
      */
-    private TimePeriodType createTimePeriodType(TimePeriod timePeriod, TimePeriodType timePeriodType)
-            throws EncodingException {
+    private TimePeriodType createTimePeriodType(TimePeriod timePeriod, TimePeriodType timePeriodType,
+            GmlIdAllocator ids) throws EncodingException {
         try {
             if (timePeriodType == null) {
                 timePeriodType = TimePeriodType.Factory.newInstance(getXmlOptions());
             }
             if (timePeriod.getGmlId() != null && !timePeriod.getGmlId().isEmpty()) {
-                timePeriodType.setId(timePeriod.getGmlId());
+                timePeriodType.setId(ids == null ? timePeriod.getGmlId() : ids.allocate(timePeriod.getGmlId()));
             }
             timePeriodType.setBeginPosition(createTimePositionType(timePeriod.getStartTimePosition()));
             timePeriodType.setEndPosition(createTimePositionType(timePeriod.getEndTimePosition()));
@@ -221,9 +224,9 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
         }
     }
 
-    private XmlObject createTimeInstantDocument(TimeInstant time) {
+    private XmlObject createTimeInstantDocument(TimeInstant time, GmlIdAllocator ids) {
         TimeInstantDocument timeInstantDoc = TimeInstantDocument.Factory.newInstance(getXmlOptions());
-        createTimeInstantType(time, timeInstantDoc.addNewTimeInstant());
+        createTimeInstantType(time, timeInstantDoc.addNewTimeInstant(), ids);
         return timeInstantDoc;
     }
 
@@ -233,16 +236,19 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
      * @param timeInstant
      *            SOS time object
      * @param timeInstantType
+     * @param ids
+     *            the allocator of the response or <code>null</code>
      * @return XML TimeInstant
      *
      */
-    private TimeInstantType createTimeInstantType(TimeInstant timeInstant, TimeInstantType timeInstantType) {
+    private TimeInstantType createTimeInstantType(TimeInstant timeInstant, TimeInstantType timeInstantType,
+            GmlIdAllocator ids) {
         // create time instant
         if (timeInstantType == null) {
             timeInstantType = TimeInstantType.Factory.newInstance(getXmlOptions());
         }
         if (timeInstant.isSetGmlId()) {
-            timeInstantType.setId(timeInstant.getGmlId());
+            timeInstantType.setId(ids == null ? timeInstant.getGmlId() : ids.allocate(timeInstant.getGmlId()));
         }
         timeInstantType.setTimePosition(createTimePositionType(timeInstant.getTimePosition()));
         return timeInstantType;
@@ -271,25 +277,27 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
         return xbTimePosition;
     }
 
-    private XmlObject createPosition(Geometry geom, String foiId) throws UnsupportedEncoderInputException {
+    private XmlObject createPosition(Geometry geom, EncodingContext additionalValues)
+            throws UnsupportedEncoderInputException {
+        String foiId = additionalValues.get(SosHelperValues.GMLID);
         if (geom instanceof Point) {
             PointType xbPoint = PointType.Factory.newInstance(getXmlOptions());
             if (foiId != null) {
-                xbPoint.setId("point_" + foiId);
+                xbPoint.setId(GmlIdAllocator.allocate(additionalValues, "point_" + foiId));
             }
             createPointFromJtsGeometry((Point) geom, xbPoint);
             return xbPoint;
         } else if (geom instanceof LineString) {
             LineStringType xbLineString = LineStringType.Factory.newInstance(getXmlOptions());
             if (foiId != null) {
-                xbLineString.setId("lineString_" + foiId);
+                xbLineString.setId(GmlIdAllocator.allocate(additionalValues, "lineString_" + foiId));
             }
             createLineStringFromJtsGeometry((LineString) geom, xbLineString);
             return xbLineString;
         } else if (geom instanceof Polygon) {
             PolygonType xbPolygon = PolygonType.Factory.newInstance(getXmlOptions());
             if (foiId != null) {
-                xbPolygon.setId("polygon_" + foiId);
+                xbPolygon.setId(GmlIdAllocator.allocate(additionalValues, "polygon_" + foiId));
             }
             createPolygonFromJtsGeometry((Polygon) geom, xbPolygon);
             return xbPolygon;
@@ -447,7 +455,8 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
         return measureType;
     }
 
-    private XmlObject createFeature(AbstractFeature sosAbstractFeature) throws EncodingException {
+    private XmlObject createFeature(AbstractFeature sosAbstractFeature, GmlIdAllocator ids)
+            throws EncodingException {
         if (sosAbstractFeature instanceof SamplingFeature) {
             SamplingFeature sampFeat = (SamplingFeature) sosAbstractFeature;
             if (sosAbstractFeature.isSetGmlID()) {
@@ -466,18 +475,19 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
                 StringBuilder builder = new StringBuilder();
                 builder.append("sf_");
                 builder.append(JavaHelper.generateID(sosAbstractFeature.getIdentifierCodeWithAuthority().getValue()));
-                sosAbstractFeature.setGmlId(builder.toString());
+                sosAbstractFeature.setGmlId(ids == null ? builder.toString() : ids.allocate(builder.toString()));
                 Encoder<XmlObject, SamplingFeature> encoder = getEncoder(SfConstants.NS_SA, sampFeat);
-                return encoder.encode(sampFeat);
+                return encoder.encode(sampFeat, GmlIdAllocator.with(EncodingContext.empty(), ids));
             }
         } else if (sosAbstractFeature instanceof FeatureCollection) {
-            return createFeatureCollection((FeatureCollection) sosAbstractFeature);
+            return createFeatureCollection((FeatureCollection) sosAbstractFeature, ids);
         }
         throw new UnsupportedEncoderInputException(this, sosAbstractFeature);
     }
 
     @SuppressFBWarnings("NP_NULL_ON_SOME_PATH")
-    private XmlObject createFeatureCollection(FeatureCollection sosFeatureCollection) throws EncodingException {
+    private XmlObject createFeatureCollection(FeatureCollection sosFeatureCollection, GmlIdAllocator ids)
+            throws EncodingException {
         Map<String, AbstractFeature> members = sosFeatureCollection.getMembers();
         XmlObject xmlObject = null;
         if (sosFeatureCollection.isSetMembers()) {
@@ -485,7 +495,7 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
                 for (Entry<String, AbstractFeature> entry : members.entrySet()) {
                     String member = entry.getKey();
                     if (members.get(member) instanceof SamplingFeature) {
-                        return createFeature((SamplingFeature) members.get(member));
+                        return createFeature((SamplingFeature) members.get(member), ids);
                     } else {
                         throw new EncodingException("No encoder found for featuretype");
                     }
@@ -497,11 +507,11 @@ public class GmlEncoderv311 extends AbstractXmlEncoder<XmlObject, Object> {
                 StringBuilder builder = new StringBuilder();
                 builder.append("sfc_");
                 builder.append(JavaHelper.generateID(Long.toString(System.currentTimeMillis())));
-                xbFeatCol.setId(builder.toString());
+                xbFeatCol.setId(ids == null ? builder.toString() : ids.allocate(builder.toString()));
                 for (Entry<String, AbstractFeature> entry : members.entrySet()) {
                     String member = entry.getKey();
                     if (members.get(member) instanceof SamplingFeature) {
-                        XmlObject xmlFeature = createFeature((SamplingFeature) members.get(member));
+                        XmlObject xmlFeature = createFeature((SamplingFeature) members.get(member), ids);
                         xbFeatCol.addNewFeatureMember().set(xmlFeature);
                     } else {
                         throw new EncodingException("No encoder found for featuretype");
@@ -16,12 +16,16 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
+import javax.xml.stream.XMLStreamException;
+
 import net.opengis.gml.x32.AbstractGeometryType;
 import net.opengis.gml.x32.AbstractRingPropertyType;
 import net.opengis.gml.x32.AbstractRingType;
@@ -55,6 +59,7 @@ import net.opengis.gml.x32.TimePositionType;
 import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -91,6 +96,7 @@ import org.n52.svalbard.util.CodingHelper;
 import org.n52.svalbard.util.JTSHelper;
 import org.n52.svalbard.util.OMHelper;
 import org.n52.svalbard.util.XmlHelper;
+import org.n52.svalbard.write.FeatureCollectionXmlStreamWriter;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Sets;
@@ -105,7 +111,8 @@ import com.vividsolutions.jts.geom.util.PolygonExtracter;
  *
  */
 @Configurable
-public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
+public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object>
+        implements StreamingEncoder<XmlObject, Object> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GmlEncoderv321.class);
 
@@ -150,6 +157,47 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
         return Sets.newHashSet(GmlConstants.GML_32_SCHEMAL_LOCATION);
     }
 
+    @Override
+    public boolean forceStreaming() {
+        return false;
+    }
+
+    @Override
+    public void encode(Object objectToEncode, OutputStream outputStream) throws EncodingException {
+        encode(objectToEncode, outputStream, new EncodingValues());
+    }
+
+    @Override
+    public void encode(Object objectToEncode, OutputStream outputStream, EncodingValues encodingValues)
+            throws EncodingException {
+        EncodingContext additionalValues = encodingValues.getAdditionalValues();
+        if (objectToEncode instanceof FeatureCollection && additionalValues.has(XmlBeansEncodingFlags.DOCUMENT)) {
+            // write the members one after another instead of building the
+            // whole collection
+            encodingValues.setEncoder(this);
+            encodingValues.setAdditionalValues(
+                    additionalValues.with(XmlBeansEncodingFlags.PROPERTY_TYPE).without(XmlBeansEncodingFlags.DOCUMENT));
+            try {
+                new FeatureCollectionXmlStreamWriter().write((FeatureCollection) objectToEncode, outputStream,
+                        encodingValues);
+            } catch (XMLStreamException xmlse) {
+                throw new EncodingException("Error while writing element to stream!", xmlse);
+            } finally {
+                encodingValues.setAdditionalValues(additionalValues);
+            }
+        } else {
+            XmlOptions xmlOptions = new XmlOptions(getXmlOptions());
+            if (encodingValues.isEmbedded()) {
+                xmlOptions.setSaveNoXmlDecl();
+            }
+            try {
+                encode(objectToEncode, additionalValues).save(outputStream, xmlOptions);
+            } catch (IOException ioe) {
+                throw new EncodingException("Error while writing element to stream!", ioe);
+            }
+        }
+    }
+
     @Override
     public XmlObject encode(final Object element, final EncodingContext additionalValues) throws EncodingException {
         XmlObject encodedObject = null;
@@ -189,7 +237,8 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
         } else if (feature instanceof SamplingFeature) {
             return createFeature(feature, additionalValues);
         } else if (feature.isSetDefaultElementEncoding()) {
-            return encodeObjectToXml(feature.getDefaultElementEncoding(), feature);
+            return encodeObjectToXml(feature.getDefaultElementEncoding(), feature,
+                    GmlIdAllocator.with(EncodingContext.empty(), GmlIdAllocator.of(additionalValues)));
         } else if (additionalValues.has(SosHelperValues.ENCODE_NAMESPACE)) {
             return encodeObjectToXml(additionalValues.get(SosHelperValues.ENCODE_NAMESPACE), feature,
                     additionalValues);
@@ -203,7 +252,7 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
         final FeatureCollectionDocument featureCollectionDoc =
                 FeatureCollectionDocument.Factory.newInstance(getXmlOptions());
         final FeatureCollectionType featureCollection = featureCollectionDoc.addNewFeatureCollection();
-        featureCollection.setId(element.getGmlId());
+        featureCollection.setId(GmlIdAllocator.allocate(additionalValues, element.getGmlId()));
         boolean document = additionalValues.has(XmlBeansEncodingFlags.DOCUMENT);
         EncodingContext ctx = additionalValues.with(XmlBeansEncodingFlags.PROPERTY_TYPE)
                 .without(XmlBeansEncodingFlags.DOCUMENT);
@@ -262,7 +311,9 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
                     } else {
                         namespace = OMHelper.getNamespaceForFeatureType(samplingFeature.getFeatureType());
                     }
-                    final XmlObject encodedXmlObject = encodeObjectToXml(namespace, samplingFeature);
+                    // keep the gml:ids of the feature unique within the response
+                    final XmlObject encodedXmlObject = encodeObjectToXml(namespace, samplingFeature,
+                            GmlIdAllocator.with(EncodingContext.empty(), GmlIdAllocator.of(additionalValues)));
 
                     if (encodedXmlObject != null) {
                         return encodedXmlObject;
@@ -311,42 +362,44 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
             TimeInstant instant = (TimeInstant) time;
 
             if (additionalValues.has(XmlBeansEncodingFlags.DOCUMENT)) {
-                return createTimeInstantDocument(instant);
+                return createTimeInstantDocument(instant, additionalValues);
             }
 
             if (additionalValues.has(XmlBeansEncodingFlags.PROPERTY_TYPE)) {
-                return createTimeInstantPropertyType(instant);
+                return createTimeInstantPropertyType(instant, additionalValues);
             }
 
-            return createTimeInstantType(instant);
+            return createTimeInstantType(instant, additionalValues);
         }
 
         if (time instanceof TimePeriod) {
             TimePeriod period = (TimePeriod) time;
 
             if (additionalValues.has(XmlBeansEncodingFlags.DOCUMENT)) {
-                return createTimePeriodDocument(period);
+                return createTimePeriodDocument(period, additionalValues);
             }
 
             if (additionalValues.has(XmlBeansEncodingFlags.PROPERTY_TYPE)) {
-                return createTimePeriodPropertyType(period);
+                return createTimePeriodPropertyType(period, additionalValues);
             }
 
-            return createTimePeriodType(period);
+            return createTimePeriodType(period, additionalValues);
         }
 
         throw new UnsupportedEncoderInputException(this, time);
     }
 
-    private XmlObject createTimePeriodDocument(TimePeriod time) throws EncodingException {
+    private XmlObject createTimePeriodDocument(TimePeriod time, EncodingContext additionalValues)
+            throws EncodingException {
         TimePeriodDocument timePeriodDoc = TimePeriodDocument.Factory.newInstance(getXmlOptions());
-        createTimePeriodType(time, timePeriodDoc.addNewTimePeriod());
+        createTimePeriodType(time, timePeriodDoc.addNewTimePeriod(), additionalValues);
         return timePeriodDoc;
     }
 
-    private XmlObject createTimePeriodPropertyType(TimePeriod time) throws EncodingException {
+    private XmlObject createTimePeriodPropertyType(TimePeriod time, EncodingContext additionalValues)
+            throws EncodingException {
         TimePeriodPropertyType timePeriodPropertyType = TimePeriodPropertyType.Factory.newInstance(getXmlOptions());
-        createTimePeriodType(time, timePeriodPropertyType.addNewTimePeriod());
+        createTimePeriodType(time, timePeriodPropertyType.addNewTimePeriod(), additionalValues);
         return timePeriodPropertyType;
     }
 
@@ -356,13 +409,19 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
      * @param timePeriod
      *            SOS time object
      * @param timePeriodType
+     * @param additionalValues
+     *            the context that may carry the allocator of the response
      *
      * @throws EncodingException
      *             * if an error occurs.
      */
-    private void createTimePeriodType(TimePeriod timePeriod, TimePeriodType timePeriodType) throws EncodingException {
+    private void createTimePeriodType(TimePeriod timePeriod, TimePeriodType timePeriodType,
+            EncodingContext additionalValues) throws EncodingException {
+        GmlIdAllocator ids = GmlIdAllocator.of(additionalValues);
         if (timePeriod.getGmlId() != null && !timePeriod.getGmlId().isEmpty()) {
-            timePeriodType.setId(timePeriod.getGmlId());
+            timePeriodType.setId(ids == null ? timePeriod.getGmlId() : ids.allocate(timePeriod.getGmlId()));
+        } else if (ids != null) {
+            timePeriodType.setId(ids.next("tp_"));
         } else {
             timePeriodType.setId("tp_" + JavaHelper.generateID(timePeriod.toString() + System.currentTimeMillis()));
         }
@@ -370,21 +429,24 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
         timePeriodType.setEndPosition(createTimePositionType(timePeriod.getEndTimePosition()));
     }
 
-    private TimePeriodType createTimePeriodType(TimePeriod timePeriod) throws EncodingException {
+    private TimePeriodType createTimePeriodType(TimePeriod timePeriod, EncodingContext additionalValues)
+            throws EncodingException {
         TimePeriodType timePeriodType = TimePeriodType.Factory.newInstance(getXmlOptions());
-        createTimePeriodType(timePeriod, timePeriodType);
+        createTimePeriodType(timePeriod, timePeriodType, additionalValues);
         return timePeriodType;
     }
 
-    private XmlObject createTimeInstantDocument(TimeInstant time) throws EncodingException {
+    private XmlObject createTimeInstantDocument(TimeInstant time, EncodingContext additionalValues)
+            throws EncodingException {
         TimeInstantDocument timeInstantDoc = TimeInstantDocument.Factory.newInstance(getXmlOptions());
-        createTimeInstantType(time, timeInstantDoc.addNewTimeInstant());
+        createTimeInstantType(time, timeInstantDoc.addNewTimeInstant(), additionalValues);
         return timeInstantDoc;
     }
 
-    private XmlObject createTimeInstantPropertyType(TimeInstant time) throws EncodingException {
+    private XmlObject createTimeInstantPropertyType(TimeInstant time, EncodingContext additionalValues)
+            throws EncodingException {
         TimeInstantPropertyType timeInstantPropertyType = TimeInstantPropertyType.Factory.newInstance(getXmlOptions());
-        createTimeInstantType(time, timeInstantPropertyType.addNewTimeInstant());
+        createTimeInstantType(time, timeInstantPropertyType.addNewTimeInstant(), additionalValues);
         return timeInstantPropertyType;
     }
 
@@ -394,16 +456,20 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
      * @param timeInstant
      *            SOS time object
      * @param timeInstantType
-     *
+     * @param additionalValues
+     *            the context that may carry the allocator of the response
      *
      * @throws EncodingException
      *             if an error occurs.
      */
-    private void createTimeInstantType(final TimeInstant timeInstant, TimeInstantType timeInstantType)
-            throws EncodingException {
+    private void createTimeInstantType(final TimeInstant timeInstant, TimeInstantType timeInstantType,
+            EncodingContext additionalValues) throws EncodingException {
         // create time instant
+        GmlIdAllocator ids = GmlIdAllocator.of(additionalValues);
         if (timeInstant.isSetGmlId()) {
-            timeInstantType.setId(timeInstant.getGmlId());
+            timeInstantType.setId(ids == null ? timeInstant.getGmlId() : ids.allocate(timeInstant.getGmlId()));
+        } else if (ids != null) {
+            timeInstantType.setId(ids.next("ti_"));
         } else {
             timeInstantType
                     .setId("ti_" + JavaHelper.generateID(timeInstantType.toString() + System.currentTimeMillis()));
@@ -411,9 +477,10 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
         timeInstantType.setTimePosition(createTimePositionType(timeInstant.getTimePosition()));
     }
 
-    private TimeInstantType createTimeInstantType(TimeInstant timeInstant) throws EncodingException {
+    private TimeInstantType createTimeInstantType(TimeInstant timeInstant, EncodingContext additionalValues)
+            throws EncodingException {
         TimeInstantType timeInstantType = TimeInstantType.Factory.newInstance(getXmlOptions());
-        createTimeInstantType(timeInstant, timeInstantType);
+        createTimeInstantType(timeInstant, timeInstantType, additionalValues);
         return timeInstantType;
     }
 
@@ -478,7 +545,7 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
         String foiId = additionalValues.get(SosHelperValues.GMLID);
         if (geom instanceof Point) {
             final PointType xbPoint = PointType.Factory.newInstance(getXmlOptions());
-            xbPoint.setId("point_" + foiId);
+            xbPoint.setId(GmlIdAllocator.allocate(additionalValues, "point_" + foiId));
             createPointFromJtsGeometry((Point) geom, xbPoint);
             if (additionalValues.has(XmlBeansEncodingFlags.DOCUMENT)) {
                 PointDocument xbPointDoc = PointDocument.Factory.newInstance(getXmlOptions());
@@ -495,7 +562,7 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
 
         else if (geom instanceof LineString) {
             final LineStringType xbLineString = LineStringType.Factory.newInstance(getXmlOptions());
-            xbLineString.setId("lineString_" + foiId);
+            xbLineString.setId(GmlIdAllocator.allocate(additionalValues, "lineString_" + foiId));
             createLineStringFromJtsGeometry((LineString) geom, xbLineString);
             if (additionalValues.has(XmlBeansEncodingFlags.DOCUMENT)) {
                 LineStringDocument xbLineStringDoc = LineStringDocument.Factory.newInstance(getXmlOptions());
@@ -513,7 +580,7 @@ public class GmlEncoderv321 extends AbstractXmlEncoder<XmlObject, Object> {
 
         else if (geom instanceof Polygon) {
             final PolygonType xbPolygon = PolygonType.Factory.newInstance(getXmlOptions());
-            xbPolygon.setId("polygon_" + foiId);
+            xbPolygon.setId(GmlIdAllocator.allocate(additionalValues, "polygon_" + foiId));
             createPolygonFromJtsGeometry((Polygon) geom, xbPolygon);
             if (additionalValues.has(XmlBeansEncodingFlags.DOCUMENT)) {
                 PolygonDocument xbPolygonDoc = PolygonDocument.Factory.newInstance(getXmlOptions());
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.n52.janmayen.NcName;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.util.JavaHelper;
+import org.n52.svalbard.SosHelperValues;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+/**
+ * Hands out the <code>gml:id</code>s of a single response. The ids are unique
+ * within the response by construction and only depend on the order in which
+ * they are requested, so an encoded response does not have to be made unique
+ * afterwards and is reproducible (and therefore cacheable).
+ *
+ * An allocator is created per response by {@link #enable(EncodingContext)}
+ * and is passed as the value of {@link SosHelperValues#GML_ID_ALLOCATOR} to
+ * the observation encoders and stream writers, which pass it on to every
+ * encoder that writes a <code>gml:id</code>. Objects that are encoded on
+ * their own get an allocator from {@link #get(EncodingContext)} that creates
+ * random ids, as these objects may be combined by the caller. Instances are
+ * not thread safe.
+ *
+ * @since 1.0.0
+ */
+public class GmlIdAllocator {
+
+    private static final String SEPARATOR = "_";
+
+    private static final String OBSERVATION_PREFIX = "o_";
+
+    private final Set<String> allocated = new LinkedHashSet<>();
+
+    private final Map<String, Integer> counters = new HashMap<>();
+
+    private final Map<AbstractFeature, String> features = new IdentityHashMap<>();
+
+    private final boolean random;
+
+    /**
+     * Create a new allocator that numbers the ids.
+     */
+    public GmlIdAllocator() {
+        this(false);
+    }
+
+    private GmlIdAllocator(boolean random) {
+        this.random = random;
+    }
+
+    /**
+     * Allocate a new id consisting of the prefix and a counter.
+     *
+     * @param prefix
+     *            the prefix of the id
+     *
+     * @return the id
+     */
+    public String next(String prefix) {
+        String id;
+        do {
+            if (random) {
+                id = prefix + JavaHelper.generateID(Double.toString(System.currentTimeMillis() * Math.random()));
+            } else {
+                id = prefix + counters.merge(prefix, 1, Integer::sum);
+            }
+        } while (!allocated.add(id));
+        return id;
+    }
+
+    /**
+     * Allocate the proposed id. Characters that are not allowed in a
+     * <code>gml:id</code> (e.g. of an identifier the id is derived from) are
+     * replaced. If the id was already handed out in this response, a counter
+     * is appended.
+     *
+     * @param id
+     *            the proposed id
+     *
+     * @return the unique id
+     */
+    public String allocate(String id) {
+        if (Strings.isNullOrEmpty(id)) {
+            return id;
+        }
+        String valid = NcName.makeValid(id);
+        if (allocated.add(valid)) {
+            return valid;
+        }
+        return next(valid + SEPARATOR);
+    }
+
+    /**
+     * Allocate the <code>gml:id</code> of an observation, which is derived
+     * from its id. An observation without id gets a new one.
+     *
+     * @param observation
+     *            the observation
+     *
+     * @return the unique id
+     */
+    public String allocate(OmObservation observation) {
+        if (observation.isSetObservationID()) {
+            return allocate(OBSERVATION_PREFIX + observation.getObservationID());
+        }
+        String id = next(OBSERVATION_PREFIX);
+        observation.setObservationID(id.substring(OBSERVATION_PREFIX.length()));
+        return id;
+    }
+
+    /**
+     * @param observation
+     *            the observation
+     *
+     * @return if the <code>gml:id</code> derived from the id of the
+     *         observation was already handed out in this response
+     */
+    public boolean isAllocated(OmObservation observation) {
+        return observation.isSetObservationID()
+                && isAllocated(NcName.makeValid(OBSERVATION_PREFIX + observation.getObservationID()));
+    }
+
+    /**
+     * @param id
+     *            the id
+     *
+     * @return if the id was already handed out in this response
+     */
+    public boolean isAllocated(String id) {
+        return allocated.contains(id);
+    }
+
+    /**
+     * Allocate all ids of an already encoded fragment, e.g. a cached one.
+     * Either all or none of the ids are allocated.
+     *
+     * @param ids
+     *            the ids of the fragment
+     *
+     * @return if none of the ids was already handed out in this response
+     */
+    public boolean reserve(Collection<String> ids) {
+        if (ids.stream().anyMatch(allocated::contains)) {
+            return false;
+        }
+        allocated.addAll(ids);
+        return true;
+    }
+
+    /**
+     * Remember the <code>gml:id</code> of a feature that was written without
+     * being encoded, e.g. from a cached fragment. Later occurrences of the
+     * same feature in the response reference it, without the feature (that
+     * may be shared with other responses) being modified.
+     *
+     * @param feature
+     *            the written feature
+     * @param gmlId
+     *            the <code>gml:id</code> of the written feature
+     */
+    public void setGmlId(AbstractFeature feature, String gmlId) {
+        features.putIfAbsent(feature, gmlId);
+    }
+
+    /**
+     * @param feature
+     *            the feature
+     *
+     * @return the <code>gml:id</code> the feature was written with in this
+     *         response or <code>null</code> if it was not registered by
+     *         {@link #setGmlId(AbstractFeature, String)}
+     */
+    public String getGmlId(AbstractFeature feature) {
+        return features.get(feature);
+    }
+
+    /**
+     * @return the position to pass to {@link #allocatedSince(int)}
+     */
+    public int mark() {
+        return allocated.size();
+    }
+
+    /**
+     * Get the ids that were handed out while a fragment was encoded. As every
+     * <code>gml:id</code> of a response is allocated here, these are all ids
+     * of the fragment.
+     *
+     * @param mark
+     *            the position returned by {@link #mark()}
+     *
+     * @return the ids that were handed out since the position
+     */
+    public Set<String> allocatedSince(int mark) {
+        return ImmutableSet.copyOf(Iterables.skip(allocated, mark));
+    }
+
+    /**
+     * Allocate the proposed id with the allocator of the context, if any.
+     *
+     * @param context
+     *            the context
+     * @param id
+     *            the proposed id
+     *
+     * @return the unique id or the proposed id if the context does not carry
+     *         an allocator
+     */
+    public static String allocate(EncodingContext context, String id) {
+        GmlIdAllocator allocator = of(context);
+        return allocator == null ? id : allocator.allocate(id);
+    }
+
+    /**
+     * Pass the allocator on to the encoding of a nested object.
+     *
+     * @param context
+     *            the context of the nested object
+     * @param allocator
+     *            the allocator of the response or <code>null</code>
+     *
+     * @return the context with the allocator
+     */
+    public static EncodingContext with(EncodingContext context, GmlIdAllocator allocator) {
+        return allocator == null ? context : context.with(SosHelperValues.GML_ID_ALLOCATOR, allocator);
+    }
+
+    /**
+     * Add a new allocator to the context if it does not already carry one.
+     *
+     * @param context
+     *            the context of the response
+     *
+     * @return the context to use for the observations of the response
+     */
+    public static EncodingContext enable(EncodingContext context) {
+        EncodingContext ctx = context == null ? EncodingContext.empty() : context;
+        if (of(ctx) != null) {
+            return ctx;
+        }
+        return ctx.with(SosHelperValues.GML_ID_ALLOCATOR, new GmlIdAllocator());
+    }
+
+    /**
+     * Get the allocator of the context.
+     *
+     * @param context
+     *            the context
+     *
+     * @return the allocator or <code>null</code> if the context does not
+     *         carry one
+     */
+    public static GmlIdAllocator of(EncodingContext context) {
+        if (context != null) {
+            Object value = context.get(SosHelperValues.GML_ID_ALLOCATOR);
+            if (value instanceof GmlIdAllocator) {
+                return (GmlIdAllocator) value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the allocator of the context or a new one that creates random ids if
+     * the encoded object is not part of a larger response.
+     *
+     * @param context
+     *            the context
+     *
+     * @return the allocator
+     */
+    public static GmlIdAllocator get(EncodingContext context) {
+        GmlIdAllocator allocator = of(context);
+        return allocator == null ? new GmlIdAllocator(true) : allocator;
+    }
+}
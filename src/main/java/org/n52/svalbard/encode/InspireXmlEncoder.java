@@ -16,11 +16,14 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -29,6 +32,7 @@ import org.apache.xmlbeans.XmlObject;
 import org.n52.janmayen.http.MediaType;
 import org.n52.janmayen.http.MediaTypes;
 import org.n52.shetland.inspire.InspireConstants;
+import org.n52.shetland.inspire.InspireLanguageISO6392B;
 import org.n52.shetland.inspire.InspireObject;
 import org.n52.shetland.inspire.InspireSupportedCRS;
 import org.n52.shetland.inspire.InspireSupportedLanguages;
@@ -43,11 +47,18 @@ import org.n52.svalbard.encode.exception.UnsupportedEncoderInputException;
 import org.n52.svalbard.util.CodingHelper;
 import org.n52.svalbard.write.InspireXmlStreamWriter;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 
 /**
  * XML encoder class for the INSPIRE schema
  *
+ * The INSPIRE extended capabilities are derived from service metadata that
+ * changes almost never, so the full and minimal extended capabilities are
+ * written only once per metadata value and response language and are kept as
+ * serialized fragment.
+ *
  * @author <a href="mailto:c.hollmann@52north.org">Carsten Hollmann</a>
  * @since 4.1.0
  *
@@ -64,6 +75,11 @@ public class InspireXmlEncoder extends AbstractXmlEncoder<XmlObject, Object> {
                         InspireSupportedLanguages.class,
                         InspireSupportedCRS.class));
 
+    private static final int MAX_FRAGMENTS = 16;
+
+    private final Cache<FragmentKey, Fragment> fragments =
+            CacheBuilder.newBuilder().maximumSize(MAX_FRAGMENTS).build();
+
     @Override
     public Set<EncoderKey> getKeys() {
         return Collections.unmodifiableSet(ENCODER_KEYS);
@@ -89,13 +105,57 @@ public class InspireXmlEncoder extends AbstractXmlEncoder<XmlObject, Object> {
     }
 
     private XmlObject encodeObject(InspireObject objectToEncode) throws EncodingException {
+        checkIfSupported(objectToEncode);
+        if (objectToEncode instanceof FullInspireExtendedCapabilities
+                || objectToEncode instanceof MinimalInspireExtendedCapabilities) {
+            // the cached document is shared, callers get their own copy
+            return getFragment(objectToEncode).getXml().copy();
+        }
+        return parse(write(objectToEncode));
+    }
+
+    /**
+     * Get the serialized extended capabilities, e.g. to copy them directly to
+     * a stream. The fragment is written on the first call for the metadata
+     * and response language.
+     *
+     * @param extendedCapabilities
+     *            the full or minimal extended capabilities
+     *
+     * @return the fragment
+     *
+     * @throws EncodingException
+     *             if the extended capabilities can not be encoded
+     */
+    public Fragment getFragment(InspireObject extendedCapabilities) throws EncodingException {
+        checkIfSupported(extendedCapabilities);
+        try {
+            return fragments.get(new FragmentKey(extendedCapabilities), () -> {
+                byte[] bytes = write(extendedCapabilities);
+                return new Fragment(bytes, parse(bytes));
+            });
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof EncodingException) {
+                throw (EncodingException) ex.getCause();
+            }
+            throw new EncodingException("Error encoding Inspire extended capabilities!", ex.getCause());
+        }
+    }
+
+    byte[] write(InspireObject objectToEncode) throws EncodingException {
         try {
-            checkIfSupported(objectToEncode);
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             new InspireXmlStreamWriter(objectToEncode).write(out);
-            String s = out.toString("UTF8");
-            return XmlObject.Factory.parse(s);
-        } catch (XMLStreamException | DateTimeFormatException | XmlException | UnsupportedEncodingException ex) {
+            return out.toByteArray();
+        } catch (XMLStreamException | DateTimeFormatException ex) {
+            throw new EncodingException("Error encoding Inspire extended capabilities!", ex);
+        }
+    }
+
+    private XmlObject parse(byte[] bytes) throws EncodingException {
+        try {
+            return XmlObject.Factory.parse(new ByteArrayInputStream(bytes));
+        } catch (XmlException | IOException ex) {
             throw new EncodingException("Error encoding Inspire extended capabilities!", ex);
         }
     }
@@ -543,4 +603,70 @@ public class InspireXmlEncoder extends AbstractXmlEncoder<XmlObject, Object> {
     // return languageElementISO6392B;
     // }
 
+    /**
+     * The key of a fragment: the extended capabilities compared by value and
+     * their response language.
+     */
+    private static final class FragmentKey {
+        private final InspireObject metadata;
+
+        private final InspireLanguageISO6392B language;
+
+        FragmentKey(InspireObject metadata) {
+            this.metadata = metadata;
+            if (metadata instanceof FullInspireExtendedCapabilities) {
+                this.language = ((FullInspireExtendedCapabilities) metadata).getResponseLanguage();
+            } else if (metadata instanceof MinimalInspireExtendedCapabilities) {
+                this.language = ((MinimalInspireExtendedCapabilities) metadata).getResponseLanguage();
+            } else {
+                this.language = null;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(metadata, language);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            FragmentKey other = (FragmentKey) obj;
+            return Objects.equals(metadata, other.metadata) && Objects.equals(language, other.language);
+        }
+    }
+
+    /**
+     * Serialized INSPIRE extended capabilities.
+     */
+    public static final class Fragment {
+        private final byte[] bytes;
+
+        private final XmlObject xml;
+
+        private Fragment(byte[] bytes, XmlObject xml) {
+            this.bytes = bytes;
+            this.xml = xml;
+        }
+
+        /**
+         * @return the UTF-8 encoded fragment without XML declaration, must
+         *         not be modified
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the parsed fragment, must not be modified
+         */
+        public XmlObject getXml() {
+            return xml;
+        }
+    }
 }
@@ -20,6 +20,8 @@ import static java.util.Collections.singletonMap;
 import static org.n52.shetland.util.CollectionHelper.union;
 import static org.n52.svalbard.util.CodingHelper.encoderKeysForElements;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -28,6 +30,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.xml.stream.XMLStreamException;
+
 import net.opengis.om.x10.CategoryObservationDocument;
 import net.opengis.om.x10.CategoryObservationType;
 import net.opengis.om.x10.CountObservationDocument;
@@ -47,11 +51,14 @@ import net.opengis.om.x10.TruthObservationType;
 import org.apache.xmlbeans.XmlBoolean;
 import org.apache.xmlbeans.XmlInteger;
 import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
 import org.apache.xmlbeans.XmlString;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
 import org.n52.janmayen.http.MediaType;
 import org.n52.shetland.ogc.SupportedType;
 import org.n52.shetland.ogc.gml.AbstractFeature;
@@ -77,6 +84,7 @@ import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.ogc.sos.Sos1Constants;
 import org.n52.shetland.ogc.sos.Sos2Constants;
 import org.n52.shetland.ogc.sos.SosConstants;
+import org.n52.shetland.ogc.sos.response.AbstractObservationResponse;
 import org.n52.shetland.ogc.sos.response.GetObservationByIdResponse;
 import org.n52.shetland.ogc.sos.response.GetObservationResponse;
 import org.n52.shetland.ogc.swe.SweConstants;
@@ -84,6 +92,7 @@ import org.n52.shetland.ogc.swe.SweDataArray;
 import org.n52.shetland.util.CollectionHelper;
 import org.n52.shetland.util.ReferencedEnvelope;
 import org.n52.shetland.w3c.SchemaLocation;
+import org.n52.svalbard.CodingSettings;
 import org.n52.svalbard.SosHelperValues;
 import org.n52.svalbard.encode.exception.EncodingException;
 import org.n52.svalbard.encode.exception.UnsupportedEncoderInputException;
@@ -92,6 +101,7 @@ import org.n52.svalbard.util.N52XmlHelper;
 import org.n52.svalbard.util.OMHelper;
 import org.n52.svalbard.util.SweHelper;
 import org.n52.svalbard.util.XmlHelper;
+import org.n52.svalbard.write.ObservationCollectionXmlStreamWriter;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
@@ -102,8 +112,9 @@ import com.google.common.collect.Sets;
  * @since 4.0.0
  *
  */
+@Configurable
 public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
-        implements ObservationEncoder<XmlObject, Object> {
+        implements ObservationEncoder<XmlObject, Object>, StreamingEncoder<XmlObject, Object> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OmEncoderv100.class);
 
@@ -135,11 +146,24 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
             encoderKeysForElements(OmConstants.CONTENT_TYPE_OM.toString(), OmObservation.class,
                     GetObservationResponse.class, GetObservationByIdResponse.class));
 
+    private boolean omitStreamingEnvelope;
+
     public OmEncoderv100() {
         LOGGER.debug("Encoder for the following keys initialized successfully: {}!",
                 Joiner.on(", ").join(ENCODER_KEYS));
     }
 
+    /**
+     * @param omitStreamingEnvelope
+     *            if the <code>gml:boundedBy</code> of streamed observation
+     *            collections should be left out if no precomputed
+     *            {@link SosHelperValues#ENVELOPE} is available
+     */
+    @Setting(CodingSettings.OM_100_STREAMING_OMIT_ENVELOPE)
+    public void setOmitStreamingEnvelope(boolean omitStreamingEnvelope) {
+        this.omitStreamingEnvelope = omitStreamingEnvelope;
+    }
+
     @Override
     public Set<EncoderKey> getKeys() {
         return Collections.unmodifiableSet(ENCODER_KEYS);
@@ -202,6 +226,11 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
         return Sets.newHashSet(OmConstants.OM_100_SCHEMA_LOCATION);
     }
 
+    @Override
+    public boolean forceStreaming() {
+        return false;
+    }
+
     @Override
     public XmlObject encode(Object element, EncodingContext additionalValues) throws EncodingException {
         XmlObject encodedObject = null;
@@ -209,12 +238,12 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
             encodedObject = createObservation((OmObservation) element, additionalValues);
         } else if (element instanceof GetObservationResponse) {
             GetObservationResponse response = (GetObservationResponse) element;
-            encodedObject =
-                    createObservationCollection(response.getObservationCollection(), response.getResultModel());
+            encodedObject = createObservationCollection(response.getObservationCollection(),
+                    response.getResultModel(), additionalValues);
         } else if (element instanceof GetObservationByIdResponse) {
             GetObservationByIdResponse response = (GetObservationByIdResponse) element;
-            encodedObject =
-                    createObservationCollection(response.getObservationCollection(), response.getResultModel());
+            encodedObject = createObservationCollection(response.getObservationCollection(),
+                    response.getResultModel(), additionalValues);
         } else {
             throw new UnsupportedEncoderInputException(this, element);
         }
@@ -222,9 +251,45 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
         return encodedObject;
     }
 
+    @Override
+    public void encode(Object objectToEncode, OutputStream outputStream) throws EncodingException {
+        encode(objectToEncode, outputStream, new EncodingValues());
+    }
+
+    @Override
+    public void encode(Object objectToEncode, OutputStream outputStream, EncodingValues encodingValues)
+            throws EncodingException {
+        if (objectToEncode instanceof GetObservationResponse
+                || objectToEncode instanceof GetObservationByIdResponse) {
+            encodingValues.setEncoder(this);
+            try {
+                new ObservationCollectionXmlStreamWriter().write((AbstractObservationResponse) objectToEncode,
+                        outputStream, encodingValues);
+            } catch (XMLStreamException xmlse) {
+                throw new EncodingException("Error while writing element to stream!", xmlse);
+            }
+        } else {
+            XmlOptions xmlOptions = new XmlOptions(getXmlOptions());
+            if (encodingValues.isEmbedded()) {
+                xmlOptions.setSaveNoXmlDecl();
+            }
+            try {
+                encode(objectToEncode, encodingValues.getAdditionalValues()).save(outputStream, xmlOptions);
+            } catch (IOException ioe) {
+                throw new EncodingException("Error while writing element to stream!", ioe);
+            }
+        }
+    }
+
     private XmlObject createObservation(OmObservation sosObservation, EncodingContext additionalValues)
             throws EncodingException {
-        String observationType = checkObservationType(sosObservation);
+        EncodingContext ctx = additionalValues == null ? EncodingContext.empty() : additionalValues;
+        return createObservationOfType(sosObservation, GmlIdAllocator.with(ctx, GmlIdAllocator.get(ctx)));
+    }
+
+    private XmlObject createObservationOfType(OmObservation sosObservation, EncodingContext additionalValues)
+            throws EncodingException {
+        String observationType = getObservationType(sosObservation);
         if (null != observationType) {
             switch (observationType) {
             case OmConstants.OBS_TYPE_MEASUREMENT:
@@ -245,7 +310,15 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
         }
     }
 
-    private String checkObservationType(OmObservation sosObservation) throws EncodingException {
+    /**
+     * Get the type of the O&amp;M 1.0 element the observation is encoded as.
+     *
+     * @param sosObservation
+     *            the observation
+     *
+     * @return the observation type
+     */
+    public String getObservationType(OmObservation sosObservation) {
         if (sosObservation.isSetResultType()) {
             return sosObservation.getResultType();
         } else if (sosObservation.getValue() instanceof SingleObservationValue) {
@@ -255,32 +328,34 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
         return OmConstants.OBS_TYPE_OBSERVATION;
     }
 
-    private XmlObject createObservationCollection(List<OmObservation> sosObservationCollection, String resultModel)
-            throws EncodingException {
+    private XmlObject createObservationCollection(List<OmObservation> sosObservationCollection, String resultModel,
+            EncodingContext additionalValues) throws EncodingException {
         ObservationCollectionDocument xbObservationCollectionDoc =
                 ObservationCollectionDocument.Factory.newInstance(getXmlOptions());
         ObservationCollectionType xbObservationCollection = xbObservationCollectionDoc.addNewObservationCollection();
         xbObservationCollection.setId(SosConstants.OBS_COL_ID_PREFIX + new DateTime().getMillis());
+        // the gml:ids of the members are unique within the collection, as in the streamed collection
+        EncodingContext ctx = GmlIdAllocator.enable(additionalValues);
         if (CollectionHelper.isNotEmpty(sosObservationCollection)) {
-            ReferencedEnvelope sosEnvelope = getEnvelope(sosObservationCollection);
+            ReferencedEnvelope sosEnvelope = getEnvelope(sosObservationCollection, additionalValues, false);
             Encoder<XmlObject, ReferencedEnvelope> envEncoder = getEncoder(GmlConstants.NS_GML, sosEnvelope);
             xbObservationCollection.addNewBoundedBy().addNewEnvelope().set(envEncoder.encode(sosEnvelope));
             for (OmObservation sosObservation : sosObservationCollection) {
-                String observationType = checkObservationType(sosObservation);
+                String observationType = getObservationType(sosObservation);
                 if (Strings.isNullOrEmpty(resultModel)
                         || (!Strings.isNullOrEmpty(resultModel) && observationType.equals(resultModel))) {
                     if (sosObservation.getValue() instanceof StreamingValue) {
                         StreamingValue<?> streamingValue = (StreamingValue) sosObservation.getValue();
                         try {
                             while (streamingValue.hasNextValue()) {
-                                xbObservationCollection.addNewMember()
-                                        .set(createObservation(streamingValue.nextSingleObservation(), null));
+                                OmObservation observation = streamingValue.nextSingleObservation();
+                                xbObservationCollection.addNewMember().set(createObservation(observation, ctx));
                             }
                         } catch (OwsExceptionReport owse) {
                             throw new EncodingException(owse);
                         }
                     } else {
-                        xbObservationCollection.addNewMember().set(createObservation(sosObservation, null));
+                        xbObservationCollection.addNewMember().set(createObservation(sosObservation, ctx));
                     }
                 } else {
                     throw new EncodingException(
@@ -292,14 +367,36 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
             ObservationPropertyType xbObservation = xbObservationCollection.addNewMember();
             xbObservation.setHref(GmlConstants.NIL_INAPPLICABLE);
         }
-        XmlHelper.makeGmlIdsUnique(xbObservationCollectionDoc.getDomNode());
         N52XmlHelper.setSchemaLocationsToDocument(xbObservationCollectionDoc,
                 Sets.newHashSet(N52XmlHelper.getSchemaLocationForSOS100(), N52XmlHelper.getSchemaLocationForOM100(),
                         N52XmlHelper.getSchemaLocationForSA100()));
         return xbObservationCollectionDoc;
     }
 
-    private ReferencedEnvelope getEnvelope(List<OmObservation> sosObservationCollection) {
+    /**
+     * Get the envelope of the observation collection. A precomputed
+     * {@link SosHelperValues#ENVELOPE} is preferred over the envelope of the
+     * features of interest.
+     *
+     * @param sosObservationCollection
+     *            the observations
+     * @param additionalValues
+     *            the context of the collection
+     * @param streaming
+     *            if the collection is streamed
+     *
+     * @return the envelope or <code>null</code> if it should be left out of
+     *         a streamed collection
+     */
+    public ReferencedEnvelope getEnvelope(List<OmObservation> sosObservationCollection,
+            EncodingContext additionalValues, boolean streaming) {
+        Object envelope = additionalValues == null ? null : additionalValues.get(SosHelperValues.ENVELOPE);
+        if (envelope instanceof ReferencedEnvelope) {
+            return (ReferencedEnvelope) envelope;
+        }
+        if (streaming && omitStreamingEnvelope) {
+            return null;
+        }
         ReferencedEnvelope sosEnvelope = new ReferencedEnvelope();
         sosObservationCollection.stream()
                 .map(o -> (SamplingFeature) o.getObservationConstellation().getFeatureOfInterest()).forEach(f -> {
@@ -314,7 +411,7 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
         MeasurementDocument xbMeasurementDoc = MeasurementDocument.Factory.newInstance(getXmlOptions());
         MeasurementType xbObs = xbMeasurementDoc.addNewMeasurement();
         addValuesToObservation(xbObs, sosObservation, additionalValues);
-        addSingleObservationToResult(xbObs.addNewResult(), sosObservation);
+        addSingleObservationToResult(xbObs.addNewResult(), sosObservation, additionalValues);
         return xbMeasurementDoc;
     }
 
@@ -324,7 +421,7 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
                 CategoryObservationDocument.Factory.newInstance(getXmlOptions());
         CategoryObservationType xbObs = xbCategoryObservationDoc.addNewCategoryObservation();
         addValuesToObservation(xbObs, sosObservation, additionalValues);
-        addSingleObservationToResult(xbObs.addNewResult(), sosObservation);
+        addSingleObservationToResult(xbObs.addNewResult(), sosObservation, additionalValues);
         return xbCategoryObservationDoc;
     }
 
@@ -333,7 +430,7 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
         CountObservationDocument xbCountObservationDoc = CountObservationDocument.Factory.newInstance(getXmlOptions());
         CountObservationType xbObs = xbCountObservationDoc.addNewCountObservation();
         addValuesToObservation(xbObs, sosObservation, additionalValues);
-        addSingleObservationToResult(xbObs.addNewResult(), sosObservation);
+        addSingleObservationToResult(xbObs.addNewResult(), sosObservation, additionalValues);
         return xbCountObservationDoc;
     }
 
@@ -342,7 +439,7 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
         TruthObservationDocument xbTruthObservationDoc = TruthObservationDocument.Factory.newInstance(getXmlOptions());
         TruthObservationType xbObs = xbTruthObservationDoc.addNewTruthObservation();
         addValuesToObservation(xbObs, sosObservation, additionalValues);
-        addSingleObservationToResult(xbObs.addNewResult(), sosObservation);
+        addSingleObservationToResult(xbObs.addNewResult(), sosObservation, additionalValues);
         return xbTruthObservationDoc;
     }
 
@@ -352,7 +449,7 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
                 GeometryObservationDocument.Factory.newInstance(getXmlOptions());
         GeometryObservationType xbObs = xbGeometryObservationDoc.addNewGeometryObservation();
         addValuesToObservation(xbObs, sosObservation, additionalValues);
-        addSingleObservationToResult(xbObs.addNewResult(), sosObservation);
+        addSingleObservationToResult(xbObs.addNewResult(), sosObservation, additionalValues);
         return xbGeometryObservationDoc;
     }
 
@@ -361,25 +458,24 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
         ObservationDocument xbObservationDoc = ObservationDocument.Factory.newInstance(getXmlOptions());
         ObservationType xbObs = xbObservationDoc.addNewObservation();
         List<OmObservableProperty> phenComponents = addValuesToObservation(xbObs, sosObservation, additionalValues);
-        addResultToObservation(xbObs.addNewResult(), sosObservation, phenComponents);
+        addResultToObservation(xbObs.addNewResult(), sosObservation, phenComponents, additionalValues);
         return xbObservationDoc;
     }
 
     private List<OmObservableProperty> addValuesToObservation(ObservationType xbObs, OmObservation sosObservation,
             EncodingContext additionalValues) throws EncodingException {
-        xbObs.setId("o_" + Long.toString(System.currentTimeMillis()));
-        if (!sosObservation.isSetObservationID()) {
-            sosObservation.setObservationID(xbObs.getId().replace("o_", ""));
-        }
+        GmlIdAllocator ids = GmlIdAllocator.get(additionalValues);
+        xbObs.setId(ids.allocate(sosObservation));
         String observationID = sosObservation.getObservationID();
         // set samplingTime
         Time samplingTime = sosObservation.getPhenomenonTime();
         if (samplingTime.getGmlId() == null) {
             samplingTime.setGmlId(OmConstants.PHENOMENON_TIME_NAME + "_" + observationID);
         }
-        addSamplingTime(xbObs, samplingTime);
+        String samplingTimeId = ids.allocate(samplingTime.getGmlId());
+        addSamplingTime(xbObs, samplingTime, samplingTimeId);
         // set resultTime
-        addResultTime(xbObs, sosObservation);
+        addResultTime(xbObs, sosObservation, samplingTimeId, ids);
 
         // set procedure
         xbObs.addNewProcedure().setHref(sosObservation.getObservationConstellation().getProcedure().getIdentifier());
@@ -399,42 +495,48 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
             phenComponents = compPhen.getPhenomenonComponents();
         }
         // set feature
-        addFeatureOfInterest(xbObs, sosObservation.getObservationConstellation().getFeatureOfInterest());
+        addFeatureOfInterest(xbObs, sosObservation.getObservationConstellation().getFeatureOfInterest(), ids);
         return phenComponents;
     }
 
-    private void addSamplingTime(ObservationType xbObservation, Time iTime) throws EncodingException {
+    private void addSamplingTime(ObservationType xbObservation, Time iTime, String gmlId)
+            throws EncodingException {
         XmlObject xmlObject = encodeObjectToXml(GmlConstants.NS_GML, iTime);
+        // the time may be shared with other observations, so the id is only changed in the encoding
+        XmlHelper.setGmlId(xmlObject, gmlId);
         XmlObject substitution = xbObservation.addNewSamplingTime().addNewTimeObject()
                 .substitute(GmlHelper.getGml311QnameForITime(iTime), xmlObject.schemaType());
         substitution.set(xmlObject);
     }
 
-    private void addResultTime(ObservationType xbObs, OmObservation sosObservation) throws EncodingException {
+    private void addResultTime(ObservationType xbObs, OmObservation sosObservation, String phenomenonTimeId,
+            GmlIdAllocator ids) throws EncodingException {
         Time phenomenonTime = sosObservation.getPhenomenonTime();
         if (sosObservation.isSetResultTime()) {
             if (sosObservation.getResultTime().equals(phenomenonTime)) {
-                xbObs.addNewResultTime().setHref("#".concat(phenomenonTime.getGmlId()));
+                xbObs.addNewResultTime().setHref("#".concat(phenomenonTimeId));
             } else {
                 TimeInstant resultTime = sosObservation.getResultTime();
                 if (!resultTime.isSetGmlId()) {
                     resultTime.setGmlId("resultTime_".concat(sosObservation.getObservationID()));
                 }
-                addResultTime(xbObs, resultTime);
+                addResultTime(xbObs, resultTime, ids);
             }
         } else {
             if (phenomenonTime instanceof TimeInstant) {
-                xbObs.addNewResultTime().setHref("#".concat(phenomenonTime.getGmlId()));
+                xbObs.addNewResultTime().setHref("#".concat(phenomenonTimeId));
             } else if (phenomenonTime instanceof TimePeriod) {
                 TimeInstant resultTime = new TimeInstant(((TimePeriod) sosObservation.getPhenomenonTime()).getEnd());
                 resultTime.setGmlId("resultTime_" + sosObservation.getObservationID());
-                addResultTime(xbObs, resultTime);
+                addResultTime(xbObs, resultTime, ids);
             }
         }
     }
 
-    private void addResultTime(ObservationType xbObs, TimeInstant iTime) throws EncodingException {
-        XmlObject xmlObject = encodeObjectToXml(GmlConstants.NS_GML, iTime);
+    private void addResultTime(ObservationType xbObs, TimeInstant iTime, GmlIdAllocator ids)
+            throws EncodingException {
+        XmlObject xmlObject =
+                encodeObjectToXml(GmlConstants.NS_GML, iTime, GmlIdAllocator.with(EncodingContext.empty(), ids));
         XmlObject substitution = xbObs.addNewResultTime().addNewTimeObject()
                 .substitute(GmlHelper.getGml311QnameForITime(iTime), xmlObject.schemaType());
         substitution.set(xmlObject);
@@ -446,19 +548,19 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
     }
 
     private void addResultToObservation(XmlObject xbResult, OmObservation sosObservation,
-            List<OmObservableProperty> phenComponents) throws EncodingException {
+            List<OmObservableProperty> phenComponents, EncodingContext additionalValues) throws EncodingException {
         // TODO if OM_SWEArrayObservation and get ResultEncoding and
         // ResultStructure exists,
         if (sosObservation.getValue() instanceof SingleObservationValue) {
-            addSingleObservationToResult(xbResult, sosObservation);
+            addSingleObservationToResult(xbResult, sosObservation, additionalValues);
         } else if (sosObservation.getValue() instanceof MultiObservationValues) {
             addMultiObservationValueToResult(xbResult, sosObservation);
         }
     }
 
     // FIXME String.equals(QName) !?
-    private void addSingleObservationToResult(XmlObject xbResult, OmObservation sosObservation)
-            throws EncodingException {
+    private void addSingleObservationToResult(XmlObject xbResult, OmObservation sosObservation,
+            EncodingContext additionalValues) throws EncodingException {
         String observationType = sosObservation.getObservationConstellation().getObservationType();
         SingleObservationValue<?> observationValue = (SingleObservationValue<?>) sosObservation.getValue();
         if (observationValue.getValue() instanceof QuantityValue) {
@@ -502,8 +604,10 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
         } else if (observationValue.getValue() instanceof GeometryValue) {
             GeometryValue geometryValue = (GeometryValue) observationValue.getValue();
             if (geometryValue.getValue() != null) {
-                xbResult.set(encodeObjectToXml(GmlConstants.NS_GML, geometryValue.getValue(), EncodingContext
-                        .of(SosHelperValues.GMLID, SosConstants.OBS_ID_PREFIX + sosObservation.getObservationID())));
+                EncodingContext ctx = EncodingContext.of(SosHelperValues.GMLID,
+                        SosConstants.OBS_ID_PREFIX + sosObservation.getObservationID());
+                xbResult.set(encodeObjectToXml(GmlConstants.NS_GML, geometryValue.getValue(),
+                        GmlIdAllocator.with(ctx, GmlIdAllocator.of(additionalValues))));
             } else {
                 xbResult.setNil();
             }
@@ -522,20 +626,10 @@ public class OmEncoderv100 extends AbstractXmlEncoder<XmlObject, Object>
                 EncodingContext.of(SosHelperValues.FOR_OBSERVATION)));
     }
 
-    /**
-     * Encodes a SosAbstractFeature to an SpatialSamplingFeature under
-     * consideration of duplicated SpatialSamplingFeature in the XML document.
-     *
-     * @param observation
-     *            XmlObject O&M observation
-     * @param feature
-     *            SOS observation
-     *
-     *
-     * @throws EncodingException
-     */
-    private void addFeatureOfInterest(ObservationType observation, AbstractFeature feature) throws EncodingException {
-        EncodingContext ctx = EncodingContext.of(SosHelperValues.ENCODE, feature.getDefaultElementEncoding());
+    private void addFeatureOfInterest(ObservationType observation, AbstractFeature feature, GmlIdAllocator ids)
+            throws EncodingException {
+        EncodingContext ctx = GmlIdAllocator.with(
+                EncodingContext.of(SosHelperValues.ENCODE, feature.getDefaultElementEncoding()), ids);
         XmlObject encodeObjectToXml = encodeObjectToXml(GmlConstants.NS_GML, feature, ctx);
         observation.addNewFeatureOfInterest().set(encodeObjectToXml);
     }
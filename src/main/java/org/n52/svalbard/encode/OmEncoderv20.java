@@ -171,7 +171,7 @@ public class OmEncoderv20 extends AbstractOmEncoderv20 {
     @Override
     public XmlObject encode(Object element, EncodingContext additionalValues) throws EncodingException {
         if (element instanceof ObservationValue) {
-            return encodeResult((ObservationValue<?>) element);
+            return encodeResult((ObservationValue<?>) element, additionalValues);
         }
         return super.encode(element, additionalValues);
     }
@@ -192,22 +192,25 @@ public class OmEncoderv20 extends AbstractOmEncoderv20 {
     }
 
     @Override
-    protected XmlObject createResult(OmObservation sosObservation) throws EncodingException {
+    protected XmlObject createResult(OmObservation sosObservation, EncodingContext context)
+            throws EncodingException {
         ObservationValue<?> value = sosObservation.getValue();
         // TODO if OM_SWEArrayObservation and get ResultEncoding and
         // ResultStructure exists,
         if (value instanceof AbstractObservationValue) {
             AbstractObservationValue<?> abstractObservationValue = (AbstractObservationValue<?>) value;
             abstractObservationValue.setValuesForResultEncoding(sosObservation);
-            return encodeResult(abstractObservationValue);
+            return encodeResult(abstractObservationValue, context);
         }
         return null;
     }
 
     @Override
-    protected XmlObject encodeResult(ObservationValue<?> observationValue) throws EncodingException {
+    protected XmlObject encodeResult(ObservationValue<?> observationValue, EncodingContext context)
+            throws EncodingException {
         if (observationValue instanceof SingleObservationValue) {
-            return createSingleObservationToResult((SingleObservationValue<?>) observationValue);
+            return createSingleObservationToResult((SingleObservationValue<?>) observationValue,
+                    GmlIdAllocator.of(context));
         } else if (observationValue instanceof MultiObservationValues) {
             return createMultiObservationValueToResult((MultiObservationValues<?>) observationValue);
         }
@@ -231,8 +234,8 @@ public class OmEncoderv20 extends AbstractOmEncoderv20 {
         return SensorMLConstants.NS_SML;
     }
 
-    private XmlObject createSingleObservationToResult(final SingleObservationValue<?> observationValue)
-            throws EncodingException {
+    private XmlObject createSingleObservationToResult(final SingleObservationValue<?> observationValue,
+            GmlIdAllocator ids) throws EncodingException {
         final String observationType;
         if (observationValue.isSetObservationType()) {
             observationType = observationValue.getObservationType();
@@ -245,7 +248,7 @@ public class OmEncoderv20 extends AbstractOmEncoderv20 {
         }
 
         return observationValue.getValue()
-                .accept(new ResultValueVisitor(observationType, observationValue.getObservationID()));
+                .accept(new ResultValueVisitor(observationType, observationValue.getObservationID(), ids));
     }
 
     private XmlObject createMultiObservationValueToResult(MultiObservationValues<?> observationValue)
@@ -282,9 +285,12 @@ public class OmEncoderv20 extends AbstractOmEncoderv20 {
 
         private final String observationId;
 
-        ResultValueVisitor(String observationType, String observationId) {
+        private final GmlIdAllocator ids;
+
+        ResultValueVisitor(String observationType, String observationId, GmlIdAllocator ids) {
             this.observationType = observationType;
             this.observationId = observationId;
+            this.ids = ids;
         }
 
         @Override
@@ -343,10 +349,9 @@ public class OmEncoderv20 extends AbstractOmEncoderv20 {
         public XmlObject visit(GeometryValue value) throws EncodingException {
             if (observationType.equals(OmConstants.OBS_TYPE_GEOMETRY_OBSERVATION)) {
                 if (value.isSetValue()) {
-                    return encodeGML(value.getValue(),
-                            EncodingContext.empty()
-                                    .with(SosHelperValues.GMLID, SosConstants.OBS_ID_PREFIX + this.observationId)
-                                    .with(XmlBeansEncodingFlags.PROPERTY_TYPE));
+                    return encodeGML(value.getValue(), GmlIdAllocator.with(EncodingContext.empty()
+                            .with(SosHelperValues.GMLID, SosConstants.OBS_ID_PREFIX + this.observationId)
+                            .with(XmlBeansEncodingFlags.PROPERTY_TYPE), ids));
                 } else {
                     return null;
                 }
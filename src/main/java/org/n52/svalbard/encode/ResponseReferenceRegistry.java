@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.xmlbeans.XmlObject;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.time.Time;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.util.XmlHelper;
+
+import com.google.common.base.Strings;
+
+/**
+ * Registry of the features of interest, procedures and phenomenon times that
+ * were already encoded inline in a response. Later occurrences of the same
+ * object are encoded as <code>xlink:href</code> to the <code>gml:id</code> of
+ * the first one.
+ *
+ * A registry is created per response by {@link #enable(EncodingContext)} if
+ * the {@link EncodingContext} of the response contains
+ * {@link SosHelperValues#XLINK_DEDUPLICATION} and is passed as the value of
+ * this flag to the observation encoders and stream writers. Instances are not
+ * thread safe.
+ *
+ * @since 1.0.0
+ */
+public class ResponseReferenceRegistry {
+
+    private static final String HREF_PREFIX = "#";
+
+    private final Map<String, String> features = new HashMap<>();
+
+    private final Map<String, String> procedures = new HashMap<>();
+
+    private final Map<List<Object>, String> times = new HashMap<>();
+
+    /**
+     * Get the reference to an already encoded feature with the same
+     * identifier.
+     *
+     * @param feature
+     *            the feature
+     *
+     * @return the <code>xlink:href</code> or <code>null</code> if the
+     *         feature has to be encoded
+     */
+    public String getFeatureReference(AbstractFeature feature) {
+        return getReference(features, getKey(feature));
+    }
+
+    /**
+     * Register the encoded feature.
+     *
+     * @param feature
+     *            the feature
+     * @param encoded
+     *            the encoded feature
+     */
+    public void addFeature(AbstractFeature feature, XmlObject encoded) {
+        addFeature(feature, XmlHelper.getGmlId(encoded));
+    }
+
+    /**
+     * Register the feature that was written with the <code>gml:id</code>.
+     *
+     * @param feature
+     *            the feature
+     * @param gmlId
+     *            the <code>gml:id</code> of the written feature
+     */
+    public void addFeature(AbstractFeature feature, String gmlId) {
+        add(features, getKey(feature), gmlId);
+    }
+
+    /**
+     * Get the reference to an already encoded procedure with the same
+     * identifier.
+     *
+     * @param procedure
+     *            the procedure
+     *
+     * @return the <code>xlink:href</code> or <code>null</code> if the
+     *         procedure has to be encoded
+     */
+    public String getProcedureReference(AbstractFeature procedure) {
+        return getReference(procedures, getKey(procedure));
+    }
+
+    /**
+     * Register the encoded procedure.
+     *
+     * @param procedure
+     *            the procedure
+     * @param encoded
+     *            the encoded procedure
+     */
+    public void addProcedure(AbstractFeature procedure, XmlObject encoded) {
+        add(procedures, getKey(procedure), XmlHelper.getGmlId(encoded));
+    }
+
+    /**
+     * Get the reference to an already encoded time with the same value.
+     *
+     * @param time
+     *            the time
+     *
+     * @return the <code>xlink:href</code> or <code>null</code> if the time
+     *         has to be encoded
+     */
+    public String getTimeReference(Time time) {
+        return getReference(times, getKey(time));
+    }
+
+    /**
+     * Register the encoded time. The time has to be encoded with its
+     * {@link Time#getGmlId() gml:id}.
+     *
+     * @param time
+     *            the time
+     */
+    public void addTime(Time time) {
+        addTime(time, time.getGmlId());
+    }
+
+    /**
+     * Register the time that was encoded with the <code>gml:id</code>.
+     *
+     * @param time
+     *            the time
+     * @param gmlId
+     *            the <code>gml:id</code> of the encoded time
+     */
+    public void addTime(Time time, String gmlId) {
+        add(times, getKey(time), gmlId);
+    }
+
+    private static <K> String getReference(Map<K, String> map, K key) {
+        if (key == null || !map.containsKey(key)) {
+            return null;
+        }
+        return HREF_PREFIX + map.get(key);
+    }
+
+    private static <K> void add(Map<K, String> map, K key, String gmlId) {
+        if (key != null && !Strings.isNullOrEmpty(gmlId)) {
+            map.putIfAbsent(key, gmlId);
+        }
+    }
+
+    private static String getKey(AbstractFeature feature) {
+        if (feature == null || !feature.isSetIdentifier()) {
+            return null;
+        }
+        return feature.getIdentifier();
+    }
+
+    private static List<Object> getKey(Time time) {
+        // only determinate times can be compared by value
+        if (time instanceof TimeInstant) {
+            TimeInstant instant = (TimeInstant) time;
+            if (instant.getValue() != null) {
+                return Arrays.asList(TimeInstant.class, instant.getValue());
+            }
+        } else if (time instanceof TimePeriod) {
+            TimePeriod period = (TimePeriod) time;
+            if (period.getStart() != null && period.getEnd() != null) {
+                return Arrays.asList(TimePeriod.class, period.getStart(), period.getEnd());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a new registry to the context if the deduplication was requested and
+     * the context does not already carry a registry.
+     *
+     * @param context
+     *            the context of the response
+     *
+     * @return the context to use for the observations of the response
+     */
+    public static EncodingContext enable(EncodingContext context) {
+        if (context == null || !context.has(SosHelperValues.XLINK_DEDUPLICATION) || of(context) != null) {
+            return context;
+        }
+        return context.with(SosHelperValues.XLINK_DEDUPLICATION, new ResponseReferenceRegistry());
+    }
+
+    /**
+     * Get the registry of the context.
+     *
+     * @param context
+     *            the context
+     *
+     * @return the registry or <code>null</code> if no deduplication was
+     *         requested
+     */
+    public static ResponseReferenceRegistry of(EncodingContext context) {
+        if (context != null) {
+            Object value = context.get(SosHelperValues.XLINK_DEDUPLICATION);
+            if (value instanceof ResponseReferenceRegistry) {
+                return (ResponseReferenceRegistry) value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.xml.XMLConstants;
+import javax.xml.validation.Schema;
+
+import org.apache.xmlbeans.XmlObject;
+import org.n52.faroe.ConfigurationError;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.janmayen.lifecycle.Destroyable;
+import org.n52.svalbard.CodingSettings;
+import org.n52.svalbard.Validation;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.util.N52XmlHelper;
+import org.n52.svalbard.util.XmlHelper;
+import org.n52.svalbard.util.XmlSchemaCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Validates encoded responses if {@link CodingSettings#VALIDATE_RESPONSE} is
+ * enabled. Every document is validated once: against the compiled schema of
+ * the {@link XmlSchemaCache} if the schema covers all namespaces of the
+ * document, and with XmlBeans otherwise. Only the latter needs the
+ * {@link XmlHelper.LaxValidationCase}s, which work around elements of
+ * namespaces that are not part of the schema.
+ *
+ * The {@link Mode} set by {@link CodingSettings#VALIDATE_RESPONSE_MODE}
+ * controls which responses are validated and if an invalid response fails
+ * the request or is only logged.
+ *
+ * @since 1.0.0
+ */
+@Configurable
+public class ResponseValidator implements Destroyable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResponseValidator.class);
+
+    /**
+     * The number of responses that wait for the asynchronous validation,
+     * further responses are not validated.
+     */
+    private static final int ASYNCHRONOUS_QUEUE_SIZE = 4;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private XmlSchemaCache schemaCache;
+
+    private Mode mode = Mode.ALWAYS;
+
+    private int sampleRate = 1;
+
+    private ThreadPoolExecutor executor;
+
+    @Inject
+    public void setSchemaCache(XmlSchemaCache schemaCache) {
+        this.schemaCache = schemaCache;
+    }
+
+    @Setting(CodingSettings.VALIDATE_RESPONSE_MODE)
+    public void setMode(String mode) throws ConfigurationError {
+        Validation.notNullOrEmpty("Response validation mode", mode);
+        try {
+            this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new ConfigurationError(String.format("Unsupported response validation mode: %s", mode), ex);
+        }
+    }
+
+    /**
+     * Set the rate of the {@link Mode#SAMPLED} mode, every n-th response is
+     * validated.
+     *
+     * @param sampleRate
+     *            the sample rate
+     */
+    @Setting(CodingSettings.VALIDATE_RESPONSE_SAMPLE_RATE)
+    public void setSampleRate(int sampleRate) throws ConfigurationError {
+        this.sampleRate = Validation.greaterZero("Response validation sample rate", sampleRate);
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (this) {
+            if (this.executor != null) {
+                this.executor.shutdown();
+                this.executor = null;
+            }
+        }
+    }
+
+    /**
+     * Validate the response according to the {@link Mode}.
+     *
+     * @param document
+     *            the encoded response
+     *
+     * @throws EncodingException
+     *             if the response is validated synchronously and is not valid
+     */
+    public void validate(XmlObject document) throws EncodingException {
+        switch (mode) {
+            case SAMPLED:
+                if (counter.getAndIncrement() % sampleRate == 0) {
+                    validateNow(document);
+                }
+                break;
+            case ASYNCHRONOUS:
+                validateLater(document);
+                break;
+            case ALWAYS:
+            default:
+                validateNow(document);
+        }
+    }
+
+    private void validateNow(XmlObject document) throws EncodingException {
+        Schema schema = getSchema(document);
+        if (schema != null) {
+            XmlHelper.validateDocument(document, schema, EncodingException::new);
+        } else {
+            XmlHelper.validateDocument(document, EncodingException::new);
+        }
+    }
+
+    /**
+     * @return the compiled schema, if it covers all namespaces of the
+     *         document, or <code>null</code>
+     */
+    private Schema getSchema(XmlObject document) {
+        if (schemaCache == null) {
+            return null;
+        }
+        Set<String> namespaces = N52XmlHelper.getNamespaces(document);
+        namespaces.remove(XMLConstants.NULL_NS_URI);
+        Set<String> known = schemaCache.getKnownNamespaces(namespaces);
+        return known.size() == namespaces.size() ? schemaCache.getSchema(known) : null;
+    }
+
+    private void validateLater(XmlObject document) {
+        ThreadPoolExecutor pool = getExecutor();
+        // responses are skipped if the validation does not keep up
+        if (pool.getQueue().remainingCapacity() == 0) {
+            LOGGER.debug("Skipping asynchronous validation of response {}", document.schemaType().getName());
+            return;
+        }
+        pool.execute(() -> {
+            // XmlBeans synchronizes the access to the document, so the copy is
+            // taken while the response is sent and is validated without blocking it
+            XmlObject copy = document.copy();
+            try {
+                validateNow(copy);
+            } catch (EncodingException ex) {
+                LOGGER.warn("Invalid response {}", copy.schemaType().getName(), ex);
+            }
+        });
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(ASYNCHRONOUS_QUEUE_SIZE),
+                    new ThreadFactoryBuilder().setNameFormat("response-validation-%d").setDaemon(true).build(),
+                    new ThreadPoolExecutor.DiscardPolicy());
+        }
+        return this.executor;
+    }
+
+    /**
+     * The response validation modes.
+     */
+    public enum Mode {
+        /**
+         * Validate every response before it is sent.
+         */
+        ALWAYS,
+        /**
+         * Validate every n-th response before it is sent.
+         */
+        SAMPLED,
+        /**
+         * Validate a copy of every response in the background and log
+         * invalid responses. Responses are skipped if the validation does
+         * not keep up.
+         */
+        ASYNCHRONOUS
+    }
+}
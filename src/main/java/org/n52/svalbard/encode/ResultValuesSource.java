@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+
+import org.n52.shetland.ogc.swe.encoding.SweTextEncoding;
+
+/**
+ * Source of the text encoded result values of a GetResult response that are
+ * read chunk by chunk while the response is written, so the result values
+ * never have to be held in memory as a whole.
+ *
+ * @since 1.0.0
+ */
+public abstract class ResultValuesSource implements Closeable {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Read the next chunk of the text encoded result values.
+     *
+     * @return the chunk or <code>null</code> if the source is exhausted
+     *
+     * @throws IOException
+     *             if the result values can not be read
+     */
+    public abstract String next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Create a source for already text encoded result values.
+     *
+     * @param resultValues
+     *            the result values
+     *
+     * @return the source
+     */
+    public static ResultValuesSource of(String resultValues) {
+        return new StringSource(resultValues);
+    }
+
+    /**
+     * Create a source for already text encoded result values. The reader is
+     * closed with the source.
+     *
+     * @param reader
+     *            the reader of the result values
+     *
+     * @return the source
+     */
+    public static ResultValuesSource of(Reader reader) {
+        return new ReaderSource(reader);
+    }
+
+    /**
+     * Create a source that encodes blocks of rows of token values with the
+     * separators of the text encoding of the result template.
+     *
+     * @param blocks
+     *            the blocks of rows
+     * @param encoding
+     *            the text encoding of the result template
+     *
+     * @return the source
+     */
+    public static ResultValuesSource of(Iterator<? extends Iterable<? extends Iterable<String>>> blocks,
+            SweTextEncoding encoding) {
+        return new BlockSource(blocks, encoding.getTokenSeparator(), encoding.getBlockSeparator());
+    }
+
+    private static class StringSource extends ResultValuesSource {
+        private final String resultValues;
+
+        private int position;
+
+        StringSource(String resultValues) {
+            this.resultValues = resultValues == null ? "" : resultValues;
+        }
+
+        @Override
+        public String next() {
+            if (position >= resultValues.length()) {
+                return null;
+            }
+            int end = Math.min(position + CHUNK_SIZE, resultValues.length());
+            String chunk = resultValues.substring(position, end);
+            position = end;
+            return chunk;
+        }
+    }
+
+    private static class ReaderSource extends ResultValuesSource {
+        private final Reader reader;
+
+        private final char[] buffer = new char[CHUNK_SIZE];
+
+        ReaderSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public String next() throws IOException {
+            int read = reader.read(buffer);
+            while (read == 0) {
+                read = reader.read(buffer);
+            }
+            return read < 0 ? null : new String(buffer, 0, read);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class BlockSource extends ResultValuesSource {
+        private final Iterator<? extends Iterable<? extends Iterable<String>>> blocks;
+
+        private final String tokenSeparator;
+
+        private final String blockSeparator;
+
+        private boolean first = true;
+
+        BlockSource(Iterator<? extends Iterable<? extends Iterable<String>>> blocks, String tokenSeparator,
+                String blockSeparator) {
+            this.blocks = blocks;
+            this.tokenSeparator = tokenSeparator;
+            this.blockSeparator = blockSeparator;
+        }
+
+        @Override
+        public String next() {
+            StringBuilder chunk = new StringBuilder();
+            while (chunk.length() == 0 && blocks.hasNext()) {
+                for (Iterable<String> row : blocks.next()) {
+                    if (!first) {
+                        chunk.append(blockSeparator);
+                    }
+                    first = false;
+                    boolean firstToken = true;
+                    for (String token : row) {
+                        if (!firstToken) {
+                            chunk.append(tokenSeparator);
+                        }
+                        firstToken = false;
+                        if (token != null) {
+                            chunk.append(token);
+                        }
+                    }
+                }
+            }
+            return chunk.length() == 0 ? null : chunk.toString();
+        }
+    }
+}
@@ -124,10 +124,11 @@ public class SamplingEncoderv100 extends AbstractXmlEncoder<XmlObject, AbstractF
     @Override
     public XmlObject encode(AbstractFeature abstractFeature, EncodingContext additionalValues)
             throws EncodingException {
-        return XmlHelper.validateDocument(createFeature(abstractFeature), EncodingException::new);
+        return XmlHelper.validateDocument(createFeature(abstractFeature, GmlIdAllocator.of(additionalValues)),
+                EncodingException::new);
     }
 
-    private XmlObject createFeature(AbstractFeature absFeature) throws EncodingException {
+    private XmlObject createFeature(AbstractFeature absFeature, GmlIdAllocator ids) throws EncodingException {
         if (absFeature instanceof SamplingFeature) {
             SamplingFeature sampFeat = (SamplingFeature) absFeature;
             if (sampFeat.getFeatureType().equals(SfConstants.FT_SAMPLINGPOINT)
@@ -136,7 +137,7 @@ public class SamplingEncoderv100 extends AbstractXmlEncoder<XmlObject, AbstractF
                 SamplingPointDocument xbSamplingPointDoc = SamplingPointDocument.Factory.newInstance(getXmlOptions());
                 SamplingPointType xbSamplingPoint = xbSamplingPointDoc.addNewSamplingPoint();
                 addValuesToFeature(xbSamplingPoint, sampFeat);
-                XmlObject xbGeomety = getEncodedGeometry(sampFeat.getGeometry(), absFeature.getGmlId());
+                XmlObject xbGeomety = getEncodedGeometry(sampFeat.getGeometry(), absFeature.getGmlId(), ids);
                 xbSamplingPoint.addNewPosition().addNewPoint().set(xbGeomety);
                 return xbSamplingPointDoc;
             } else if (sampFeat.getFeatureType().equals(SfConstants.FT_SAMPLINGCURVE)
@@ -145,7 +146,7 @@ public class SamplingEncoderv100 extends AbstractXmlEncoder<XmlObject, AbstractF
                 SamplingCurveDocument xbSamplingCurveDoc = SamplingCurveDocument.Factory.newInstance(getXmlOptions());
                 SamplingCurveType xbSamplingCurve = xbSamplingCurveDoc.addNewSamplingCurve();
                 addValuesToFeature(xbSamplingCurve, sampFeat);
-                XmlObject xbGeomety = getEncodedGeometry(sampFeat.getGeometry(), absFeature.getGmlId());
+                XmlObject xbGeomety = getEncodedGeometry(sampFeat.getGeometry(), absFeature.getGmlId(), ids);
                 xbSamplingCurve.addNewShape().addNewCurve().set(xbGeomety);
                 return xbSamplingCurveDoc;
             } else if (sampFeat.getFeatureType().equals(SfConstants.FT_SAMPLINGSURFACE)
@@ -155,21 +156,23 @@ public class SamplingEncoderv100 extends AbstractXmlEncoder<XmlObject, AbstractF
                         SamplingSurfaceDocument.Factory.newInstance(getXmlOptions());
                 SamplingSurfaceType xbSamplingSurface = xbSamplingSurfaceDoc.addNewSamplingSurface();
                 addValuesToFeature(xbSamplingSurface, sampFeat);
-                XmlObject xbGeomety = getEncodedGeometry(sampFeat.getGeometry(), absFeature.getGmlId());
+                XmlObject xbGeomety = getEncodedGeometry(sampFeat.getGeometry(), absFeature.getGmlId(), ids);
                 xbSamplingSurface.addNewShape().addNewSurface().set(xbGeomety);
                 return xbSamplingSurfaceDoc;
             }
         } else if (absFeature instanceof FeatureCollection) {
-            createFeatureCollection((FeatureCollection) absFeature);
+            createFeatureCollection((FeatureCollection) absFeature, ids);
         }
         throw new UnsupportedEncoderInputException(this, absFeature);
     }
 
-    private XmlObject getEncodedGeometry(Geometry geometry, String gmlId) throws EncodingException {
+    private XmlObject getEncodedGeometry(Geometry geometry, String gmlId, GmlIdAllocator ids)
+            throws EncodingException {
         Encoder<XmlObject, Geometry> encoder =
                 getEncoderRepository().getEncoder(CodingHelper.getEncoderKey(GmlConstants.NS_GML, geometry));
         if (encoder != null) {
-            return encoder.encode(geometry, EncodingContext.empty().with(SosHelperValues.GMLID, gmlId));
+            return encoder.encode(geometry,
+                    GmlIdAllocator.with(EncodingContext.empty().with(SosHelperValues.GMLID, gmlId), ids));
         } else {
             throw new EncodingException("Error while encoding geometry for feature, needed encoder is missing!");
         }
@@ -203,14 +206,16 @@ public class SamplingEncoderv100 extends AbstractXmlEncoder<XmlObject, AbstractF
         }
     }
 
-    private XmlObject createFeatureCollection(FeatureCollection sosFeatureCollection) throws EncodingException {
+    private XmlObject createFeatureCollection(FeatureCollection sosFeatureCollection, GmlIdAllocator ids)
+            throws EncodingException {
         SamplingFeatureCollectionDocument xbSampFeatCollDoc =
                 SamplingFeatureCollectionDocument.Factory.newInstance(getXmlOptions());
         SamplingFeatureCollectionType xbSampFeatColl = xbSampFeatCollDoc.addNewSamplingFeatureCollection();
-        xbSampFeatColl.setId("sfc_" + Long.toString(new DateTime().getMillis()));
+        String id = "sfc_" + Long.toString(new DateTime().getMillis());
+        xbSampFeatColl.setId(ids == null ? id : ids.allocate(id));
         for (AbstractFeature sosAbstractFeature : sosFeatureCollection.getMembers().values()) {
             SamplingFeaturePropertyType xbFeatMember = xbSampFeatColl.addNewMember();
-            xbFeatMember.set(createFeature(sosAbstractFeature));
+            xbFeatMember.set(createFeature(sosAbstractFeature, ids));
         }
         return xbSampFeatCollDoc;
     }
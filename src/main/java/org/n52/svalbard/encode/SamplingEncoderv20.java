@@ -117,20 +117,25 @@ public class SamplingEncoderv20 extends AbstractXmlEncoder<XmlObject, AbstractFe
     @Override
     public XmlObject encode(final AbstractFeature abstractFeature, final EncodingContext ctx)
             throws EncodingException {
-        final XmlObject encodedObject = createFeature(abstractFeature);
+        final XmlObject encodedObject = createFeature(abstractFeature, GmlIdAllocator.of(ctx));
         // LOGGER.debug("Encoded object {} is valid: {}",
         // encodedObject.schemaType().toString(),
         // XmlHelper.validateDocument(encodedObject));
         return encodedObject;
     }
 
-    private XmlObject createFeature(final AbstractFeature absFeature) throws EncodingException {
+    private XmlObject createFeature(final AbstractFeature absFeature, GmlIdAllocator ids)
+            throws EncodingException {
         if (absFeature instanceof SamplingFeature) {
             final SamplingFeature sampFeat = (SamplingFeature) absFeature;
             final StringBuilder builder = new StringBuilder();
             builder.append("ssf_");
             builder.append(JavaHelper.generateID(absFeature.getIdentifierCodeWithAuthority().getValue()));
-            absFeature.setGmlId(builder.toString());
+            String gmlId = builder.toString();
+            if (ids != null) {
+                gmlId = ids.allocate(gmlId);
+            }
+            absFeature.setGmlId(gmlId);
 
             SFSpatialSamplingFeatureDocument xbSampFeatDoc =
                     SFSpatialSamplingFeatureDocument.Factory.newInstance(getXmlOptions());
@@ -138,15 +143,20 @@ public class SamplingEncoderv20 extends AbstractXmlEncoder<XmlObject, AbstractFe
                 try {
                     final XmlObject feature = XmlObject.Factory.parse(sampFeat.getXml(), getXmlOptions());
                     XmlHelper.updateGmlIDs(feature.getDomNode().getFirstChild(), absFeature.getGmlId(), null);
+                    if (ids != null) {
+                        // the nested gml:ids of the stored description have to be unique in the response, too
+                        XmlHelper.replaceGmlIds(feature.getDomNode(),
+                                id -> id.equals(absFeature.getGmlId()) ? id : ids.allocate(id));
+                    }
                     if (XmlHelper.getNamespace(feature).equals(SfConstants.NS_SAMS)
                             && feature instanceof SFSpatialSamplingFeatureType) {
                         xbSampFeatDoc.setSFSpatialSamplingFeature((SFSpatialSamplingFeatureType) feature);
-                        encodeShape(xbSampFeatDoc.getSFSpatialSamplingFeature().getShape(), sampFeat);
+                        encodeShape(xbSampFeatDoc.getSFSpatialSamplingFeature().getShape(), sampFeat, ids);
                         addNameDescription(xbSampFeatDoc.getSFSpatialSamplingFeature(), sampFeat);
                         return xbSampFeatDoc;
                     }
                     encodeShape(((SFSpatialSamplingFeatureDocument) feature).getSFSpatialSamplingFeature().getShape(),
-                            sampFeat);
+                            sampFeat, ids);
                     addNameDescription(((SFSpatialSamplingFeatureDocument) feature).getSFSpatialSamplingFeature(),
                             sampFeat);
                     return feature;
@@ -210,11 +220,11 @@ public class SamplingEncoderv20 extends AbstractXmlEncoder<XmlObject, AbstractFe
             }
 
             if (sampFeat.isSetParameter()) {
-                addParameter(xbSampFeature, sampFeat);
+                addParameter(xbSampFeature, sampFeat, ids);
             }
 
             // set position
-            encodeShape(xbSampFeature.addNewShape(), sampFeat);
+            encodeShape(xbSampFeature.addNewShape(), sampFeat, ids);
             return xbSampFeatDoc;
         }
         throw new UnsupportedEncoderInputException(this, absFeature);
@@ -230,11 +240,12 @@ public class SamplingEncoderv20 extends AbstractXmlEncoder<XmlObject, AbstractFe
         }
     }
 
-    private void encodeShape(ShapeType xbShape, SamplingFeature sampFeat) throws EncodingException {
+    private void encodeShape(ShapeType xbShape, SamplingFeature sampFeat, GmlIdAllocator ids)
+            throws EncodingException {
         Encoder<XmlObject, Geometry> encoder = getEncoder(GmlConstants.NS_GML_32, sampFeat.getGeometry());
         if (encoder != null) {
             XmlObject xmlObject = encoder.encode(sampFeat.getGeometry(),
-                    EncodingContext.of(SosHelperValues.GMLID, sampFeat.getGmlId()));
+                    GmlIdAllocator.with(EncodingContext.of(SosHelperValues.GMLID, sampFeat.getGmlId()), ids));
             if (xbShape.isSetAbstractGeometry()) {
                 xbShape.getAbstractGeometry().set(xmlObject);
             } else {
@@ -246,10 +257,11 @@ public class SamplingEncoderv20 extends AbstractXmlEncoder<XmlObject, AbstractFe
         }
     }
 
-    private void addParameter(final SFSpatialSamplingFeatureType xbSampFeature, final SamplingFeature sampFeat)
-            throws EncodingException {
+    private void addParameter(final SFSpatialSamplingFeatureType xbSampFeature, final SamplingFeature sampFeat,
+            GmlIdAllocator ids) throws EncodingException {
         for (NamedValue<?> namedValuePair : sampFeat.getParameters()) {
-            XmlObject encodeObjectToXml = encodeObjectToXml(OmConstants.NS_OM_2, namedValuePair);
+            XmlObject encodeObjectToXml = encodeObjectToXml(OmConstants.NS_OM_2, namedValuePair,
+                    GmlIdAllocator.with(EncodingContext.empty(), ids));
             if (encodeObjectToXml != null) {
                 xbSampFeature.addNewParameter().addNewNamedValue().set(encodeObjectToXml);
             }
@@ -27,14 +27,23 @@ import java.util.stream.Collectors;
 import javax.inject.Inject;
 
 import org.n52.janmayen.lifecycle.Constructable;
+import org.n52.shetland.ogc.gml.GmlConstants;
+import org.n52.shetland.ogc.om.OmConstants;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.shetland.ogc.swe.SweConstants;
 import org.n52.shetland.w3c.SchemaLocation;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 /**
- * TODO JavaDoc
+ * Repository of the schema locations and namespace prefixes of the
+ * {@link SchemaAwareEncoder}s. The lookups are served from an immutable index
+ * that is built from the encoders once and only rebuilt if the encoders of
+ * the {@link EncoderRepository} were replaced.
  *
  * @author Christian Autermann
  */
@@ -42,7 +51,7 @@ public class SchemaRepository implements Constructable {
     @Deprecated
     private static SchemaRepository instance;
 
-    private final Map<String, Set<SchemaLocation>> schemaLocations = Maps.newHashMap();
+    private volatile Index index;
 
     private EncoderRepository encoderRepository;
 
@@ -55,41 +64,46 @@ public class SchemaRepository implements Constructable {
     @SuppressFBWarnings("ST_WRITE_TO_STATIC_FROM_INSTANCE_METHOD")
     public void init() {
         SchemaRepository.instance = this;
-        this.schemaLocations.clear();
-        this.schemaLocations
-                .putAll(this.encoderRepository.getEncoders().stream().filter(e -> e instanceof SchemaAwareEncoder)
-                        .map(e -> (SchemaAwareEncoder<?, ?>) e).map(SchemaAwareEncoder::getSchemaLocations)
-                        .filter(Objects::nonNull).flatMap(Set<SchemaLocation>::stream)
-                        .collect(groupingBy(SchemaLocation::getNamespace, Collectors.toSet())));
+        this.index = new Index(this.encoderRepository);
     }
 
     public Set<SchemaLocation> getSchemaLocation(String namespace) {
-        if (this.schemaLocations.containsKey(namespace)) {
-            return this.schemaLocations.get(namespace);
-        }
-        return Collections.emptySet();
+        return getIndex().schemaLocations.getOrDefault(namespace, Collections.emptySet());
     }
 
+    /**
+     * Get the namespace of the prefix. If the prefix is used for several
+     * namespaces, the namespace of the current version of the standard (e.g.
+     * GML 3.2 instead of GML 3.1.1) is returned.
+     *
+     * @param prefix
+     *            the prefix
+     *
+     * @return the namespace or <code>null</code>
+     */
     public String getNamespaceFor(String prefix) {
-        Map<String, String> prefixNamspaceMap = getPrefixNamspaceMap();
-        for (String namespace : prefixNamspaceMap.keySet()) {
-            if (prefix.equals(prefixNamspaceMap.get(prefix))) {
-                return namespace;
-            }
-        }
-        return null;
+        return getIndex().namespaces.get(prefix);
     }
 
     public String getPrefixFor(String namespace) {
-        return getPrefixNamspaceMap().get(namespace);
+        return getIndex().prefixes.get(namespace);
     }
 
-    private Map<String, String> getPrefixNamspaceMap() {
-        Map<String, String> prefixMap = Maps.newHashMap();
-        this.encoderRepository.getEncoders().stream().filter(encoder -> encoder instanceof SchemaAwareEncoder)
-                .map(encoder -> (SchemaAwareEncoder<?, ?>) encoder)
-                .forEach(encoder -> encoder.addNamespacePrefixToMap(prefixMap));
-        return prefixMap;
+    /**
+     * @return the generation of the schema locations and prefixes, which
+     *         changes if the encoders were replaced
+     */
+    public int getGeneration() {
+        return getIndex().generation;
+    }
+
+    private Index getIndex() {
+        Index current = this.index;
+        if (current == null || current.generation != this.encoderRepository.getGeneration()) {
+            current = new Index(this.encoderRepository);
+            this.index = current;
+        }
+        return current;
     }
 
     @Deprecated
@@ -97,4 +111,61 @@ public class SchemaRepository implements Constructable {
         return instance;
     }
 
+    /**
+     * Immutable snapshot of the schema locations and the namespace prefixes
+     * in both directions.
+     */
+    private static final class Index {
+        /**
+         * Namespaces that are preferred over other namespaces with the same
+         * prefix.
+         */
+        private static final Set<String> PREFERRED_NAMESPACES = ImmutableSet.of(GmlConstants.NS_GML_32,
+                SweConstants.NS_SWE_20, OmConstants.NS_OM_2, Sos2Constants.NS_SOS_20);
+
+        private final int generation;
+
+        private final Map<String, Set<SchemaLocation>> schemaLocations;
+
+        private final Map<String, String> prefixes;
+
+        private final Map<String, String> namespaces;
+
+        Index(EncoderRepository encoderRepository) {
+            // read the generation first, a concurrent change leads to a
+            // rebuild on the next lookup
+            this.generation = encoderRepository.getGeneration();
+            Set<SchemaAwareEncoder<?, ?>> encoders = encoderRepository.getEncoders().stream()
+                    .filter(e -> e instanceof SchemaAwareEncoder).map(e -> (SchemaAwareEncoder<?, ?>) e)
+                    .collect(Collectors.toSet());
+            Map<String, Set<SchemaLocation>> locations = encoders.stream()
+                    .map(SchemaAwareEncoder::getSchemaLocations).filter(Objects::nonNull)
+                    .flatMap(Set<SchemaLocation>::stream).collect(groupingBy(SchemaLocation::getNamespace,
+                            Collectors.collectingAndThen(Collectors.toSet(), ImmutableSet::copyOf)));
+            this.schemaLocations = ImmutableMap.copyOf(locations);
+            Map<String, String> prefixMap = Maps.newHashMap();
+            encoders.forEach(encoder -> encoder.addNamespacePrefixToMap(prefixMap));
+            this.prefixes = ImmutableMap.copyOf(prefixMap);
+            Map<String, String> namespaceMap = Maps.newHashMapWithExpectedSize(prefixMap.size());
+            // a prefix may be used for several namespaces (e.g. different versions)
+            prefixMap.forEach((namespace, prefix) -> namespaceMap.merge(prefix, namespace, Index::prefer));
+            this.namespaces = ImmutableMap.copyOf(namespaceMap);
+        }
+
+        /**
+         * Choose the namespace of a prefix independent of the order of the
+         * encoders: a preferred namespace or else the lexicographically
+         * greatest one, which is the latest version for the usual versioned
+         * namespace URIs.
+         */
+        private static String prefer(String namespace, String other) {
+            if (PREFERRED_NAMESPACES.contains(namespace)) {
+                return namespace;
+            } else if (PREFERRED_NAMESPACES.contains(other)) {
+                return other;
+            }
+            return namespace.compareTo(other) >= 0 ? namespace : other;
+        }
+    }
+
 }
@@ -231,7 +231,7 @@ public class SensorMLEncoderv101 extends AbstractSensorMLEncoder {
             throw new UnsupportedEncoderInputException(this, response);
         }
         // check if all gml:id are unique
-        XmlHelper.makeGmlIdsUnique(encodedObject.getDomNode());
+        makeGmlIdsUnique(encodedObject, additionalValues);
         XmlHelper.validateDocument(encodedObject, EncodingException::new);
         return encodedObject;
 
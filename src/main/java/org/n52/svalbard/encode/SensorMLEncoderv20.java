@@ -225,7 +225,7 @@ public class SensorMLEncoderv20 extends AbstractSensorMLEncoder {
             throw new EncodingException(xmle);
         }
         // check if all gml:id are unique
-        XmlHelper.makeGmlIdsUnique(encodedObject.getDomNode());
+        makeGmlIdsUnique(encodedObject, additionalValues);
         XmlHelper.validateDocument(encodedObject, EncodingException::new);
         return encodedObject;
     }
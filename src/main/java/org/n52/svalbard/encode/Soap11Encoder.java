@@ -16,6 +16,7 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -37,6 +38,7 @@ import org.n52.svalbard.encode.exception.EncodingException;
 import org.n52.svalbard.encode.exception.UnsupportedEncoderInputException;
 import org.n52.svalbard.util.CodingHelper;
 import org.n52.svalbard.util.N52XmlHelper;
+import org.n52.svalbard.write.Soap11XmlStreamWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,7 +50,8 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  * @author <a href="mailto:c.autermann@52north.org">Christian Autermann</a>
  * @since 4.0.0
  */
-public class Soap11Encoder extends AbstractSoapEncoder<SOAPMessage, SoapResponse> {
+public class Soap11Encoder extends AbstractSoapEncoder<SOAPMessage, SoapResponse>
+        implements StreamingEncoder<SOAPMessage, SoapResponse> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Soap11Encoder.class);
 
@@ -57,6 +60,29 @@ public class Soap11Encoder extends AbstractSoapEncoder<SOAPMessage, SoapResponse
         LOGGER.debug("Encoder for the following keys initialized successfully: {}!", Joiner.on(", ").join(getKeys()));
     }
 
+    @Override
+    public boolean forceStreaming() {
+        return false;
+    }
+
+    @Override
+    public void encode(SoapResponse soapResponse, OutputStream outputStream) throws EncodingException {
+        encode(soapResponse, outputStream, new EncodingValues());
+    }
+
+    /**
+     * Writes the SOAP 1.1 envelope with the {@link Soap11XmlStreamWriter}, so
+     * streaming body encoders write directly to the stream.
+     */
+    @Override
+    public void encode(SoapResponse soapResponse, OutputStream outputStream, EncodingValues encodingValues)
+            throws EncodingException {
+        if (soapResponse == null) {
+            throw new UnsupportedEncoderInputException(this, soapResponse);
+        }
+        write(new Soap11XmlStreamWriter(), soapResponse, outputStream, encodingValues);
+    }
+
     @Override
     @SuppressFBWarnings("NP_LOAD_OF_KNOWN_NULL_VALUE")
     public SOAPMessage encode(SoapResponse soapResponse, EncodingContext additionalValues) throws EncodingException {
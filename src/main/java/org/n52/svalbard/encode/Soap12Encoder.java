@@ -119,7 +119,7 @@ public class Soap12Encoder extends AbstractSoapEncoder<XmlObject, Object>
     public void encode(Object element, OutputStream outputStream, EncodingValues encodingValues)
             throws EncodingException {
         if (element instanceof SoapResponse) {
-            new Soap12XmlStreamWriter().write((SoapResponse) element, outputStream);
+            write(new Soap12XmlStreamWriter(), (SoapResponse) element, outputStream, encodingValues);
         } else {
             try {
                 encode(element, encodingValues.getAdditionalValues()).save(outputStream, getXmlOptions());
@@ -16,6 +16,8 @@
  */
 package org.n52.svalbard.encode;
 
+import java.io.OutputStream;
+
 import org.apache.xmlbeans.XmlObject;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.ogc.sos.SosConstants;
@@ -47,4 +49,18 @@ public class SosV1GetObservationResponseEncoder extends AbstractSosV1ResponseEnc
         }
         return encoder.encode(response);
     }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void create(GetObservationResponse response, OutputStream outputStream, EncodingValues encodingValues)
+            throws EncodingException {
+        Encoder<XmlObject, GetObservationResponse> encoder = getEncoder(response.getResponseFormat(), response);
+        if (encoder instanceof StreamingEncoder) {
+            // the observation collection is written member by member
+            ((StreamingEncoder<XmlObject, GetObservationResponse>) encoder).encode(response, outputStream,
+                    encodingValues);
+        } else {
+            super.create(response, outputStream, encodingValues);
+        }
+    }
 }
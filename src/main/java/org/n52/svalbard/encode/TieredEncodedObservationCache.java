@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.shetland.ogc.gml.time.Time;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.svalbard.CodingSettings;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+
+/**
+ * {@link EncodedObservationCache} with an in-heap tier and an off-heap tier.
+ * Observations that are evicted from the in-heap tier because of its size are
+ * moved to the off-heap tier, which evicts the least recently used
+ * observations. The sizes of the tiers are set in KiB by
+ * {@link CodingSettings#OBSERVATION_CACHE_HEAP_SIZE} and
+ * {@link CodingSettings#OBSERVATION_CACHE_OFF_HEAP_SIZE}, a tier with a size
+ * less than or equal to zero is disabled.
+ *
+ * Only historical observations are cached: the end of the phenomenon time and
+ * the result time have to be at least
+ * {@link CodingSettings#OBSERVATION_CACHE_MIN_AGE} seconds (one day by default)
+ * in the past.
+ * Observations that are changed or deleted afterwards have to be removed with
+ * {@link #invalidate(String)}.
+ *
+ * @since 1.0.0
+ */
+@Configurable
+public class TieredEncodedObservationCache implements EncodedObservationCache {
+
+    private static final int KILOBYTE = 1024;
+
+    private static final long DEFAULT_MIN_AGE = TimeUnit.DAYS.toMillis(1);
+
+    private volatile Cache<Key, Entry> heap;
+
+    private volatile OffHeapTier offHeap;
+
+    private long minAge = DEFAULT_MIN_AGE;
+
+    @Setting(CodingSettings.OBSERVATION_CACHE_HEAP_SIZE)
+    public void setHeapSize(int kilobytes) {
+        if (kilobytes > 0) {
+            RemovalListener<Key, Entry> demote = notification -> {
+                OffHeapTier tier = this.offHeap;
+                if (tier != null && notification.getCause() == RemovalCause.SIZE) {
+                    tier.put(notification.getKey(), notification.getValue());
+                }
+            };
+            this.heap = CacheBuilder.newBuilder().maximumWeight((long) kilobytes * KILOBYTE)
+                    .weigher((Key key, Entry value) -> value.size()).removalListener(demote).build();
+        } else {
+            this.heap = null;
+        }
+    }
+
+    @Setting(CodingSettings.OBSERVATION_CACHE_OFF_HEAP_SIZE)
+    public void setOffHeapSize(int kilobytes) {
+        this.offHeap = kilobytes > 0 ? new OffHeapTier((long) kilobytes * KILOBYTE) : null;
+    }
+
+    @Setting(CodingSettings.OBSERVATION_CACHE_MIN_AGE)
+    public void setMinAge(int seconds) {
+        this.minAge = Math.max(0, seconds) * 1000L;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.heap != null || this.offHeap != null;
+    }
+
+    @Override
+    public boolean isCacheable(OmObservation observation) {
+        long latest = System.currentTimeMillis() - minAge;
+        DateTime phenomenonTime = getEnd(observation.getPhenomenonTime());
+        TimeInstant resultTime = observation.getResultTime();
+        DateTime resultTimeValue = resultTime == null ? null : resultTime.getValue();
+        return phenomenonTime != null && phenomenonTime.isBefore(latest)
+                && (resultTimeValue == null || resultTimeValue.isBefore(latest));
+    }
+
+    @Override
+    public Entry get(Key key) {
+        Cache<Key, Entry> h = this.heap;
+        if (h != null) {
+            Entry entry = h.getIfPresent(key);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        OffHeapTier o = this.offHeap;
+        return o == null ? null : o.get(key);
+    }
+
+    @Override
+    public void put(Key key, byte[] encoded, Set<String> gmlIds) {
+        Entry entry = new Entry(ByteBuffer.wrap(encoded), gmlIds);
+        Cache<Key, Entry> h = this.heap;
+        if (h != null) {
+            h.put(key, entry);
+        } else {
+            OffHeapTier o = this.offHeap;
+            if (o != null) {
+                o.put(key, entry);
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(String observationId) {
+        Cache<Key, Entry> h = this.heap;
+        if (h != null) {
+            h.asMap().keySet().removeIf(key -> key.getObservationId().equals(observationId));
+        }
+        OffHeapTier o = this.offHeap;
+        if (o != null) {
+            o.invalidate(observationId);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        Cache<Key, Entry> h = this.heap;
+        if (h != null) {
+            h.invalidateAll();
+        }
+        OffHeapTier o = this.offHeap;
+        if (o != null) {
+            o.invalidateAll();
+        }
+    }
+
+    private static DateTime getEnd(Time time) {
+        if (time instanceof TimeInstant) {
+            return ((TimeInstant) time).getValue();
+        } else if (time instanceof TimePeriod) {
+            return ((TimePeriod) time).getEnd();
+        }
+        return null;
+    }
+
+    /**
+     * Least recently used cache of direct buffers. The memory of evicted
+     * buffers is released when the buffers are garbage collected.
+     */
+    private static class OffHeapTier {
+
+        private final Map<Key, Entry> buffers = new LinkedHashMap<>(16, 0.75f, true);
+
+        private final long capacity;
+
+        private long size;
+
+        OffHeapTier(long capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized Entry get(Key key) {
+            return buffers.get(key);
+        }
+
+        synchronized void put(Key key, Entry entry) {
+            if (entry.size() > capacity) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(entry.size());
+            buffer.put(entry.getEncoded()).flip();
+            remove(buffers.put(key, new Entry(buffer, entry.getGmlIds())));
+            size += entry.size();
+            Iterator<Entry> iter = buffers.values().iterator();
+            while (size > capacity && iter.hasNext()) {
+                remove(iter.next());
+                iter.remove();
+            }
+        }
+
+        synchronized void invalidate(String observationId) {
+            Iterator<Map.Entry<Key, Entry>> iter = buffers.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<Key, Entry> entry = iter.next();
+                if (entry.getKey().getObservationId().equals(observationId)) {
+                    remove(entry.getValue());
+                    iter.remove();
+                }
+            }
+        }
+
+        synchronized void invalidateAll() {
+            buffers.clear();
+            size = 0;
+        }
+
+        private void remove(Entry entry) {
+            if (entry != null) {
+                size -= entry.size();
+            }
+        }
+    }
+}
@@ -157,7 +157,7 @@ public class WmlTDREncoderv20 extends AbstractWmlEncoderv20 {
     @Override
     public XmlObject encode(Object element, EncodingContext additionalValues) throws EncodingException {
         if (element instanceof ObservationValue) {
-            return encodeResult((ObservationValue<?>) element);
+            return encodeResult((ObservationValue<?>) element, additionalValues);
         } else {
             return super.encode(element, additionalValues);
         }
@@ -180,13 +180,15 @@ public class WmlTDREncoderv20 extends AbstractWmlEncoderv20 {
     }
 
     @Override
-    protected XmlObject createResult(OmObservation sosObservation) throws EncodingException {
-        return createMeasurementDomainRange(sosObservation);
+    protected XmlObject createResult(OmObservation sosObservation, EncodingContext context)
+            throws EncodingException {
+        return createMeasurementDomainRange(sosObservation, context);
     }
 
     @Override
-    protected XmlObject encodeResult(ObservationValue<?> observationValue) throws EncodingException {
-        return createMeasurementDomainRange((AbstractObservationValue<?>) observationValue);
+    protected XmlObject encodeResult(ObservationValue<?> observationValue, EncodingContext context)
+            throws EncodingException {
+        return createMeasurementDomainRange((AbstractObservationValue<?>) observationValue, context);
     }
 
     @Override
@@ -212,7 +214,8 @@ public class WmlTDREncoderv20 extends AbstractWmlEncoderv20 {
      * @throws EncodingException
      *             If an error occurs
      */
-    private XmlObject createMeasurementDomainRange(OmObservation sosObservation) throws EncodingException {
+    private XmlObject createMeasurementDomainRange(OmObservation sosObservation, EncodingContext context)
+            throws EncodingException {
         if (!sosObservation.getObservationConstellation().isSetObservationType()
                 || (sosObservation.getObservationConstellation().isSetObservationType() && isInvalidObservationType(
                         sosObservation.getObservationConstellation().getObservationType()))) {
@@ -223,10 +226,11 @@ public class WmlTDREncoderv20 extends AbstractWmlEncoderv20 {
                 MeasurementTimeseriesDomainRangeDocument.Factory.newInstance();
         MeasurementTimeseriesCoverageType xbMeasurementTimeseriesDomainRange =
                 xbMearuementTimeseriesDomainRangeDoc.addNewMeasurementTimeseriesDomainRange();
-        xbMeasurementTimeseriesDomainRange.setId("timeseries_" + sosObservation.getObservationID());
+        xbMeasurementTimeseriesDomainRange
+                .setId(GmlIdAllocator.allocate(context, "timeseries_" + sosObservation.getObservationID()));
 
         // set time position list
-        xbMeasurementTimeseriesDomainRange.addNewDomainSet().set(getTimePositionList(sosObservation));
+        xbMeasurementTimeseriesDomainRange.addNewDomainSet().set(getTimePositionList(sosObservation, context));
         // initialize unit
         AbstractPhenomenon observableProperty = sosObservation.getObservationConstellation().getObservableProperty();
         String unit = null;
@@ -298,10 +302,12 @@ public class WmlTDREncoderv20 extends AbstractWmlEncoderv20 {
      * @throws EncodingException
      *             If an error occurs
      */
-    private TimePositionListDocument getTimePositionList(OmObservation sosObservation) throws EncodingException {
+    private TimePositionListDocument getTimePositionList(OmObservation sosObservation, EncodingContext context)
+            throws EncodingException {
         TimePositionListDocument timePositionListDoc = TimePositionListDocument.Factory.newInstance();
         TimePositionListType timePositionList = timePositionListDoc.addNewTimePositionList();
-        timePositionList.setId("timepositionList_" + sosObservation.getObservationID());
+        timePositionList
+                .setId(GmlIdAllocator.allocate(context, "timepositionList_" + sosObservation.getObservationID()));
         if (sosObservation.getValue() instanceof SingleObservationValue<?>) {
             timePositionList.setTimePositionList(
                     Lists.newArrayList(getTimeString(sosObservation.getValue().getPhenomenonTime())));
@@ -344,8 +350,8 @@ public class WmlTDREncoderv20 extends AbstractWmlEncoderv20 {
         }).collect(toList());
     }
 
-    private XmlObject createMeasurementDomainRange(AbstractObservationValue<?> observationValue)
-            throws EncodingException {
+    private XmlObject createMeasurementDomainRange(AbstractObservationValue<?> observationValue,
+            EncodingContext context) throws EncodingException {
         if (!observationValue.isSetObservationType() || (observationValue.isSetObservationType()
                 && isInvalidObservationType(observationValue.getObservationType()))) {
             return null;
@@ -355,10 +361,11 @@ public class WmlTDREncoderv20 extends AbstractWmlEncoderv20 {
                 MeasurementTimeseriesDomainRangeDocument.Factory.newInstance();
         MeasurementTimeseriesCoverageType xbMeasurementTimeseriesDomainRange =
                 xbMearuementTimeseriesDomainRangeDoc.addNewMeasurementTimeseriesDomainRange();
-        xbMeasurementTimeseriesDomainRange.setId("timeseries_" + observationValue.getObservationID());
+        xbMeasurementTimeseriesDomainRange
+                .setId(GmlIdAllocator.allocate(context, "timeseries_" + observationValue.getObservationID()));
 
         // set time position list
-        xbMeasurementTimeseriesDomainRange.addNewDomainSet().set(getTimePositionList(observationValue));
+        xbMeasurementTimeseriesDomainRange.addNewDomainSet().set(getTimePositionList(observationValue, context));
         // initialize unit
         // AbstractPhenomenon observableProperty =
         // observationValue.getObservableProperty();
@@ -415,11 +422,12 @@ public class WmlTDREncoderv20 extends AbstractWmlEncoderv20 {
                 EncodingContext.of(SosHelperValues.FOR_OBSERVATION));
     }
 
-    private TimePositionListDocument getTimePositionList(AbstractObservationValue<?> observationValue)
-            throws EncodingException {
+    private TimePositionListDocument getTimePositionList(AbstractObservationValue<?> observationValue,
+            EncodingContext context) throws EncodingException {
         TimePositionListDocument timePositionListDoc = TimePositionListDocument.Factory.newInstance();
         TimePositionListType timePositionList = timePositionListDoc.addNewTimePositionList();
-        timePositionList.setId("timepositionList_" + observationValue.getObservationID());
+        timePositionList
+                .setId(GmlIdAllocator.allocate(context, "timepositionList_" + observationValue.getObservationID()));
         timePositionList.setTimePositionList(getTimeArray((MultiObservationValues<?>) observationValue));
         return timePositionListDoc;
     }
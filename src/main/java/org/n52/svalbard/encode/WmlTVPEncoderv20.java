@@ -143,7 +143,7 @@ public class WmlTVPEncoderv20 extends AbstractWmlEncoderv20 {
             throws EncodingException, UnsupportedEncoderInputException {
         XmlObject encodedObject = null;
         if (element instanceof ObservationValue) {
-            encodedObject = encodeResult((ObservationValue<?>) element);
+            encodedObject = encodeResult((ObservationValue<?>) element, additionalValues);
         } else {
             encodedObject = super.encode(element, additionalValues);
         }
@@ -167,13 +167,15 @@ public class WmlTVPEncoderv20 extends AbstractWmlEncoderv20 {
     }
 
     @Override
-    protected XmlObject createResult(OmObservation sosObservation) throws EncodingException {
-        return createMeasurementTimeseries(sosObservation);
+    protected XmlObject createResult(OmObservation sosObservation, EncodingContext context)
+            throws EncodingException {
+        return createMeasurementTimeseries(sosObservation, context);
     }
 
     @Override
-    protected XmlObject encodeResult(ObservationValue<?> observationValue) throws EncodingException {
-        return createMeasurementTimeseries((AbstractObservationValue<?>) observationValue);
+    protected XmlObject encodeResult(ObservationValue<?> observationValue, EncodingContext context)
+            throws EncodingException {
+        return createMeasurementTimeseries((AbstractObservationValue<?>) observationValue, context);
     }
 
     @Override
@@ -197,10 +199,11 @@ public class WmlTVPEncoderv20 extends AbstractWmlEncoderv20 {
      *            SOS observation
      * @return XML MeasurementTimeseries object
      */
-    private XmlObject createMeasurementTimeseries(OmObservation sosObservation) {
+    private XmlObject createMeasurementTimeseries(OmObservation sosObservation, EncodingContext context) {
         MeasurementTimeseriesDocument measurementTimeseriesDoc = MeasurementTimeseriesDocument.Factory.newInstance();
         MeasurementTimeseriesType measurementTimeseries = measurementTimeseriesDoc.addNewMeasurementTimeseries();
-        measurementTimeseries.setId("timeseries." + sosObservation.getObservationID());
+        measurementTimeseries
+                .setId(GmlIdAllocator.allocate(context, "timeseries." + sosObservation.getObservationID()));
         measurementTimeseries.addNewMetadata().addNewTimeseriesMetadata().addNewTemporalExtent()
                 .setHref("#" + sosObservation.getPhenomenonTime().getGmlId());
 
@@ -301,10 +304,12 @@ public class WmlTVPEncoderv20 extends AbstractWmlEncoderv20 {
         }
     }
 
-    private XmlObject createMeasurementTimeseries(AbstractObservationValue<?> observationValue) {
+    private XmlObject createMeasurementTimeseries(AbstractObservationValue<?> observationValue,
+            EncodingContext context) {
         MeasurementTimeseriesDocument measurementTimeseriesDoc = MeasurementTimeseriesDocument.Factory.newInstance();
         MeasurementTimeseriesType measurementTimeseries = measurementTimeseriesDoc.addNewMeasurementTimeseries();
-        measurementTimeseries.setId("timeseries." + observationValue.getObservationID());
+        measurementTimeseries
+                .setId(GmlIdAllocator.allocate(context, "timeseries." + observationValue.getObservationID()));
         measurementTimeseries.addNewMetadata().addNewTimeseriesMetadata().addNewTemporalExtent()
                 .setHref("#" + observationValue.getPhenomenonTime().getGmlId());
 
@@ -109,6 +109,21 @@ public class AqdHelper {
     public void processObservation(OmObservation observation, TimePeriod timePeriod, TimeInstant resultTime,
                                    FeatureCollection featureCollection, AbstractEReportingHeader eReportingHeader,
                                    int counter) {
+        if (processObservation(observation, timePeriod, resultTime, eReportingHeader, counter)) {
+            featureCollection.addMember(observation);
+        }
+    }
+
+    /**
+     * Prepare the observation for the e-Reporting response without adding it
+     * to a {@link FeatureCollection}, so the members can be written from the
+     * observation collection later on.
+     *
+     * @return <code>true</code>, if the observation is a member of the
+     *         response
+     */
+    public boolean processObservation(OmObservation observation, TimePeriod timePeriod, TimeInstant resultTime,
+                                      AbstractEReportingHeader eReportingHeader, int counter) {
         if (observation.isSetPhenomenonTime()) {
             // generate gml:id
             observation.setGmlId(getObservationId(counter));
@@ -117,8 +132,9 @@ public class AqdHelper {
                     .setIdentifier(new CodeWithAuthority(getObservationXlink(observation.getGmlId()))));
             timePeriod.extendToContain(observation.getPhenomenonTime());
             observation.setResultTime(resultTime);
-            featureCollection.addMember(observation);
+            return true;
         }
+        return false;
     }
 
     public String getObservationXlink(String gmlId) {
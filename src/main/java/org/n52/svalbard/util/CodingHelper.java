@@ -16,9 +16,19 @@
  */
 package org.n52.svalbard.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.XmlBeans;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.n52.janmayen.http.MediaTypes;
@@ -26,10 +36,13 @@ import org.n52.svalbard.decode.DecoderKey;
 import org.n52.svalbard.decode.OperationDecoderKey;
 import org.n52.svalbard.decode.XmlNamespaceDecoderKey;
 import org.n52.svalbard.decode.XmlStringOperationDecoderKey;
+import org.n52.svalbard.decode.exception.DecodingException;
 import org.n52.svalbard.decode.exception.XmlDecodingException;
 import org.n52.svalbard.encode.EncoderKey;
 import org.n52.svalbard.encode.XmlEncoderKey;
 
+import com.google.common.base.Strings;
+
 /**
  * TODO implement encodeToXml(Object o) using a Map from o.getClass().getName()
  * -> namespaces
@@ -41,6 +54,13 @@ import org.n52.svalbard.encode.XmlEncoderKey;
  */
 public final class CodingHelper {
 
+    private static final ClassValue<DecoderKeys> DECODER_KEYS = new ClassValue<DecoderKeys>() {
+        @Override
+        protected DecoderKeys computeValue(Class<?> type) {
+            return new DecoderKeys(type);
+        }
+    };
+
     private CodingHelper() {
     }
 
@@ -102,12 +122,39 @@ public final class CodingHelper {
         return new XmlEncoderKey(namespace, o.getClass());
     }
 
+    /**
+     * Get the decoder key for the document. The keys are interned per class
+     * and namespace, so repeated lookups return the same instance.
+     *
+     * @param doc
+     *            the document
+     *
+     * @return the decoder key
+     */
     public static DecoderKey getDecoderKey(final XmlObject doc) {
-        return new XmlNamespaceDecoderKey(XmlHelper.getNamespace(doc), doc.getClass());
+        return DECODER_KEYS.get(doc.getClass()).get(XmlHelper.getNamespace(doc));
+    }
+
+    /**
+     * Get the decoder key for a document with the root element, e.g. read
+     * ahead of parsing the document. The key is the one of the document type
+     * of the element, or of an untyped document if the element is not
+     * declared globally in a loaded schema.
+     *
+     * @param root
+     *            the name of the root element
+     *
+     * @return the decoder key
+     */
+    public static DecoderKey getDecoderKey(QName root) {
+        SchemaType documentType = XmlBeans.getContextTypeLoader().findDocumentType(root);
+        Class<?> type = documentType == null || documentType.getJavaClass() == null ? XmlObject.class
+                : documentType.getJavaClass();
+        return DECODER_KEYS.get(type).get(Strings.emptyToNull(root.getNamespaceURI()));
     }
 
     public static <T extends XmlObject> DecoderKey getDecoderKey(final T[] doc) {
-        return new XmlNamespaceDecoderKey(XmlHelper.getNamespace(doc[0]), doc.getClass());
+        return DECODER_KEYS.get(doc.getClass()).get(XmlHelper.getNamespace(doc[0]));
     }
 
     public static XmlObject readXML(String string) throws XmlDecodingException {
@@ -117,4 +164,108 @@ public final class CodingHelper {
             throw new XmlDecodingException("XML string", string, e);
         }
     }
+
+    /**
+     * Parses the XML document from the stream. The encoding is detected from
+     * the byte order mark or the XML declaration. The stream is not closed.
+     *
+     * @param in
+     *            the stream
+     *
+     * @return the document
+     *
+     * @throws DecodingException
+     *             if the stream can not be read or does not contain XML
+     */
+    public static XmlObject readXML(InputStream in) throws DecodingException {
+        try {
+            return XmlObject.Factory.parse(in);
+        } catch (XmlException e) {
+            throw new XmlDecodingException("XML stream", e);
+        } catch (IOException e) {
+            throw new DecodingException("Error while reading the XML stream", e);
+        }
+    }
+
+    /**
+     * Parses the XML document from the reader. The reader is not closed.
+     *
+     * @param reader
+     *            the reader
+     *
+     * @return the document
+     *
+     * @throws DecodingException
+     *             if the reader can not be read or does not contain XML
+     */
+    public static XmlObject readXML(Reader reader) throws DecodingException {
+        try {
+            return XmlObject.Factory.parse(reader);
+        } catch (XmlException e) {
+            throw new XmlDecodingException("XML stream", e);
+        } catch (IOException e) {
+            throw new DecodingException("Error while reading the XML stream", e);
+        }
+    }
+
+    /**
+     * Parses the XML document from the remaining bytes of the buffer without
+     * copying them. The encoding is detected from the byte order mark or the
+     * XML declaration.
+     *
+     * @param buffer
+     *            the buffer
+     *
+     * @return the document
+     *
+     * @throws DecodingException
+     *             if the buffer does not contain XML
+     */
+    public static XmlObject readXML(ByteBuffer buffer) throws DecodingException {
+        return readXML(new ByteBufferInputStream(buffer));
+    }
+
+    /**
+     * The interned {@link XmlNamespaceDecoderKey}s of a class. The instances
+     * are attached to the class by a {@link ClassValue}, so they do not keep
+     * the class (and its class loader) reachable. As untyped elements (e.g.
+     * {@code xs:anyType} content) may carry any namespace of the request, at
+     * most {@value #MAX_INTERNED_NAMESPACES} namespaces are interned per class;
+     * for any other namespace a new key is created.
+     */
+    private static final class DecoderKeys {
+        private static final int MAX_INTERNED_NAMESPACES = 16;
+
+        private final Class<?> type;
+
+        private final ConcurrentMap<String, DecoderKey> keys = new ConcurrentHashMap<>();
+
+        private volatile DecoderKey withoutNamespace;
+
+        DecoderKeys(Class<?> type) {
+            this.type = type;
+        }
+
+        DecoderKey get(String namespace) {
+            if (namespace == null) {
+                DecoderKey key = withoutNamespace;
+                if (key == null) {
+                    key = new XmlNamespaceDecoderKey(null, type);
+                    withoutNamespace = key;
+                }
+                return key;
+            }
+            DecoderKey key = keys.get(namespace);
+            if (key == null) {
+                key = new XmlNamespaceDecoderKey(namespace, type);
+                if (keys.size() < MAX_INTERNED_NAMESPACES) {
+                    DecoderKey interned = keys.putIfAbsent(namespace, key);
+                    if (interned != null) {
+                        key = interned;
+                    }
+                }
+            }
+            return key;
+        }
+    }
 }
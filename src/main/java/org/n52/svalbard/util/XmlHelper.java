@@ -24,17 +24,24 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 import javax.xml.namespace.QName;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
 
 import org.apache.xmlbeans.SchemaType;
+import org.apache.xmlbeans.XmlBeans;
 import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlCursor.TokenType;
 import org.apache.xmlbeans.XmlError;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
@@ -56,6 +63,9 @@ import org.w3c.dom.Attr;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
@@ -75,6 +85,9 @@ public final class XmlHelper {
 
     private static final Set<String> GML_NAMESPACES = Sets.newHashSet(GmlConstants.NS_GML, GmlConstants.NS_GML_32);
 
+    private static final QName[] GML_ID_NAMES = { GmlConstants.QN_ID_32,
+            new QName(GmlConstants.NS_GML, GmlConstants.AN_ID, GmlConstants.NS_GML_PREFIX) };
+
     private XmlHelper() {
     }
 
@@ -182,6 +195,9 @@ public final class XmlHelper {
 
     public static <X extends XmlObject, T extends Throwable> X validateDocument(X doc, Function<Throwable, T> supplier)
             throws T {
+        if (isValidated(doc)) {
+            return doc;
+        }
         // Create an XmlOptions instance and set the error listener.
         LinkedList<XmlError> validationErrors = new LinkedList<>();
         XmlOptions validationOptions = new XmlOptions().setErrorListener(validationErrors)
@@ -225,6 +241,78 @@ public final class XmlHelper {
         return doc;
     }
 
+    /**
+     * Validates the document against a compiled {@link Schema}. The
+     * {@link LaxValidationCase}s only apply to XmlBeans validation errors and
+     * are not checked here.
+     *
+     * @param doc
+     *            the document which should be checked
+     * @param schema
+     *            the compiled schema
+     * @param supplier
+     *            the exception supplier
+     *
+     * @return the document
+     *
+     * @throws T
+     *             if the document is not valid
+     */
+    public static <X extends XmlObject, T extends Throwable> X validateDocument(X doc, Schema schema,
+            Function<Throwable, T> supplier) throws T {
+        ValidationErrorCollector errors = new ValidationErrorCollector();
+        Validator validator = schema.newValidator();
+        validator.setErrorHandler(errors);
+        try {
+            validator.validate(new DOMSource(doc.getDomNode()));
+        } catch (SAXException | IOException ex) {
+            throw supplier.apply(ex);
+        }
+        if (!errors.getErrors().isEmpty()) {
+            throw supplier.apply(errors.toException());
+        }
+        return doc;
+    }
+
+    /**
+     * Mark the document as validated, e.g. because it was validated while
+     * parsing. Validating it again with
+     * {@link #validateDocument(XmlObject, Function)} is a no-op. The mark is
+     * stored in the document itself and is not kept by copies of it.
+     *
+     * @param doc
+     *            the document
+     *
+     * @return the document
+     */
+    public static <X extends XmlObject> X markValidated(X doc) {
+        XmlCursor cursor = doc.newCursor();
+        try {
+            cursor.toStartDoc();
+            cursor.setBookmark(new ValidatedBookmark());
+        } finally {
+            cursor.dispose();
+        }
+        return doc;
+    }
+
+    /**
+     * @param doc
+     *            the document
+     *
+     * @return if the document, or the document it belongs to, was marked as
+     *         validated
+     */
+    public static boolean isValidated(XmlObject doc) {
+        XmlCursor cursor = doc.newCursor();
+        try {
+            cursor.toStartDoc();
+            return cursor.getBookmark(ValidatedBookmark.class) != null;
+        } finally {
+            cursor.dispose();
+        }
+    }
+
     public static boolean validateDocument(XmlObject doc) throws DecodingException {
         validateDocument(doc, DecodingException::new);
         return true;
@@ -302,6 +390,52 @@ public final class XmlHelper {
         }
     }
 
+    /**
+     * Recurse through a node and its children and replace all gml:ids.
+     *
+     * @param node
+     *            The node to examine
+     * @param replacement
+     *            Function that returns the new value of a gml:id
+     */
+    public static void replaceGmlIds(Node node, UnaryOperator<String> replacement) {
+        NamedNodeMap attributes = node.getAttributes();
+        String nodeNamespace = node.getNamespaceURI();
+        if (attributes != null) {
+            for (int i = 0, len = attributes.getLength(); i < len; i++) {
+                Attr attr = (Attr) attributes.item(i);
+                if (attr.getLocalName().equals(GmlConstants.AN_ID) && checkAttributeForGmlId(attr, nodeNamespace)) {
+                    String gmlId = replacement.apply(attr.getValue());
+                    if (!attr.getValue().equals(gmlId)) {
+                        attr.setValue(gmlId);
+                    }
+                }
+            }
+        }
+        NodeList children = node.getChildNodes();
+        if (children != null) {
+            for (int i = 0, len = children.getLength(); i < len; i++) {
+                replaceGmlIds(children.item(i), replacement);
+            }
+        }
+    }
+
+    /**
+     * Get all gml:ids of a node and its children.
+     *
+     * @param node
+     *            The node to examine
+     * @return the gml:ids in document order
+     */
+    public static Set<String> getGmlIds(Node node) {
+        Set<String> gmlIds = new LinkedHashSet<>();
+        replaceGmlIds(node, gmlId -> {
+            gmlIds.add(gmlId);
+            return gmlId;
+        });
+        return gmlIds;
+    }
+
     public static void updateGmlIDs(final Node node, final String gmlID, String oldGmlID) {
         // check this node's attributes
         if (node != null) {
@@ -379,19 +513,31 @@ public final class XmlHelper {
         return Collections.unmodifiableCollection(GML_NAMESPACES);
     }
 
+    /**
+     * Get the namespace of the root element of the document or of the element.
+     * The name is read with a cursor, the DOM facade is not used. If the
+     * schema type has a name in another namespace (e.g. for
+     * <code>xs:anyType</code> elements), the namespace of the schema type is
+     * returned.
+     *
+     * @param doc
+     *            the document or element
+     *
+     * @return the namespace or <code>null</code>
+     */
     public static String getNamespace(final XmlObject doc) {
-        Node domNode = doc.getDomNode();
-        String namespaceURI = domNode.getNamespaceURI();
-        if (namespaceURI == null && domNode.getFirstChild() != null) {
-            namespaceURI = domNode.getFirstChild().getNamespaceURI();
-        }
-        /*
-         * if document starts with a comment, get next sibling (and ignore
-         * initial comment)
-         */
-        if (namespaceURI == null && domNode.getFirstChild() != null
-                && domNode.getFirstChild().getNextSibling() != null) {
-            namespaceURI = domNode.getFirstChild().getNextSibling().getNamespaceURI();
+        String namespaceURI = null;
+        XmlCursor cursor = doc.newCursor();
+        try {
+            // skips leading comments and processing instructions
+            if (!cursor.isStartdoc() || cursor.toFirstChild()) {
+                namespaceURI = getNamespaceURI(cursor.getName());
+                if (namespaceURI == null && cursor.isStart() && cursor.toFirstChild()) {
+                    namespaceURI = getNamespaceURI(cursor.getName());
+                }
+            }
+        } finally {
+            cursor.dispose();
         }
         // check with schemaType namespace, necessary for anyType elements
         final String schemaTypeNamespace = getSchemaTypeNamespace(doc);
@@ -407,6 +553,10 @@ public final class XmlHelper {
 
     }
 
+    private static String getNamespaceURI(QName name) {
+        return name == null || name.getNamespaceURI().isEmpty() ? null : name.getNamespaceURI();
+    }
+
     private static String getSchemaTypeNamespace(final XmlObject doc) {
         QName name;
         if (doc.schemaType().isAttributeType()) {
@@ -454,7 +604,128 @@ public final class XmlHelper {
     }
 
     public static String getLocalName(final XmlObject element) {
-        return (element == null) ? null : element.getDomNode().getLocalName();
+        QName name = getElementName(element);
+        return name == null ? null : name.getLocalPart();
+    }
+
+    /**
+     * Get the name of the element (or attribute) using a cursor.
+     *
+     * @param element
+     *            the element
+     *
+     * @return the name or <code>null</code>, if the object is a document or
+     *         <code>null</code>
+     */
+    public static QName getElementName(final XmlObject element) {
+        if (element == null) {
+            return null;
+        }
+        XmlCursor cursor = element.newCursor();
+        try {
+            return cursor.getName();
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    /**
+     * Get the child elements of the element as the {@link XmlObject}s of the
+     * existing tree.
+     *
+     * @param element
+     *            the element
+     *
+     * @return the child elements
+     */
+    public static List<XmlObject> getChildElements(final XmlObject element) {
+        List<XmlObject> children = new LinkedList<>();
+        XmlCursor cursor = element.newCursor();
+        try {
+            if (cursor.toFirstChild()) {
+                do {
+                    children.add(cursor.getObject());
+                } while (cursor.toNextSibling());
+            }
+        } finally {
+            cursor.dispose();
+        }
+        return children;
+    }
+
+    /**
+     * Get the first child element of the element as the {@link XmlObject} of
+     * the existing tree.
+     *
+     * @param element
+     *            the element
+     *
+     * @return the first child element or <code>null</code>
+     */
+    public static XmlObject getFirstChildElement(final XmlObject element) {
+        XmlCursor cursor = element.newCursor();
+        try {
+            return cursor.toFirstChild() ? cursor.getObject() : null;
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    /**
+     * Get the <code>gml:id</code> (GML 3.2) of the object or of the element
+     * contained in a <tt>*Document</tt> object.
+     *
+     * @param element
+     *            the object
+     * @return the <code>gml:id</code> or <code>null</code>
+     */
+    public static String getGmlId(final XmlObject element) {
+        if (element == null) {
+            return null;
+        }
+        final XmlCursor cursor = element.newCursor();
+        try {
+            String gmlId = cursor.getAttributeText(GmlConstants.QN_ID_32);
+            if (gmlId == null && cursor.isStartdoc() && cursor.toFirstChild()) {
+                gmlId = cursor.getAttributeText(GmlConstants.QN_ID_32);
+            }
+            return gmlId;
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    /**
+     * Replace the gml:id of an {@link XmlObject} or of the root element of an
+     * {@link XmlObject} document.
+     *
+     * @param element
+     *            the {@link XmlObject}
+     * @param gmlId
+     *            the new gml:id, nothing is changed if it is <code>null</code>
+     */
+    public static void setGmlId(XmlObject element, String gmlId) {
+        if (element == null || Strings.isNullOrEmpty(gmlId)) {
+            return;
+        }
+        XmlCursor cursor = element.newCursor();
+        try {
+            if (!replaceGmlId(cursor, gmlId) && cursor.isStartdoc() && cursor.toFirstChild()) {
+                replaceGmlId(cursor, gmlId);
+            }
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    private static boolean replaceGmlId(XmlCursor cursor, String gmlId) {
+        for (QName name : GML_ID_NAMES) {
+            if (cursor.getAttributeText(name) != null) {
+                cursor.setAttributeText(name, gmlId);
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -663,6 +934,97 @@ public final class XmlHelper {
         cursor.dispose();
     }
 
+    /**
+     * Copies the element into a new document without serializing and parsing
+     * it again. The namespaces in scope of the element are declared on the new
+     * root element, so that QName valued content like <code>xsi:type</code>
+     * stays resolvable. The document is typed with the global element
+     * declaration of the root element, if there is one, and is marked as
+     * validated if the source document was.
+     *
+     * @param element
+     *            the element
+     *
+     * @return the document
+     */
+    public static XmlObject copyToDocument(XmlObject element) {
+        Map<String, String> namespaces = new HashMap<>();
+        Map<String, String> declared = new HashMap<>();
+        XmlObject document = XmlObject.Factory.newInstance();
+        XmlCursor source = element.newCursor();
+        XmlCursor target = document.newCursor();
+        try {
+            source.getAllNamespaces(namespaces);
+            target.toEndDoc();
+            source.copyXml(target);
+            target.toStartDoc();
+            target.toFirstChild();
+            QName name = target.getName();
+            target.getAllNamespaces(declared);
+            target.toNextToken();
+            for (Entry<String, String> namespace : namespaces.entrySet()) {
+                // a default namespace would change the name of unqualified
+                // root elements
+                if (!namespace.getKey().isEmpty() && !declared.containsKey(namespace.getKey())) {
+                    target.insertNamespace(namespace.getKey(), namespace.getValue());
+                }
+            }
+            SchemaType type = XmlBeans.getContextTypeLoader().findDocumentType(name);
+            if (type != null) {
+                document = document.changeType(type);
+            }
+        } finally {
+            source.dispose();
+            target.dispose();
+        }
+        return isValidated(element) ? markValidated(document) : document;
+    }
+
+    /**
+     * Types the content of an <code>xs:anyType</code> element: if the object
+     * contains a child element, it is returned as a typed document (see
+     * {@link #copyToDocument(XmlObject)}), otherwise the object itself is
+     * returned. Replaces parsing the text of the content again.
+     *
+     * @param object
+     *            the object
+     *
+     * @return the typed content
+     *
+     * @throws DecodingException
+     *             if the object contains more than one child element or text
+     *             next to the child element
+     */
+    public static XmlObject typeAnyTypeContent(XmlObject object) throws DecodingException {
+        XmlCursor cursor = object.newCursor();
+        try {
+            XmlObject element = null;
+            boolean text = false;
+            TokenType token = cursor.toFirstContentToken();
+            while (!token.isEnd() && !token.isNone()) {
+                if (token.isStart()) {
+                    if (element != null) {
+                        throw new DecodingException("The content of %s contains more than one element",
+                                getLocalName(object));
+                    }
+                    element = cursor.getObject();
+                    cursor.toEndToken();
+                } else if (token.isText() && !cursor.getChars().trim().isEmpty()) {
+                    text = true;
+                }
+                token = cursor.toNextToken();
+            }
+            if (element == null) {
+                return object;
+            } else if (text) {
+                throw new DecodingException("The content of %s mixes text and elements", getLocalName(object));
+            }
+            return copyToDocument(element);
+        } finally {
+            cursor.dispose();
+        }
+    }
+
     public static Map<?, ?> getNamespaces(XmlObject xmlObject) {
         XmlCursor cursor = xmlObject.newCursor();
         Map<?, ?> nsMap = Maps.newHashMap();
@@ -680,4 +1042,48 @@ public final class XmlHelper {
         return String.format("declare namespace %s='%s';", prefix, namespace);
     }
 
+    /**
+     * {@link ErrorHandler} that collects the validation errors.
+     */
+    public static class ValidationErrorCollector implements ErrorHandler {
+        private final List<SAXParseException> errors = new LinkedList<>();
+
+        public List<SAXParseException> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * @return the errors as {@link DecodingException}s
+         */
+        public CompositeException toException() {
+            CompositeException exceptions = new CompositeException();
+            for (SAXParseException error : errors) {
+                String message = String.format("line %d, column %d: %s", error.getLineNumber(),
+                        error.getColumnNumber(), error.getMessage());
+                exceptions.add(new DecodingException(message, "[Schema validation error:] %s", message));
+            }
+            return exceptions;
+        }
+
+        @Override
+        public void warning(SAXParseException exception) {
+            LOGGER.debug("XML validation warning: {}", exception.getMessage());
+        }
+
+        @Override
+        public void error(SAXParseException exception) {
+            errors.add(exception);
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+    }
+
+    /**
+     * Marks a document that was validated while parsing.
+     */
+    private static class ValidatedBookmark extends XmlCursor.XmlBookmark {
+    }
 }
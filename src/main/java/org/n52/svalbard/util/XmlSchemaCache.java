@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.util;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.n52.janmayen.lifecycle.Destroyable;
+import org.n52.shetland.w3c.SchemaLocation;
+import org.n52.svalbard.encode.SchemaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Cache of compiled {@link Schema}s. A schema is compiled once for every set
+ * of namespaces from the schema locations registered in the
+ * {@link SchemaRepository} and is shared afterwards, {@link Schema} objects
+ * are thread safe. The cache is cleared if the schema locations of the
+ * {@link SchemaRepository} change.
+ *
+ * Schemas are compiled in the background, as the schema locations may have to
+ * be fetched from remote servers. Until a schema is compiled, or if it can
+ * not be compiled, no schema is returned and the callers fall back to the
+ * XmlBeans validation. A failed compilation is retried after
+ * {@value #RETRY_DELAY_MINUTES} minutes, e.g. if a remote server was not
+ * reachable.
+ *
+ * @since 1.0.0
+ */
+public class XmlSchemaCache implements Destroyable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(XmlSchemaCache.class);
+
+    private static final long RETRY_DELAY_MINUTES = 5;
+
+    private final ConcurrentMap<Set<String>, CompletableFuture<Optional<Schema>>> schemas =
+            new ConcurrentHashMap<>();
+
+    private SchemaRepository schemaRepository;
+
+    private volatile int generation;
+
+    private ScheduledExecutorService executor;
+
+    @Inject
+    public void setSchemaRepository(SchemaRepository schemaRepository) {
+        this.schemaRepository = schemaRepository;
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (this) {
+            if (this.executor != null) {
+                this.executor.shutdownNow();
+                this.executor = null;
+            }
+        }
+    }
+
+    /**
+     * Get the compiled schema for the namespaces. The schema is compiled in
+     * the background if it was not requested before.
+     *
+     * @param namespaces
+     *            the namespaces used in the document
+     *
+     * @return the schema or <code>null</code>, if no schema location is known
+     *         for any of the namespaces or the schemas are not (yet) compiled
+     */
+    public Schema getSchema(Set<String> namespaces) {
+        // the schema locations changed with the encoders
+        int current = schemaRepository.getGeneration();
+        if (current != generation) {
+            clear();
+            generation = current;
+        }
+        // unknown namespaces of a request do not create new entries
+        Set<String> known = getKnownNamespaces(namespaces);
+        if (known.isEmpty()) {
+            return null;
+        }
+        return schemas.computeIfAbsent(known, this::compileAsync).getNow(Optional.empty()).orElse(null);
+    }
+
+    /**
+     * @param namespaces
+     *            the namespaces used in a document
+     *
+     * @return the namespaces a schema location is known for
+     */
+    public Set<String> getKnownNamespaces(Set<String> namespaces) {
+        return ImmutableSet.copyOf(namespaces.stream()
+                .filter(ns -> !schemaRepository.getSchemaLocation(ns).isEmpty()).iterator());
+    }
+
+    /**
+     * Remove all compiled schemas, e.g. after the schema locations changed.
+     */
+    public void clear() {
+        schemas.clear();
+    }
+
+    private CompletableFuture<Optional<Schema>> compileAsync(Set<String> namespaces) {
+        try {
+            ScheduledExecutorService pool = getExecutor();
+            CompletableFuture<Optional<Schema>> future = CompletableFuture.supplyAsync(() -> compile(namespaces), pool);
+            future.thenAccept(schema -> {
+                if (!schema.isPresent()) {
+                    // only the failed entry is removed, the cache may have been cleared in the meantime
+                    pool.schedule(() -> schemas.remove(namespaces, future), RETRY_DELAY_MINUTES, TimeUnit.MINUTES);
+                }
+            });
+            return future;
+        } catch (RejectedExecutionException ex) {
+            LOGGER.debug("Schema compilation for namespaces {} was rejected", namespaces, ex);
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+    }
+
+    private Optional<Schema> compile(Set<String> namespaces) {
+        Source[] sources = namespaces.stream().map(schemaRepository::getSchemaLocation).flatMap(Set::stream)
+                .map(SchemaLocation::getSchemaFileUrl).distinct().map(StreamSource::new).toArray(Source[]::new);
+        if (sources.length == 0) {
+            return Optional.empty();
+        }
+        try {
+            // SchemaFactory is not thread safe
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            return Optional.of(factory.newSchema(sources));
+        } catch (SAXException | RuntimeException ex) {
+            // e.g. a schema location that can not be fetched
+            LOGGER.warn("Could not compile schema for namespaces {}", namespaces, ex);
+            return Optional.empty();
+        }
+    }
+
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("schema-compilation-%d").setDaemon(true).build());
+        }
+        return this.executor;
+    }
+}
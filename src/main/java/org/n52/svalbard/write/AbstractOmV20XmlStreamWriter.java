@@ -17,19 +17,23 @@
 package org.n52.svalbard.write;
 
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 
 import net.opengis.om.x20.OMObservationType;
+import net.opengis.om.x20.OMProcessPropertyType;
 
 import org.apache.xmlbeans.SchemaType;
 import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
 import org.joda.time.DateTime;
 
+import org.n52.shetland.ogc.gml.AbstractFeature;
 import org.n52.shetland.ogc.gml.CodeWithAuthority;
 import org.n52.shetland.ogc.gml.GmlConstants;
 import org.n52.shetland.ogc.gml.time.Time;
@@ -41,20 +45,23 @@ import org.n52.shetland.ogc.om.OmConstants;
 import org.n52.shetland.ogc.om.OmObservation;
 import org.n52.shetland.util.DateTimeFormatException;
 import org.n52.shetland.util.DateTimeHelper;
-import org.n52.shetland.util.JavaHelper;
 import org.n52.shetland.w3c.W3CConstants;
 import org.n52.svalbard.SosHelperValues;
 import org.n52.svalbard.XmlBeansEncodingFlags;
 import org.n52.svalbard.encode.AbstractOmEncoderv20;
+import org.n52.svalbard.encode.EncodedFragmentCache;
 import org.n52.svalbard.encode.Encoder;
 import org.n52.svalbard.encode.EncoderRepository;
 import org.n52.svalbard.encode.EncodingContext;
 import org.n52.svalbard.encode.EncodingValues;
+import org.n52.svalbard.encode.GmlIdAllocator;
 import org.n52.svalbard.encode.ObservationEncoder;
+import org.n52.svalbard.encode.ResponseReferenceRegistry;
 import org.n52.svalbard.encode.exception.EncodingException;
 import org.n52.svalbard.encode.exception.UnsupportedEncoderInputException;
 import org.n52.svalbard.util.CodingHelper;
 import org.n52.svalbard.util.GmlHelper;
+import org.n52.svalbard.util.XmlHelper;
 import org.n52.svalbard.util.XmlOptionsHelper;
 
 import com.google.common.base.Strings;
@@ -73,6 +80,10 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
 
     private EncoderRepository encoderRepository;
 
+    private GmlIdAllocator ids;
+
+    private String phenomenonTimeHref;
+
     /**
      * constructor
      */
@@ -141,7 +152,8 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
         namespace(W3CConstants.NS_XLINK_PREFIX, W3CConstants.NS_XLINK);
         namespace(OmConstants.NS_OM_PREFIX, OmConstants.NS_OM_2);
         namespace(GmlConstants.NS_GML_PREFIX, GmlConstants.NS_GML_32);
-        String observationID = addGmlId(observation);
+        ids = GmlIdAllocator.get(encodingValues.getAdditionalValues());
+        String observationID = addGmlId(observation, ids);
         writeNewLine();
         if (observation.isSetIdentifier()) {
             writeIdentifier(observation.getIdentifierCodeWithAuthority());
@@ -155,16 +167,32 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
             writeObservationType(observation.getObservationConstellation().getObservationType());
             writeNewLine();
         }
+        ResponseReferenceRegistry references = ResponseReferenceRegistry.of(encodingValues.getAdditionalValues());
         Time phenomenonTime = observation.getPhenomenonTime();
-        if (phenomenonTime.getGmlId() == null) {
-            phenomenonTime.setGmlId(OmConstants.PHENOMENON_TIME_NAME + "_" + observationID);
+        phenomenonTimeHref = references == null ? null : references.getTimeReference(phenomenonTime);
+        if (phenomenonTimeHref != null) {
+            empty(OmConstants.QN_OM_20_PHENOMENON_TIME);
+            addXlinkHrefAttr(phenomenonTimeHref);
+        } else {
+            if (phenomenonTime.getGmlId() == null) {
+                phenomenonTime.setGmlId(OmConstants.PHENOMENON_TIME_NAME + "_" + observationID);
+            }
+            // the time may be shared with other observations, so the id is only changed in the encoding
+            String phenomenonTimeId = ids.allocate(phenomenonTime.getGmlId());
+            writePhenomenonTime(phenomenonTime, phenomenonTimeId);
+            if (references != null) {
+                references.addTime(phenomenonTime, phenomenonTimeId);
+            }
+            phenomenonTimeHref = "#".concat(phenomenonTimeId);
         }
-        writePhenomenonTime(phenomenonTime);
         writeNewLine();
-        writeResultTime();
+        writeResultTime(phenomenonTimeHref);
         writeNewLine();
         if (observation.isSetValidTime()) {
-            writeValidTime(observation.getValidTime());
+            TimePeriod validTime = observation.getValidTime();
+            String validTimeId = validTime.getGmlId() == null ? OmConstants.VALID_TIME_NAME + "_" + observationID
+                    : validTime.getGmlId();
+            writeValidTime(validTime, ids.allocate(validTimeId));
             writeNewLine();
         }
         writeProcedure(encodingValues);
@@ -241,9 +269,25 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
      *             If an error occurs when writing to stream
      */
     protected void writePhenomenonTime(Time time) throws EncodingException, XMLStreamException {
+        writePhenomenonTime(time, time.getGmlId());
+    }
+
+    /**
+     * Write {@link Time} as om:phenomenonTime with the gml:id to stream
+     *
+     * @param time
+     *            {@link Time} to write as om:phenomenonTime to stream
+     * @param gmlId
+     *            the gml:id of the encoded time
+     * @throws EncodingException
+     *             If an error occurs when creating elements to be written
+     * @throws XMLStreamException
+     *             If an error occurs when writing to stream
+     */
+    protected void writePhenomenonTime(Time time, String gmlId) throws EncodingException, XMLStreamException {
         start(OmConstants.QN_OM_20_PHENOMENON_TIME);
         writeNewLine();
-        writeTimeContent(time);
+        writeTimeContent(time, gmlId);
         writeNewLine();
         indent--;
         end(OmConstants.QN_OM_20_PHENOMENON_TIME);
@@ -251,9 +295,13 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
     }
 
     protected void writeValidTime(TimePeriod validTime) throws EncodingException, XMLStreamException {
+        writeValidTime(validTime, validTime.getGmlId());
+    }
+
+    protected void writeValidTime(TimePeriod validTime, String gmlId) throws EncodingException, XMLStreamException {
         start(OmConstants.QN_OM_20_VALID_TIME);
         writeNewLine();
-        writeTimeContent(validTime);
+        writeTimeContent(validTime, gmlId);
         writeNewLine();
         indent--;
         end(OmConstants.QN_OM_20_VALID_TIME);
@@ -269,13 +317,27 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
      *             If an error occurs when creating elements to be written
      */
     protected void writeResultTime() throws XMLStreamException, EncodingException {
+        writeResultTime("#".concat(observation.getPhenomenonTime().getGmlId()));
+    }
+
+    /**
+     * Write om:resultTime to stream
+     *
+     * @param phenomenonTimeHref
+     *            Reference to the written phenomenon time
+     * @throws XMLStreamException
+     *             If an error occurs when writing to stream
+     * @throws EncodingException
+     *             If an error occurs when creating elements to be written
+     */
+    protected void writeResultTime(String phenomenonTimeHref) throws XMLStreamException, EncodingException {
         TimeInstant resultTime = observation.getResultTime();
         Time phenomenonTime = observation.getPhenomenonTime();
         // get result time from SOS result time representation
         if (observation.getResultTime() != null) {
             if (resultTime.equals(phenomenonTime)) {
                 empty(OmConstants.QN_OM_20_RESULT_TIME);
-                addXlinkHrefAttr("#".concat(phenomenonTime.getGmlId()));
+                addXlinkHrefAttr(phenomenonTimeHref);
             } else {
                 addResultTime(resultTime);
             }
@@ -285,7 +347,7 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
         else {
             if (phenomenonTime instanceof TimeInstant) {
                 empty(OmConstants.QN_OM_20_RESULT_TIME);
-                addXlinkHrefAttr("#".concat(phenomenonTime.getGmlId()));
+                addXlinkHrefAttr(phenomenonTimeHref);
             } else if (phenomenonTime instanceof TimePeriod) {
                 TimeInstant rsTime = new TimeInstant(((TimePeriod) observation.getPhenomenonTime()).getEnd());
                 addResultTime(rsTime);
@@ -344,11 +406,22 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
         // addXlinkHrefAttr(observation.getObservationConstellation().getProcedure().getIdentifier());
         // }
         // } else {
+        AbstractFeature procedure = observation.getObservationConstellation().getProcedure();
+        ResponseReferenceRegistry references = ResponseReferenceRegistry.of(encodingValues.getAdditionalValues());
+        // the procedure is only inlined if references are deduplicated, otherwise only the href is written
+        if (references != null && encodingValues.getEncoder() instanceof AbstractOmEncoderv20) {
+            // same as the observation encoder, including the reuse of procedures already written
+            OMProcessPropertyType xbProcedure = ((AbstractOmEncoderv20) encodingValues.getEncoder())
+                    .createProcedure(procedure, references, ids);
+            AbstractOmEncoderv20.addProcedureReference(procedure, xbProcedure, references);
+            writeXmlObject(xbProcedure, OmConstants.QN_OM_20_PROCEDURE);
+            return;
+        }
+        String href = references == null ? null : references.getProcedureReference(procedure);
         empty(OmConstants.QN_OM_20_PROCEDURE);
-        addXlinkHrefAttr(observation.getObservationConstellation().getProcedure().getIdentifier());
-        if (observation.getObservationConstellation().getProcedure().isSetName()
-                && observation.getObservationConstellation().getProcedure().getFirstName().isSetValue()) {
-            addXlinkTitleAttr(observation.getObservationConstellation().getProcedure().getFirstName().getValue());
+        addXlinkHrefAttr(href != null ? href : procedure.getIdentifier());
+        if (procedure.isSetName() && procedure.getFirstName().isSetValue()) {
+            addXlinkTitleAttr(procedure.getFirstName().getValue());
         }
         // }
 
@@ -381,8 +454,8 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
             for (NamedValue<?> namedValue : observation.getParameter()) {
                 start(OmConstants.QN_OM_20_PARAMETER);
                 writeNewLine();
-                XmlObject xmlObject =
-                        ((ObservationEncoder<XmlObject, Object>) encodingValues.getEncoder()).encode(namedValue);
+                XmlObject xmlObject = ((ObservationEncoder<XmlObject, Object>) encodingValues.getEncoder())
+                        .encode(namedValue, GmlIdAllocator.with(EncodingContext.empty(), ids));
                 writeXmlObject(xmlObject, OmConstants.QN_OM_20_NAMED_VALUE);
                 writeNewLine();
                 indent--;
@@ -421,18 +494,58 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
      */
     protected void writeFeatureOfIntererst(EncodingValues encodingValues)
             throws XMLStreamException, EncodingException {
-        if (encodingValues.isSetEncoder() && encodingValues.getEncoder() instanceof AbstractOmEncoderv20) {
+        ResponseReferenceRegistry references = ResponseReferenceRegistry.of(encodingValues.getAdditionalValues());
+        AbstractFeature featureOfInterest = observation.getObservationConstellation().getFeatureOfInterest();
+        String href = references == null ? null : references.getFeatureReference(featureOfInterest);
+        if (href == null && ids.getGmlId(featureOfInterest) != null) {
+            // the feature was already written from the fragment cache
+            href = "#" + ids.getGmlId(featureOfInterest);
+        }
+        if (href == null && encodingValues.isSetEncoder()
+                && encodingValues.getEncoder() instanceof AbstractOmEncoderv20) {
             AbstractOmEncoderv20 encoder = (AbstractOmEncoderv20) encodingValues.getEncoder();
             Object namespace = encoder.getDefaultFeatureEncodingNamespace();
-            EncodingContext codingContext = EncodingContext.of(SosHelperValues.ENCODE_NAMESPACE, namespace);
-            XmlObject xmlObject = (XmlObject) encoderRepository
-                    .getEncoder(CodingHelper.getEncoderKey(GmlConstants.NS_GML_32,
-                            observation.getObservationConstellation().getFeatureOfInterest()))
-                    .encode(observation.getObservationConstellation().getFeatureOfInterest(), codingContext);
-            writeXmlObject(xmlObject, OmConstants.QN_OM_20_FEATURE_OF_INTEREST);
+            EncodedFragmentCache fragmentCache = encoder.getFragmentCache();
+            EncodedFragmentCache.Key key = null;
+            // a feature with gml:id was already written and is referenced by the encoder
+            if (fragmentCache != null && fragmentCache.isEnabled() && !featureOfInterest.isSetGmlID()) {
+                key = fragmentCache.featureKey(featureOfInterest, namespace,
+                        OmConstants.QN_OM_20_FEATURE_OF_INTEREST);
+            }
+            EncodedFragmentCache.Fragment fragment = key == null ? null : fragmentCache.get(key);
+            // the gml:ids of a cached fragment may already be used in this response
+            if (fragment != null && !ids.reserve(fragment.getGmlIds())) {
+                fragment = null;
+            }
+            String gmlId;
+            if (fragment != null) {
+                rawBytes(fragment.getBytes());
+                gmlId = fragment.getGmlId();
+                ids.setGmlId(featureOfInterest, gmlId);
+            } else {
+                int mark = ids.mark();
+                XmlObject xmlObject = (XmlObject) encoderRepository
+                        .getEncoder(CodingHelper.getEncoderKey(GmlConstants.NS_GML_32, featureOfInterest))
+                        .encode(featureOfInterest, GmlIdAllocator.with(
+                                EncodingContext.of(SosHelperValues.ENCODE_NAMESPACE, namespace), ids));
+                Set<String> gmlIds = ids.allocatedSince(mark);
+                gmlId = XmlHelper.getGmlId(xmlObject);
+                if (xmlObject != null) {
+                    String text = xmlObject.xmlText(XmlOptionsHelper.getInstance().getXmlOptions())
+                            .replaceAll(XML_FRAGMENT, getReplacement(OmConstants.QN_OM_20_FEATURE_OF_INTEREST));
+                    rawText(text);
+                    // only fully encoded features are cached, not references
+                    if (key != null && gmlId != null) {
+                        fragmentCache.put(key, text.getBytes(StandardCharsets.UTF_8), gmlId, gmlIds);
+                    }
+                }
+            }
+            if (references != null) {
+                references.addFeature(featureOfInterest, gmlId);
+            }
         } else {
             empty(OmConstants.QN_OM_20_FEATURE_OF_INTEREST);
-            addXlinkHrefAttr(observation.getObservationConstellation().getFeatureOfInterest().getIdentifier());
+            addXlinkHrefAttr(href != null ? href : featureOfInterest.getIdentifier());
             if (observation.getObservationConstellation().getFeatureOfInterest().isSetName()
                     && observation.getObservationConstellation().getFeatureOfInterest().getFirstName().isSetValue()) {
                 addXlinkTitleAttr(
@@ -460,7 +573,7 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
         }
         XmlObject createResult = (XmlObject) encoderRepository
                 .getEncoder(CodingHelper.getEncoderKey(encodingValues.getEncodingNamespace(), observation.getValue()))
-                .encode(observation.getValue());
+                .encode(observation.getValue(), GmlIdAllocator.with(EncodingContext.empty(), ids));
         if (createResult != null) {
             if (createResult.xmlText().contains(XML_FRAGMENT)) {
                 XmlObject set = OMObservationType.Factory.newInstance(XmlOptionsHelper.getInstance().getXmlOptions())
@@ -492,6 +605,24 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
         }
     }
 
+    /**
+     * Allocate a <code>gml:id</code> that is unique within the response.
+     *
+     * @param id
+     *            the proposed id
+     * @return the unique id
+     */
+    protected String allocateGmlId(String id) {
+        return ids.allocate(id);
+    }
+
+    /**
+     * @return the <code>xlink:href</code> to the written phenomenon time
+     */
+    protected String getPhenomenonTimeHref() {
+        return phenomenonTimeHref;
+    }
+
     /**
      * Get additional values map with document helper value
      *
@@ -541,19 +672,15 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
      *
      * @param observation
      *            {@link OmObservation} with the GML id
+     * @param ids
+     *            the allocator of the response
      * @return observation id
      * @throws XMLStreamException
      *             If an error occurs when writing to stream
      */
-    private String addGmlId(OmObservation observation) throws XMLStreamException {
-        String observationID = JavaHelper.generateID(Double.toString(System.currentTimeMillis() * Math.random()));
-        if (observation.isSetObservationID()) {
-            observationID = observation.getObservationID();
-        } else {
-            observation.setObservationID(observationID);
-        }
-        attr(GmlConstants.QN_ID_32, "o_" + observationID);
-        return observationID;
+    private String addGmlId(OmObservation observation, GmlIdAllocator ids) throws XMLStreamException {
+        attr(GmlConstants.QN_ID_32, ids.allocate(observation));
+        return observation.getObservationID();
     }
 
     /**
@@ -561,15 +688,18 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
      *
      * @param time
      *            {@link Time} to encode and write
+     * @param gmlId
+     *            the gml:id of the encoded time
      * @throws EncodingException
      *             If an error occurs when creating elements to be written
      * @throws XMLStreamException
      *             If an error occurs when writing to stream
      */
-    private void writeTimeContent(Time time) throws EncodingException, XMLStreamException {
+    private void writeTimeContent(Time time, String gmlId) throws EncodingException, XMLStreamException {
         XmlObject xmlObject =
                 (XmlObject) encoderRepository.getEncoder(CodingHelper.getEncoderKey(GmlConstants.NS_GML_32, time))
                         .encode(time, getDocumentAdditionalHelperValues());
+        XmlHelper.setGmlId(xmlObject, gmlId);
         writeXmlObject(xmlObject, GmlHelper.getGml321QnameForITime(time));
     }
 
@@ -588,7 +718,7 @@ public abstract class AbstractOmV20XmlStreamWriter extends XmlStreamWriter<OmObs
         writeNewLine();
         XmlObject xmlObject =
                 (XmlObject) encoderRepository.getEncoder(CodingHelper.getEncoderKey(GmlConstants.NS_GML_32, time))
-                        .encode(time, getDocumentAdditionalHelperValues());
+                        .encode(time, GmlIdAllocator.with(getDocumentAdditionalHelperValues(), ids));
         writeXmlObject(xmlObject, GmlConstants.QN_TIME_INSTANT_32);
         writeNewLine();
         indent--;
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.n52.janmayen.Producer;
+import org.n52.janmayen.http.MediaTypes;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.ows.service.OwsServiceResponse;
+import org.n52.shetland.w3c.SchemaLocation;
+import org.n52.shetland.w3c.W3CConstants;
+import org.n52.shetland.w3c.soap.SoapConstants;
+import org.n52.shetland.w3c.soap.SoapFault;
+import org.n52.shetland.w3c.soap.SoapHeader;
+import org.n52.shetland.w3c.soap.SoapResponse;
+import org.n52.svalbard.OperationKey;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncoderKey;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.encode.EncodingValues;
+import org.n52.svalbard.encode.OperationResponseEncoderKey;
+import org.n52.svalbard.encode.SchemaAwareEncoder;
+import org.n52.svalbard.encode.StreamingEncoder;
+import org.n52.svalbard.encode.XmlEncoderKey;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.encode.exception.NoEncoderForKeyException;
+import org.n52.svalbard.util.CodingHelper;
+import org.n52.svalbard.util.XmlOptionsHelper;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Abstract {@link XmlStreamWriter} for SOAP envelopes. The header and the body
+ * are written one after another, streaming body encoders write directly to
+ * the output stream, the results of other encoders are saved to it without a
+ * {@link String} round trip.
+ *
+ * The encoders can be resolved through a cache that is shared between the
+ * writers of an encoder, see {@link #setEncoderCache(ConcurrentMap)}.
+ *
+ * @since 1.0.0
+ */
+public abstract class AbstractSoapXmlStreamWriter extends XmlStreamWriter<SoapResponse> {
+
+    protected static final String EN_ENVELOPE = SoapConstants.EN_SOAP_ENVELOPE;
+
+    protected static final String EN_HEADER = "Header";
+
+    protected static final String EN_BODY = "Body";
+
+    protected static final String EN_FAULT = "Fault";
+
+    private SoapResponse response;
+
+    private EncoderRepository encoderRepository;
+
+    private Producer<XmlOptions> xmlOptions;
+
+    private ConcurrentMap<EncoderKey, Encoder<?, ?>> encoderCache;
+
+    private Encoder<Object, OwsServiceResponse> bodyEncoder;
+
+    /**
+     * constructor
+     *
+     * @param response
+     *            Service internal SOAP response to encode
+     */
+    public AbstractSoapXmlStreamWriter(SoapResponse response) {
+        this.response = response;
+    }
+
+    @Inject
+    public void setEncoderRepository(EncoderRepository encoderRepository) {
+        this.encoderRepository = encoderRepository;
+    }
+
+    @Inject
+    public void setXmlOptions(Producer<XmlOptions> xmlOptions) {
+        this.xmlOptions = xmlOptions;
+    }
+
+    /**
+     * Set the cache for the encoders of the headers, bodies and faults.
+     * Encoders that are not found are not cached.
+     *
+     * @param encoderCache
+     *            the cache
+     */
+    public void setEncoderCache(ConcurrentMap<EncoderKey, Encoder<?, ?>> encoderCache) {
+        this.encoderCache = encoderCache;
+    }
+
+    @Override
+    public void write(OutputStream out) throws EncodingException {
+        write(getResponse(), out);
+    }
+
+    @Override
+    public void write(OutputStream out, EncodingValues encodingValues) throws EncodingException {
+        write(getResponse(), out, encodingValues);
+    }
+
+    @Override
+    public void write(SoapResponse element, OutputStream out) throws EncodingException {
+        write(element, out, new EncodingValues());
+    }
+
+    @Override
+    public void write(SoapResponse element, OutputStream out, EncodingValues encodingValues) throws EncodingException {
+        try {
+            init(out, encodingValues);
+            start(encodingValues.isEmbedded());
+            writeSoapEnvelope(element);
+            end();
+            finish();
+        } catch (XMLStreamException xmlse) {
+            throw new EncodingException(xmlse);
+        } finally {
+            this.bodyEncoder = null;
+        }
+    }
+
+    /**
+     * Set the response element to encode and write to stream
+     *
+     * @param response
+     *            Service internal response
+     */
+    public void setResponse(SoapResponse response) {
+        this.response = response;
+    }
+
+    /**
+     * Get the response element to encode and write to stream
+     *
+     * @return The response element to encode and write to stream
+     */
+    protected SoapResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the namespace of the SOAP version
+     */
+    protected abstract String getSoapNamespace();
+
+    /**
+     * @return the schema location of the SOAP version
+     */
+    protected abstract SchemaLocation getSoapSchemaLocation();
+
+    /**
+     * Get the qualified name of a SOAP envelope element.
+     *
+     * @param localName
+     *            the local name, e.g. {@link #EN_BODY}
+     *
+     * @return the qualified name
+     */
+    protected QName getSoapName(String localName) {
+        return new QName(getSoapNamespace(), localName, SoapConstants.NS_SOAP_PREFIX);
+    }
+
+    /**
+     * Write the SOAP envelope element
+     *
+     * @param response
+     *            The response element to encode and write to stream
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     * @throws EncodingException
+     *             If an encoding error occurs
+     */
+    protected void writeSoapEnvelope(SoapResponse response) throws XMLStreamException, EncodingException {
+        QName envelope = getSoapName(EN_ENVELOPE);
+        start(envelope);
+        namespace(W3CConstants.NS_XLINK_PREFIX, W3CConstants.NS_XLINK);
+        namespace(SoapConstants.NS_SOAP_PREFIX, getSoapNamespace());
+        schemaLocation(getSchemaLocation(response));
+        writeNewLine();
+        writeSoapHeader(response);
+        writeSoapBody(response);
+        writeNewLine();
+        end(envelope);
+    }
+
+    protected Set<SchemaLocation> getSchemaLocation(SoapResponse response)
+            throws EncodingException, XMLStreamException {
+        Set<SchemaLocation> schemaLocations = Sets.newHashSet();
+        schemaLocations.add(getSoapSchemaLocation());
+        if (response.isSetBodyContent()) {
+            Encoder<Object, OwsServiceResponse> encoder = getEncoder(response.getBodyContent());
+            if (encoder != null && encoder instanceof SchemaAwareEncoder) {
+                schemaLocations.addAll(((SchemaAwareEncoder<?, ?>) encoder).getSchemaLocations());
+            }
+        }
+        return schemaLocations;
+    }
+
+    /**
+     * Write the SOAP header element, if the response has headers. The values
+     * of the headers (e.g. the WS-Addressing action) have to be set before.
+     *
+     * @param response
+     *            The response element to encode and write to stream
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     * @throws EncodingException
+     *             If an encoding error occurs
+     */
+    protected void writeSoapHeader(SoapResponse response) throws XMLStreamException, EncodingException {
+        List<SoapHeader> headers = response == null ? null : response.getHeader();
+        if (headers == null || headers.isEmpty()) {
+            return;
+        }
+        QName header = getSoapName(EN_HEADER);
+        start(header);
+        for (SoapHeader soapHeader : headers) {
+            EncoderKey key = CodingHelper.getEncoderKey(soapHeader.getNamespace(), soapHeader);
+            Encoder<Object, SoapHeader> encoder = getOptionalEncoder(key);
+            if (encoder != null) {
+                writeHeaderElement(encoder.encode(soapHeader));
+            }
+        }
+        end(header);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeHeaderElement(Object encoded) throws XMLStreamException {
+        if (encoded instanceof XmlObject) {
+            rawXml((XmlObject) encoded, getXmlOptions());
+        } else if (encoded instanceof Map) {
+            for (Map.Entry<QName, String> element : ((Map<QName, String>) encoded).entrySet()) {
+                start(element.getKey());
+                chars(element.getValue());
+                endInline(element.getKey());
+            }
+        }
+    }
+
+    /**
+     * Write the SOAP body element
+     *
+     * @param response
+     *            The response element to encode and write to stream
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     * @throws EncodingException
+     *             If an encoding error occurs
+     */
+    protected void writeSoapBody(SoapResponse response) throws XMLStreamException, EncodingException {
+        int before = indent;
+        QName body = getSoapName(EN_BODY);
+        start(body);
+        writeNewLine();
+        if (response != null) {
+            if (response.isSetSoapFault()) {
+                writeSoapFault(response.getSoapFault());
+            } else if (response.hasException()) {
+                writeSoapFaultFromException(response.getException());
+            } else if (response.isSetBodyContent()) {
+                writeBodyContent(response.getBodyContent());
+            }
+        }
+        indent = before;
+        writeNewLine();
+        end(body);
+    }
+
+    /**
+     * Encode and write the {@link OwsServiceResponse} to stream
+     *
+     * @param bodyResponse
+     *            The service internal response to encode and write
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     * @throws EncodingException
+     *             If an encoding error occurs
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected void writeBodyContent(OwsServiceResponse bodyResponse) throws XMLStreamException, EncodingException {
+        Encoder<Object, OwsServiceResponse> encoder = getEncoder(bodyResponse);
+        if (encoder instanceof StreamingEncoder<?, ?>) {
+            ((StreamingEncoder) encoder).encode(bodyResponse, getOutputStream(),
+                    new EncodingValues().setAsDocument(true).setEmbedded(true).setIndent(indent));
+        } else {
+            rawXml((XmlObject) encoder.encode(bodyResponse), getXmlOptions());
+        }
+    }
+
+    /**
+     * Encode and write SOAP fault element to SOAP body element
+     *
+     * @param fault
+     *            Service internal SOAP fault representation
+     * @throws EncodingException
+     *             If an encoding error occurs
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     */
+    protected abstract void writeSoapFault(SoapFault fault) throws EncodingException, XMLStreamException;
+
+    /**
+     * Encode and write {@link OwsExceptionReport} element to SOAP body
+     * element
+     *
+     * @param exception
+     *            Service internal {@link OwsExceptionReport}
+     * @throws EncodingException
+     *             If an encoding error occurs
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     */
+    protected abstract void writeSoapFaultFromException(OwsExceptionReport exception)
+            throws EncodingException, XMLStreamException;
+
+    protected XmlOptions getXmlOptions() {
+        return this.xmlOptions != null ? this.xmlOptions.get() : XmlOptionsHelper.getInstance().getXmlOptions();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T, S> Encoder<T, S> getEncoder(String namespace, Object o) throws NoEncoderForKeyException {
+        return (Encoder<T, S>) (Encoder<?, ?>) getEncoder(new XmlEncoderKey(namespace, o.getClass()));
+    }
+
+    protected Encoder<Object, OwsServiceResponse> getEncoder(OwsServiceResponse abstractServiceResponse)
+            throws NoEncoderForKeyException {
+        // the body encoder is needed for the schema locations and the body
+        if (this.bodyEncoder == null) {
+            this.bodyEncoder = getEncoder(new OperationResponseEncoderKey(new OperationKey(abstractServiceResponse),
+                    MediaTypes.APPLICATION_XML));
+        }
+        return this.bodyEncoder;
+    }
+
+    /**
+     * Get encoder for {@link EncoderKey}
+     *
+     * @param key
+     *            Encoder key to get encoder for
+     * @return Matching encoder
+     * @throws NoEncoderForKeyException
+     *             If no matching encoder was found
+     */
+    protected Encoder<Object, OwsServiceResponse> getEncoder(EncoderKey key) throws NoEncoderForKeyException {
+        Encoder<Object, OwsServiceResponse> encoder = getOptionalEncoder(key);
+        if (encoder == null) {
+            throw new NoEncoderForKeyException(key);
+        }
+        return encoder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, S> Encoder<T, S> getOptionalEncoder(EncoderKey key) {
+        if (this.encoderCache != null) {
+            return (Encoder<T, S>) this.encoderCache.computeIfAbsent(key,
+                    k -> this.encoderRepository.<T, S> getEncoder(k));
+        }
+        return this.encoderRepository.getEncoder(key);
+    }
+}
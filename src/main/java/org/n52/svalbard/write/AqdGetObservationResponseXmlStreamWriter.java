@@ -18,6 +18,8 @@ package org.n52.svalbard.write;
 
 import java.io.OutputStream;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -30,6 +32,7 @@ import org.apache.xmlbeans.XmlOptions;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.n52.shetland.aqd.AqdConstants;
+import org.n52.shetland.aqd.EReportingHeader;
 import org.n52.shetland.iso.GcoConstants;
 import org.n52.shetland.iso.gmd.GmdConstants;
 import org.n52.shetland.ogc.gml.AbstractFeature;
@@ -45,6 +48,7 @@ import org.n52.shetland.ogc.swe.SweConstants;
 import org.n52.shetland.w3c.SchemaLocation;
 import org.n52.shetland.w3c.W3CConstants;
 import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.encode.EReportingHeaderEncoder;
 import org.n52.svalbard.encode.Encoder;
 import org.n52.svalbard.encode.EncoderRepository;
 import org.n52.svalbard.encode.EncodingContext;
@@ -74,6 +78,12 @@ public class AqdGetObservationResponseXmlStreamWriter extends XmlStreamWriter<Fe
 
     private FeatureCollection featureCollection;
 
+    private Iterable<? extends AbstractFeature> members;
+
+    private final Map<String, String> declaredNamespaces = new HashMap<>();
+
+    private XmlOptions memberXmlOptions;
+
     private Timer timer = new Timer(String.format("empty-string-write-task-for-%s", getClass().getSimpleName()), true);
 
     private TimerTask timerTask = null;
@@ -105,6 +115,21 @@ public class AqdGetObservationResponseXmlStreamWriter extends XmlStreamWriter<Fe
         setFeatureCollection(featureCollection);
     }
 
+    /**
+     * constructor
+     *
+     * @param featureCollection
+     *            {@link FeatureCollection} providing the gml:id
+     * @param members
+     *            the members to write, consumed while writing instead of the
+     *            members of the {@link FeatureCollection}
+     */
+    public AqdGetObservationResponseXmlStreamWriter(FeatureCollection featureCollection,
+            Iterable<? extends AbstractFeature> members) {
+        setFeatureCollection(featureCollection);
+        this.members = members;
+    }
+
     /**
      * Set {@link FeatureCollection} which should be written
      *
@@ -145,7 +170,10 @@ public class AqdGetObservationResponseXmlStreamWriter extends XmlStreamWriter<Fe
     public void write(FeatureCollection featureCollection, OutputStream out, EncodingValues encodingValues)
             throws XMLStreamException, EncodingException {
         try {
-            setFeatureCollection(featureCollection);
+            if (featureCollection != getFeatureCollection()) {
+                setFeatureCollection(featureCollection);
+                this.members = null;
+            }
             init(out, encodingValues);
             start(encodingValues.isEmbedded());
             writeFeatureCollectionDoc(encodingValues);
@@ -163,7 +191,7 @@ public class AqdGetObservationResponseXmlStreamWriter extends XmlStreamWriter<Fe
         addSchemaLocations();
         addGmlId(featureCollection.getGmlId());
         TimeInstant resultTime = new TimeInstant(new DateTime(DateTimeZone.UTC));
-        for (AbstractFeature abstractFeature : featureCollection.getMembers().values()) {
+        for (AbstractFeature abstractFeature : getMembers()) {
             long start = System.currentTimeMillis();
             if (abstractFeature instanceof OmObservation
                     && ((OmObservation) abstractFeature).getValue() instanceof AbstractStreaming) {
@@ -185,7 +213,7 @@ public class AqdGetObservationResponseXmlStreamWriter extends XmlStreamWriter<Fe
                             count++;
                         }
                         omObservation.setResultTime(resultTime);
-                        String xmlTextObservation = prepareObservation(omObservation,
+                        String xmlTextObservation = encodeMember(omObservation,
                                 getEncoder(abstractFeature, encodingValues.getAdditionalValues()), encodingValues);
                         // stop the timer task
                         stopTimer();
@@ -194,6 +222,8 @@ public class AqdGetObservationResponseXmlStreamWriter extends XmlStreamWriter<Fe
                 } catch (OwsExceptionReport ex) {
                     throw new EncodingException(ex);
                 }
+            } else if (abstractFeature instanceof EReportingHeader) {
+                writeHeader((EReportingHeader) abstractFeature);
             } else {
                 writeMember(abstractFeature, getEncoder(abstractFeature, encodingValues.getAdditionalValues()),
                         encodingValues);
@@ -204,6 +234,16 @@ public class AqdGetObservationResponseXmlStreamWriter extends XmlStreamWriter<Fe
         end(GmlConstants.QN_FEATURE_COLLECTION_32);
     }
 
+    private Iterable<? extends AbstractFeature> getMembers() {
+        return members != null ? members : featureCollection.getMembers().values();
+    }
+
+    @Override
+    protected void namespace(String prefix, String namespace) throws XMLStreamException {
+        super.namespace(prefix, namespace);
+        declaredNamespaces.put(prefix, namespace);
+    }
+
     private void addNamespaces() throws XMLStreamException {
         // W3C
         namespace(W3CConstants.NS_XLINK_PREFIX, W3CConstants.NS_XLINK);
@@ -262,24 +302,27 @@ public class AqdGetObservationResponseXmlStreamWriter extends XmlStreamWriter<Fe
         return gmlId;
     }
 
-    private String prepareObservation(OmObservation omObservation, Encoder<XmlObject, AbstractFeature> encoder,
-            EncodingValues encodingValues) throws EncodingException, XMLStreamException {
-
-        String xmlText =
-                (encoder.encode(omObservation, encodingValues.getAdditionalValues())).xmlText(getXmlOptions());
-        // TODO check for better solutions
-        xmlText = xmlText.replace("ns:ReferenceType", "gml:ReferenceType");
-        xmlText = xmlText.replace(":ns=\"http://www.opengis.net/gml/3.2\"", ":gml=\"http://www.opengis.net/gml/3.2\"");
-        xmlText = xmlText.replace("ns:DataArrayPropertyType", "swe:DataArrayPropertyType");
-        xmlText = xmlText.replace(":ns=\"http://www.opengis.net/swe/2.0\"", ":swe=\"http://www.opengis.net/swe/2.0\"");
-        xmlText = xmlText.replace("<ns:", "<swe:");
-        xmlText = xmlText.replace("</ns:", "</swe:");
-        return xmlText;
+    private String encodeMember(AbstractFeature abstractFeature, Encoder<XmlObject, AbstractFeature> encoder,
+            EncodingValues encodingValues) throws EncodingException {
+        return encoder.encode(abstractFeature, encodingValues.getAdditionalValues()).xmlText(getMemberXmlOptions());
     }
 
     private void writeMember(AbstractFeature abstractFeature, Encoder<XmlObject, AbstractFeature> encoder,
             EncodingValues encodingValues) throws XMLStreamException, EncodingException {
-        writeMember((encoder.encode(abstractFeature, encodingValues.getAdditionalValues())).xmlText(getXmlOptions()));
+        writeMember(encodeMember(abstractFeature, encoder, encodingValues));
+    }
+
+    /**
+     * Write the header with the {@link EReportingHeaderEncoder} directly into
+     * the response stream.
+     */
+    private void writeHeader(EReportingHeader header) throws XMLStreamException, EncodingException {
+        start(GmlConstants.QN_FEATURE_MEMBER_32);
+        // close the start tag before the writer is bypassed
+        chars("", false);
+        flush();
+        new EReportingHeaderEncoder(header).write(getOutputStream(), new EncodingValues().setIndent(indent));
+        end(GmlConstants.QN_FEATURE_MEMBER_32);
     }
 
     private void writeMember(String memberContent) throws XMLStreamException, EncodingException {
@@ -345,8 +388,17 @@ public class AqdGetObservationResponseXmlStreamWriter extends XmlStreamWriter<Fe
         }
     }
 
-    private static XmlOptions getXmlOptions() {
-        return XmlOptionsHelper.getInstance().getXmlOptions();
+    /**
+     * The namespaces declared on the root element are in scope for every
+     * member, so XmlBeans uses their prefixes instead of generating
+     * <code>ns</code> prefixes (e.g. in <code>xsi:type</code> values).
+     */
+    private XmlOptions getMemberXmlOptions() {
+        if (memberXmlOptions == null) {
+            memberXmlOptions = new XmlOptions(XmlOptionsHelper.getInstance().getXmlOptions())
+                    .setSaveImplicitNamespaces(new HashMap<>(declaredNamespaces));
+        }
+        return memberXmlOptions;
     }
 
     /**
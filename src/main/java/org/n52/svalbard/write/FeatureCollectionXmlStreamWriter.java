@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import java.io.OutputStream;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.xmlbeans.XmlObject;
+
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.GmlConstants;
+import org.n52.shetland.ogc.om.features.FeatureCollection;
+import org.n52.shetland.ogc.om.features.SfConstants;
+import org.n52.shetland.util.ReferencedEnvelope;
+import org.n52.shetland.w3c.SchemaLocation;
+import org.n52.shetland.w3c.W3CConstants;
+import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.encode.AbstractXmlEncoder;
+import org.n52.svalbard.encode.EncodingContext;
+import org.n52.svalbard.encode.EncodingValues;
+import org.n52.svalbard.encode.GmlIdAllocator;
+import org.n52.svalbard.encode.SchemaAwareEncoder;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.util.XmlOptionsHelper;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Sets;
+
+/**
+ * Writes the members of a {@link FeatureCollection} one after another to
+ * stream, each member is encoded right before it is written. By default a
+ * GML 3.2 <code>gml:FeatureCollection</code> is written, other root and
+ * member elements (e.g. of the SOS 2.0 GetFeatureOfInterest response) can be
+ * passed to the constructor.
+ *
+ * The members are encoded by the {@link AbstractXmlEncoder} of the
+ * {@link EncodingValues} with the additional values of the
+ * {@link EncodingValues}. A <code>gml:boundedBy</code> is only written to a
+ * <code>gml:FeatureCollection</code> if a precomputed
+ * {@link SosHelperValues#ENVELOPE} is available.
+ *
+ * @since 1.0.0
+ */
+public class FeatureCollectionXmlStreamWriter extends XmlStreamWriter<FeatureCollection> {
+
+    private static final QName QN_BOUNDED_BY_32 =
+            new QName(GmlConstants.NS_GML_32, "boundedBy", GmlConstants.NS_GML_PREFIX);
+
+    private static final QName QN_ENVELOPE_32 =
+            new QName(GmlConstants.NS_GML_32, "Envelope", GmlConstants.NS_GML_PREFIX);
+
+    private final QName root;
+
+    private final QName member;
+
+    private FeatureCollection featureCollection;
+
+    /**
+     * constructor
+     */
+    public FeatureCollectionXmlStreamWriter() {
+        this(GmlConstants.QN_FEATURE_COLLECTION_32, GmlConstants.QN_FEATURE_MEMBER_32);
+    }
+
+    /**
+     * constructor
+     *
+     * @param root
+     *            the root element
+     * @param member
+     *            the member element
+     */
+    public FeatureCollectionXmlStreamWriter(QName root, QName member) {
+        this.root = root;
+        this.member = member;
+    }
+
+    @Override
+    public void write(OutputStream out) throws XMLStreamException, EncodingException {
+        write(featureCollection, out);
+    }
+
+    @Override
+    public void write(OutputStream out, EncodingValues encodingValues) throws XMLStreamException, EncodingException {
+        write(featureCollection, out, encodingValues);
+    }
+
+    @Override
+    public void write(FeatureCollection featureCollection, OutputStream out)
+            throws XMLStreamException, EncodingException {
+        write(featureCollection, out, new EncodingValues());
+    }
+
+    @Override
+    public void write(FeatureCollection featureCollection, OutputStream out, EncodingValues encodingValues)
+            throws XMLStreamException, EncodingException {
+        if (!(encodingValues.getEncoder() instanceof AbstractXmlEncoder)) {
+            throw new EncodingException("An XML encoder is required to write the feature collection!");
+        }
+        this.featureCollection = featureCollection;
+        init(out, encodingValues);
+        start(encodingValues.isEmbedded());
+        writeFeatureCollectionDoc((AbstractXmlEncoder<?, ?>) encodingValues.getEncoder(), encodingValues);
+        end();
+        finish();
+    }
+
+    private void writeFeatureCollectionDoc(AbstractXmlEncoder<?, ?> encoder, EncodingValues encodingValues)
+            throws XMLStreamException, EncodingException {
+        start(root);
+        namespace(root.getPrefix(), root.getNamespaceURI());
+        namespace(GmlConstants.NS_GML_PREFIX, GmlConstants.NS_GML_32);
+        namespace(W3CConstants.NS_XLINK_PREFIX, W3CConstants.NS_XLINK);
+        schemaLocation(getSchemaLocations(encoder));
+        // the gml:ids of the members are unique within the collection
+        EncodingContext ctx = GmlIdAllocator.enable(encodingValues.getAdditionalValues());
+        GmlIdAllocator ids = GmlIdAllocator.of(ctx);
+        if (GmlConstants.QN_FEATURE_COLLECTION_32.equals(root)) {
+            if (!Strings.isNullOrEmpty(featureCollection.getGmlId())) {
+                attr(GmlConstants.QN_ID_32, ids.allocate(featureCollection.getGmlId()));
+            }
+            writeBoundedBy(encoder, ctx.get(SosHelperValues.ENVELOPE));
+        }
+        for (AbstractFeature feature : featureCollection) {
+            writeMember(encoder.encodeObjectToXml(GmlConstants.NS_GML_32, feature, ctx));
+        }
+        end(root);
+    }
+
+    private Set<SchemaLocation> getSchemaLocations(AbstractXmlEncoder<?, ?> encoder) {
+        Set<SchemaLocation> schemaLocations = Sets.newHashSet(GmlConstants.GML_32_SCHEMAL_LOCATION,
+                SfConstants.SF_SCHEMA_LOCATION, SfConstants.SAMS_SCHEMA_LOCATION);
+        if (encoder instanceof SchemaAwareEncoder) {
+            schemaLocations.addAll(((SchemaAwareEncoder<?, ?>) encoder).getSchemaLocations());
+        }
+        return schemaLocations;
+    }
+
+    private void writeBoundedBy(AbstractXmlEncoder<?, ?> encoder, Object envelope)
+            throws XMLStreamException, EncodingException {
+        if (envelope instanceof ReferencedEnvelope && ((ReferencedEnvelope) envelope).isSetEnvelope()) {
+            start(QN_BOUNDED_BY_32);
+            writeXmlObject(encoder.encodeObjectToXml(GmlConstants.NS_GML_32, envelope), QN_ENVELOPE_32);
+            end(QN_BOUNDED_BY_32);
+        }
+    }
+
+    private void writeMember(XmlObject encoded) throws XMLStreamException {
+        if (encoded == null) {
+            return;
+        }
+        String text = encoded.xmlText(XmlOptionsHelper.getInstance().getXmlOptions());
+        if (encoded.schemaType().isDocumentType()) {
+            start(member);
+            rawText(text);
+            end(member);
+        } else {
+            // property types (e.g. references) are written as the member
+            rawText(text.replaceAll(XML_FRAGMENT, getReplacement(member)));
+        }
+    }
+}
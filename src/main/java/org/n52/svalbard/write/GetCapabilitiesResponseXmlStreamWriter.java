@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.n52.shetland.ogc.filter.FilterConstants;
+import org.n52.shetland.ogc.gml.GmlConstants;
+import org.n52.shetland.ogc.ows.OWSConstants;
+import org.n52.shetland.ogc.ows.OwsCapabilitiesExtension;
+import org.n52.shetland.ogc.ows.service.GetCapabilitiesResponse;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.shetland.ogc.sos.SosCapabilities;
+import org.n52.shetland.ogc.sos.SosConstants;
+import org.n52.shetland.ogc.sos.SosObservationOffering;
+import org.n52.shetland.ogc.swes.SwesConstants;
+import org.n52.shetland.w3c.SchemaLocation;
+import org.n52.shetland.w3c.W3CConstants;
+import org.n52.svalbard.encode.EncodedFragmentCache;
+import org.n52.svalbard.encode.EncodingValues;
+import org.n52.svalbard.encode.GetCapabilitiesResponseEncoder;
+import org.n52.svalbard.encode.InspireXmlEncoder;
+import org.n52.svalbard.encode.exception.EncodingException;
+
+import net.opengis.sos.x20.CapabilitiesType;
+
+/**
+ * Writes a SOS 2.0 capabilities document to stream. Service identification,
+ * service provider, operations metadata, extensions and filter capabilities
+ * are written as soon as they are encoded. The offerings are encoded on the
+ * pool of the {@link GetCapabilitiesResponseEncoder}, at most twice as many
+ * as there are threads at a time, and are written in their original order,
+ * so only a window of the contents is kept in memory. Offerings that did not
+ * change since they were last encoded are copied from the
+ * {@link EncodedFragmentCache} of the encoder and INSPIRE extended
+ * capabilities are copied from the serialized fragment of the
+ * {@link InspireXmlEncoder}.
+ *
+ * @since 1.0.0
+ */
+public class GetCapabilitiesResponseXmlStreamWriter extends XmlStreamWriter<GetCapabilitiesResponse> {
+
+    private static final QName QN_CAPABILITIES =
+            new QName(Sos2Constants.NS_SOS_20, "Capabilities", SosConstants.NS_SOS_PREFIX);
+
+    private static final QName QN_CONTENTS_PROPERTY =
+            new QName(Sos2Constants.NS_SOS_20, "contents", SosConstants.NS_SOS_PREFIX);
+
+    private static final QName QN_CONTENTS =
+            new QName(Sos2Constants.NS_SOS_20, "Contents", SosConstants.NS_SOS_PREFIX);
+
+    private static final QName QN_EXTENSION =
+            new QName(Sos2Constants.NS_SOS_20, "extension", SosConstants.NS_SOS_PREFIX);
+
+    private static final QName QN_OPERATIONS_METADATA =
+            new QName(OWSConstants.NS_OWS, "OperationsMetadata", OWSConstants.NS_OWS_PREFIX);
+
+    private static final QName QN_EXTENDED_CAPABILITIES =
+            new QName(OWSConstants.NS_OWS, "ExtendedCapabilities", OWSConstants.NS_OWS_PREFIX);
+
+    private static final QName QN_OFFERING =
+            new QName(SwesConstants.NS_SWES_20, "offering", SwesConstants.NS_SWES_PREFIX);
+
+    private static final String VERSION = "version";
+
+    private GetCapabilitiesResponse response;
+
+    /**
+     * constructor
+     */
+    public GetCapabilitiesResponseXmlStreamWriter() {
+    }
+
+    /**
+     * constructor
+     *
+     * @param response
+     *            the response to write
+     */
+    public GetCapabilitiesResponseXmlStreamWriter(GetCapabilitiesResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    public void write(OutputStream out) throws XMLStreamException, EncodingException {
+        write(response, out);
+    }
+
+    @Override
+    public void write(OutputStream out, EncodingValues encodingValues) throws XMLStreamException, EncodingException {
+        write(response, out, encodingValues);
+    }
+
+    @Override
+    public void write(GetCapabilitiesResponse response, OutputStream out)
+            throws XMLStreamException, EncodingException {
+        write(response, out, new EncodingValues());
+    }
+
+    @Override
+    public void write(GetCapabilitiesResponse response, OutputStream out, EncodingValues encodingValues)
+            throws XMLStreamException, EncodingException {
+        this.response = response;
+        if (!(encodingValues.getEncoder() instanceof GetCapabilitiesResponseEncoder)) {
+            throw new EncodingException("The capabilities stream writer requires the %s!",
+                    GetCapabilitiesResponseEncoder.class.getSimpleName());
+        }
+        GetCapabilitiesResponseEncoder encoder = (GetCapabilitiesResponseEncoder) encodingValues.getEncoder();
+        init(out, encodingValues);
+        start(encodingValues.isEmbedded());
+        writeCapabilities(encoder);
+        end();
+        finish();
+    }
+
+    private void writeCapabilities(GetCapabilitiesResponseEncoder encoder)
+            throws XMLStreamException, EncodingException {
+        InspireXmlEncoder.Fragment extendedCapabilities = encoder.getExtendedCapabilitiesFragment(response);
+        CapabilitiesType header = encoder.createHeader(response, extendedCapabilities == null);
+        start(QN_CAPABILITIES);
+        namespace(SosConstants.NS_SOS_PREFIX, Sos2Constants.NS_SOS_20);
+        namespace(SwesConstants.NS_SWES_PREFIX, SwesConstants.NS_SWES_20);
+        namespace(OWSConstants.NS_OWS_PREFIX, OWSConstants.NS_OWS);
+        namespace(GmlConstants.NS_GML_PREFIX, GmlConstants.NS_GML_32);
+        namespace(W3CConstants.NS_XLINK_PREFIX, W3CConstants.NS_XLINK);
+        namespace(FilterConstants.NS_FES_2_PREFIX, FilterConstants.NS_FES_2);
+        Set<SchemaLocation> schemaLocations = new HashSet<>(encoder.getSchemaLocations());
+        schemaLocations.addAll(encoder.getConcreteSchemaLocations());
+        schemaLocation(schemaLocations);
+        attr(VERSION, header.getVersion());
+        // ows:ServiceIdentification, ows:ServiceProvider, ows:OperationsMetadata
+        writeChildren(header, OWSConstants.NS_OWS, extendedCapabilities);
+        flush();
+        if (response.getCapabilities() instanceof SosCapabilities) {
+            SosCapabilities caps = (SosCapabilities) response.getCapabilities();
+            for (OwsCapabilitiesExtension extension : caps.getExtensions()) {
+                writeXmlObject(encoder.createExtension(extension), QN_EXTENSION);
+            }
+            // sos:filterCapabilities
+            writeChildren(header, Sos2Constants.NS_SOS_20, null);
+            if (caps.getContents().isPresent()) {
+                writeContents(encoder, caps.getContents().get());
+            }
+        }
+        end(QN_CAPABILITIES);
+    }
+
+    /**
+     * Write the child elements of the namespace. If the serialized extended
+     * capabilities are given, they are appended to the operations metadata.
+     */
+    private void writeChildren(XmlObject parent, String namespace, InspireXmlEncoder.Fragment extendedCapabilities)
+            throws XMLStreamException {
+        XmlCursor cursor = parent.newCursor();
+        try {
+            if (cursor.toFirstChild()) {
+                do {
+                    QName name = cursor.getName();
+                    if (extendedCapabilities != null && QN_OPERATIONS_METADATA.equals(name)) {
+                        start(QN_OPERATIONS_METADATA);
+                        writeChildren(cursor.getObject(), namespace, null);
+                        start(QN_EXTENDED_CAPABILITIES);
+                        rawBytes(extendedCapabilities.getBytes());
+                        end(QN_EXTENDED_CAPABILITIES);
+                        end(QN_OPERATIONS_METADATA);
+                    } else if (namespace.equals(name.getNamespaceURI())) {
+                        String prefix = OWSConstants.NS_OWS.equals(namespace) ? OWSConstants.NS_OWS_PREFIX
+                                : SosConstants.NS_SOS_PREFIX;
+                        writeXmlObject(cursor.getObject(), new QName(namespace, name.getLocalPart(), prefix));
+                    }
+                } while (cursor.toNextSibling());
+            }
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    private void writeContents(GetCapabilitiesResponseEncoder encoder, Collection<SosObservationOffering> offerings)
+            throws XMLStreamException, EncodingException {
+        start(QN_CONTENTS_PROPERTY);
+        start(QN_CONTENTS);
+        ExecutorService pool = encoder.getOfferingEncodingPool();
+        int window = encoder.getOfferingEncodingThreads() * 2;
+        Deque<Future<ByteBuffer>> pending = new ArrayDeque<>(window);
+        try {
+            for (SosObservationOffering offering : offerings) {
+                if (offering.isValidObservationOffering()) {
+                    if (pool == null) {
+                        writeOffering(encoder, offering);
+                    } else {
+                        pending.add(pool.submit(() -> encodeOffering(encoder, offering)));
+                        if (pending.size() >= window) {
+                            writeOffering(pending.poll());
+                        }
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeOffering(pending.poll());
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+        end(QN_CONTENTS);
+        end(QN_CONTENTS_PROPERTY);
+    }
+
+    ByteBuffer encodeOffering(GetCapabilitiesResponseEncoder encoder, SosObservationOffering offering)
+            throws EncodingException {
+        EncodedFragmentCache fragmentCache = encoder.getFragmentCache();
+        EncodedFragmentCache.Key key = null;
+        if (fragmentCache != null && fragmentCache.isEnabled()) {
+            key = fragmentCache.offeringKey(offering, QN_OFFERING);
+            EncodedFragmentCache.Fragment fragment = fragmentCache.get(key);
+            if (fragment != null) {
+                return fragment.getBytes();
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            encoder.createOffering(offering).save(out, getOfferingOptions(encoder));
+        } catch (IOException ioe) {
+            throw new EncodingException("Error while encoding the offering", ioe);
+        }
+        byte[] bytes = out.toByteArray();
+        if (key != null) {
+            fragmentCache.put(key, bytes, null);
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private void writeOffering(GetCapabilitiesResponseEncoder encoder, SosObservationOffering offering)
+            throws XMLStreamException, EncodingException {
+        EncodedFragmentCache fragmentCache = encoder.getFragmentCache();
+        if (fragmentCache != null && fragmentCache.isEnabled()) {
+            rawBytes(encodeOffering(encoder, offering));
+        } else {
+            rawXml(encoder.createOffering(offering), getOfferingOptions(encoder));
+        }
+    }
+
+    private static XmlOptions getOfferingOptions(GetCapabilitiesResponseEncoder encoder) {
+        // the encoded offering is the content of the swes:offering element
+        return new XmlOptions(encoder.getXmlOptions()).setSaveSyntheticDocumentElement(QN_OFFERING)
+                .setSaveNoXmlDecl().setCharacterEncoding(ENCODING);
+    }
+
+    private void writeOffering(Future<ByteBuffer> offering) throws XMLStreamException, EncodingException {
+        try {
+            rawBytes(offering.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new EncodingException("Interrupted while encoding the offerings", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof EncodingException) {
+                throw (EncodingException) ex.getCause();
+            }
+            throw new EncodingException("Error while encoding the offerings", ex.getCause());
+        }
+    }
+}
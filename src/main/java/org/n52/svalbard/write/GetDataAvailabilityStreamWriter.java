@@ -19,6 +19,7 @@ package org.n52.svalbard.write;
 import java.io.OutputStream;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -41,22 +42,24 @@ import org.n52.svalbard.encode.EncodingValues;
 import org.n52.svalbard.encode.exception.EncodingException;
 
 /**
- * GetDataAvailability response stream writer.
+ * GetDataAvailability response stream writer. The data availabilities are
+ * consumed one after another while writing and the time periods are
+ * referenced as soon as they were written once.
  *
  * @author <a href="mailto:c.autermann@52north.org">Christian Autermann</a>
  *
  * @since 4.0.0
  */
-public class GetDataAvailabilityStreamWriter extends XmlEventWriter<List<DataAvailability>> {
+public class GetDataAvailabilityStreamWriter extends XmlStreamWriter<Iterable<DataAvailability>> {
     private static final String TIME_PERIOD_PREFIX = "tp_";
 
     private static final String DATA_AVAILABILITY_PREFIX = "dam_";
 
     private static final String RESULT_TIME = "resultTime";
 
-    private List<DataAvailability> gdas;
+    private Iterable<DataAvailability> gdas;
 
-    private final Map<TimePeriod, String> times;
+    private final Map<TimePeriod, String> times = new HashMap<>();
 
     private final String version;
 
@@ -66,46 +69,53 @@ public class GetDataAvailabilityStreamWriter extends XmlEventWriter<List<DataAva
 
     private int resultTimeCount = 1;
 
-    public GetDataAvailabilityStreamWriter(String version, List<DataAvailability> gdas) {
+    public GetDataAvailabilityStreamWriter(String version, Iterable<DataAvailability> gdas) {
         this.gdas = gdas == null ? Collections.<DataAvailability> emptyList() : gdas;
-        this.times = new HashMap<TimePeriod, String>(this.gdas.size());
         this.version = version == null ? Sos2Constants.SERVICEVERSION : version;
     }
 
+    public GetDataAvailabilityStreamWriter(String version, Iterator<DataAvailability> gdas) {
+        this(version, gdas == null ? null : (Iterable<DataAvailability>) () -> gdas);
+    }
+
     @Override
     public void write(OutputStream out) throws XMLStreamException, EncodingException {
-        init(out);
-        start(true);
-        writeGetDataAvailabilityResponse();
-        end();
-        finish();
+        write(out, new EncodingValues().setEmbedded(true));
     }
 
     @Override
     public void write(OutputStream out, EncodingValues encodingValues) throws XMLStreamException, EncodingException {
-        write(out);
+        init(out, encodingValues);
+        start(encodingValues.isEmbedded());
+        writeGetDataAvailabilityResponse(encodingValues);
+        end();
+        finish();
     }
 
     @Override
-    public void write(List<DataAvailability> elementToStream, OutputStream out) throws XMLStreamException,
-            EncodingException {
-       this.gdas = elementToStream;
-       write(out);
+    public void write(Iterable<DataAvailability> elementToStream, OutputStream out)
+            throws XMLStreamException, EncodingException {
+        this.gdas = elementToStream;
+        write(out);
     }
 
     @Override
-    public void write(List<DataAvailability> elementToStream, OutputStream out, EncodingValues encodingValues)
+    public void write(Iterable<DataAvailability> elementToStream, OutputStream out, EncodingValues encodingValues)
             throws XMLStreamException, EncodingException {
         this.gdas = elementToStream;
-        write(out);
+        write(out, encodingValues);
     }
 
-    protected void writeGetDataAvailabilityResponse() throws XMLStreamException, EncodingException {
+    protected void writeGetDataAvailabilityResponse(EncodingValues encodingValues)
+            throws XMLStreamException, EncodingException {
         start(GetDataAvailabilityConstants.GDA_GET_DATA_AVAILABILITY_RESPONSE);
         namespace(GetDataAvailabilityConstants.NS_GDA_PREFIX, GetDataAvailabilityConstants.NS_GDA);
         namespace(GmlConstants.NS_GML_PREFIX, GmlConstants.NS_GML_32);
         namespace(SweConstants.NS_SWE_PREFIX, SweConstants.NS_SWE_20);
         namespace(W3CConstants.NS_XLINK_PREFIX, W3CConstants.NS_XLINK);
+        if (encodingValues.isAddSchemaLocation()) {
+            schemaLocation(Collections.singleton(GetDataAvailabilityConstants.GET_DATA_AVAILABILITY_SCHEMA_LOCATION));
+        }
         for (DataAvailability da : this.gdas) {
             wirteDataAvailabilityMember(da);
         }
@@ -129,48 +139,47 @@ public class GetDataAvailabilityStreamWriter extends XmlEventWriter<List<DataAva
     }
 
     protected void writePhenomenonTime(DataAvailability da) throws EncodingException, XMLStreamException {
-        start(GetDataAvailabilityConstants.GDA_PHENOMENON_TIME);
-        if (times.containsKey(da.getPhenomenonTime())) {
-            attr(GetDataAvailabilityConstants.XLINK_HREF, "#" + times.get(da.getPhenomenonTime()));
+        String gmlId = times.get(da.getPhenomenonTime());
+        if (gmlId != null) {
+            empty(GetDataAvailabilityConstants.GDA_PHENOMENON_TIME);
+            attr(GetDataAvailabilityConstants.XLINK_HREF, "#" + gmlId);
         } else {
+            start(GetDataAvailabilityConstants.GDA_PHENOMENON_TIME);
             da.getPhenomenonTime().setGmlId(TIME_PERIOD_PREFIX + timePeriodCount++);
             times.put(da.getPhenomenonTime(), da.getPhenomenonTime().getGmlId());
             writeTimePeriod(da.getPhenomenonTime());
+            end(GetDataAvailabilityConstants.GDA_PHENOMENON_TIME);
         }
-        end(GetDataAvailabilityConstants.GDA_PHENOMENON_TIME);
     }
 
     protected void writeFeatureOfInterest(DataAvailability da) throws XMLStreamException {
-        start(GetDataAvailabilityConstants.GDA_FEATURE_OF_INTEREST);
+        empty(GetDataAvailabilityConstants.GDA_FEATURE_OF_INTEREST);
         attr(GetDataAvailabilityConstants.XLINK_HREF, da.getFeatureOfInterest().getHref());
         if (da.getFeatureOfInterest().isSetTitle()) {
             attr(GetDataAvailabilityConstants.XLINK_TITLE, da.getFeatureOfInterest().getTitle());
         } else {
             attr(GetDataAvailabilityConstants.XLINK_TITLE, da.getFeatureOfInterest().getTitleOrFromHref());
         }
-        end(GetDataAvailabilityConstants.GDA_FEATURE_OF_INTEREST);
     }
 
     protected void writeProcedure(DataAvailability da) throws XMLStreamException {
-        start(GetDataAvailabilityConstants.GDA_PROCEDURE);
+        empty(GetDataAvailabilityConstants.GDA_PROCEDURE);
         attr(GetDataAvailabilityConstants.XLINK_HREF, da.getProcedure().getHref());
         if (da.getProcedure().isSetTitle()) {
             attr(GetDataAvailabilityConstants.XLINK_TITLE, da.getProcedure().getTitle());
         } else {
             attr(GetDataAvailabilityConstants.XLINK_TITLE, da.getProcedure().getTitleOrFromHref());
         }
-        end(GetDataAvailabilityConstants.GDA_PROCEDURE);
     }
 
     protected void writeObservedProperty(DataAvailability da) throws XMLStreamException {
-        start(GetDataAvailabilityConstants.GDA_OBSERVED_PROPERTY);
+        empty(GetDataAvailabilityConstants.GDA_OBSERVED_PROPERTY);
         attr(GetDataAvailabilityConstants.XLINK_HREF, da.getObservedProperty().getHref());
         if (da.getObservedProperty().isSetTitle()) {
             attr(GetDataAvailabilityConstants.XLINK_TITLE, da.getObservedProperty().getTitle());
         } else {
             attr(GetDataAvailabilityConstants.XLINK_TITLE, da.getObservedProperty().getTitleOrFromHref());
         }
-        end(GetDataAvailabilityConstants.GDA_OBSERVED_PROPERTY);
     }
 
     protected void writeTimePeriod(TimePeriod tp) throws XMLStreamException, EncodingException {
@@ -189,7 +198,7 @@ public class GetDataAvailabilityStreamWriter extends XmlEventWriter<List<DataAva
         if (tp.isSetStart()) {
             writeTimeString(tp.getStart(), tp.getTimeFormat());
         }
-        end(GmlConstants.QN_BEGIN_POSITION_32);
+        endInline(GmlConstants.QN_BEGIN_POSITION_32);
     }
 
     protected void writeEnd(TimePeriod tp) throws XMLStreamException, EncodingException {
@@ -200,7 +209,7 @@ public class GetDataAvailabilityStreamWriter extends XmlEventWriter<List<DataAva
         if (tp.isSetEnd()) {
             writeTimeString(tp.getEnd(), tp.getTimeFormat());
         }
-        end(GmlConstants.QN_END_POSITION_32);
+        endInline(GmlConstants.QN_END_POSITION_32);
     }
 
     protected void writeTimeString(DateTime time, TimeFormat format) throws XMLStreamException,
@@ -211,7 +220,7 @@ public class GetDataAvailabilityStreamWriter extends XmlEventWriter<List<DataAva
     protected void writeCount(long count) throws XMLStreamException {
         start(GetDataAvailabilityConstants.GDA_COUNT);
         chars(Long.toString(count));
-        end(GetDataAvailabilityConstants.GDA_COUNT);
+        endInline(GetDataAvailabilityConstants.GDA_COUNT);
     }
 
     protected void writeResultTimes(List<TimeInstant> resultTimes) throws XMLStreamException, EncodingException {
@@ -236,16 +245,15 @@ public class GetDataAvailabilityStreamWriter extends XmlEventWriter<List<DataAva
     }
 
     private void writeUom() throws XMLStreamException {
-        start(SweConstants.QN_UOM_SWE_200);
+        empty(SweConstants.QN_UOM_SWE_200);
         attr(W3CConstants.QN_XLINK_HREF, OmConstants.PHEN_UOM_ISO8601);
-        end(SweConstants.QN_UOM_SWE_200);
 
     }
 
     protected void writeValue(TimeInstant ti) throws XMLStreamException, EncodingException {
         start(SweConstants.QN_VALUE_SWE_200);
         writeTimeString(ti.getValue(), ti.getTimeFormat());
-        end(SweConstants.QN_VALUE_SWE_200);
+        endInline(SweConstants.QN_VALUE_SWE_200);
     }
 
 }
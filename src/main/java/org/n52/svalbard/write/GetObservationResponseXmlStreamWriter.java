@@ -16,7 +16,11 @@
  */
 package org.n52.svalbard.write;
 
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -24,7 +28,9 @@ import javax.xml.stream.XMLStreamException;
 
 import org.apache.xmlbeans.XmlObject;
 
+import org.n52.shetland.ogc.gml.AbstractFeature;
 import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.SingleObservationValue;
 import org.n52.shetland.ogc.om.StreamingValue;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.ogc.sos.Sos2Constants;
@@ -32,10 +38,14 @@ import org.n52.shetland.ogc.sos.Sos2StreamingConstants;
 import org.n52.shetland.ogc.sos.response.GetObservationResponse;
 import org.n52.shetland.w3c.SchemaLocation;
 import org.n52.shetland.w3c.W3CConstants;
+import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.encode.EncodedObservationCache;
 import org.n52.svalbard.encode.Encoder;
 import org.n52.svalbard.encode.EncoderRepository;
 import org.n52.svalbard.encode.EncodingValues;
+import org.n52.svalbard.encode.GmlIdAllocator;
 import org.n52.svalbard.encode.ObservationEncoder;
+import org.n52.svalbard.encode.ResponseReferenceRegistry;
 import org.n52.svalbard.encode.SchemaAwareEncoder;
 import org.n52.svalbard.encode.StreamingDataEncoder;
 import org.n52.svalbard.encode.StreamingEncoder;
@@ -61,6 +71,10 @@ public class GetObservationResponseXmlStreamWriter extends XmlStreamWriter<GetOb
 
     private EncoderRepository encoderRepository;
 
+    private EncodedObservationCache observationCache;
+
+    private final Map<String, String> writtenFeatures = new HashMap<>();
+
     /**
      * constructor
      */
@@ -86,6 +100,14 @@ public class GetObservationResponseXmlStreamWriter extends XmlStreamWriter<GetOb
         this.encoderRepository = encoderRepository;
     }
 
+    /**
+     * @param observationCache
+     *            the cache for encoded observations
+     */
+    public void setObservationCache(EncodedObservationCache observationCache) {
+        this.observationCache = observationCache;
+    }
+
     @Override
     public void write(OutputStream out) throws XMLStreamException, EncodingException {
         write(getResponse(), out);
@@ -144,6 +166,9 @@ public class GetObservationResponseXmlStreamWriter extends XmlStreamWriter<GetOb
         ObservationEncoder<XmlObject, OmObservation> encoder = findObservationEncoder(response.getResponseFormat());
         encodingValues.setAsDocument(true);
         encodingValues.setEncodingNamespace(response.getResponseFormat());
+        encodingValues.setAdditionalValues(GmlIdAllocator
+                .enable(ResponseReferenceRegistry.enable(encodingValues.getAdditionalValues())));
+        writtenFeatures.clear();
         // write schemaLocation
         schemaLocation(getSchemaLocation(encodingValues, encoder));
         writeNewLine();
@@ -207,12 +232,35 @@ public class GetObservationResponseXmlStreamWriter extends XmlStreamWriter<GetOb
             EncodingValues encodingValues) throws XMLStreamException, EncodingException {
         start(Sos2StreamingConstants.OBSERVATION_DATA);
         writeNewLine();
-        if (encoder instanceof StreamingEncoder) {
-            ((StreamingEncoder<XmlObject, OmObservation>) encoder).encode(observation, getOutputStream(),
-                    encodingValues.setAsDocument(true).setEmbedded(true).setIndent(indent));
+        EncodedObservationCache.Key key = getCacheKey(observation, encoder, encodingValues);
+        EncodedObservationCache.Entry cached = key == null ? null : observationCache.get(key);
+        GmlIdAllocator ids = GmlIdAllocator.of(encodingValues.getAdditionalValues());
+        // the gml:ids of the cached observation may already be used in this response
+        if (cached != null && ids.reserve(cached.getGmlIds())) {
+            rawBytes(cached.getEncoded());
         } else {
-            rawText(encoder.encode(observation, encodingValues.getAdditionalValues())
-                    .xmlText(XmlOptionsHelper.getInstance().getXmlOptions()));
+            int mark = ids.mark();
+            if (encoder instanceof StreamingEncoder) {
+                if (key == null) {
+                    ((StreamingEncoder<XmlObject, OmObservation>) encoder).encode(observation, getOutputStream(),
+                            encodingValues.setAsDocument(true).setEmbedded(true).setIndent(indent));
+                } else {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    ((StreamingEncoder<XmlObject, OmObservation>) encoder).encode(observation, out,
+                            encodingValues.setAsDocument(true).setEmbedded(true).setIndent(indent));
+                    byte[] encoded = out.toByteArray();
+                    observationCache.put(key, encoded, ids.allocatedSince(mark));
+                    rawBytes(encoded);
+                }
+            } else {
+                XmlObject xmlObject = encoder.encode(observation, encodingValues.getAdditionalValues());
+                String encoded = xmlObject.xmlText(XmlOptionsHelper.getInstance().getXmlOptions());
+                if (key != null) {
+                    observationCache.put(key, encoded.getBytes(StandardCharsets.UTF_8), ids.allocatedSince(mark));
+                }
+                rawText(encoded);
+            }
+            addWrittenFeature(observation, ids, ids.allocatedSince(mark));
         }
         indent--;
         writeNewLine();
@@ -220,6 +268,68 @@ public class GetObservationResponseXmlStreamWriter extends XmlStreamWriter<GetOb
         indent++;
     }
 
+    /**
+     * Create the key of the observation in the {@link EncodedObservationCache}.
+     * Only single value observations that do not change anymore (see
+     * {@link EncodedObservationCache#isCacheable(OmObservation)}) and whose
+     * feature of interest was already written to this response, and is
+     * therefore referenced, are cached. The key consists of the id of the
+     * observation, the encoding and the <code>gml:id</code> of the referenced
+     * feature.
+     *
+     * @return the key or <code>null</code> if the observation should not be
+     *         cached
+     */
+    private EncodedObservationCache.Key getCacheKey(OmObservation observation,
+            ObservationEncoder<XmlObject, OmObservation> encoder, EncodingValues encodingValues) {
+        if (observationCache == null || !observationCache.isEnabled() || !observation.isSetObservationID()
+                || !(observation.getValue() instanceof SingleObservationValue)
+                || !observationCache.isCacheable(observation)
+                || ResponseReferenceRegistry.of(encodingValues.getAdditionalValues()) != null) {
+            return null;
+        }
+        AbstractFeature featureOfInterest = observation.getObservationConstellation().getFeatureOfInterest();
+        String featureGmlId = featureOfInterest == null || !featureOfInterest.isSetIdentifier() ? null
+                : writtenFeatures.get(featureOfInterest.getIdentifier());
+        if (featureGmlId == null) {
+            return null;
+        }
+        // the cached observation carries the gml:id derived from its id
+        if (GmlIdAllocator.of(encodingValues.getAdditionalValues()).isAllocated(observation)) {
+            return null;
+        }
+        return EncodedObservationCache.Key.of(observation.getObservationID(), encodingValues.getEncodingNamespace(),
+                encoder.getClass().getName(), featureGmlId, indent,
+                encodingValues.getAdditionalValues().without(SosHelperValues.GML_ID_ALLOCATOR));
+    }
+
+    /**
+     * Remember the feature of interest if it was written with the encoded
+     * observation, so that the following observations of this feature
+     * reference it and can be cached.
+     *
+     * @param observation
+     *            the encoded observation
+     * @param ids
+     *            the allocator of the response
+     * @param gmlIds
+     *            the <code>gml:id</code>s of the encoded observation
+     */
+    private void addWrittenFeature(OmObservation observation, GmlIdAllocator ids, Set<String> gmlIds) {
+        AbstractFeature featureOfInterest = observation.getObservationConstellation().getFeatureOfInterest();
+        if (featureOfInterest == null || !featureOfInterest.isSetIdentifier()) {
+            return;
+        }
+        // features copied from the fragment cache are registered at the allocator
+        String gmlId = ids.getGmlId(featureOfInterest);
+        if (gmlId == null) {
+            gmlId = featureOfInterest.getGmlId();
+        }
+        if (gmlIds.contains(gmlId)) {
+            writtenFeatures.putIfAbsent(featureOfInterest.getIdentifier(), gmlId);
+        }
+    }
+
     /**
      * Finds a O&Mv2 compatible {@link ObservationEncoder}
      *
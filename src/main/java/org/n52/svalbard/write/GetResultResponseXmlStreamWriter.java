@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.shetland.ogc.sos.SosConstants;
+import org.n52.shetland.ogc.sos.response.GetResultResponse;
+import org.n52.svalbard.encode.EncodingValues;
+import org.n52.svalbard.encode.ResultValuesSource;
+import org.n52.svalbard.encode.SchemaAwareEncoder;
+import org.n52.svalbard.encode.exception.EncodingException;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Writes a SOS 2.0 GetResult response to stream. The result values are read
+ * chunk by chunk from a {@link ResultValuesSource}, escaped and written
+ * directly to the stream.
+ *
+ * @since 1.0.0
+ */
+public class GetResultResponseXmlStreamWriter extends XmlStreamWriter<GetResultResponse> {
+
+    private static final QName QN_GET_RESULT_RESPONSE = new QName(Sos2Constants.NS_SOS_20,
+            SosConstants.Operations.GetResult.name() + "Response", SosConstants.NS_SOS_PREFIX);
+
+    private static final QName QN_RESULT_VALUES =
+            new QName(Sos2Constants.NS_SOS_20, "resultValues", SosConstants.NS_SOS_PREFIX);
+
+    private GetResultResponse response;
+
+    private ResultValuesSource resultValues;
+
+    /**
+     * constructor
+     */
+    public GetResultResponseXmlStreamWriter() {
+    }
+
+    /**
+     * constructor
+     *
+     * @param resultValues
+     *            the source of the result values, if <code>null</code> the
+     *            result values of the response are written
+     */
+    public GetResultResponseXmlStreamWriter(ResultValuesSource resultValues) {
+        this.resultValues = resultValues;
+    }
+
+    @Override
+    public void write(OutputStream out) throws XMLStreamException, EncodingException {
+        write(response, out);
+    }
+
+    @Override
+    public void write(OutputStream out, EncodingValues encodingValues) throws XMLStreamException, EncodingException {
+        write(response, out, encodingValues);
+    }
+
+    @Override
+    public void write(GetResultResponse response, OutputStream out) throws XMLStreamException, EncodingException {
+        write(response, out, new EncodingValues());
+    }
+
+    @Override
+    public void write(GetResultResponse response, OutputStream out, EncodingValues encodingValues)
+            throws XMLStreamException, EncodingException {
+        this.response = response;
+        ResultValuesSource source = resultValues;
+        if (source == null && response.hasResultValues()) {
+            source = ResultValuesSource.of(response.getResultValues());
+        }
+        try {
+            init(out, encodingValues);
+            start(encodingValues.isEmbedded());
+            writeGetResultResponseDoc(source, encodingValues);
+            end();
+            finish();
+        } catch (IOException ioe) {
+            throw new EncodingException("Error while reading the result values!", ioe);
+        } finally {
+            closeSource(source);
+        }
+    }
+
+    private void writeGetResultResponseDoc(ResultValuesSource source, EncodingValues encodingValues)
+            throws XMLStreamException, IOException {
+        start(QN_GET_RESULT_RESPONSE);
+        namespace(SosConstants.NS_SOS_PREFIX, Sos2Constants.NS_SOS_20);
+        if (encodingValues.getEncoder() instanceof SchemaAwareEncoder) {
+            schemaLocation(((SchemaAwareEncoder<?, ?>) encodingValues.getEncoder()).getSchemaLocations());
+        } else {
+            schemaLocation(Sets.newHashSet(Sos2Constants.SOS_GET_RESULT_SCHEMA_LOCATION));
+        }
+        if (source == null) {
+            empty(QN_RESULT_VALUES);
+        } else {
+            start(QN_RESULT_VALUES);
+            for (String chunk = source.next(); chunk != null; chunk = source.next()) {
+                chars(chunk);
+                flush();
+            }
+            endInline(QN_RESULT_VALUES);
+        }
+        end(QN_GET_RESULT_RESPONSE);
+    }
+
+    private static void closeSource(ResultValuesSource source) throws EncodingException {
+        if (source != null) {
+            try {
+                source.close();
+            } catch (IOException ioe) {
+                throw new EncodingException("Error while closing the result values!", ioe);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import java.io.OutputStream;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.xmlbeans.XmlObject;
+import org.joda.time.DateTime;
+
+import org.n52.shetland.ogc.gml.GmlConstants;
+import org.n52.shetland.ogc.om.OmConstants;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.StreamingValue;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sos.SosConstants;
+import org.n52.shetland.ogc.sos.response.AbstractObservationResponse;
+import org.n52.shetland.util.CollectionHelper;
+import org.n52.shetland.util.ReferencedEnvelope;
+import org.n52.shetland.w3c.W3CConstants;
+import org.n52.svalbard.encode.EncodingContext;
+import org.n52.svalbard.encode.EncodingValues;
+import org.n52.svalbard.encode.GmlIdAllocator;
+import org.n52.svalbard.encode.OmEncoderv100;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.util.N52XmlHelper;
+import org.n52.svalbard.util.OMHelper;
+import org.n52.svalbard.util.XmlOptionsHelper;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Sets;
+
+/**
+ * Writes the O&amp;M 1.0 <code>om:ObservationCollection</code> of a SOS 1.0
+ * observation response member by member to stream. Only the currently
+ * written observation is held as XmlBeans object.
+ *
+ * The <code>gml:boundedBy</code> is written from the envelope provided by
+ * {@link OmEncoderv100#getEnvelope(java.util.List, EncodingContext, boolean)}
+ * and is left out if the encoder does not provide one.
+ *
+ * @since 1.0.0
+ */
+public class ObservationCollectionXmlStreamWriter extends XmlStreamWriter<AbstractObservationResponse> {
+
+    private static final QName QN_OBSERVATION_COLLECTION =
+            new QName(OmConstants.NS_OM, "ObservationCollection", OmConstants.NS_OM_PREFIX);
+
+    private static final QName QN_MEMBER = new QName(OmConstants.NS_OM, "member", OmConstants.NS_OM_PREFIX);
+
+    private static final QName QN_GML_ID = new QName(GmlConstants.NS_GML, "id", GmlConstants.NS_GML_PREFIX);
+
+    private static final QName QN_BOUNDED_BY = new QName(GmlConstants.NS_GML, "boundedBy", GmlConstants.NS_GML_PREFIX);
+
+    private static final QName QN_ENVELOPE = new QName(GmlConstants.NS_GML, "Envelope", GmlConstants.NS_GML_PREFIX);
+
+    private AbstractObservationResponse response;
+
+    /**
+     * constructor
+     */
+    public ObservationCollectionXmlStreamWriter() {
+    }
+
+    /**
+     * constructor
+     *
+     * @param response
+     *            {@link AbstractObservationResponse} to write to stream
+     */
+    public ObservationCollectionXmlStreamWriter(AbstractObservationResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    public void write(OutputStream out) throws XMLStreamException, EncodingException {
+        write(response, out);
+    }
+
+    @Override
+    public void write(OutputStream out, EncodingValues encodingValues) throws XMLStreamException, EncodingException {
+        write(response, out, encodingValues);
+    }
+
+    @Override
+    public void write(AbstractObservationResponse response, OutputStream out)
+            throws XMLStreamException, EncodingException {
+        write(response, out, new EncodingValues());
+    }
+
+    @Override
+    public void write(AbstractObservationResponse response, OutputStream out, EncodingValues encodingValues)
+            throws XMLStreamException, EncodingException {
+        if (!(encodingValues.getEncoder() instanceof OmEncoderv100)) {
+            throw new EncodingException("The O&M 1.0 encoder is required to write the observation collection!");
+        }
+        try {
+            init(out, encodingValues);
+            start(encodingValues.isEmbedded());
+            writeObservationCollectionDoc(response, (OmEncoderv100) encodingValues.getEncoder(), encodingValues);
+            end();
+            finish();
+        } catch (XMLStreamException xmlse) {
+            throw new EncodingException(xmlse);
+        }
+    }
+
+    private void writeObservationCollectionDoc(AbstractObservationResponse response, OmEncoderv100 encoder,
+            EncodingValues encodingValues) throws XMLStreamException, EncodingException {
+        start(QN_OBSERVATION_COLLECTION);
+        namespace(OmConstants.NS_OM_PREFIX, OmConstants.NS_OM);
+        namespace(GmlConstants.NS_GML_PREFIX, GmlConstants.NS_GML);
+        namespace(W3CConstants.NS_XLINK_PREFIX, W3CConstants.NS_XLINK);
+        schemaLocation(Sets.newHashSet(N52XmlHelper.getSchemaLocationForSOS100(),
+                N52XmlHelper.getSchemaLocationForOM100(), N52XmlHelper.getSchemaLocationForSA100()));
+        attr(QN_GML_ID, SosConstants.OBS_COL_ID_PREFIX + new DateTime().getMillis());
+        // the gml:ids of the members are unique within the collection
+        EncodingContext ctx = GmlIdAllocator.enable(encodingValues.getAdditionalValues());
+        if (CollectionHelper.isNotEmpty(response.getObservationCollection())) {
+            writeBoundedBy(encoder, encoder.getEnvelope(response.getObservationCollection(), ctx, true));
+            for (OmObservation observation : response.getObservationCollection()) {
+                checkResultModel(encoder, observation, response.getResultModel());
+                if (observation.getValue() instanceof StreamingValue) {
+                    StreamingValue<?> streamingValue = (StreamingValue<?>) observation.getValue();
+                    try {
+                        while (streamingValue.hasNextValue()) {
+                            writeMember(encoder, streamingValue.nextSingleObservation(), ctx);
+                        }
+                    } catch (OwsExceptionReport owse) {
+                        throw new EncodingException(owse);
+                    }
+                } else {
+                    writeMember(encoder, observation, ctx);
+                }
+            }
+        } else {
+            empty(QN_MEMBER);
+            addXlinkHrefAttr(GmlConstants.NIL_INAPPLICABLE);
+        }
+        end(QN_OBSERVATION_COLLECTION);
+    }
+
+    private void checkResultModel(OmEncoderv100 encoder, OmObservation observation, String resultModel)
+            throws EncodingException {
+        if (!Strings.isNullOrEmpty(resultModel) && !encoder.getObservationType(observation).equals(resultModel)) {
+            throw new EncodingException("The requested resultModel '%s' is invalid for the resulting observations!",
+                    OMHelper.getEncodedResultModelFor(resultModel));
+        }
+    }
+
+    private void writeBoundedBy(OmEncoderv100 encoder, ReferencedEnvelope envelope)
+            throws XMLStreamException, EncodingException {
+        if (envelope == null || !envelope.isSetEnvelope()) {
+            return;
+        }
+        start(QN_BOUNDED_BY);
+        writeXmlObject(encoder.encodeObjectToXml(GmlConstants.NS_GML, envelope), QN_ENVELOPE);
+        end(QN_BOUNDED_BY);
+    }
+
+    private void writeMember(OmEncoderv100 encoder, OmObservation observation, EncodingContext ctx)
+            throws XMLStreamException, EncodingException {
+        XmlObject member = encoder.encode(observation, ctx);
+        start(QN_MEMBER);
+        rawXml(member, XmlOptionsHelper.getInstance().getXmlOptions());
+        end(QN_MEMBER);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import java.io.OutputStream;
+import java.util.Locale;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.soap.SOAPConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.xmlbeans.XmlObject;
+import org.n52.shetland.ogc.ows.OWSConstants;
+import org.n52.shetland.ogc.ows.exception.CodedException;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.w3c.SchemaLocation;
+import org.n52.shetland.w3c.soap.SoapFault;
+import org.n52.shetland.w3c.soap.SoapHelper;
+import org.n52.shetland.w3c.soap.SoapResponse;
+import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.encode.AbstractSoapEncoder;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncodingContext;
+import org.n52.svalbard.encode.exception.EncodingException;
+
+import com.google.common.base.Strings;
+
+/**
+ * {@link XmlStreamWriter} implementation for SOAP 1.1. The faults are written
+ * directly, the <code>detail</code> of an exception fault contains an
+ * <code>ows:Exception</code> for every exception of the report.
+ *
+ * @since 1.0.0
+ */
+public class Soap11XmlStreamWriter extends AbstractSoapXmlStreamWriter {
+
+    private static final SchemaLocation SOAP_11_SCHEMA_LOCATION = new SchemaLocation(
+            SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE, SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE);
+
+    // the children of soap:Fault are unqualified in SOAP 1.1
+    private static final QName QN_FAULT_CODE = new QName("faultcode");
+
+    private static final QName QN_FAULT_STRING = new QName("faultstring");
+
+    private static final QName QN_DETAIL = new QName("detail");
+
+    private static final QName QN_XML_LANG = new QName(XMLConstants.XML_NS_URI, "lang", XMLConstants.XML_NS_PREFIX);
+
+    private static final String CLIENT = "Client";
+
+    private static final String SERVER = "Server";
+
+    /**
+     * constructor.
+     */
+    public Soap11XmlStreamWriter() {
+        this(null);
+    }
+
+    /**
+     * constructor
+     *
+     * @param response
+     *            Service internal SOAP response to encode
+     */
+    public Soap11XmlStreamWriter(SoapResponse response) {
+        super(response);
+    }
+
+    @Override
+    protected String getSoapNamespace() {
+        return SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE;
+    }
+
+    @Override
+    protected SchemaLocation getSoapSchemaLocation() {
+        return SOAP_11_SCHEMA_LOCATION;
+    }
+
+    /**
+     * Write SOAP 1.1 fault element to SOAP 1.1 body element
+     *
+     * @param fault
+     *            Service internal SOAP fault representation
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     */
+    @Override
+    protected void writeSoapFault(SoapFault fault) throws XMLStreamException {
+        QName faultName = getSoapName(EN_FAULT);
+        start(faultName);
+        writeFaultCode(getFaultCode(fault.getFaultCode()));
+        writeFaultString(fault.getFaultReason(), fault.getLocale());
+        if (fault.getDetailText() != null) {
+            start(QN_DETAIL);
+            chars(fault.getDetailText());
+            endInline(QN_DETAIL);
+        }
+        end(faultName);
+    }
+
+    /**
+     * Encode and write {@link OwsExceptionReport} as SOAP 1.1 fault element
+     * to SOAP 1.1 body element
+     *
+     * @param exception
+     *            Service internal {@link OwsExceptionReport}
+     * @throws EncodingException
+     *             If an encoding error occurs
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     */
+    @Override
+    protected void writeSoapFaultFromException(OwsExceptionReport exception)
+            throws EncodingException, XMLStreamException {
+        if (exception.getExceptions().isEmpty()) {
+            SoapFault fault = new SoapFault();
+            fault.setFaultCode(SOAPConstants.SOAP_RECEIVER_FAULT);
+            fault.setFaultReason(AbstractSoapEncoder.DEFAULT_FAULT_REASON);
+            fault.setLocale(Locale.ENGLISH);
+            fault.setDetailText(AbstractSoapEncoder.MISSING_EXCEPTION_DETAIL_TEXT);
+            writeSoapFault(fault);
+            return;
+        }
+        QName faultName = getSoapName(EN_FAULT);
+        start(faultName);
+        writeFaultCode(getSoapName(CLIENT));
+        CodedException firstException = exception.getExceptions().get(0);
+        writeFaultString(SoapHelper.getSoapFaultReasonText(firstException.getCode()), Locale.ENGLISH);
+        start(QN_DETAIL);
+        EncodingContext ctx = EncodingContext.of(SosHelperValues.ENCODE_OWS_EXCEPTION_ONLY);
+        for (CodedException codedException : exception.getExceptions()) {
+            Encoder<XmlObject, CodedException> encoder = getEncoder(OWSConstants.NS_OWS, codedException);
+            rawXml(encoder.encode(codedException, ctx), getXmlOptions());
+        }
+        end(QN_DETAIL);
+        end(faultName);
+    }
+
+    /**
+     * Map the SOAP 1.2 fault codes to their SOAP 1.1 counterparts.
+     */
+    private QName getFaultCode(QName code) {
+        if (code == null || SOAPConstants.SOAP_RECEIVER_FAULT.equals(code)) {
+            return getSoapName(SERVER);
+        } else if (SOAPConstants.SOAP_SENDER_FAULT.equals(code)) {
+            return getSoapName(CLIENT);
+        }
+        return code;
+    }
+
+    private void writeFaultCode(QName code) throws XMLStreamException {
+        start(QN_FAULT_CODE);
+        String prefix = code.getPrefix();
+        if (!getSoapNamespace().equals(code.getNamespaceURI())) {
+            if (Strings.isNullOrEmpty(prefix)) {
+                prefix = XMLConstants.DEFAULT_NS_PREFIX.equals(code.getNamespaceURI()) ? "" : "ns";
+            }
+            if (!prefix.isEmpty()) {
+                namespace(prefix, code.getNamespaceURI());
+            }
+        }
+        chars(prefix.isEmpty() ? code.getLocalPart() : prefix + ':' + code.getLocalPart());
+        endInline(QN_FAULT_CODE);
+    }
+
+    private void writeFaultString(String reason, Locale locale) throws XMLStreamException {
+        start(QN_FAULT_STRING);
+        if (locale != null) {
+            attr(QN_XML_LANG, locale.getLanguage());
+        }
+        chars(reason);
+        endInline(QN_FAULT_STRING);
+    }
+}
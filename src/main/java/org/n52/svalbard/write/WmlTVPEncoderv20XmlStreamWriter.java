@@ -76,9 +76,9 @@ public class WmlTVPEncoderv20XmlStreamWriter extends AbstractOmV20XmlStreamWrite
         namespace(WaterMLConstants.NS_WML_20_PREFIX, WaterMLConstants.NS_WML_20);
         writeNewLine();
         start(WaterMLConstants.QN_MEASUREMENT_TIMESERIES);
-        attr(GmlConstants.QN_ID_32, "timeseries." + observation.getObservationID());
+        attr(GmlConstants.QN_ID_32, allocateGmlId("timeseries." + observation.getObservationID()));
         writeNewLine();
-        writeMeasurementTimeseriesMetadata(observation.getPhenomenonTime().getGmlId());
+        writeMeasurementTimeseriesMetadata(getPhenomenonTimeHref());
         writeNewLine();
         if (observation.getValue() instanceof SingleObservationValue) {
             SingleObservationValue<?> observationValue = (SingleObservationValue<?>) observation.getValue();
@@ -135,18 +135,18 @@ public class WmlTVPEncoderv20XmlStreamWriter extends AbstractOmV20XmlStreamWrite
     /**
      * Write timeseries metadata to stream
      *
-     * @param id
-     *            Observation id
+     * @param phenomenonTimeHref
+     *            Reference to the written phenomenon time
      * @throws XMLStreamException
      *             If an error occurs when writing to stream
      */
-    private void writeMeasurementTimeseriesMetadata(String id) throws XMLStreamException {
+    private void writeMeasurementTimeseriesMetadata(String phenomenonTimeHref) throws XMLStreamException {
         start(WaterMLConstants.QN_METADATA);
         writeNewLine();
         start(WaterMLConstants.QN_TIMESERIES_METADATA);
         writeNewLine();
         empty(WaterMLConstants.QN_TEMPORAL_EXTENT);
-        addXlinkHrefAttr("#" + id);
+        addXlinkHrefAttr(phenomenonTimeHref);
         writeNewLine();
         indent--;
         end(WaterMLConstants.QN_TIMESERIES_METADATA);
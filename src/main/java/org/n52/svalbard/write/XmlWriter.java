@@ -16,7 +16,11 @@
  */
 package org.n52.svalbard.write;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
@@ -26,6 +30,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
 
 import org.n52.shetland.ogc.gml.time.TimeInstant;
 import org.n52.shetland.ogc.gml.time.TimePosition;
@@ -306,6 +311,78 @@ public abstract class XmlWriter<T, S> {
         chars(text, false);
     }
 
+    /**
+     * Write an already serialized fragment directly to the
+     * {@link OutputStream} and adds current indent before writing it. The
+     * fragment has to be serialized in the encoding of this writer.
+     *
+     * @param fragment
+     *            Serialized fragment to write to stream
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     */
+    protected void rawBytes(byte[] fragment) throws XMLStreamException {
+        rawBytes(ByteBuffer.wrap(fragment));
+    }
+
+    /**
+     * Write an already serialized fragment directly to the
+     * {@link OutputStream} and adds current indent before writing it. The
+     * fragment has to be serialized in the encoding of this writer.
+     *
+     * @param fragment
+     *            Serialized fragment to write to stream, the position of the
+     *            buffer is not changed
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     */
+    protected void rawBytes(ByteBuffer fragment) throws XMLStreamException {
+        writeIndent(indent);
+        // close a pending start tag before the writer is bypassed
+        chars("", false);
+        flush();
+        try {
+            if (fragment.hasArray()) {
+                getOutputStream().write(fragment.array(), fragment.arrayOffset() + fragment.position(),
+                        fragment.remaining());
+            } else {
+                ByteBuffer buffer = fragment.duplicate();
+                WritableByteChannel channel = Channels.newChannel(getOutputStream());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException ioe) {
+            throw new XMLStreamException("Error while writing fragment to stream!", ioe);
+        }
+    }
+
+    /**
+     * Save the {@link XmlObject} directly to the {@link OutputStream} without
+     * XML declaration and adds current indent before writing it. In contrast
+     * to {@link #writeXmlObject(XmlObject, QName)} the object is not
+     * serialized to a {@link String} first.
+     *
+     * @param xmlObject
+     *            {@link XmlObject} to write
+     * @param options
+     *            the options to save the object
+     * @throws XMLStreamException
+     *             If an error occurs when writing to {@link OutputStream}
+     */
+    protected void rawXml(XmlObject xmlObject, XmlOptions options) throws XMLStreamException {
+        writeIndent(indent);
+        // close a pending start tag before the writer is bypassed
+        chars("", false);
+        flush();
+        try {
+            xmlObject.save(getOutputStream(),
+                    new XmlOptions(options).setSaveNoXmlDecl().setCharacterEncoding(ENCODING));
+        } catch (IOException ioe) {
+            throw new XMLStreamException("Error while writing element to stream!", ioe);
+        }
+    }
+
     /**
      * Create the replacement from {@link QName}
      *
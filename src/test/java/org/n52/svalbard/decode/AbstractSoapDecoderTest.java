@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.soap.SOAPConstants;
+import javax.xml.soap.SOAPHeaderElement;
+
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.n52.shetland.w3c.soap.SoapHeader;
+import org.n52.shetland.w3c.wsa.WsaActionHeader;
+import org.n52.shetland.w3c.wsa.WsaConstants;
+import org.n52.svalbard.decode.exception.DecodingException;
+
+/**
+ * @since 1.0.0
+ */
+public class AbstractSoapDecoderTest {
+
+    private static final String NS_CUSTOM = "http://www.example.org/header";
+
+    private static final String ENVELOPE = "<env:Envelope xmlns:env=\"" + SOAPConstants.URI_NS_SOAP_1_2_ENVELOPE
+            + "\" xmlns:wsa=\"" + WsaConstants.NS_WSA + "\" xmlns:h=\"" + NS_CUSTOM + "\"><env:Header>"
+            + "<wsa:Action>http://www.opengis.net/def/serviceOperation/sos/core/2.0/GetCapabilities</wsa:Action>"
+            + "<h:custom><h:value>1</h:value></h:custom></env:Header><env:Body/></env:Envelope>";
+
+    private DecoderRepository decoderRepository;
+
+    private Soap12Decoder decoder;
+
+    @Before
+    public void setUp() {
+        this.decoderRepository = mock(DecoderRepository.class);
+        this.decoder = new Soap12Decoder();
+        this.decoder.setDecoderRepository(decoderRepository);
+    }
+
+    @Test
+    public void shouldDecodeHeadersWithoutSaaj() throws XmlException {
+        when(decoderRepository.getDecoder(new XmlNamespaceDecoderKey(WsaConstants.NS_WSA, SoapHeader.class)))
+                .thenReturn(new WsaDecoder());
+
+        List<SoapHeader> headers = decoder.getSoapHeader(XmlObject.Factory.parse(ENVELOPE));
+
+        assertThat(headers, hasSize(1));
+        assertThat(headers.get(0), is(instanceOf(WsaActionHeader.class)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldFallBackToSoapHeaderElementDecoders() throws XmlException, DecodingException {
+        Decoder<Object, List<SOAPHeaderElement>> legacy = mock(Decoder.class);
+        when(legacy.decode(anyListOf(SOAPHeaderElement.class))).thenReturn(Collections.emptyList());
+        when(decoderRepository.getDecoder(new XmlNamespaceDecoderKey(NS_CUSTOM, SOAPHeaderElement.class)))
+                .thenReturn(legacy);
+
+        decoder.getSoapHeader(XmlObject.Factory.parse(ENVELOPE));
+
+        ArgumentCaptor<List> elements = ArgumentCaptor.forClass(List.class);
+        verify(legacy).decode(elements.capture());
+        assertThat(elements.getValue(), hasSize(1));
+        SOAPHeaderElement element = (SOAPHeaderElement) elements.getValue().get(0);
+        assertThat(element.getNamespaceURI(), is(NS_CUSTOM));
+        assertThat(element.getLocalName(), is("custom"));
+        assertThat(element.getTextContent(), is("1"));
+    }
+
+    @Test
+    public void shouldIgnoreHeadersWithoutDecoder() throws XmlException {
+        assertThat(decoder.getSoapHeader(XmlObject.Factory.parse(ENVELOPE)), is(empty()));
+    }
+}
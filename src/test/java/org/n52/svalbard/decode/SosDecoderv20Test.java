@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.xmlbeans.XmlObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.svalbard.decode.exception.DecodingException;
+
+import net.opengis.om.x20.OMObservationType;
+import net.opengis.sos.x20.InsertObservationDocument;
+import net.opengis.sos.x20.InsertObservationType;
+
+/**
+ * @since 1.0.0
+ */
+public class SosDecoderv20Test {
+
+    private SosDecoderv20 decoder;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws DecodingException {
+        Decoder<Object, XmlObject> observationDecoder = mock(Decoder.class);
+        when(observationDecoder.decode(any(XmlObject.class)))
+                .thenAnswer(invocation -> ((OMObservationType) invocation.getArguments()[0]).getId());
+        DecoderRepository decoderRepository = mock(DecoderRepository.class);
+        when(decoderRepository.getDecoder(any(DecoderKey.class))).thenReturn(observationDecoder);
+        this.decoder = new SosDecoderv20();
+        this.decoder.setDecoderRepository(decoderRepository);
+    }
+
+    @After
+    public void tearDown() {
+        this.decoder.destroy();
+    }
+
+    @Test
+    public void shouldDecodeObservationsSequentially() throws DecodingException {
+        assertThat(decoder.decodeObservations(createObservations(3)), contains("o_1", "o_2", "o_3"));
+    }
+
+    @Test
+    public void shouldDecodeObservationsInParallelInDocumentOrder() throws DecodingException {
+        decoder.setInsertObservationDecodingThreads(4);
+        List<Object> expected = new ArrayList<>();
+        for (int i = 1; i <= 20; ++i) {
+            expected.add("o_" + i);
+        }
+        assertThat(decoder.decodeObservations(createObservations(20)), is(expected));
+    }
+
+    private static InsertObservationType.Observation[] createObservations(int count) {
+        InsertObservationDocument document = InsertObservationDocument.Factory.newInstance();
+        InsertObservationType insertObservation = document.addNewInsertObservation();
+        for (int i = 1; i <= count; ++i) {
+            insertObservation.addNewObservation().addNewOMObservation().setId("o_" + i);
+        }
+        return insertObservation.getObservationArray();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.apache.xmlbeans.XmlObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.shetland.ogc.ows.service.OwsServiceCommunicationObject;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.shetland.ogc.sos.request.InsertObservationRequest;
+import org.n52.svalbard.decode.exception.DecodingException;
+
+import com.google.common.io.CharStreams;
+
+import net.opengis.sos.x20.GetCapabilitiesDocument;
+
+/**
+ * @since 1.0.0
+ */
+public class SosStringDecoderv20Test {
+
+    private static final String INSERT_OBSERVATION = "<sos:InsertObservation xmlns:sos=\""
+            + Sos2Constants.NS_SOS_20 + "\" service=\"SOS\" version=\"2.0.0\"><sos:offering>o</sos:offering>"
+            + "</sos:InsertObservation>";
+
+    private static final String GET_CAPABILITIES =
+            "<sos:GetCapabilities xmlns:sos=\"" + Sos2Constants.NS_SOS_20 + "\" service=\"SOS\"/>";
+
+    private final InsertObservationRequest request = new InsertObservationRequest();
+
+    private Decoder<OwsServiceCommunicationObject, XmlObject> requestDecoder;
+
+    private StreamingInsertObservationDecoder insertObservationDecoder;
+
+    private SosStringDecoderv20 decoder;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws DecodingException {
+        this.requestDecoder = mock(Decoder.class);
+        DecoderRepository decoderRepository = mock(DecoderRepository.class);
+        when(decoderRepository.getDecoder(any(DecoderKey.class))).thenReturn(requestDecoder);
+        this.insertObservationDecoder = spy(new StreamingInsertObservationDecoder());
+        this.decoder = new SosStringDecoderv20();
+        this.decoder.setDecoderRepository(decoderRepository);
+        this.decoder.setStreamingInsertObservationDecoder(insertObservationDecoder);
+        this.decoder.setStreamInsertObservation(true);
+    }
+
+    @Test
+    public void shouldStreamInsertObservationFromReader() throws DecodingException {
+        // the streaming decoder has to get the complete request, including the root element read ahead
+        doAnswer(invocation -> {
+            assertThat(CharStreams.toString((Reader) invocation.getArguments()[0]), is(INSERT_OBSERVATION));
+            return request;
+        }).when(insertObservationDecoder).decodeRequest(any(Reader.class));
+
+        assertThat(decoder.decode(new StringReader(INSERT_OBSERVATION)), is(sameInstance(request)));
+    }
+
+    @Test
+    public void shouldDecodeOtherRequestsFromReaderWithoutStreaming() throws DecodingException {
+        when(requestDecoder.decode(any(XmlObject.class))).thenAnswer(invocation -> {
+            assertThat(invocation.getArguments()[0], is(instanceOf(GetCapabilitiesDocument.class)));
+            return request;
+        });
+
+        assertThat(decoder.decode(new StringReader(GET_CAPABILITIES)), is(sameInstance(request)));
+        verify(insertObservationDecoder, never()).decodeRequest(any(Reader.class));
+    }
+
+    @Test
+    public void shouldNotStreamIfDisabled() throws DecodingException {
+        decoder.setStreamInsertObservation(false);
+        when(requestDecoder.decode(any(XmlObject.class))).thenReturn(request);
+
+        assertThat(decoder.decode(new StringReader(INSERT_OBSERVATION)), is(sameInstance(request)));
+        verify(insertObservationDecoder, never()).isInsertObservation(any(Reader.class));
+    }
+}
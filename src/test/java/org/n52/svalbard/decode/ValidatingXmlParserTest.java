@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.decode;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.apache.xmlbeans.XmlObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.svalbard.decode.exception.DecodingException;
+import org.n52.svalbard.decode.exception.NoDecoderForKeyException;
+import org.n52.svalbard.decode.exception.XmlDecodingException;
+import org.n52.svalbard.util.XmlHelper;
+import org.n52.svalbard.util.XmlSchemaCache;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import net.opengis.sos.x20.GetCapabilitiesDocument;
+
+/**
+ * @since 1.0.0
+ */
+public class ValidatingXmlParserTest {
+
+    private static final String NS = "http://www.example.org/test";
+
+    private static final String OTHER_NS = "http://www.example.org/other";
+
+    private static final String XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\""
+            + " targetNamespace=\"" + NS + "\" elementFormDefault=\"qualified\">"
+            + "<xs:element name=\"root\"><xs:complexType><xs:sequence>"
+            + "<xs:element name=\"value\" type=\"xs:int\" maxOccurs=\"unbounded\"/>"
+            + "<xs:element name=\"extension\" minOccurs=\"0\"><xs:complexType><xs:sequence>"
+            + "<xs:any namespace=\"##other\" processContents=\"lax\"/>"
+            + "</xs:sequence></xs:complexType></xs:element>"
+            + "</xs:sequence></xs:complexType></xs:element></xs:schema>";
+
+    private static final String WITH_EXTENSION = "<t:root xmlns:t=\"" + NS + "\"><t:value>1</t:value>"
+            + "<t:extension><o:other xmlns:o=\"" + OTHER_NS + "\"/></t:extension></t:root>";
+
+    private static final String GET_CAPABILITIES =
+            "<sos:GetCapabilities xmlns:sos=\"" + Sos2Constants.NS_SOS_20 + "\" service=\"SOS\"/>";
+
+    private static Schema schema;
+
+    private final ValidatingXmlParser parser = new ValidatingXmlParser();
+
+    @BeforeClass
+    public static void compileSchema() throws SAXException {
+        schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                .newSchema(new StreamSource(new StringReader(XSD)));
+    }
+
+    @Test
+    public void shouldMarkValidatedDocuments() throws DecodingException {
+        XmlObject document = parser.parse(source("<t:root xmlns:t=\"" + NS + "\"><t:value>1</t:value></t:root>"),
+                schema);
+
+        assertThat(XmlHelper.isValidated(document), is(true));
+    }
+
+    @Test(expected = DecodingException.class)
+    public void shouldRejectInvalidDocuments() throws DecodingException {
+        parser.parse(source("<t:root xmlns:t=\"" + NS + "\"><t:value>one</t:value></t:root>"), schema);
+    }
+
+    @Test(expected = DecodingException.class)
+    public void shouldRejectMalformedDocuments() throws DecodingException {
+        parser.parse(source("<t:root xmlns:t=\"" + NS + "\"><t:value>1</t:root>"), schema);
+    }
+
+    @Test
+    public void shouldNotValidateIfDisabled() throws DecodingException {
+        parser.setEnabled(true);
+        // without a schema cache no compiled schema is available
+        XmlObject document = parser.parse("<t:root xmlns:t=\"" + NS + "\"><t:value>one</t:value></t:root>");
+
+        assertThat(parser.isEnabled(), is(false));
+        assertThat(XmlHelper.isValidated(document), is(false));
+    }
+
+    @Test
+    public void shouldTypeDocumentsByRootElement() throws DecodingException {
+        assertThat(parser.parse(GET_CAPABILITIES), is(instanceOf(GetCapabilitiesDocument.class)));
+        assertThat(parser.parse(new StringReader(GET_CAPABILITIES)), is(instanceOf(GetCapabilitiesDocument.class)));
+        assertThat(parser.parse(new ByteArrayInputStream(GET_CAPABILITIES.getBytes(StandardCharsets.UTF_8))),
+                is(instanceOf(GetCapabilitiesDocument.class)));
+    }
+
+    @Test
+    public void shouldNotMarkDocumentsWithNamespacesOutsideOfTheSchema() throws DecodingException {
+        parser.setSchemaCache(schemaCache());
+        parser.setEnabled(true);
+
+        // the namespace declared below the root element is not known before parsing
+        assertThat(XmlHelper.isValidated(parser.parse(WITH_EXTENSION)), is(false));
+        // but is part of the schema of the following requests
+        assertThat(XmlHelper.isValidated(parser.parse(WITH_EXTENSION)), is(true));
+    }
+
+    @Test(expected = DecodingException.class)
+    public void shouldRejectInvalidRequests() throws DecodingException {
+        parser.setSchemaCache(schemaCache());
+        parser.setEnabled(true);
+        parser.parse("<t:root xmlns:t=\"" + NS + "\"><t:value>one</t:value></t:root>");
+    }
+
+    @Test
+    public void shouldSelectDecoderByRootElement() throws DecodingException {
+        AtomicReference<QName> root = new AtomicReference<>();
+
+        XmlObject decoded = parser.decode(new StringReader(GET_CAPABILITIES), name -> {
+            root.set(name);
+            return identity();
+        });
+
+        assertThat(root.get(), is(new QName(Sos2Constants.NS_SOS_20, "GetCapabilities")));
+        assertThat(decoded, is(instanceOf(GetCapabilitiesDocument.class)));
+    }
+
+    @Test(expected = NoDecoderForKeyException.class)
+    public void shouldSelectDecoderBeforeParsing() throws DecodingException {
+        // the document is not well-formed, but no decoder is available for the root element
+        parser.decode("<t:root xmlns:t=\"" + NS + "\"><t:value>1</t:root>", name -> {
+            throw new NoDecoderForKeyException(null);
+        });
+    }
+
+    @Test
+    public void shouldRejectMalformedRequestsWithRequestText() throws DecodingException {
+        String malformed = "<t:root xmlns:t=\"" + NS + "\"><t:value>1</t:root>";
+        assertMalformed(() -> parser.parse(malformed), malformed);
+        assertMalformed(() -> parser.decode("<t:root", name -> identity()), "<t:root");
+
+        parser.setSchemaCache(schemaCache());
+        parser.setEnabled(true);
+        assertMalformed(() -> parser.parse(malformed), malformed);
+        assertMalformed(() -> parser.decode(malformed, name -> identity()), malformed);
+    }
+
+    private static void assertMalformed(Parse parse, String xml) throws DecodingException {
+        try {
+            parse.parse();
+            fail("Expected an XmlDecodingException");
+        } catch (XmlDecodingException ex) {
+            assertThat(ex.getMessage(), containsString(xml));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Decoder<XmlObject, XmlObject> identity() throws DecodingException {
+        Decoder<XmlObject, XmlObject> decoder = mock(Decoder.class);
+        when(decoder.decode(any(XmlObject.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+        return decoder;
+    }
+
+    private static XmlSchemaCache schemaCache() {
+        XmlSchemaCache schemaCache = mock(XmlSchemaCache.class);
+        when(schemaCache.getKnownNamespaces(anySetOf(String.class))).thenAnswer(invocation -> {
+            Set<?> namespaces = (Set<?>) invocation.getArguments()[0];
+            return namespaces.stream().filter(ns -> NS.equals(ns) || OTHER_NS.equals(ns))
+                    .map(String.class::cast).collect(Collectors.toSet());
+        });
+        when(schemaCache.getSchema(anySetOf(String.class))).thenReturn(schema);
+        return schemaCache;
+    }
+
+    private static InputSource source(String xml) {
+        return new InputSource(new StringReader(xml));
+    }
+
+    @FunctionalInterface
+    private interface Parse {
+        Object parse() throws DecodingException;
+    }
+}
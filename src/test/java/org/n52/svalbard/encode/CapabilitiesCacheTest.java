@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.n52.svalbard.encode.CapabilitiesCache.Entry;
+import org.n52.svalbard.encode.CapabilitiesCache.Key;
+
+/**
+ * @since 1.0.0
+ */
+public class CapabilitiesCacheTest {
+
+    private static final byte[] DOCUMENT = "<sos:Capabilities/>".getBytes(StandardCharsets.UTF_8);
+
+    private final CapabilitiesCache cache = new CapabilitiesCache();
+
+    @Test
+    public void shouldBeDisabledByDefault() {
+        Key key = Key.of("1", null, null, null);
+        cache.put(key, DOCUMENT);
+
+        assertThat(cache.isEnabled(), is(false));
+        assertThat(cache.get(key), is(nullValue()));
+    }
+
+    @Test
+    public void shouldCacheDocumentsByKey() {
+        cache.setMaximumSize(10);
+        Entry entry = cache.put(Key.of("1", Arrays.asList("Contents", "OperationsMetadata"), "eng", "text/xml"),
+                DOCUMENT);
+
+        assertThat(cache.get(Key.of("1", Arrays.asList("OperationsMetadata", "Contents"), "eng", "text/xml")),
+                is(sameInstance(entry)));
+        assertThat(cache.get(Key.of("2", Arrays.asList("Contents", "OperationsMetadata"), "eng", "text/xml")),
+                is(nullValue()));
+        assertThat(cache.get(Key.of("1", Arrays.asList("Contents"), "eng", "text/xml")), is(nullValue()));
+        assertThat(cache.get(Key.of("1", Arrays.asList("Contents", "OperationsMetadata"), "ger", "text/xml")),
+                is(nullValue()));
+    }
+
+    @Test
+    public void shouldTreatEmptySectionsAsAllSections() {
+        assertThat(Key.of("1", Arrays.asList(), null, null), is(Key.of("1", null, null, null)));
+    }
+
+    @Test
+    public void shouldRemoveAllDocuments() {
+        cache.setMaximumSize(10);
+        Key key = Key.of("1", null, null, null);
+        cache.put(key, DOCUMENT);
+        cache.invalidateAll();
+
+        assertThat(cache.get(key), is(nullValue()));
+    }
+
+    @Test
+    public void shouldMatchStrongETag() {
+        Entry entry = cache.put(Key.of("1", null, null, null), DOCUMENT);
+        String eTag = entry.getETag();
+
+        assertThat(eTag.startsWith("\"") && eTag.endsWith("\""), is(true));
+        assertThat(cache.put(Key.of("2", null, null, null), DOCUMENT.clone()).getETag(), is(eTag));
+        assertThat(entry.matches(eTag), is(true));
+        assertThat(entry.matches("\"other\", " + eTag), is(true));
+        assertThat(entry.matches("*"), is(true));
+        assertThat(entry.matches("W/" + eTag), is(false));
+        assertThat(entry.matches("\"other\""), is(false));
+        assertThat(entry.matches(null), is(false));
+    }
+
+    @Test
+    public void shouldChangeETagWithDocument() {
+        Entry entry = cache.put(Key.of("1", null, null, null), DOCUMENT);
+        Entry other = cache.put(Key.of("1", null, null, null), "<sos:Capabilities version=\"2.0.0\"/>"
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertThat(other.getETag(), is(not(entry.getETag())));
+    }
+
+    @Test
+    public void shouldCompareLastModifiedInSeconds() {
+        Entry entry = cache.put(Key.of("1", null, null, null), DOCUMENT);
+
+        assertThat(entry.notModifiedSince(entry.getLastModified().withMillisOfSecond(0)), is(true));
+        assertThat(entry.notModifiedSince(entry.getLastModified().plusSeconds(1)), is(true));
+        assertThat(entry.notModifiedSince(entry.getLastModified().minusHours(1)), is(false));
+        assertThat(entry.notModifiedSince(null), is(false));
+    }
+
+    @Test
+    public void shouldWriteDocument() throws IOException {
+        Entry entry = cache.put(Key.of("1", null, null, null), DOCUMENT);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entry.writeTo(out);
+
+        assertThat(out.toByteArray(), is(DOCUMENT));
+        assertThat(entry.getLength(), is(DOCUMENT.length));
+    }
+}
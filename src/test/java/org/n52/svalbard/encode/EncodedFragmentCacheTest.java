@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+
+/**
+ * @since 1.0.0
+ */
+public class EncodedFragmentCacheTest {
+
+    @Test
+    public void shouldBeDisabledByDefault() {
+        EncodedFragmentCache cache = new EncodedFragmentCache();
+        SamplingFeature feature = feature("foi");
+        cache.put(cache.featureKey(feature, "ns"), bytes("<f/>"), "ssf_1");
+        assertThat(cache.isEnabled(), is(false));
+        assertThat(cache.get(cache.featureKey(feature, "ns")), is(nullValue()));
+    }
+
+    @Test
+    public void shouldReturnReadOnlyFragment() {
+        EncodedFragmentCache cache = enabledCache();
+        cache.put(cache.featureKey(feature("foi"), "ns"), bytes("<f/>"), "ssf_1");
+
+        EncodedFragmentCache.Fragment fragment = cache.get(cache.featureKey(feature("foi"), "ns"));
+        assertThat(fragment, is(notNullValue()));
+        assertThat(fragment.getBytes().isReadOnly(), is(true));
+        assertThat(string(fragment.getBytes()), is("<f/>"));
+        assertThat(fragment.getGmlId(), is("ssf_1"));
+        assertThat(fragment.getGmlIds(), contains("ssf_1"));
+        assertThat(cache.get(cache.featureKey(feature("foi"), "other")), is(nullValue()));
+    }
+
+    @Test
+    public void shouldDropFragmentsOfChangedFeature() {
+        EncodedFragmentCache cache = enabledCache();
+        cache.put(cache.featureKey(feature("foi"), "a"), bytes("<a/>"), null);
+        cache.put(cache.featureKey(feature("foi"), "b"), bytes("<b/>"), null);
+        SamplingFeature changed = feature("foi");
+        changed.setDescription("changed");
+
+        assertThat(cache.get(cache.featureKey(changed, "a")), is(nullValue()));
+        // all encodings of the changed feature are outdated
+        assertThat(cache.get(cache.featureKey(feature("foi"), "b")), is(nullValue()));
+    }
+
+    @Test
+    public void shouldInvalidateFeature() {
+        EncodedFragmentCache cache = enabledCache();
+        cache.put(cache.featureKey(feature("foi1"), "ns"), bytes("<a/>"), null);
+        cache.put(cache.featureKey(feature("foi2"), "ns"), bytes("<b/>"), null);
+
+        cache.invalidate("foi1");
+        assertThat(cache.get(cache.featureKey(feature("foi1"), "ns")), is(nullValue()));
+        assertThat(cache.get(cache.featureKey(feature("foi2"), "ns")), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldInvalidateAllIfSrsNamePrefixChanges() {
+        EncodedFragmentCache cache = enabledCache();
+        cache.put(cache.featureKey(feature("foi"), "ns"), bytes("<a/>"), null);
+
+        cache.setSrsNamePrefixUrl("http://www.opengis.net/def/crs/EPSG/0/");
+        assertThat(cache.get(cache.featureKey(feature("foi"), "ns")), is(nullValue()));
+    }
+
+    private static EncodedFragmentCache enabledCache() {
+        EncodedFragmentCache cache = new EncodedFragmentCache();
+        cache.setMaximumSize(1);
+        return cache;
+    }
+
+    private static SamplingFeature feature(String identifier) {
+        return new SamplingFeature(new CodeWithAuthority(identifier));
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.shetland.ogc.sos.SosObservationOffering;
+import org.n52.shetland.ogc.sos.SosOffering;
+
+/**
+ * @since 1.0.0
+ */
+public class GetCapabilitiesResponseEncoderTest {
+
+    private static final String NC_NAME = "[\\p{L}_][\\p{L}\\p{Nd}_.-]*";
+
+    @Test
+    public void shouldDeriveTimeGmlIdsFromIdentifier() {
+        assertThat(timeGmlId("offering-1.0"), is("phenomenonTime_offering-1.0"));
+    }
+
+    @Test
+    public void shouldCreateValidTimeGmlIds() {
+        assertThat(timeGmlId("http://www.example.org/offering/1").matches(NC_NAME), is(true));
+        assertThat(timeGmlId("1 2").matches(NC_NAME), is(true));
+    }
+
+    @Test
+    public void shouldCreateDifferentTimeGmlIdsForDifferentIdentifiers() {
+        assertThat(timeGmlId("a:b"), is(not(timeGmlId("a_b"))));
+        assertThat(timeGmlId("a_b"), is(not(timeGmlId("a_5f_b"))));
+        assertThat(timeGmlId("a b"), is(not(timeGmlId("a:b"))));
+    }
+
+    private static String timeGmlId(String identifier) {
+        SosOffering sosOffering = mock(SosOffering.class);
+        when(sosOffering.getIdentifier()).thenReturn(identifier);
+        SosObservationOffering offering = mock(SosObservationOffering.class);
+        when(offering.getOffering()).thenReturn(sosOffering);
+        return GetCapabilitiesResponseEncoder.getTimeGmlId(Sos2Constants.EN_PHENOMENON_TIME, offering);
+    }
+}
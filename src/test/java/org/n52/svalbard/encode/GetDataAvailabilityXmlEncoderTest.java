@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.shetland.ogc.sos.gda.GetDataAvailabilityResponse;
+import org.n52.svalbard.encode.exception.EncodingException;
+
+/**
+ * @since 1.0.0
+ */
+public class GetDataAvailabilityXmlEncoderTest {
+
+    @Test
+    public void shouldAddSchemaLocationWithoutChangingTheCallersValues() throws EncodingException {
+        GetDataAvailabilityResponse response = mock(GetDataAvailabilityResponse.class);
+        when(response.getVersion()).thenReturn(Sos2Constants.SERVICEVERSION);
+        when(response.getDataAvailabilities()).thenReturn(Collections.emptyList());
+        EncodingValues encodingValues = new EncodingValues();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new GetDataAvailabilityXmlEncoder().create(response, out, encodingValues);
+
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), containsString("schemaLocation"));
+        assertThat(encodingValues.isAddSchemaLocation(), is(false));
+    }
+
+    @Test
+    public void shouldCopyEncodingValues() {
+        EncodingValues encodingValues = new EncodingValues().setGmlId("id").setIndent(2).setEmbedded(true);
+        encodingValues.setAddSchemaLocation(true);
+
+        EncodingValues copy = new EncodingValues(encodingValues);
+        copy.setAddSchemaLocation(false);
+        copy.setGmlId("other");
+
+        assertThat(copy.getIndent(), is(2));
+        assertThat(copy.isEmbedded(), is(true));
+        assertThat(encodingValues.getGmlId(), is("id"));
+        assertThat(encodingValues.isAddSchemaLocation(), is(true));
+    }
+}
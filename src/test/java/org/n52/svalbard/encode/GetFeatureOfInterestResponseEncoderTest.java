@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.gml.GmlConstants;
+import org.n52.shetland.ogc.om.features.FeatureCollection;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.shetland.ogc.sos.response.GetFeatureOfInterestResponse;
+import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.XmlBeansEncodingFlags;
+import org.n52.svalbard.util.XmlOptionsHelper;
+
+import net.opengis.samplingSpatial.x20.SFSpatialSamplingFeatureDocument;
+
+/**
+ * @since 1.0.0
+ */
+public class GetFeatureOfInterestResponseEncoderTest {
+
+    private final List<EncodingContext> contexts = new ArrayList<>();
+
+    private GetFeatureOfInterestResponseEncoder encoder;
+
+    @Before
+    public void setUp() throws Exception {
+        XmlOptionsHelper xmlOptionsHelper = new XmlOptionsHelper();
+        xmlOptionsHelper.setEncoderRepository(mock(EncoderRepository.class));
+        xmlOptionsHelper.init();
+        this.encoder = spy(new GetFeatureOfInterestResponseEncoder());
+        doAnswer(invocation -> {
+            AbstractFeature feature = (AbstractFeature) invocation.getArguments()[1];
+            EncodingContext ctx = (EncodingContext) invocation.getArguments()[2];
+            contexts.add(ctx);
+            SFSpatialSamplingFeatureDocument document = SFSpatialSamplingFeatureDocument.Factory.newInstance();
+            document.addNewSFSpatialSamplingFeature().setId(GmlIdAllocator.of(ctx).allocate(feature.getIdentifier()));
+            return document;
+        }).when(encoder).encodeObjectToXml(eq(GmlConstants.NS_GML_32), any(AbstractFeature.class),
+                any(EncodingContext.class));
+    }
+
+    @Test
+    public void shouldStreamEveryFeatureAsFeatureMember() throws Exception {
+        FeatureCollection featureCollection = new FeatureCollection();
+        featureCollection.addMember(feature("a"));
+        featureCollection.addMember(feature("b"));
+
+        String written = stream(featureCollection, EncodingContext.empty());
+        assertThat(written, containsString("GetFeatureOfInterestResponse"));
+        assertThat(written.split("<sos:featureMember>", -1).length, is(3));
+        assertThat(written, containsString("gml:id=\"a\""));
+        assertThat(written, containsString("gml:id=\"b\""));
+        assertThat(contexts, hasSize(2));
+    }
+
+    @Test
+    public void shouldStreamSingleFeatureAsFeatureMember() throws Exception {
+        String written = stream(feature("a"), EncodingContext.empty());
+        assertThat(written.split("<sos:featureMember>", -1).length, is(2));
+        assertThat(written, containsString("gml:id=\"a\""));
+    }
+
+    @Test
+    public void shouldPassCallersContextOnWithoutDocumentFlag() throws Exception {
+        stream(feature("a"),
+                EncodingContext.of(XmlBeansEncodingFlags.DOCUMENT).with(SosHelperValues.XLINK_DEDUPLICATION));
+        assertThat(contexts, hasSize(1));
+        assertThat(contexts.get(0).has(SosHelperValues.XLINK_DEDUPLICATION), is(true));
+        assertThat(contexts.get(0).has(XmlBeansEncodingFlags.DOCUMENT), is(false));
+        assertThat(GmlIdAllocator.of(contexts.get(0)), is(notNullValue()));
+    }
+
+    private String stream(AbstractFeature feature, EncodingContext context) throws Exception {
+        GetFeatureOfInterestResponse response = new GetFeatureOfInterestResponse();
+        response.setAbstractFeature(feature);
+        EncodingValues encodingValues = new EncodingValues();
+        encodingValues.setAdditionalValues(context);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(response, out, encodingValues);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static AbstractFeature feature(String identifier) {
+        return new SamplingFeature(new CodeWithAuthority(identifier));
+    }
+}
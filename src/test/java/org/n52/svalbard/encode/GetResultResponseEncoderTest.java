@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.janmayen.Producer;
+import org.n52.shetland.ogc.sos.response.GetResultResponse;
+import org.n52.shetland.ogc.swe.encoding.SweTextEncoding;
+import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.encode.exception.EncodingException;
+
+/**
+ * Checks that the streamed GetResult response equals the XmlBeans encoded
+ * response.
+ *
+ * @since 1.0.0
+ */
+public class GetResultResponseEncoderTest {
+
+    private static final String RESULT_VALUES = "2@2017-01-01T00:00:00Z,<1&2>,\"a\"@2017-01-02T00:00:00Z,'3',]]>";
+
+    private GetResultResponseEncoder encoder;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Producer<XmlOptions> xmlOptions = mock(Producer.class);
+        when(xmlOptions.get()).thenReturn(new XmlOptions());
+        this.encoder = new GetResultResponseEncoder();
+        this.encoder.setXmlOptions(xmlOptions);
+    }
+
+    @Test
+    public void shouldStreamEscapedResultValues() throws EncodingException, XmlException {
+        GetResultResponse response = new GetResultResponse();
+        response.setResultValues(RESULT_VALUES);
+
+        String streamed = getResultValues(stream(response, new EncodingValues()));
+
+        assertThat(streamed, is(RESULT_VALUES));
+        assertThat(streamed, is(getResultValues(encoder.create(response))));
+    }
+
+    @Test
+    public void shouldStreamEmptyResponse() throws EncodingException, XmlException {
+        GetResultResponse response = new GetResultResponse();
+
+        assertThat(getResultValues(stream(response, new EncodingValues())),
+                is(getResultValues(encoder.create(response))));
+    }
+
+    @Test
+    public void shouldStreamResultValuesOfSource() throws EncodingException, XmlException {
+        SweTextEncoding textEncoding = new SweTextEncoding();
+        textEncoding.setTokenSeparator(",");
+        textEncoding.setBlockSeparator("@");
+        List<List<List<String>>> blocks = Arrays.asList(
+                Arrays.asList(Arrays.asList("2017-01-01T00:00:00Z", "<1&2>", "\"a\""),
+                        Arrays.asList("2017-01-02T00:00:00Z", "'3'", "]]>")),
+                Collections.emptyList());
+        EncodingValues encodingValues = new EncodingValues(EncodingContext.of(SosHelperValues.RESULT_VALUES,
+                ResultValuesSource.of(blocks.iterator(), textEncoding)));
+        GetResultResponse response = new GetResultResponse();
+        // the source does not contain the number of blocks
+        response.setResultValues(RESULT_VALUES.substring(2));
+
+        assertThat(getResultValues(stream(new GetResultResponse(), encodingValues)),
+                is(getResultValues(encoder.create(response))));
+    }
+
+    private XmlObject stream(GetResultResponse response, EncodingValues encodingValues)
+            throws EncodingException, XmlException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.create(response, out, encodingValues);
+        return XmlObject.Factory.parse(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static String getResultValues(XmlObject document) {
+        XmlCursor cursor = document.newCursor();
+        try {
+            cursor.toFirstChild();
+            cursor.toFirstChild();
+            return cursor.getTextValue();
+        } finally {
+            cursor.dispose();
+        }
+    }
+}
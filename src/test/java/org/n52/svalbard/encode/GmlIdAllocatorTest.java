@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.n52.janmayen.NcName;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+
+/**
+ * @since 1.0.0
+ */
+public class GmlIdAllocatorTest {
+
+    @Test
+    public void shouldNumberIdsPerPrefix() {
+        GmlIdAllocator ids = new GmlIdAllocator();
+        assertThat(ids.next("o_"), is("o_1"));
+        assertThat(ids.next("o_"), is("o_2"));
+        assertThat(ids.next("foi_"), is("foi_1"));
+    }
+
+    @Test
+    public void shouldBeDeterministic() {
+        GmlIdAllocator first = new GmlIdAllocator();
+        GmlIdAllocator second = new GmlIdAllocator();
+        for (int i = 0; i < 10; ++i) {
+            assertThat(first.next("o_"), is(second.next("o_")));
+        }
+    }
+
+    @Test
+    public void shouldNotHandOutAllocatedIds() {
+        GmlIdAllocator ids = new GmlIdAllocator();
+        assertThat(ids.allocate("o_2"), is("o_2"));
+        assertThat(ids.next("o_"), is("o_1"));
+        assertThat(ids.next("o_"), is("o_3"));
+    }
+
+    @Test
+    public void shouldAppendCounterToDuplicates() {
+        GmlIdAllocator ids = new GmlIdAllocator();
+        assertThat(ids.allocate("point"), is("point"));
+        assertThat(ids.allocate("point"), is("point_1"));
+        assertThat(ids.allocate("point"), is("point_2"));
+        assertThat(ids.isAllocated("point_1"), is(true));
+    }
+
+    @Test
+    public void shouldReserveAllOrNone() {
+        GmlIdAllocator ids = new GmlIdAllocator();
+        ids.allocate("b");
+        assertThat(ids.reserve(Arrays.asList("a", "b")), is(false));
+        assertThat(ids.isAllocated("a"), is(false));
+        assertThat(ids.reserve(Arrays.asList("a", "c")), is(true));
+        assertThat(ids.isAllocated("a"), is(true));
+        assertThat(ids.isAllocated("c"), is(true));
+        assertThat(ids.reserve(Collections.singleton("c")), is(false));
+    }
+
+    @Test
+    public void shouldMakeProposedIdsValid() {
+        GmlIdAllocator ids = new GmlIdAllocator();
+        String id = ids.allocate("o_http://example.org/obs 1");
+        assertThat(id, is(NcName.makeValid("o_http://example.org/obs 1")));
+        assertThat(id, not(containsString("/")));
+        assertThat(id, not(containsString(" ")));
+        assertThat(ids.allocate("o_http://example.org/obs 1"), is(id + "_1"));
+    }
+
+    @Test
+    public void shouldDeriveObservationIdsFromObservationId() {
+        GmlIdAllocator ids = new GmlIdAllocator();
+        OmObservation observation = new OmObservation();
+        observation.setObservationID("1");
+        assertThat(ids.isAllocated(observation), is(false));
+        assertThat(ids.allocate(observation), is("o_1"));
+        assertThat(ids.isAllocated(observation), is(true));
+        assertThat(ids.allocate(observation), is("o_1_1"));
+
+        OmObservation withoutId = new OmObservation();
+        String id = ids.allocate(withoutId);
+        assertThat(id, is("o_" + withoutId.getObservationID()));
+        assertThat(ids.isAllocated(withoutId), is(true));
+    }
+
+    @Test
+    public void shouldReturnIdsAllocatedSinceMark() {
+        GmlIdAllocator ids = new GmlIdAllocator();
+        ids.allocate("point");
+        int mark = ids.mark();
+        ids.next("foi_");
+        ids.allocate("point");
+        assertThat(ids.allocatedSince(mark), contains("foi_1", "point_1"));
+        assertThat(ids.allocatedSince(ids.mark()), is(empty()));
+    }
+
+    @Test
+    public void shouldAllocateOnlyWithAllocatorInContext() {
+        assertThat(GmlIdAllocator.allocate(EncodingContext.empty(), "a/b"), is("a/b"));
+        GmlIdAllocator ids = new GmlIdAllocator();
+        EncodingContext ctx = GmlIdAllocator.with(EncodingContext.empty(), ids);
+        assertThat(GmlIdAllocator.of(ctx), is(sameInstance(ids)));
+        assertThat(GmlIdAllocator.allocate(ctx, "a"), is("a"));
+        assertThat(GmlIdAllocator.allocate(ctx, "a"), is("a_1"));
+        EncodingContext empty = EncodingContext.empty();
+        assertThat(GmlIdAllocator.with(empty, null), is(sameInstance(empty)));
+    }
+
+    @Test
+    public void shouldEnableOncePerContext() {
+        assertThat(GmlIdAllocator.of(EncodingContext.empty()), is(nullValue()));
+        EncodingContext ctx = GmlIdAllocator.enable(EncodingContext.empty());
+        GmlIdAllocator ids = GmlIdAllocator.of(ctx);
+        assertThat(ids, is(not(nullValue())));
+        assertThat(GmlIdAllocator.enable(ctx), is(sameInstance(ctx)));
+        assertThat(GmlIdAllocator.get(ctx), is(sameInstance(ids)));
+    }
+
+    @Test
+    public void shouldCreateRandomIdsWithoutContext() {
+        GmlIdAllocator ids = GmlIdAllocator.get(EncodingContext.empty());
+        assertThat(ids.next("o_"), is(not("o_1")));
+    }
+
+    @Test
+    public void shouldRememberWrittenFeaturesWithoutModifyingThem() {
+        GmlIdAllocator ids = new GmlIdAllocator();
+        SamplingFeature feature = new SamplingFeature(new CodeWithAuthority("foi"));
+        ids.setGmlId(feature, "ssf_1");
+        assertThat(ids.getGmlId(feature), is("ssf_1"));
+        assertThat(feature.isSetGmlID(), is(false));
+        assertThat(ids.getGmlId(new SamplingFeature(new CodeWithAuthority("foi"))), is(nullValue()));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.xmlbeans.XmlObject;
+import org.junit.Test;
+import org.n52.shetland.inspire.InspireLanguageISO6392B;
+import org.n52.shetland.inspire.InspireObject;
+import org.n52.shetland.inspire.dls.MinimalInspireExtendedCapabilities;
+import org.n52.svalbard.encode.InspireXmlEncoder.Fragment;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.encode.exception.UnsupportedEncoderInputException;
+
+/**
+ * @since 1.0.0
+ */
+public class InspireXmlEncoderTest {
+
+    private final CountingEncoder encoder = new CountingEncoder();
+
+    @Test
+    public void shouldWriteExtendedCapabilitiesOnce() throws EncodingException {
+        MinimalInspireExtendedCapabilities metadata = metadata(InspireLanguageISO6392B.values()[0]);
+
+        Fragment fragment = encoder.getFragment(metadata);
+
+        assertThat(encoder.getFragment(metadata), is(sameInstance(fragment)));
+        assertThat(new String(fragment.getBytes(), StandardCharsets.UTF_8), is(encoder.xml(1)));
+        assertThat(encoder.written, is(1));
+    }
+
+    @Test
+    public void shouldReturnCopiesOfTheCachedDocument() throws EncodingException {
+        MinimalInspireExtendedCapabilities metadata = metadata(InspireLanguageISO6392B.values()[0]);
+
+        XmlObject first = encoder.encode(metadata);
+        XmlObject second = encoder.encode(metadata);
+
+        assertThat(second, is(not(sameInstance(first))));
+        assertThat(second.xmlText(), is(first.xmlText()));
+        assertThat(first, is(not(sameInstance(encoder.getFragment(metadata).getXml()))));
+        assertThat(encoder.written, is(1));
+    }
+
+    @Test
+    public void shouldWriteExtendedCapabilitiesPerResponseLanguage() throws EncodingException {
+        MinimalInspireExtendedCapabilities metadata = metadata(InspireLanguageISO6392B.values()[0]);
+        Fragment first = encoder.getFragment(metadata);
+        when(metadata.getResponseLanguage()).thenReturn(InspireLanguageISO6392B.values()[1]);
+
+        assertThat(encoder.getFragment(metadata), is(not(sameInstance(first))));
+        assertThat(encoder.written, is(2));
+    }
+
+    @Test(expected = UnsupportedEncoderInputException.class)
+    public void shouldRejectOtherInspireObjects() throws EncodingException {
+        encoder.getFragment(mock(InspireObject.class));
+    }
+
+    private static MinimalInspireExtendedCapabilities metadata(InspireLanguageISO6392B responseLanguage) {
+        MinimalInspireExtendedCapabilities metadata = mock(MinimalInspireExtendedCapabilities.class);
+        when(metadata.getResponseLanguage()).thenReturn(responseLanguage);
+        return metadata;
+    }
+
+    /**
+     * Writes a placeholder instead of the extended capabilities and counts
+     * the writes.
+     */
+    private static class CountingEncoder extends InspireXmlEncoder {
+        private int written;
+
+        @Override
+        byte[] write(InspireObject objectToEncode) {
+            return xml(++written).getBytes(StandardCharsets.UTF_8);
+        }
+
+        String xml(int i) {
+            return "<inspire_dls:ExtendedCapabilities xmlns:inspire_dls=\"http://www.example.org/dls\" i=\"" + i
+                    + "\"/>";
+        }
+    }
+}
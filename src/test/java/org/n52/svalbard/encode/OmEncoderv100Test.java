@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.GmlConstants;
+import org.n52.shetland.ogc.sos.response.GetObservationResponse;
+import org.n52.shetland.util.ReferencedEnvelope;
+import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.write.ObservationCollectionXmlStreamWriter;
+
+/**
+ * @since 1.0.0
+ */
+public class OmEncoderv100Test {
+
+    @Test
+    public void shouldUseProvidedEnvelope() {
+        OmEncoderv100 encoder = new OmEncoderv100();
+        encoder.setOmitStreamingEnvelope(true);
+        ReferencedEnvelope envelope = new ReferencedEnvelope();
+        EncodingContext ctx = EncodingContext.of(SosHelperValues.ENVELOPE, envelope);
+        assertThat(encoder.getEnvelope(Collections.emptyList(), ctx, true), is(sameInstance(envelope)));
+    }
+
+    @Test
+    public void shouldOmitStreamingEnvelopeIfConfigured() {
+        OmEncoderv100 encoder = new OmEncoderv100();
+        encoder.setOmitStreamingEnvelope(true);
+        assertThat(encoder.getEnvelope(Collections.emptyList(), EncodingContext.empty(), true), is(nullValue()));
+        assertThat(encoder.getEnvelope(Collections.emptyList(), EncodingContext.empty(), false),
+                is(notNullValue()));
+    }
+
+    @Test(expected = EncodingException.class)
+    public void shouldRequireOmEncoderToStreamCollection() throws Exception {
+        EncodingValues encodingValues = new EncodingValues();
+        encodingValues.setEncoder(new GetObservationResponseEncoder());
+        new ObservationCollectionXmlStreamWriter(new GetObservationResponse())
+                .write(new ByteArrayOutputStream(), encodingValues);
+    }
+
+    @Test
+    public void shouldStreamEmptyCollectionWithNilMember() throws Exception {
+        EncodingValues encodingValues = new EncodingValues();
+        encodingValues.setEncoder(new OmEncoderv100());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ObservationCollectionXmlStreamWriter(new GetObservationResponse()).write(out, encodingValues);
+        String xml = out.toString("UTF-8");
+        assertThat(xml, containsString("om:ObservationCollection"));
+        assertThat(xml, containsString(GmlConstants.NIL_INAPPLICABLE));
+    }
+}
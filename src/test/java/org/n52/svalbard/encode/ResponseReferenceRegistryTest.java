@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.svalbard.SosHelperValues;
+
+/**
+ * @since 1.0.0
+ */
+public class ResponseReferenceRegistryTest {
+
+    @Test
+    public void shouldOnlyBeEnabledIfDeduplicationWasRequested() {
+        assertThat(ResponseReferenceRegistry.of(ResponseReferenceRegistry.enable(EncodingContext.empty())),
+                is(nullValue()));
+
+        EncodingContext ctx = ResponseReferenceRegistry.enable(EncodingContext.of(SosHelperValues.XLINK_DEDUPLICATION));
+        ResponseReferenceRegistry registry = ResponseReferenceRegistry.of(ctx);
+        assertThat(registry, is(not(nullValue())));
+        assertThat(ResponseReferenceRegistry.enable(ctx), is(sameInstance(ctx)));
+    }
+
+    @Test
+    public void shouldReferenceProceduresByIdentifier() {
+        ResponseReferenceRegistry registry = new ResponseReferenceRegistry();
+        AbstractFeature procedure = feature("http://www.example.org/procedure");
+        assertThat(registry.getProcedureReference(procedure), is(nullValue()));
+
+        registry.addFeature(procedure, "foi_1");
+        assertThat(registry.getProcedureReference(procedure), is(nullValue()));
+        assertThat(registry.getFeatureReference(feature("http://www.example.org/procedure")), is("#foi_1"));
+    }
+
+    @Test
+    public void shouldKeepFirstReference() {
+        ResponseReferenceRegistry registry = new ResponseReferenceRegistry();
+        AbstractFeature feature = feature("feature");
+        registry.addFeature(feature, "foi_1");
+        registry.addFeature(feature, "foi_2");
+        assertThat(registry.getFeatureReference(feature), is("#foi_1"));
+    }
+
+    @Test
+    public void shouldReferenceTimesByValue() {
+        ResponseReferenceRegistry registry = new ResponseReferenceRegistry();
+        DateTime value = new DateTime(2017, 1, 1, 0, 0, DateTimeZone.UTC);
+        registry.addTime(new TimeInstant(value), "ti_1");
+        assertThat(registry.getTimeReference(new TimeInstant(value)), is("#ti_1"));
+        assertThat(registry.getTimeReference(new TimeInstant(value.plusHours(1))), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotReferenceFeaturesWithoutIdentifier() {
+        ResponseReferenceRegistry registry = new ResponseReferenceRegistry();
+        AbstractFeature feature = mock(AbstractFeature.class);
+        registry.addFeature(feature, "foi_1");
+        assertThat(registry.getFeatureReference(feature), is(nullValue()));
+    }
+
+    private static AbstractFeature feature(String identifier) {
+        AbstractFeature feature = mock(AbstractFeature.class);
+        when(feature.isSetIdentifier()).thenReturn(true);
+        when(feature.getIdentifier()).thenReturn(identifier);
+        return feature;
+    }
+}
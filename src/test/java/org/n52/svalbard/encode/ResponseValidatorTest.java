@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+
+import org.apache.xmlbeans.XmlObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.faroe.ConfigurationError;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.util.XmlSchemaCache;
+
+import net.opengis.sos.x20.GetResultResponseDocument;
+
+/**
+ * @since 1.0.0
+ */
+public class ResponseValidatorTest {
+
+    private ResponseValidator validator;
+
+    @Before
+    public void setUp() {
+        this.validator = new ResponseValidator();
+    }
+
+    @After
+    public void tearDown() {
+        this.validator.destroy();
+    }
+
+    @Test
+    public void shouldAcceptValidResponses() throws EncodingException {
+        validator.validate(validResponse());
+    }
+
+    @Test(expected = EncodingException.class)
+    public void shouldValidateAlwaysByDefault() throws EncodingException {
+        validator.validate(invalidResponse());
+    }
+
+    @Test
+    public void shouldValidateEveryNthResponseIfSampled() throws EncodingException, ConfigurationError {
+        validator.setMode("sampled");
+        validator.setSampleRate(2);
+        assertInvalid(invalidResponse());
+        validator.validate(invalidResponse());
+        assertInvalid(invalidResponse());
+        validator.validate(invalidResponse());
+    }
+
+    @Test
+    public void shouldNotFailAsynchronouslyValidatedResponses() throws EncodingException, ConfigurationError {
+        validator.setMode("ASYNCHRONOUS");
+        for (int i = 0; i < 10; ++i) {
+            validator.validate(invalidResponse());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldCopyAsynchronouslyValidatedResponsesInTheBackground()
+            throws EncodingException, ConfigurationError, InterruptedException {
+        validator.setMode("ASYNCHRONOUS");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch copied = new CountDownLatch(1);
+        XmlObject response = mock(XmlObject.class);
+        when(response.copy()).thenAnswer(invocation -> {
+            release.await();
+            copied.countDown();
+            return validResponse();
+        });
+
+        // returns although the copy is blocked
+        validator.validate(response);
+        release.countDown();
+        copied.await();
+    }
+
+    @Test
+    public void shouldValidateOnlyAgainstCoveringSchema() throws EncodingException {
+        // the compiled schema accepts everything, so XmlBeans would be the one to reject the response
+        Schema schema = mock(Schema.class);
+        when(schema.newValidator()).thenReturn(mock(Validator.class));
+        XmlSchemaCache schemaCache = mock(XmlSchemaCache.class);
+        when(schemaCache.getKnownNamespaces(anySetOf(String.class))).thenAnswer(invocation -> invocation
+                .getArguments()[0]);
+        when(schemaCache.getSchema(anySetOf(String.class))).thenReturn(schema);
+        validator.setSchemaCache(schemaCache);
+
+        validator.validate(invalidResponse());
+    }
+
+    @Test
+    public void shouldValidateWithXmlBeansIfSchemaDoesNotCoverResponse() throws EncodingException {
+        XmlSchemaCache schemaCache = mock(XmlSchemaCache.class);
+        Set<String> known = Collections.emptySet();
+        when(schemaCache.getKnownNamespaces(anySetOf(String.class))).thenReturn(known);
+        validator.setSchemaCache(schemaCache);
+
+        assertInvalid(invalidResponse());
+        verify(schemaCache, never()).getSchema(anySetOf(String.class));
+    }
+
+    @Test(expected = ConfigurationError.class)
+    public void shouldRejectUnknownMode() throws ConfigurationError {
+        validator.setMode("never");
+    }
+
+    @Test(expected = ConfigurationError.class)
+    public void shouldRejectNonPositiveSampleRate() throws ConfigurationError {
+        validator.setSampleRate(0);
+    }
+
+    private void assertInvalid(XmlObject response) {
+        try {
+            validator.validate(response);
+        } catch (EncodingException ex) {
+            return;
+        }
+        throw new AssertionError("the response was not validated");
+    }
+
+    private static XmlObject validResponse() {
+        GetResultResponseDocument document = GetResultResponseDocument.Factory.newInstance();
+        document.addNewGetResultResponse().addNewResultValues();
+        return document;
+    }
+
+    private static XmlObject invalidResponse() {
+        // sos:resultValues is mandatory
+        GetResultResponseDocument document = GetResultResponseDocument.Factory.newInstance();
+        document.addNewGetResultResponse();
+        return document;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.GmlConstants;
+import org.n52.shetland.ogc.om.OmConstants;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * @since 1.0.0
+ */
+public class SchemaRepositoryTest {
+
+    private static final String NS_GML_311 = GmlConstants.NS_GML;
+
+    private static final String NS_GML_32 = GmlConstants.NS_GML_32;
+
+    private EncoderRepository encoderRepository;
+
+    private SchemaRepository schemaRepository;
+
+    @Before
+    public void setUp() {
+        this.encoderRepository = mock(EncoderRepository.class);
+        this.schemaRepository = new SchemaRepository();
+        this.schemaRepository.setEncoderRepository(encoderRepository);
+    }
+
+    @Test
+    public void shouldResolvePrefixesInBothDirections() {
+        setEncoders(1, encoder(OmConstants.NS_OM_2, "om"), encoder(NS_GML_32, "gml"));
+        schemaRepository.init();
+        assertThat(schemaRepository.getNamespaceFor("om"), is(OmConstants.NS_OM_2));
+        assertThat(schemaRepository.getPrefixFor(OmConstants.NS_OM_2), is("om"));
+        assertThat(schemaRepository.getNamespaceFor("gml"), is(NS_GML_32));
+        assertThat(schemaRepository.getPrefixFor(NS_GML_32), is("gml"));
+    }
+
+    @Test
+    public void shouldNotResolveUnknownPrefixes() {
+        setEncoders(1, encoder(NS_GML_32, "gml"));
+        schemaRepository.init();
+        assertThat(schemaRepository.getNamespaceFor("om"), is(nullValue()));
+        assertThat(schemaRepository.getNamespaceFor(NS_GML_32), is(nullValue()));
+        assertThat(schemaRepository.getPrefixFor("gml"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldResolveSharedPrefixToCurrentVersion() {
+        setEncoders(1, encoder(NS_GML_311, "gml"), encoder(NS_GML_32, "gml"));
+        schemaRepository.init();
+        assertThat(schemaRepository.getNamespaceFor("gml"), is(NS_GML_32));
+        assertThat(schemaRepository.getPrefixFor(NS_GML_311), is("gml"));
+
+        setEncoders(2, encoder(NS_GML_32, "gml"), encoder(NS_GML_311, "gml"));
+        assertThat(schemaRepository.getNamespaceFor("gml"), is(NS_GML_32));
+    }
+
+    @Test
+    public void shouldResolveSharedPrefixToLatestNamespace() {
+        setEncoders(1, encoder("http://www.example.org/a/2.0", "a"), encoder("http://www.example.org/a/1.0", "a"));
+        schemaRepository.init();
+        assertThat(schemaRepository.getNamespaceFor("a"), is("http://www.example.org/a/2.0"));
+    }
+
+    @Test
+    public void shouldRebuildIndexIfEncodersChanged() {
+        setEncoders(1, encoder(NS_GML_32, "gml"));
+        schemaRepository.init();
+        assertThat(schemaRepository.getNamespaceFor("om"), is(nullValue()));
+        assertThat(schemaRepository.getGeneration(), is(1));
+
+        setEncoders(2, encoder(NS_GML_32, "gml"), encoder(OmConstants.NS_OM_2, "om"));
+        assertThat(schemaRepository.getNamespaceFor("om"), is(OmConstants.NS_OM_2));
+        assertThat(schemaRepository.getGeneration(), is(2));
+    }
+
+    private void setEncoders(int generation, Encoder<?, ?>... encoders) {
+        Set<Encoder<?, ?>> set = ImmutableSet.copyOf(encoders);
+        when(encoderRepository.getEncoders()).thenReturn(set);
+        when(encoderRepository.getGeneration()).thenReturn(generation);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SchemaAwareEncoder<?, ?> encoder(String namespace, String prefix) {
+        SchemaAwareEncoder<?, ?> encoder = mock(SchemaAwareEncoder.class);
+        doAnswer(invocation -> {
+            ((Map<String, String>) invocation.getArguments()[0]).put(namespace, prefix);
+            return null;
+        }).when(encoder).addNamespacePrefixToMap(anyMapOf(String.class, String.class));
+        return encoder;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.encode;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.time.Time;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.ogc.om.OmObservation;
+
+/**
+ * @since 1.0.0
+ */
+public class TieredEncodedObservationCacheTest {
+
+    @Test
+    public void shouldBeDisabledByDefault() {
+        assertThat(new TieredEncodedObservationCache().isEnabled(), is(false));
+    }
+
+    @Test
+    public void shouldReturnCachedObservation() {
+        TieredEncodedObservationCache cache = new TieredEncodedObservationCache();
+        cache.setHeapSize(1);
+        EncodedObservationCache.Key key = EncodedObservationCache.Key.of("1", "om", "foi_1");
+        cache.put(key, bytes("<o/>"), Collections.singleton("o_1"));
+
+        EncodedObservationCache.Entry entry = cache.get(EncodedObservationCache.Key.of("1", "om", "foi_1"));
+        assertThat(string(entry.getEncoded()), is("<o/>"));
+        assertThat(entry.getGmlIds(), contains("o_1"));
+        assertThat(cache.get(EncodedObservationCache.Key.of("1", "om", "foi_2")), is(nullValue()));
+    }
+
+    @Test
+    public void shouldMoveEvictedObservationsOffHeap() {
+        TieredEncodedObservationCache cache = new TieredEncodedObservationCache();
+        cache.setOffHeapSize(16);
+        cache.setHeapSize(1);
+        byte[] large = new byte[800];
+        for (int i = 0; i < 10; ++i) {
+            cache.put(EncodedObservationCache.Key.of(Integer.toString(i)), large, Collections.emptySet());
+        }
+        for (int i = 0; i < 10; ++i) {
+            EncodedObservationCache.Entry entry = cache.get(EncodedObservationCache.Key.of(Integer.toString(i)));
+            assertThat(entry.size(), is(large.length));
+        }
+    }
+
+    @Test
+    public void shouldInvalidateAllEncodingsOfAnObservation() {
+        TieredEncodedObservationCache cache = new TieredEncodedObservationCache();
+        cache.setOffHeapSize(1);
+        cache.put(EncodedObservationCache.Key.of("1", "a"), bytes("a"), Collections.emptySet());
+        cache.put(EncodedObservationCache.Key.of("1", "b"), bytes("b"), Collections.emptySet());
+        cache.put(EncodedObservationCache.Key.of("2", "a"), bytes("c"), Collections.emptySet());
+
+        cache.invalidate("1");
+        assertThat(cache.get(EncodedObservationCache.Key.of("1", "a")), is(nullValue()));
+        assertThat(cache.get(EncodedObservationCache.Key.of("1", "b")), is(nullValue()));
+        assertThat(string(cache.get(EncodedObservationCache.Key.of("2", "a")).getEncoded()), is("c"));
+
+        cache.invalidateAll();
+        assertThat(cache.get(EncodedObservationCache.Key.of("2", "a")), is(nullValue()));
+    }
+
+    @Test
+    public void shouldOnlyCacheHistoricalObservations() {
+        TieredEncodedObservationCache cache = new TieredEncodedObservationCache();
+        cache.setMinAge(3600);
+        DateTime now = new DateTime();
+        assertThat(cache.isCacheable(observation(new TimeInstant(now.minusHours(2)), null)), is(true));
+        assertThat(cache.isCacheable(observation(new TimeInstant(now), null)), is(false));
+        assertThat(cache.isCacheable(observation(new TimePeriod(now.minusDays(2), now), null)), is(false));
+        assertThat(cache.isCacheable(observation(new TimeInstant(now.minusHours(2)), new TimeInstant(now))),
+                is(false));
+    }
+
+    private static OmObservation observation(Time phenomenonTime, TimeInstant resultTime) {
+        OmObservation observation = mock(OmObservation.class);
+        when(observation.getPhenomenonTime()).thenReturn(phenomenonTime);
+        when(observation.getResultTime()).thenReturn(resultTime);
+        return observation;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
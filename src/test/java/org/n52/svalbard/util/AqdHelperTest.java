@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.util;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.n52.shetland.aqd.AbstractEReportingHeader;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.features.FeatureCollection;
+
+/**
+ * @since 1.0.0
+ */
+public class AqdHelperTest {
+
+    private static final DateTime PHENOMENON_TIME = new DateTime(2017, 1, 1, 0, 0, DateTimeZone.UTC);
+
+    private final AqdHelper aqdHelper = new AqdHelper();
+
+    @Test
+    public void shouldPrepareObservationWithPhenomenonTime() {
+        OmObservation observation = observation(true);
+        AbstractEReportingHeader header = mock(AbstractEReportingHeader.class);
+        TimePeriod timePeriod = new TimePeriod();
+        TimeInstant resultTime = new TimeInstant(new DateTime(DateTimeZone.UTC));
+
+        assertThat(aqdHelper.processObservation(observation, timePeriod, resultTime, header, 3), is(true));
+        assertThat(observation.getGmlId(), is("o_3"));
+        assertThat(observation.getResultTime(), is(resultTime));
+        assertThat(timePeriod.getStart(), is(PHENOMENON_TIME));
+        ArgumentCaptor<AbstractFeature> content = ArgumentCaptor.forClass(AbstractFeature.class);
+        verify(header).addContent(content.capture());
+        assertThat(content.getValue().getIdentifier(), is("#o_3"));
+    }
+
+    @Test
+    public void shouldSkipObservationWithoutPhenomenonTime() {
+        OmObservation observation = observation(false);
+        AbstractEReportingHeader header = mock(AbstractEReportingHeader.class);
+        TimePeriod timePeriod = new TimePeriod();
+
+        assertThat(aqdHelper.processObservation(observation, timePeriod, new TimeInstant(), header, 1), is(false));
+        assertThat(observation.isSetGmlID(), is(false));
+        assertThat(timePeriod.isEmpty(), is(true));
+        verify(header, never()).addContent(any(AbstractFeature.class));
+    }
+
+    @Test
+    public void shouldAddOnlyPreparedObservationsToFeatureCollection() {
+        OmObservation member = observation(true);
+        OmObservation skipped = observation(false);
+        AbstractEReportingHeader header = mock(AbstractEReportingHeader.class);
+        FeatureCollection featureCollection = new FeatureCollection();
+        TimePeriod timePeriod = new TimePeriod();
+        TimeInstant resultTime = new TimeInstant(new DateTime(DateTimeZone.UTC));
+
+        aqdHelper.processObservation(skipped, timePeriod, resultTime, featureCollection, header, 1);
+        assertThat(featureCollection.getMembers().values(), is(empty()));
+        aqdHelper.processObservation(member, timePeriod, resultTime, featureCollection, header, 2);
+        assertThat(featureCollection.getMembers().values(), contains((AbstractFeature) member));
+        verify(header, times(1)).addContent(any(AbstractFeature.class));
+    }
+
+    private static OmObservation observation(boolean withPhenomenonTime) {
+        OmObservation observation = spy(new OmObservation());
+        doReturn(withPhenomenonTime).when(observation).isSetPhenomenonTime();
+        doReturn(withPhenomenonTime ? new TimeInstant(PHENOMENON_TIME) : null).when(observation).getPhenomenonTime();
+        return observation;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.util;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.junit.Test;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.svalbard.decode.DecoderKey;
+import org.n52.svalbard.decode.XmlNamespaceDecoderKey;
+
+import net.opengis.sos.x20.GetCapabilitiesDocument;
+
+/**
+ * @since 1.0.0
+ */
+public class CodingHelperTest {
+
+    private static final String NS_A = "http://www.example.org/a";
+
+    private static final String NS_B = "http://www.example.org/b";
+
+    private static final String GET_CAPABILITIES =
+            "<sos:GetCapabilities xmlns:sos=\"" + Sos2Constants.NS_SOS_20 + "\" service=\"SOS\"/>";
+
+    @Test
+    public void shouldDeriveDecoderKeyFromRootElement() throws XmlException {
+        XmlObject document = XmlObject.Factory.parse("<!-- comment --><?pi?>" + GET_CAPABILITIES);
+
+        assertThat(CodingHelper.getDecoderKey(document),
+                is(new XmlNamespaceDecoderKey(Sos2Constants.NS_SOS_20, document.getClass())));
+    }
+
+    @Test
+    public void shouldInternDecoderKeys() throws XmlException {
+        DecoderKey key = CodingHelper.getDecoderKey(XmlObject.Factory.parse(GET_CAPABILITIES));
+
+        assertThat(CodingHelper.getDecoderKey(XmlObject.Factory.parse(GET_CAPABILITIES)), is(sameInstance(key)));
+    }
+
+    @Test
+    public void shouldDistinguishDecoderKeysByNamespace() {
+        DecoderKey a = CodingHelper.getDecoderKey(new QName(NS_A, "a"));
+        DecoderKey b = CodingHelper.getDecoderKey(new QName(NS_B, "b"));
+
+        assertThat(a, is(not(b)));
+        assertThat(CodingHelper.getDecoderKey(new QName(NS_A, "c")), is(a));
+    }
+
+    @Test
+    public void shouldCreateEqualKeysBeyondTheInternedNamespaces() {
+        for (int i = 0; i < 32; ++i) {
+            String namespace = "http://www.example.org/bounded/" + i;
+
+            assertThat(CodingHelper.getDecoderKey(new QName(namespace, "e")),
+                    is(new XmlNamespaceDecoderKey(namespace, XmlObject.class)));
+        }
+    }
+
+    @Test
+    public void shouldDeriveDecoderKeyFromRootElementName() {
+        DecoderKey key = CodingHelper.getDecoderKey(new QName(Sos2Constants.NS_SOS_20, "GetCapabilities"));
+
+        assertThat(key, is(new XmlNamespaceDecoderKey(Sos2Constants.NS_SOS_20, GetCapabilitiesDocument.class)));
+        assertThat(CodingHelper.getDecoderKey(new QName(Sos2Constants.NS_SOS_20, "GetCapabilities")),
+                is(sameInstance(key)));
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.util;
+
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.junit.Test;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.svalbard.decode.exception.DecodingException;
+
+import net.opengis.sos.x20.GetCapabilitiesDocument;
+
+/**
+ * @since 1.0.0
+ */
+public class XmlHelperTest {
+
+    private static final String NS_A = "http://www.example.org/a";
+
+    private static final String NS_B = "http://www.example.org/b";
+
+    @Test
+    public void shouldDeclareNamespacesInScopeOnCopiedRoot() throws XmlException {
+        XmlObject parent = XmlObject.Factory.parse(String.format(
+                "<a:parent xmlns:a=\"%s\" xmlns:b=\"%s\"><a:child type=\"b:Type\"/></a:parent>", NS_A, NS_B));
+
+        XmlObject document = XmlHelper.copyToDocument(firstChild(parent));
+
+        Map<String, String> namespaces = namespacesOfRoot(document);
+        assertThat(namespaces, hasEntry("a", NS_A));
+        assertThat(namespaces, hasEntry("b", NS_B));
+        assertThat(rootName(document), is(new QName(NS_A, "child")));
+    }
+
+    @Test
+    public void shouldNotDeclareDefaultNamespaceOnCopiedRoot() throws XmlException {
+        XmlObject parent = XmlObject.Factory
+                .parse(String.format("<parent xmlns=\"%s\"><child xmlns=\"\"/></parent>", NS_A));
+
+        XmlObject document = XmlHelper.copyToDocument(firstChild(parent));
+
+        assertThat(namespacesOfRoot(document), not(hasEntry("", NS_A)));
+        assertThat(rootName(document), is(new QName("child")));
+    }
+
+    @Test
+    public void shouldTypeCopiedDocument() throws XmlException {
+        XmlObject parent = XmlObject.Factory.parse(String.format(
+                "<a:parent xmlns:a=\"%s\" xmlns:sos=\"%s\"><sos:GetCapabilities service=\"SOS\"/></a:parent>",
+                NS_A, Sos2Constants.NS_SOS_20));
+
+        assertThat(XmlHelper.copyToDocument(firstChild(parent)), is(instanceOf(GetCapabilitiesDocument.class)));
+    }
+
+    @Test
+    public void shouldTypeSingleAnyTypeElement() throws XmlException, DecodingException {
+        XmlObject parent = XmlObject.Factory.parse(String.format(
+                "<a:parent xmlns:a=\"%s\" xmlns:sos=\"%s\">\n  <sos:GetCapabilities service=\"SOS\"/>\n</a:parent>",
+                NS_A, Sos2Constants.NS_SOS_20));
+
+        assertThat(XmlHelper.typeAnyTypeContent(rootElement(parent)), is(instanceOf(GetCapabilitiesDocument.class)));
+    }
+
+    @Test
+    public void shouldReturnTextContentUnchanged() throws XmlException, DecodingException {
+        XmlObject parent = XmlObject.Factory.parse(String.format("<a:parent xmlns:a=\"%s\">text</a:parent>", NS_A));
+        XmlObject root = rootElement(parent);
+
+        assertThat(XmlHelper.typeAnyTypeContent(root), is(sameInstance(root)));
+    }
+
+    @Test(expected = DecodingException.class)
+    public void shouldRejectSeveralAnyTypeElements() throws XmlException, DecodingException {
+        XmlObject parent = XmlObject.Factory
+                .parse(String.format("<a:parent xmlns:a=\"%s\"><a:first/><a:second/></a:parent>", NS_A));
+
+        XmlHelper.typeAnyTypeContent(rootElement(parent));
+    }
+
+    @Test(expected = DecodingException.class)
+    public void shouldRejectMixedAnyTypeContent() throws XmlException, DecodingException {
+        XmlObject parent = XmlObject.Factory
+                .parse(String.format("<a:parent xmlns:a=\"%s\">text<a:child/></a:parent>", NS_A));
+
+        XmlHelper.typeAnyTypeContent(rootElement(parent));
+    }
+
+    private static XmlObject rootElement(XmlObject document) {
+        XmlCursor cursor = document.newCursor();
+        try {
+            cursor.toFirstChild();
+            return cursor.getObject();
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    private static XmlObject firstChild(XmlObject document) {
+        XmlCursor cursor = document.newCursor();
+        try {
+            cursor.toFirstChild();
+            cursor.toFirstChild();
+            return cursor.getObject();
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    private static QName rootName(XmlObject document) {
+        XmlCursor cursor = document.newCursor();
+        try {
+            cursor.toFirstChild();
+            return cursor.getName();
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    private static Map<String, String> namespacesOfRoot(XmlObject document) {
+        Map<String, String> namespaces = new HashMap<>();
+        XmlCursor cursor = document.newCursor();
+        try {
+            cursor.toFirstChild();
+            cursor.toNextToken();
+            while (cursor.isNamespace() || cursor.isAttr()) {
+                if (cursor.isNamespace()) {
+                    // the local part is the prefix and the URI is the namespace
+                    namespaces.put(cursor.getName().getLocalPart(), cursor.getName().getNamespaceURI());
+                }
+                cursor.toNextToken();
+            }
+        } finally {
+            cursor.dispose();
+        }
+        return namespaces;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.GmlConstants;
+import org.n52.shetland.ogc.om.OmConstants;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.features.FeatureCollection;
+import org.n52.shetland.ogc.swe.SweConstants;
+import org.n52.svalbard.SosHelperValues;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncoderKey;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.encode.EncodingContext;
+import org.n52.svalbard.encode.EncodingValues;
+import org.n52.svalbard.util.XmlOptionsHelper;
+
+/**
+ * @since 1.0.0
+ */
+public class AqdGetObservationResponseXmlStreamWriterTest {
+
+    private static final QName QN_QUANTITY = new QName(SweConstants.NS_SWE_20, "Quantity");
+
+    private EncoderRepository encoderRepository;
+
+    private Encoder<XmlObject, AbstractFeature> encoder;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        XmlOptionsHelper xmlOptionsHelper = new XmlOptionsHelper();
+        xmlOptionsHelper.setEncoderRepository(mock(EncoderRepository.class));
+        xmlOptionsHelper.init();
+        this.encoder = mock(Encoder.class);
+        when(encoder.encode(any(AbstractFeature.class), any(EncodingContext.class))).thenAnswer(invocation -> {
+            AbstractFeature feature = (AbstractFeature) invocation.getArguments()[0];
+            XmlObject encoded = XmlObject.Factory.newInstance();
+            XmlCursor cursor = encoded.newCursor();
+            cursor.toNextToken();
+            cursor.beginElement(QN_QUANTITY);
+            cursor.insertAttributeWithValue(GmlConstants.QN_ID_32, feature.getGmlId());
+            cursor.dispose();
+            return encoded;
+        });
+        this.encoderRepository = mock(EncoderRepository.class);
+        when(encoderRepository.<XmlObject, AbstractFeature> getEncoder(any(EncoderKey.class))).thenReturn(encoder);
+    }
+
+    @Test
+    public void shouldWriteGivenMembersInsteadOfCollectionMembers() throws Exception {
+        OmObservation unused = observation("unused");
+        FeatureCollection featureCollection = new FeatureCollection();
+        featureCollection.setGmlId("fc");
+        featureCollection.addMember(unused);
+
+        String written = write(featureCollection, Arrays.asList(observation("o_1"), observation("o_2")));
+        assertThat(written, containsString("gml:id=\"fc\""));
+        assertThat(written, containsString("gml:id=\"o_1\""));
+        assertThat(written, containsString("gml:id=\"o_2\""));
+        assertThat(written, not(containsString("unused")));
+        assertThat(written.split("<gml:featureMember>", -1).length, is(3));
+        verify(encoder, never()).encode(same(unused), any(EncodingContext.class));
+    }
+
+    @Test
+    public void shouldUseRootNamespacesForMembers() throws Exception {
+        FeatureCollection featureCollection = new FeatureCollection();
+        featureCollection.setGmlId("fc");
+
+        String written = write(featureCollection, Arrays.asList(observation("o_1"), observation("o_2")));
+        assertThat(written, containsString("<swe:Quantity"));
+        assertThat(written.split("xmlns:swe=", -1).length, is(2));
+        assertThat(written.split("xmlns:gml=", -1).length, is(2));
+        XmlObject.Factory.parse(written);
+    }
+
+    private String write(FeatureCollection featureCollection, Iterable<? extends AbstractFeature> members)
+            throws Exception {
+        AqdGetObservationResponseXmlStreamWriter writer =
+                new AqdGetObservationResponseXmlStreamWriter(featureCollection, members);
+        writer.setEncoderRepository(encoderRepository);
+        EncodingValues encodingValues = new EncodingValues();
+        encodingValues.setAdditionalValues(EncodingContext.of(SosHelperValues.ENCODE_NAMESPACE, OmConstants.NS_OM_2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out, encodingValues);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static OmObservation observation(String gmlId) {
+        OmObservation observation = new OmObservation();
+        observation.setGmlId(gmlId);
+        return observation;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.gml.GmlConstants;
+import org.n52.shetland.ogc.om.features.FeatureCollection;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.svalbard.encode.AbstractXmlEncoder;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.encode.EncodingContext;
+import org.n52.svalbard.encode.EncodingValues;
+import org.n52.svalbard.encode.GmlIdAllocator;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.util.XmlOptionsHelper;
+
+import net.opengis.gml.x32.FeaturePropertyType;
+import net.opengis.samplingSpatial.x20.SFSpatialSamplingFeatureDocument;
+
+/**
+ * @since 1.0.0
+ */
+public class FeatureCollectionXmlStreamWriterTest {
+
+    private static final QName ROOT = new QName("http://www.example.org/test", "features", "test");
+
+    private static final QName MEMBER = new QName("http://www.example.org/test", "member", "test");
+
+    private final List<EncodingContext> contexts = new ArrayList<>();
+
+    private AbstractXmlEncoder<XmlObject, Object> encoder;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        XmlOptionsHelper xmlOptionsHelper = new XmlOptionsHelper();
+        xmlOptionsHelper.setEncoderRepository(mock(EncoderRepository.class));
+        xmlOptionsHelper.init();
+        this.encoder = mock(AbstractXmlEncoder.class);
+        when(encoder.getSchemaLocations()).thenReturn(Collections.emptySet());
+        when(encoder.encodeObjectToXml(eq(GmlConstants.NS_GML_32), any(AbstractFeature.class),
+                any(EncodingContext.class))).thenAnswer(invocation -> {
+                    AbstractFeature feature = (AbstractFeature) invocation.getArguments()[1];
+                    EncodingContext ctx = (EncodingContext) invocation.getArguments()[2];
+                    contexts.add(ctx);
+                    if (feature.getIdentifier().startsWith("#")) {
+                        FeaturePropertyType property = FeaturePropertyType.Factory.newInstance();
+                        property.setHref(feature.getIdentifier());
+                        return property;
+                    }
+                    SFSpatialSamplingFeatureDocument document = SFSpatialSamplingFeatureDocument.Factory.newInstance();
+                    document.addNewSFSpatialSamplingFeature()
+                            .setId(GmlIdAllocator.of(ctx).allocate(feature.getIdentifier()));
+                    return document;
+                });
+    }
+
+    @Test
+    public void shouldWriteEveryMemberIntoGmlFeatureCollection() throws Exception {
+        FeatureCollection featureCollection = new FeatureCollection();
+        featureCollection.setGmlId("a");
+        featureCollection.addMember(feature("a"));
+        featureCollection.addMember(feature("b"));
+
+        String written = write(new FeatureCollectionXmlStreamWriter(), featureCollection);
+        assertThat(written, containsString("<gml:FeatureCollection"));
+        assertThat(written, containsString("gml:id=\"a\""));
+        assertThat(written, containsString("gml:id=\"a_1\""));
+        assertThat(written, containsString("gml:id=\"b\""));
+        assertThat(written.split("<gml:featureMember>", -1).length, is(3));
+        assertThat(written, not(containsString("boundedBy")));
+        XmlObject.Factory.parse(written);
+    }
+
+    @Test
+    public void shouldShareOneAllocatorBetweenMembers() throws Exception {
+        FeatureCollection featureCollection = new FeatureCollection();
+        featureCollection.addMember(feature("a"));
+        featureCollection.addMember(feature("b"));
+
+        write(new FeatureCollectionXmlStreamWriter(ROOT, MEMBER), featureCollection);
+        assertThat(contexts, hasSize(2));
+        assertThat(GmlIdAllocator.of(contexts.get(1)), is(sameInstance(GmlIdAllocator.of(contexts.get(0)))));
+    }
+
+    @Test
+    public void shouldWriteMembersIntoGivenElements() throws Exception {
+        FeatureCollection featureCollection = new FeatureCollection();
+        featureCollection.addMember(feature("a"));
+        featureCollection.addMember(feature("#b"));
+
+        String written = write(new FeatureCollectionXmlStreamWriter(ROOT, MEMBER), featureCollection);
+        assertThat(written, containsString("<test:features"));
+        assertThat(written, containsString("<test:member>"));
+        assertThat(written, containsString("<test:member "));
+        assertThat(written, containsString("xlink:href=\"#b\""));
+        assertThat(written, not(containsString("xml-fragment")));
+        assertThat(written, not(containsString("FeatureCollection")));
+        XmlObject.Factory.parse(written);
+    }
+
+    @Test(expected = EncodingException.class)
+    public void shouldRequireXmlEncoder() throws Exception {
+        EncodingValues encodingValues = new EncodingValues();
+        encodingValues.setEncoder(mock(Encoder.class));
+        new FeatureCollectionXmlStreamWriter().write(new FeatureCollection(), new ByteArrayOutputStream(),
+                encodingValues);
+    }
+
+    private static AbstractFeature feature(String identifier) {
+        return new SamplingFeature(new CodeWithAuthority(identifier));
+    }
+
+    private String write(FeatureCollectionXmlStreamWriter writer, FeatureCollection featureCollection)
+            throws Exception {
+        EncodingValues encodingValues = new EncodingValues();
+        encodingValues.setEncoder(encoder);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(featureCollection, out, encodingValues);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
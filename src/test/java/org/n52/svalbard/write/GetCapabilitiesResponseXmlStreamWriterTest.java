@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.xmlbeans.XmlOptions;
+import org.junit.Test;
+import org.n52.shetland.ogc.ows.extension.Extensions;
+import org.n52.shetland.ogc.sos.SosObservationOffering;
+import org.n52.shetland.ogc.sos.SosOffering;
+import org.n52.svalbard.encode.EncodedFragmentCache;
+import org.n52.svalbard.encode.GetCapabilitiesResponseEncoder;
+
+import net.opengis.swes.x20.AbstractContentsType.Offering;
+
+/**
+ * @since 1.0.0
+ */
+public class GetCapabilitiesResponseXmlStreamWriterTest {
+
+    @Test
+    public void shouldWriteOfferingAsSwesOffering() throws Exception {
+        GetCapabilitiesResponseEncoder encoder = encoder(new EncodedFragmentCache());
+        String encoded = string(new GetCapabilitiesResponseXmlStreamWriter().encodeOffering(encoder, offering()));
+        assertThat(encoded, startsWith("<swes:offering"));
+        assertThat(encoded.contains("xml-fragment"), is(false));
+        assertThat(encoded.startsWith("<?xml"), is(false));
+    }
+
+    @Test
+    public void shouldCopyUnchangedOfferingFromCache() throws Exception {
+        EncodedFragmentCache fragmentCache = new EncodedFragmentCache();
+        fragmentCache.setMaximumSize(1);
+        GetCapabilitiesResponseEncoder encoder = encoder(fragmentCache);
+        GetCapabilitiesResponseXmlStreamWriter writer = new GetCapabilitiesResponseXmlStreamWriter();
+        SosObservationOffering offering = offering();
+
+        String first = string(writer.encodeOffering(encoder, offering));
+        String second = string(writer.encodeOffering(encoder, offering));
+        assertThat(second, is(first));
+        verify(encoder, times(1)).createOffering(offering);
+    }
+
+    private static GetCapabilitiesResponseEncoder encoder(EncodedFragmentCache fragmentCache) throws Exception {
+        GetCapabilitiesResponseEncoder encoder = mock(GetCapabilitiesResponseEncoder.class);
+        when(encoder.getFragmentCache()).thenReturn(fragmentCache);
+        when(encoder.getXmlOptions()).thenReturn(new XmlOptions());
+        when(encoder.createOffering(any(SosObservationOffering.class)))
+                .thenAnswer(invocation -> Offering.Factory.newInstance());
+        return encoder;
+    }
+
+    private static SosObservationOffering offering() {
+        SosOffering sosOffering = mock(SosOffering.class);
+        when(sosOffering.getIdentifier()).thenReturn("offering");
+        SosObservationOffering offering = mock(SosObservationOffering.class);
+        when(offering.getOffering()).thenReturn(sosOffering);
+        when(offering.getExtensions()).thenReturn(new Extensions());
+        return offering;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import javax.xml.namespace.QName;
+import javax.xml.soap.SOAPConstants;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.janmayen.Producer;
+import org.n52.shetland.ogc.ows.OWSConstants;
+import org.n52.shetland.ogc.ows.exception.CodedException;
+import org.n52.shetland.ogc.ows.exception.NoApplicableCodeException;
+import org.n52.shetland.ogc.ows.service.OwsServiceResponse;
+import org.n52.shetland.w3c.soap.SoapConstants;
+import org.n52.shetland.w3c.soap.SoapFault;
+import org.n52.shetland.w3c.soap.SoapResponse;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.encode.EncodingContext;
+import org.n52.svalbard.encode.OperationResponseEncoderKey;
+import org.n52.svalbard.encode.XmlEncoderKey;
+
+/**
+ * @since 1.0.0
+ */
+public class Soap11XmlStreamWriterTest {
+
+    private static final String BODY
+            = "<test:response xmlns:test=\"http://www.example.org/test\">value</test:response>";
+
+    private static final String EXCEPTION = "<ows:Exception xmlns:ows=\"" + OWSConstants.NS_OWS
+            + "\" exceptionCode=\"NoApplicableCode\"/>";
+
+    private static final String FAULT_CODE_END = "</faultcode>";
+
+    private EncoderRepository encoderRepository;
+
+    private Producer<XmlOptions> xmlOptions;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        this.encoderRepository = mock(EncoderRepository.class);
+        Encoder<Object, OwsServiceResponse> bodyEncoder = mock(Encoder.class);
+        when(bodyEncoder.encode(any(OwsServiceResponse.class)))
+                .thenAnswer(invocation -> XmlObject.Factory.parse(BODY));
+        Encoder<Object, CodedException> exceptionEncoder = mock(Encoder.class);
+        when(exceptionEncoder.encode(any(CodedException.class), any(EncodingContext.class)))
+                .thenAnswer(invocation -> XmlObject.Factory.parse(EXCEPTION));
+        when(encoderRepository.getEncoder(isA(OperationResponseEncoderKey.class))).thenReturn(bodyEncoder);
+        when(encoderRepository.getEncoder(isA(XmlEncoderKey.class))).thenReturn(exceptionEncoder);
+        this.xmlOptions = mock(Producer.class);
+        when(xmlOptions.get()).thenReturn(new XmlOptions());
+    }
+
+    @Test
+    public void shouldWriteBodyIntoSoap11Envelope() throws Exception {
+        OwsServiceResponse body = mock(OwsServiceResponse.class);
+        when(body.getService()).thenReturn("SOS");
+        when(body.getVersion()).thenReturn("2.0.0");
+        when(body.getOperationName()).thenReturn("GetObservation");
+        SoapResponse response = mock(SoapResponse.class);
+        when(response.isSetBodyContent()).thenReturn(true);
+        when(response.getBodyContent()).thenReturn(body);
+
+        String envelope = write(response);
+        assertEnvelope(envelope);
+        assertThat(envelope, containsString(">value</test:response>"));
+        assertThat(envelope, not(containsString("xml-fragment")));
+        assertThat(envelope, not(containsString(SoapConstants.NS_SOAP_12)));
+    }
+
+    @Test
+    public void shouldMapSenderFaultToClient() throws Exception {
+        String envelope = write(fault(SOAPConstants.SOAP_SENDER_FAULT));
+        assertEnvelope(envelope);
+        assertThat(envelope, containsString(SoapConstants.NS_SOAP_PREFIX + ":Client" + FAULT_CODE_END));
+        assertThat(envelope, containsString("xml:lang=\"en\""));
+        assertThat(envelope, containsString(">reason</faultstring>"));
+        assertThat(envelope, containsString(">detail text</detail>"));
+    }
+
+    @Test
+    public void shouldMapReceiverFaultToServer() throws Exception {
+        String envelope = write(fault(SOAPConstants.SOAP_RECEIVER_FAULT));
+        assertEnvelope(envelope);
+        assertThat(envelope, containsString(SoapConstants.NS_SOAP_PREFIX + ":Server" + FAULT_CODE_END));
+    }
+
+    @Test
+    public void shouldWriteExceptionReportAsClientFault() throws Exception {
+        SoapResponse response = mock(SoapResponse.class);
+        when(response.hasException()).thenReturn(true);
+        when(response.getException()).thenReturn(new NoApplicableCodeException().withMessage("message"));
+
+        String envelope = write(response);
+        assertEnvelope(envelope);
+        assertThat(envelope, containsString(SoapConstants.NS_SOAP_PREFIX + ":Client" + FAULT_CODE_END));
+        assertThat(envelope, containsString("exceptionCode=\"NoApplicableCode\""));
+        int exception = envelope.indexOf("<ows:Exception");
+        assertThat(envelope.indexOf("<detail>"), is(lessThan(exception)));
+        assertThat(exception, is(lessThan(envelope.indexOf("</detail>"))));
+    }
+
+    private static SoapResponse fault(QName code) {
+        SoapFault fault = new SoapFault();
+        fault.setFaultCode(code);
+        fault.setFaultReason("reason");
+        fault.setLocale(Locale.ENGLISH);
+        fault.setDetailText("detail text");
+        SoapResponse response = mock(SoapResponse.class);
+        when(response.isSetSoapFault()).thenReturn(true);
+        when(response.getSoapFault()).thenReturn(fault);
+        return response;
+    }
+
+    private static void assertEnvelope(String envelope) throws Exception {
+        XmlCursor cursor = XmlObject.Factory.parse(envelope).newCursor();
+        assertThat(cursor.toFirstChild(), is(true));
+        assertThat(cursor.getName(),
+                is(new QName(SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE, SoapConstants.EN_SOAP_ENVELOPE)));
+        cursor.dispose();
+    }
+
+    private String write(SoapResponse response) throws Exception {
+        Soap11XmlStreamWriter writer = new Soap11XmlStreamWriter();
+        writer.setEncoderRepository(encoderRepository);
+        writer.setXmlOptions(xmlOptions);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(response, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
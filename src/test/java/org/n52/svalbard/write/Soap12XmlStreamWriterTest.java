@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016-2017 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.svalbard.write;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.janmayen.Producer;
+import org.n52.shetland.ogc.ows.service.OwsServiceResponse;
+import org.n52.shetland.w3c.soap.SoapConstants;
+import org.n52.shetland.w3c.soap.SoapFault;
+import org.n52.shetland.w3c.soap.SoapResponse;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncoderKey;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.encode.OperationResponseEncoderKey;
+import org.n52.svalbard.encode.XmlEncoderKey;
+
+/**
+ * @since 1.0.0
+ */
+public class Soap12XmlStreamWriterTest {
+
+    private static final String BODY
+            = "<test:response xmlns:test=\"http://www.example.org/test\">value</test:response>";
+
+    private static final String FAULT = "<env:Fault xmlns:env=\"" + SoapConstants.NS_SOAP_12 + "\"/>";
+
+    private EncoderRepository encoderRepository;
+
+    private Producer<XmlOptions> xmlOptions;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        this.encoderRepository = mock(EncoderRepository.class);
+        Encoder<Object, OwsServiceResponse> bodyEncoder = mock(Encoder.class);
+        when(bodyEncoder.encode(any(OwsServiceResponse.class)))
+                .thenAnswer(invocation -> XmlObject.Factory.parse(BODY));
+        Encoder<Object, SoapFault> faultEncoder = mock(Encoder.class);
+        when(faultEncoder.encode(any(SoapFault.class))).thenAnswer(invocation -> XmlObject.Factory.parse(FAULT));
+        when(encoderRepository.getEncoder(isA(OperationResponseEncoderKey.class))).thenReturn(bodyEncoder);
+        when(encoderRepository.getEncoder(isA(XmlEncoderKey.class))).thenReturn(faultEncoder);
+        this.xmlOptions = mock(Producer.class);
+        when(xmlOptions.get()).thenReturn(new XmlOptions());
+    }
+
+    @Test
+    public void shouldSaveEncodedBodyIntoEnvelope() throws Exception {
+        String envelope = write(writer(), body());
+        assertThat(envelope, containsString("<test:response"));
+        assertThat(envelope, containsString(">value</test:response>"));
+        assertThat(envelope, containsString(SoapConstants.NS_SOAP_12));
+        assertThat(envelope, not(containsString("xml-fragment")));
+        assertThat(envelope.indexOf("<?xml"), is(envelope.lastIndexOf("<?xml")));
+        XmlCursor cursor = XmlObject.Factory.parse(envelope).newCursor();
+        assertThat(cursor.toFirstChild(), is(true));
+        assertThat(cursor.getName(), is(new QName(SoapConstants.NS_SOAP_12, SoapConstants.EN_SOAP_ENVELOPE)));
+        cursor.dispose();
+    }
+
+    @Test
+    public void shouldResolveBodyEncoderOncePerWrite() throws Exception {
+        write(writer(), body());
+        verify(encoderRepository, times(1)).getEncoder(isA(OperationResponseEncoderKey.class));
+    }
+
+    @Test
+    public void shouldResolveEncodersOnceWithSharedCache() throws Exception {
+        ConcurrentHashMap<EncoderKey, Encoder<?, ?>> cache = new ConcurrentHashMap<>();
+        Soap12XmlStreamWriter first = writer();
+        first.setEncoderCache(cache);
+        Soap12XmlStreamWriter second = writer();
+        second.setEncoderCache(cache);
+
+        String written = write(first, body());
+        assertThat(write(second, body()), is(written));
+        assertThat(write(first, body()), is(written));
+        verify(encoderRepository, times(1)).getEncoder(isA(OperationResponseEncoderKey.class));
+    }
+
+    @Test
+    public void shouldWriteSoapFaultWithFaultEncoder() throws Exception {
+        SoapResponse response = mock(SoapResponse.class);
+        when(response.isSetSoapFault()).thenReturn(true);
+        when(response.getSoapFault()).thenReturn(new SoapFault());
+
+        String envelope = write(writer(), response);
+        assertThat(envelope, containsString("Fault"));
+        assertThat(envelope, not(containsString("<test:response")));
+        verify(encoderRepository, times(1)).getEncoder(isA(XmlEncoderKey.class));
+    }
+
+    private Soap12XmlStreamWriter writer() {
+        Soap12XmlStreamWriter writer = new Soap12XmlStreamWriter();
+        writer.setEncoderRepository(encoderRepository);
+        writer.setXmlOptions(xmlOptions);
+        return writer;
+    }
+
+    private static SoapResponse body() {
+        OwsServiceResponse body = mock(OwsServiceResponse.class);
+        when(body.getService()).thenReturn("SOS");
+        when(body.getVersion()).thenReturn("2.0.0");
+        when(body.getOperationName()).thenReturn("GetObservation");
+        SoapResponse response = mock(SoapResponse.class);
+        when(response.isSetBodyContent()).thenReturn(true);
+        when(response.getBodyContent()).thenReturn(body);
+        return response;
+    }
+
+    private static String write(AbstractSoapXmlStreamWriter writer, SoapResponse response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(response, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}